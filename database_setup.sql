@@ -32,7 +32,13 @@ CREATE TABLE IF NOT EXISTS customers (
     country VARCHAR(50),
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
-    is_active BOOLEAN DEFAULT TRUE
+    is_active BOOLEAN DEFAULT TRUE,
+    rfm_recency TINYINT,
+    rfm_frequency TINYINT,
+    rfm_monetary TINYINT,
+    rfm_segment VARCHAR(30),
+    INDEX idx_customers_phone (phone_number),
+    INDEX idx_customers_updated (updated_at)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
 -- Create Products table
@@ -50,6 +56,7 @@ CREATE TABLE IF NOT EXISTS products (
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     is_active BOOLEAN DEFAULT TRUE,
+    INDEX idx_products_updated (updated_at),
     FOREIGN KEY (category_id) REFERENCES categories(category_id) ON DELETE SET NULL
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
@@ -66,6 +73,9 @@ CREATE TABLE IF NOT EXISTS orders (
     notes TEXT,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    INDEX idx_orders_customer_date (customer_id, order_date),
+    INDEX idx_orders_date (order_date),
+    INDEX idx_orders_updated (updated_at),
     FOREIGN KEY (customer_id) REFERENCES customers(customer_id) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
@@ -77,6 +87,7 @@ CREATE TABLE IF NOT EXISTS order_items (
     quantity INT NOT NULL,
     unit_price DECIMAL(10,2) NOT NULL,
     line_total DECIMAL(10,2) NOT NULL,
+    unit_cost DECIMAL(10,2),
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (order_id) REFERENCES orders(order_id) ON DELETE CASCADE,
     FOREIGN KEY (product_id) REFERENCES products(product_id) ON DELETE CASCADE
@@ -95,9 +106,61 @@ CREATE TABLE IF NOT EXISTS payments (
     payment_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    INDEX idx_payments_transaction (transaction_id),
+    INDEX idx_payments_reference (reference),
     FOREIGN KEY (order_id) REFERENCES orders(order_id) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+-- Create Daily Sales rollup table (maintained by the application; category 0: uncategorised)
+CREATE TABLE IF NOT EXISTS daily_sales (
+    sale_date DATE NOT NULL,
+    category_id INT NOT NULL,
+    product_id INT NOT NULL,
+    payment_method VARCHAR(20) NOT NULL,
+    order_lines INT NOT NULL DEFAULT 0,
+    quantity INT NOT NULL DEFAULT 0,
+    revenue DECIMAL(14,2) NOT NULL DEFAULT 0,
+    cost_amount DECIMAL(14,2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (sale_date, category_id, product_id, payment_method),
+    INDEX idx_daily_sales_product (product_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Create Daily Customer Reach table (HyperLogLog sketch of each day's customers per category)
+CREATE TABLE IF NOT EXISTS daily_customer_reach (
+    sale_date DATE NOT NULL,
+    category_id INT NOT NULL,
+    registers VARBINARY(4097) NOT NULL,
+    PRIMARY KEY (sale_date, category_id)
+) ENGINE=InnoDB;
+
+-- Create Daily Order Values table (t-digest sketch of each day's order totals per payment method)
+CREATE TABLE IF NOT EXISTS daily_order_values (
+    sale_date DATE NOT NULL,
+    payment_method VARCHAR(20) NOT NULL,
+    digest VARBINARY(4096) NOT NULL,
+    PRIMARY KEY (sale_date, payment_method)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Create Reorder Suggestions table (forecast reorder points, replaced by each forecast run)
+CREATE TABLE IF NOT EXISTS reorder_suggestions (
+    product_id INT PRIMARY KEY,
+    reorder_point INT NOT NULL,
+    reorder_quantity INT NOT NULL,
+    safety_stock INT NOT NULL,
+    daily_demand DECIMAL(10,2) NOT NULL,
+    forecast_method VARCHAR(20) NOT NULL,
+    computed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Create Batch Job State table (progress of incremental batch jobs)
+CREATE TABLE IF NOT EXISTS batch_job_state (
+    job_name VARCHAR(50) PRIMARY KEY,
+    watermark TIMESTAMP NULL,
+    last_full_run TIMESTAMP NULL,
+    state TEXT,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
 -- Insert sample categories
 INSERT IGNORE INTO categories (category_name, description) VALUES
 ('Electronics', 'Electronic devices and accessories'),
@@ -130,3 +193,8 @@ DESCRIBE products;
 DESCRIBE orders;
 DESCRIBE order_items;
 DESCRIBE payments;
+DESCRIBE daily_sales;
+DESCRIBE daily_customer_reach;
+DESCRIBE daily_order_values;
+DESCRIBE reorder_suggestions;
+DESCRIBE batch_job_state;
@@ -1,5 +1,8 @@
 package com.shop;
 
+import com.shop.report.StartupBatchJob;
+import com.shop.search.CustomerSearchIndex;
+import com.shop.search.ProductSearchIndex;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -15,6 +18,9 @@ public class App extends Application {
     public void start(Stage primaryStage) throws Exception {
         try {
             System.out.println("Starting ShopFlow Application...");
+
+            // Rollup backfills, forecasts and segment scores, in the background
+            StartupBatchJob.getInstance().start();
             
             // Try to load the welcome page first
             Parent root = FXMLLoader.load(getClass().getResource("/fxml/SimpleWelcomeView.fxml"));
@@ -55,6 +61,13 @@ public class App extends Application {
         }
     }
 
+    @Override
+    public void stop() {
+        // Save the search indexes so the next start maps them instead of rebuilding
+        ProductSearchIndex.saveIfLoaded();
+        CustomerSearchIndex.saveIfLoaded();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -0,0 +1,207 @@
+package com.shop.cache;
+
+import com.shop.database.DatabaseConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter over string keys.
+ * A negative answer is definite; a positive answer only means "possibly present"
+ * and must be confirmed against the database. A filter loaded from a table learns
+ * rows written later by other clients through catchUp, from the table's updated_at, run
+ * in the background by catchUpEvery; until the next catch-up such a row can still get a
+ * negative, so the table's unique key stays the final check.
+ */
+public class BloomFilter {
+    private static final int WATERMARK_OVERLAP_SECONDS = 5;
+    private static final ScheduledExecutorService CATCH_UP = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "bloom-filter-catch-up");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final long expectedInsertions;
+    private final AtomicLong insertions = new AtomicLong();
+    // Selects key and updated_at of the rows updated at or after its one parameter; null when not loaded from a table
+    private String keySinceSql;
+    // Newest updated_at read, less the overlap; rows from here on are read by the next catchUp. Guarded by this
+    private LocalDateTime watermark;
+    private ScheduledFuture<?> catchUpTask;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long expected = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, (m + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = words * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expected * Math.log(2)));
+        this.expectedInsertions = expected;
+    }
+
+    public void add(String key) {
+        long h1 = hash(key, 0x9E3779B97F4A7C15L);
+        long h2 = hash(key, 0xC2B2AE3D27D4EB4FL) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(word, current, current | mask));
+        }
+        insertions.incrementAndGet();
+    }
+
+    public boolean mightContain(String key) {
+        long h1 = hash(key, 0x9E3779B97F4A7C15L);
+        long h2 = hash(key, 0xC2B2AE3D27D4EB4FL) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Past the sizing estimate the false positive rate climbs quickly, so owners should rebuild
+    public boolean isSaturated() {
+        return insertions.get() > expectedInsertions;
+    }
+
+    public long getInsertions() {
+        return insertions.get();
+    }
+
+    /**
+     * Adds the keys of rows written since the load or the previous catch-up, by any client.
+     * The watermark follows the newest updated_at read, so neither clock is trusted over the
+     * table's; the overlap re-read covers rows committed after newer ones. Keys the filter
+     * already reports are not added again, so the overlap does not count towards saturation.
+     * Returns the keys added.
+     */
+    public synchronized int catchUp(Connection conn) throws SQLException {
+        if (keySinceSql == null) {
+            return 0;
+        }
+        int added = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(keySinceSql)) {
+            stmt.setTimestamp(1, watermark != null ? Timestamp.valueOf(watermark) : new Timestamp(0));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (addRow(rs, true)) {
+                        added++;
+                    }
+                }
+            }
+        }
+        return added;
+    }
+
+    // Catches up in the background every interval until stopCatchUp, e.g. when the filter is replaced
+    public synchronized void catchUpEvery(DatabaseConfig dbConfig, int seconds) {
+        if (catchUpTask != null || keySinceSql == null || seconds <= 0) {
+            return;
+        }
+        catchUpTask = CATCH_UP.scheduleWithFixedDelay(() -> {
+            try {
+                catchUp(dbConfig.getConnection());
+            } catch (SQLException e) {
+                System.err.println("Bloom filter catch-up failed: " + e.getMessage());
+            }
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopCatchUp() {
+        if (catchUpTask != null) {
+            catchUpTask.cancel(false);
+            catchUpTask = null;
+        }
+    }
+
+    /**
+     * Builds a filter over a key column, sized from a count query with room for a large import.
+     * keySql and keySinceSql select the key and updated_at; keySinceSql takes the rows
+     * updated at or after its one parameter and is what catchUp runs.
+     */
+    public static BloomFilter load(Connection conn, String countSql, String keySql, String keySinceSql)
+            throws SQLException {
+        long count = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(countSql);
+             ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                count = rs.getLong(1);
+            }
+        }
+
+        BloomFilter filter = new BloomFilter(Math.max(10_000, count * 2), 0.01);
+        filter.keySinceSql = keySinceSql;
+        try (PreparedStatement stmt = conn.prepareStatement(keySql)) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    filter.addRow(rs, false);
+                }
+            }
+        }
+        return filter;
+    }
+
+    // MySQL compares these columns with a case-insensitive, trailing-space-insensitive
+    // collation, so keys are folded the same way to keep negatives definite
+    public static String caseInsensitiveKey(String value) {
+        return value.stripTrailing().toLowerCase(Locale.ROOT);
+    }
+
+    // A row of key and updated_at; skipKnown leaves out keys the filter already reports. Returns whether it was added
+    private boolean addRow(ResultSet rs, boolean skipKnown) throws SQLException {
+        Timestamp updatedAt = rs.getTimestamp(2);
+        if (updatedAt != null) {
+            LocalDateTime from = updatedAt.toLocalDateTime().minusSeconds(WATERMARK_OVERLAP_SECONDS);
+            if (watermark == null || from.isAfter(watermark)) {
+                watermark = from;
+            }
+        }
+        String key = rs.getString(1);
+        if (key == null || (skipKnown && mightContain(caseInsensitiveKey(key)))) {
+            return false;
+        }
+        add(caseInsensitiveKey(key));
+        return true;
+    }
+
+    private static long hash(String key, long seed) {
+        long h = seed ^ key.length();
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001B3L;
+            h = Long.rotateLeft(h, 31);
+        }
+        // murmur3 finalizer
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,89 @@
+package com.shop.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters for one cache: hits, misses with their load latency, evictions and load failures.
+ */
+public class CacheStats {
+    private final String name;
+    private final LongSupplier sizeSupplier;
+    private final Runnable invalidator;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong missNanos = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong loadFailures = new AtomicLong();
+
+    CacheStats(String name, LongSupplier sizeSupplier, Runnable invalidator) {
+        this.name = name;
+        this.sizeSupplier = sizeSupplier;
+        this.invalidator = invalidator;
+    }
+
+    public void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    // A miss and the time spent loading (or querying the database) because of it
+    public void recordMiss(long elapsedNanos) {
+        misses.incrementAndGet();
+        missNanos.addAndGet(elapsedNanos);
+    }
+
+    public void recordEviction() {
+        evictions.incrementAndGet();
+    }
+
+    public void recordLoadFailure() {
+        loadFailures.incrementAndGet();
+    }
+
+    // Manual invalidation from the admin screen
+    public void invalidate() {
+        invalidator.run();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getSize() {
+        return sizeSupplier.getAsLong();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    public double getAverageMissMillis() {
+        long count = misses.get();
+        return count == 0 ? 0.0 : missNanos.get() / 1_000_000.0 / count;
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getLoadFailures() {
+        return loadFailures.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: size=%d hits=%d misses=%d hitRatio=%.1f%% avgMiss=%.2fms evictions=%d loadFailures=%d",
+                name, getSize(), getHits(), getMisses(), getHitRatio() * 100, getAverageMissMillis(),
+                getEvictions(), getLoadFailures());
+    }
+}
@@ -0,0 +1,66 @@
+package com.shop.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of all application caches, used by the cache admin screen and the periodic stats log.
+ */
+public class CacheStatsRegistry {
+    private static CacheStatsRegistry instance;
+
+    private final Map<String, CacheStats> caches = new ConcurrentSkipListMap<>();
+    private ScheduledExecutorService logger;
+
+    private CacheStatsRegistry() {
+    }
+
+    public static CacheStatsRegistry getInstance() {
+        if (instance == null) {
+            synchronized (CacheStatsRegistry.class) {
+                if (instance == null) {
+                    instance = new CacheStatsRegistry();
+                }
+            }
+        }
+        return instance;
+    }
+
+    // Registering the same name twice returns the existing counters
+    public CacheStats register(String name, LongSupplier sizeSupplier, Runnable invalidator) {
+        return caches.computeIfAbsent(name, key -> new CacheStats(key, sizeSupplier, invalidator));
+    }
+
+    public List<CacheStats> getAll() {
+        return new ArrayList<>(caches.values());
+    }
+
+    public void invalidateAll() {
+        caches.values().forEach(CacheStats::invalidate);
+    }
+
+    public void logStats() {
+        System.out.println("Cache statistics:");
+        for (CacheStats stats : caches.values()) {
+            System.out.println("  " + stats);
+        }
+    }
+
+    public synchronized void startPeriodicLogging(int intervalMinutes) {
+        if (logger != null || intervalMinutes <= 0) {
+            return;
+        }
+        logger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cache-stats-logger");
+            t.setDaemon(true);
+            return t;
+        });
+        logger.scheduleAtFixedRate(this::logStats, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,79 @@
+package com.shop.cache;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the result of a list query until a write invalidates it.
+ * Callers get an immutable list and should copy it before modifying.
+ */
+public class CachedQuery<T> {
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        List<T> load() throws SQLException;
+    }
+
+    private final String name;
+    private final Loader<T> loader;
+    private final CacheStats stats;
+    private final AtomicLong version = new AtomicLong();
+    private volatile List<T> value;
+
+    public CachedQuery(String name, Loader<T> loader) {
+        this.name = name;
+        this.loader = loader;
+        this.stats = CacheStatsRegistry.getInstance().register(name, this::size, this::invalidate);
+    }
+
+    public List<T> get() throws SQLException {
+        List<T> current = value;
+        if (current != null) {
+            stats.recordHit();
+            return current;
+        }
+        synchronized (this) {
+            if (value != null) {
+                stats.recordHit();
+                return value;
+            }
+            long loadVersion = version.get();
+            long start = System.nanoTime();
+            List<T> loaded;
+            try {
+                loaded = List.copyOf(loader.load());
+            } catch (SQLException e) {
+                stats.recordLoadFailure();
+                throw e;
+            }
+            stats.recordMiss(System.nanoTime() - start);
+            // An invalidation during the load means the result may already be stale
+            if (version.get() == loadVersion) {
+                value = loaded;
+            }
+            return loaded;
+        }
+    }
+
+    public void invalidate() {
+        version.incrementAndGet();
+        if (value != null) {
+            stats.recordEviction();
+        }
+        value = null;
+    }
+
+    public boolean isLoaded() {
+        return value != null;
+    }
+
+    public int size() {
+        List<T> current = value;
+        return current != null ? current.size() : 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,261 @@
+package com.shop.cache;
+
+import com.shop.database.DatabaseConfig;
+import com.shop.model.Order;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Totals shown on the dashboard: active products, active customers, orders and revenue.
+ * Loaded once with a single aggregate query, then kept current by the DAOs reporting
+ * each write, so opening the dashboard never scans a table. The DAOs bracket each such write
+ * with beginWrite and endWrite; the load reads a snapshot taken with no write in flight, and
+ * the writes made while it runs are not held up but have their reports replayed after it.
+ * Revenue is the sum of order totals, leaving out cancelled and refunded orders.
+ */
+public class DashboardMetrics {
+    private static DashboardMetrics instance;
+
+    private final DatabaseConfig dbConfig;
+    private final CacheStats stats;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final WriteGate gate = new WriteGate();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "dashboard-metrics");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Guarded by this; a write is reported after the load, or ignored because its change is in the snapshot
+    private boolean loaded;
+    private long products;
+    private long customers;
+    private long orders;
+    private BigDecimal revenue = BigDecimal.ZERO;
+
+    public static final class Snapshot {
+        private final long products;
+        private final long customers;
+        private final long orders;
+        private final BigDecimal revenue;
+
+        Snapshot(long products, long customers, long orders, BigDecimal revenue) {
+            this.products = products;
+            this.customers = customers;
+            this.orders = orders;
+            this.revenue = revenue;
+        }
+
+        public long getProducts() {
+            return products;
+        }
+
+        public long getCustomers() {
+            return customers;
+        }
+
+        public long getOrders() {
+            return orders;
+        }
+
+        public BigDecimal getRevenue() {
+            return revenue;
+        }
+    }
+
+    private DashboardMetrics() {
+        this.dbConfig = DatabaseConfig.getInstance();
+        this.stats = CacheStatsRegistry.getInstance().register("dashboard.metrics", () -> isLoaded() ? 4 : 0, this::invalidate);
+    }
+
+    public static DashboardMetrics getInstance() {
+        if (instance == null) {
+            synchronized (DashboardMetrics.class) {
+                if (instance == null) {
+                    instance = new DashboardMetrics();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    // The query reads a snapshot with no write in flight, so none is lost or counted twice
+    public void ensureLoaded() throws SQLException {
+        if (isLoaded()) {
+            return;
+        }
+        long start = System.nanoTime();
+        String sql = """
+            SELECT
+                (SELECT COUNT(*) FROM products WHERE is_active = TRUE) AS products,
+                (SELECT COUNT(*) FROM customers WHERE is_active = TRUE) AS customers,
+                COUNT(*) AS orders,
+                COALESCE(SUM(CASE WHEN status NOT IN ('CANCELLED', 'REFUNDED') THEN total_amount END), 0) AS revenue
+            FROM orders
+        """;
+        // Not holding this monitor, which a write needs to report its change
+        try (Connection conn = dbConfig.openConnection()) {
+            gate.enterLoad(conn, "products", "customers", "orders");
+            try {
+                if (isLoaded()) {
+                    return;
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(sql);
+                     ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                    synchronized (this) {
+                        products = rs.getLong("products");
+                        customers = rs.getLong("customers");
+                        orders = rs.getLong("orders");
+                        revenue = rs.getBigDecimal("revenue");
+                        loaded = true;
+                    }
+                }
+                conn.commit();
+            } finally {
+                gate.exitLoad();
+            }
+        } catch (SQLException e) {
+            stats.recordLoadFailure();
+            throw e;
+        }
+        stats.recordMiss(System.nanoTime() - start);
+        System.out.printf("Dashboard metrics loaded in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Loads on the metrics thread if needed; completes with the current totals
+    public CompletableFuture<Snapshot> loadAsync() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                ensureLoaded();
+                return getSnapshot();
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not load dashboard metrics: " + e.getMessage(), e);
+            }
+        }, executor);
+    }
+
+    // Null until loaded
+    public synchronized Snapshot getSnapshot() {
+        if (!loaded) {
+            return null;
+        }
+        stats.recordHit();
+        return new Snapshot(products, customers, orders, revenue);
+    }
+
+    // Before the first statement of a write that reports here; waits only while a load pins its snapshot
+    public void beginWrite() {
+        gate.enterWrite();
+    }
+
+    // Once the write has reported its change, or failed; call in a finally block
+    public void endWrite() {
+        gate.exitWrite();
+    }
+
+    // Called after each change that moved a total; listeners run on the writing thread
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    public synchronized void invalidate() {
+        if (loaded) {
+            stats.recordEviction();
+        }
+        loaded = false;
+    }
+
+    // Active-product count moved by delta (an insert, a delete or an is_active change)
+    public void productsChanged(int delta) {
+        if (delta != 0 && apply(() -> products += delta)) {
+            notifyListeners();
+        }
+    }
+
+    public void customersChanged(int delta) {
+        if (delta != 0 && apply(() -> customers += delta)) {
+            notifyListeners();
+        }
+    }
+
+    /**
+     * An order was inserted (before is null), updated, or deleted (after is null).
+     * The totals are the order's total_amount before and after the change.
+     */
+    public void orderChanged(Order.OrderStatus beforeStatus, BigDecimal beforeTotal,
+                             Order.OrderStatus afterStatus, BigDecimal afterTotal) {
+        boolean applied = apply(() -> {
+            if (beforeStatus == null) {
+                orders++;
+            }
+            if (afterStatus == null) {
+                orders--;
+            }
+            revenue = revenue.subtract(revenueOf(beforeStatus, beforeTotal)).add(revenueOf(afterStatus, afterTotal));
+        });
+        if (applied) {
+            notifyListeners();
+        }
+    }
+
+    // Orders removed together with their customer; revenue is their non-cancelled, non-refunded total
+    public void ordersDeleted(long count, BigDecimal orderRevenue) {
+        if (count > 0 && apply(() -> {
+            orders -= count;
+            revenue = revenue.subtract(orderRevenue);
+        })) {
+            notifyListeners();
+        }
+    }
+
+    // Change in an active count when a row's is_active goes from before (null: no row) to after
+    public static int activeDelta(Boolean before, boolean after) {
+        return (after ? 1 : 0) - (Boolean.TRUE.equals(before) ? 1 : 0);
+    }
+
+    public static boolean countsAsRevenue(Order.OrderStatus status) {
+        return status != null && status != Order.OrderStatus.CANCELLED && status != Order.OrderStatus.REFUNDED;
+    }
+
+    private static BigDecimal revenueOf(Order.OrderStatus status, BigDecimal total) {
+        return countsAsRevenue(status) && total != null ? total : BigDecimal.ZERO;
+    }
+
+    // False when not loaded; a change made while the totals load is replayed once they are in
+    private synchronized boolean apply(Runnable change) {
+        if (!loaded) {
+            gate.defer(() -> {
+                if (apply(change)) {
+                    notifyListeners();
+                }
+            });
+            return false;
+        }
+        change.run();
+        return true;
+    }
+
+    private void notifyListeners() {
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+}
@@ -0,0 +1,583 @@
+package com.shop.cache;
+
+import com.shop.database.DatabaseConfig;
+import com.shop.model.Category;
+import com.shop.model.Product;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Read-only product catalog snapshot kept off-heap.
+ * Products are stored as fixed-width records in a direct buffer and all strings
+ * live in a separate UTF-8 pool, so a large assortment costs a few hundred bytes
+ * per product instead of a graph of BigDecimal/LocalDateTime objects on the heap.
+ * The snapshot is refreshed incrementally from products.updated_at.
+ */
+public class ProductCatalogSnapshot {
+    private static ProductCatalogSnapshot instance;
+
+    // Record layout (offsets in bytes)
+    private static final int OFF_PRODUCT_ID = 0;
+    private static final int OFF_CATEGORY_ID = 4;
+    private static final int OFF_PRICE = 8;
+    private static final int OFF_COST_PRICE = 16;
+    private static final int OFF_STOCK = 24;
+    private static final int OFF_MIN_STOCK = 28;
+    private static final int OFF_CREATED_AT = 32;
+    private static final int OFF_UPDATED_AT = 40;
+    private static final int OFF_STRINGS = 48; // 6 string refs of (offset, length)
+    private static final int OFF_FLAGS = 96;
+    private static final int RECORD_SIZE = 104;
+
+    private static final int STR_NAME = 0;
+    private static final int STR_DESCRIPTION = 1;
+    private static final int STR_SKU = 2;
+    private static final int STR_IMAGE_URL = 3;
+    private static final int STR_CATEGORY_NAME = 4;
+    private static final int STR_CATEGORY_DESCRIPTION = 5;
+
+    private static final byte FLAG_ACTIVE = 1;
+    private static final byte FLAG_STALE = 2;
+    private static final byte FLAG_DELETED = 4;
+
+    private static final long NULL_DECIMAL = Long.MIN_VALUE;
+    private static final int EMPTY = -1;
+
+    private final DatabaseConfig dbConfig;
+    private final boolean enabled;
+    private final int refreshSeconds;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final CacheStats stats;
+
+    private ByteBuffer records;
+    private ByteBuffer stringPool;
+    private int recordCount;
+    private int liveStringBytes;
+
+    // Open-addressing indexes from product id / SKU hash to record slot (on heap, ints only)
+    private int[] idKeys;
+    private int[] idSlots;
+    private int[] skuSlots;
+    private int indexSize;
+    private int skuEntries;
+
+    private LocalDateTime watermark;
+    // Read without the lock by ensureLoaded, put and setFlag
+    private volatile boolean loaded;
+    private ScheduledExecutorService refresher;
+
+    private ProductCatalogSnapshot() {
+        this.dbConfig = DatabaseConfig.getInstance();
+        this.enabled = dbConfig.getBooleanProperty("catalog.snapshot.enabled", false);
+        this.refreshSeconds = dbConfig.getIntProperty("catalog.snapshot.refresh.seconds", 30);
+        clear(1024);
+        this.stats = CacheStatsRegistry.getInstance().register("products.snapshot", this::size, this::invalidate);
+    }
+
+    public static ProductCatalogSnapshot getInstance() {
+        if (instance == null) {
+            synchronized (ProductCatalogSnapshot.class) {
+                if (instance == null) {
+                    instance = new ProductCatalogSnapshot();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Misses are recorded by the caller, which times its database fallback
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return indexSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Load the whole catalog on first use and start the background delta refresher
+    public void ensureLoaded() throws SQLException {
+        if (!enabled || loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            try {
+                rebuild();
+            } catch (SQLException e) {
+                stats.recordLoadFailure();
+                throw e;
+            }
+            if (refresher != null) {
+                return;
+            }
+            refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "catalog-snapshot-refresh");
+                t.setDaemon(true);
+                return t;
+            });
+            refresher.scheduleWithFixedDelay(() -> {
+                try {
+                    refresh();
+                } catch (SQLException e) {
+                    stats.recordLoadFailure();
+                    System.err.println("Catalog snapshot refresh failed: " + e.getMessage());
+                }
+            }, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    // Full rebuild, also used to compact the string pool
+    public void rebuild() throws SQLException {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            clear(1024);
+            watermark = null;
+            applyDelta();
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println("Catalog snapshot built: " + indexSize + " products in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    // Drop everything; the next lookup reloads the full catalog
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            clear(1024);
+            watermark = null;
+            loaded = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Incremental refresh: re-read only products changed since the last watermark
+    public void refresh() throws SQLException {
+        if (!loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            applyDelta();
+            if (liveStringBytes < stringPool.position() / 2 && stringPool.position() > 1 << 20) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Optional<Product> findById(int productId) {
+        lock.readLock().lock();
+        try {
+            int slot = slotForId(productId);
+            if (slot == EMPTY) {
+                return Optional.empty();
+            }
+            stats.recordHit();
+            return Optional.of(readProduct(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<Product> findBySku(String sku) {
+        if (sku == null) {
+            return Optional.empty();
+        }
+        byte[] skuBytes = sku.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            int mask = skuSlots.length - 1;
+            for (int i = hash(Arrays.hashCode(skuBytes)) & mask; skuSlots[i] != EMPTY; i = (i + 1) & mask) {
+                int slot = skuSlots[i];
+                byte flags = records.get(slot * RECORD_SIZE + OFF_FLAGS);
+                if ((flags & (FLAG_STALE | FLAG_DELETED)) == 0 && stringEquals(slot, STR_SKU, skuBytes)) {
+                    stats.recordHit();
+                    return Optional.of(readProduct(slot));
+                }
+            }
+            return Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Store a freshly read product (read-through after a DAO fallback)
+    public void put(Product product) {
+        if (!loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            upsert(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Called by ProductDAO on writes; lookups fall back to the database until the next refresh
+    public void markStale(int productId) {
+        setFlag(productId, FLAG_STALE);
+    }
+
+    public void remove(int productId) {
+        setFlag(productId, FLAG_DELETED);
+    }
+
+    private void setFlag(int productId, byte flag) {
+        if (!loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            int slot = rawSlotForId(productId);
+            if (slot != EMPTY) {
+                int pos = slot * RECORD_SIZE + OFF_FLAGS;
+                records.put(pos, (byte) (records.get(pos) | flag));
+                stats.recordEviction();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void applyDelta() throws SQLException {
+        String sql = """
+            SELECT p.*, c.category_name, c.description as category_description
+            FROM products p
+            LEFT JOIN categories c ON p.category_id = c.category_id
+            WHERE p.updated_at >= ?
+            ORDER BY p.updated_at
+        """;
+
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setFetchSize(1000);
+            // >= because rows written in the same second as the watermark may have committed after it
+            stmt.setTimestamp(1, watermark != null ? Timestamp.valueOf(watermark) : new Timestamp(0));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Product product = mapRow(rs);
+                    upsert(product);
+                    if (watermark == null || product.getUpdatedAt().isAfter(watermark)) {
+                        watermark = product.getUpdatedAt();
+                    }
+                }
+            }
+        }
+    }
+
+    private void upsert(Product product) {
+        int slot = rawSlotForId(product.getProductId());
+        boolean isNew = slot == EMPTY;
+        if (isNew) {
+            slot = recordCount++;
+            ensureRecordCapacity();
+        } else {
+            releaseStrings(slot);
+        }
+
+        int base = slot * RECORD_SIZE;
+        records.putInt(base + OFF_PRODUCT_ID, product.getProductId());
+        records.putInt(base + OFF_CATEGORY_ID, product.getCategoryId());
+        records.putLong(base + OFF_PRICE, toCents(product.getPrice()));
+        records.putLong(base + OFF_COST_PRICE, toCents(product.getCostPrice()));
+        records.putInt(base + OFF_STOCK, product.getStockQuantity());
+        records.putInt(base + OFF_MIN_STOCK, product.getMinStockLevel());
+        records.putLong(base + OFF_CREATED_AT, toMicros(product.getCreatedAt()));
+        records.putLong(base + OFF_UPDATED_AT, toMicros(product.getUpdatedAt()));
+
+        Category category = product.getCategory();
+        writeString(slot, STR_NAME, product.getProductName());
+        writeString(slot, STR_DESCRIPTION, product.getDescription());
+        writeString(slot, STR_SKU, product.getSku());
+        writeString(slot, STR_IMAGE_URL, product.getImageUrl());
+        writeString(slot, STR_CATEGORY_NAME, category != null ? category.getCategoryName() : null);
+        writeString(slot, STR_CATEGORY_DESCRIPTION, category != null ? category.getDescription() : null);
+        records.put(base + OFF_FLAGS, product.isActive() ? FLAG_ACTIVE : 0);
+
+        if (isNew) {
+            indexId(product.getProductId(), slot);
+        }
+        // A changed SKU leaves the old probe entry behind; stringEquals() filters it out
+        indexSku(slot, product.getSku());
+    }
+
+    private Product readProduct(int slot) {
+        int base = slot * RECORD_SIZE;
+        Product product = new Product(
+                records.getInt(base + OFF_PRODUCT_ID),
+                readString(slot, STR_NAME),
+                readString(slot, STR_DESCRIPTION),
+                readString(slot, STR_SKU),
+                fromCents(records.getLong(base + OFF_PRICE)),
+                fromCents(records.getLong(base + OFF_COST_PRICE)),
+                records.getInt(base + OFF_STOCK),
+                records.getInt(base + OFF_MIN_STOCK),
+                records.getInt(base + OFF_CATEGORY_ID),
+                readString(slot, STR_IMAGE_URL),
+                fromMicros(records.getLong(base + OFF_CREATED_AT)),
+                fromMicros(records.getLong(base + OFF_UPDATED_AT)),
+                (records.get(base + OFF_FLAGS) & FLAG_ACTIVE) != 0
+        );
+
+        String categoryName = readString(slot, STR_CATEGORY_NAME);
+        if (categoryName != null) {
+            Category category = new Category();
+            category.setCategoryId(product.getCategoryId());
+            category.setCategoryName(categoryName);
+            category.setDescription(readString(slot, STR_CATEGORY_DESCRIPTION));
+            product.setCategory(category);
+            product.setUpdatedAt(fromMicros(records.getLong(base + OFF_UPDATED_AT)));
+        }
+        return product;
+    }
+
+    // ---- string pool ----
+
+    private void writeString(int slot, int field, String value) {
+        int refPos = slot * RECORD_SIZE + OFF_STRINGS + field * 8;
+        if (value == null) {
+            records.putInt(refPos, EMPTY);
+            records.putInt(refPos + 4, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (stringPool.remaining() < bytes.length) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(stringPool.capacity() * 2, stringPool.position() + bytes.length));
+            stringPool.flip();
+            grown.put(stringPool);
+            stringPool = grown;
+        }
+        records.putInt(refPos, stringPool.position());
+        records.putInt(refPos + 4, bytes.length);
+        stringPool.put(bytes);
+        liveStringBytes += bytes.length;
+    }
+
+    private String readString(int slot, int field) {
+        int refPos = slot * RECORD_SIZE + OFF_STRINGS + field * 8;
+        int offset = records.getInt(refPos);
+        if (offset == EMPTY) {
+            return null;
+        }
+        byte[] bytes = new byte[records.getInt(refPos + 4)];
+        stringPool.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean stringEquals(int slot, int field, byte[] expected) {
+        int refPos = slot * RECORD_SIZE + OFF_STRINGS + field * 8;
+        int offset = records.getInt(refPos);
+        if (offset == EMPTY || records.getInt(refPos + 4) != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (stringPool.get(offset + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void releaseStrings(int slot) {
+        for (int field = 0; field < 6; field++) {
+            liveStringBytes -= records.getInt(slot * RECORD_SIZE + OFF_STRINGS + field * 8 + 4);
+        }
+    }
+
+    // Rewrite the pool with only the strings still referenced
+    private void compact() {
+        ByteBuffer oldPool = stringPool;
+        stringPool = ByteBuffer.allocateDirect(Math.max(1024, liveStringBytes * 2));
+        liveStringBytes = 0;
+        for (int slot = 0; slot < recordCount; slot++) {
+            for (int field = 0; field < 6; field++) {
+                int refPos = slot * RECORD_SIZE + OFF_STRINGS + field * 8;
+                int offset = records.getInt(refPos);
+                if (offset != EMPTY) {
+                    int length = records.getInt(refPos + 4);
+                    records.putInt(refPos, stringPool.position());
+                    stringPool.put(oldPool.slice(offset, length));
+                    liveStringBytes += length;
+                }
+            }
+        }
+    }
+
+    // ---- indexes ----
+
+    private void clear(int capacity) {
+        records = ByteBuffer.allocateDirect(capacity * RECORD_SIZE);
+        stringPool = ByteBuffer.allocateDirect(capacity * 64);
+        recordCount = 0;
+        liveStringBytes = 0;
+        indexSize = 0;
+        skuEntries = 0;
+        idKeys = new int[capacity * 2];
+        idSlots = new int[capacity * 2];
+        skuSlots = new int[capacity * 2];
+        Arrays.fill(idSlots, EMPTY);
+        Arrays.fill(skuSlots, EMPTY);
+    }
+
+    private void ensureRecordCapacity() {
+        if (recordCount * RECORD_SIZE > records.capacity()) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(records.capacity() * 2);
+            grown.put(records.duplicate().clear());
+            records = grown;
+        }
+    }
+
+    private int slotForId(int productId) {
+        int slot = rawSlotForId(productId);
+        if (slot == EMPTY || (records.get(slot * RECORD_SIZE + OFF_FLAGS) & (FLAG_STALE | FLAG_DELETED)) != 0) {
+            return EMPTY;
+        }
+        return slot;
+    }
+
+    private int rawSlotForId(int productId) {
+        int mask = idKeys.length - 1;
+        for (int i = hash(productId) & mask; idSlots[i] != EMPTY; i = (i + 1) & mask) {
+            if (idKeys[i] == productId) {
+                return idSlots[i];
+            }
+        }
+        return EMPTY;
+    }
+
+    private void indexId(int productId, int slot) {
+        if ((indexSize + 1) * 2 > idKeys.length) {
+            rehash(idKeys.length * 2);
+            if (rawSlotForId(productId) != EMPTY) {
+                return; // the rehash already indexed this slot
+            }
+        }
+        int mask = idKeys.length - 1;
+        int i = hash(productId) & mask;
+        while (idSlots[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        idKeys[i] = productId;
+        idSlots[i] = slot;
+        indexSize++;
+    }
+
+    private void indexSku(int slot, String sku) {
+        if (sku == null) {
+            return;
+        }
+        if ((skuEntries + 1) * 2 > skuSlots.length) {
+            // Mostly stale entries left by SKU changes; rebuilding drops them
+            rehash(idKeys.length);
+        }
+        int mask = skuSlots.length - 1;
+        int i = hash(Arrays.hashCode(sku.getBytes(StandardCharsets.UTF_8))) & mask;
+        while (skuSlots[i] != EMPTY) {
+            if (skuSlots[i] == slot) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        skuSlots[i] = slot;
+        skuEntries++;
+    }
+
+    private void rehash(int capacity) {
+        idKeys = new int[capacity];
+        idSlots = new int[capacity];
+        skuSlots = new int[capacity];
+        Arrays.fill(idSlots, EMPTY);
+        Arrays.fill(skuSlots, EMPTY);
+        int count = recordCount;
+        indexSize = 0;
+        skuEntries = 0;
+        for (int slot = 0; slot < count; slot++) {
+            indexId(records.getInt(slot * RECORD_SIZE + OFF_PRODUCT_ID), slot);
+            indexSku(slot, readString(slot, STR_SKU));
+        }
+    }
+
+    private static int hash(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // ---- value encoding ----
+
+    private static long toCents(BigDecimal value) {
+        return value == null ? NULL_DECIMAL : value.movePointRight(2).longValue();
+    }
+
+    private static BigDecimal fromCents(long cents) {
+        return cents == NULL_DECIMAL ? null : BigDecimal.valueOf(cents, 2);
+    }
+
+    private static long toMicros(LocalDateTime value) {
+        return ChronoUnit.MICROS.between(LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC), value);
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC).plus(micros, ChronoUnit.MICROS);
+    }
+
+    private Product mapRow(ResultSet rs) throws SQLException {
+        Product product = new Product(
+                rs.getInt("product_id"),
+                rs.getString("product_name"),
+                rs.getString("description"),
+                rs.getString("sku"),
+                rs.getBigDecimal("price"),
+                rs.getBigDecimal("cost_price"),
+                rs.getInt("stock_quantity"),
+                rs.getInt("min_stock_level"),
+                rs.getInt("category_id"),
+                rs.getString("image_url"),
+                rs.getTimestamp("created_at").toLocalDateTime(),
+                rs.getTimestamp("updated_at").toLocalDateTime(),
+                rs.getBoolean("is_active")
+        );
+
+        String categoryName = rs.getString("category_name");
+        if (categoryName != null) {
+            Category category = new Category();
+            category.setCategoryId(rs.getInt("category_id"));
+            category.setCategoryName(categoryName);
+            category.setDescription(rs.getString("category_description"));
+            product.setCategory(category);
+            product.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
+        }
+        return product;
+    }
+}
@@ -0,0 +1,413 @@
+package com.shop.cache;
+
+import com.shop.database.DatabaseConfig;
+import com.shop.model.Product;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.UnaryOperator;
+
+/**
+ * Barcode/SKU lookup for the till.
+ * An open-addressing table maps each SKU straight to a small immutable ScanRecord
+ * (id, name, price, stock, active), so a scan is a hash, a probe and a compare:
+ * no query, no join and no allocation. Probing runs over one packed long array of
+ * hash and key offset, and keys are compared in a shared char pool, so a hit touches
+ * three cache lines rather than a chain of String objects. Readers never lock. Writers
+ * (serialized) change the published table in place: a stock or active change swaps one
+ * record, and a new key is written to unused pool space, then its record, then its slot,
+ * so a reader that sees the slot sees the rest. A slot holds one key until the next
+ * rehash, so a reader never pairs a key with another key's record. Only growing the
+ * table or the pool, or sweeping removed entries, builds a new table, which is then
+ * published through the volatile field.
+ * SKUs are compared ignoring case and trailing spaces, like the MySQL collation.
+ */
+public class ScanLookupService {
+    private static ScanLookupService instance;
+
+    public static final class ScanRecord {
+        private final int productId;
+        private final String sku;
+        private final String productName;
+        private final BigDecimal price;
+        private final int stockQuantity;
+        private final boolean active;
+
+        public static ScanRecord from(Product product) {
+            return new ScanRecord(product.getProductId(), product.getSku(), product.getProductName(),
+                    product.getPrice(), product.getStockQuantity(), product.isActive());
+        }
+
+        ScanRecord(int productId, String sku, String productName, BigDecimal price, int stockQuantity, boolean active) {
+            this.productId = productId;
+            this.sku = sku;
+            this.productName = productName;
+            this.price = price;
+            this.stockQuantity = stockQuantity;
+            this.active = active;
+        }
+
+        public int getProductId() {
+            return productId;
+        }
+
+        public String getSku() {
+            return sku;
+        }
+
+        public String getProductName() {
+            return productName;
+        }
+
+        public BigDecimal getPrice() {
+            return price;
+        }
+
+        public int getStockQuantity() {
+            return stockQuantity;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        ScanRecord withStock(int newQuantity) {
+            return new ScanRecord(productId, sku, productName, price, newQuantity, active);
+        }
+
+        ScanRecord withActive(boolean newActive) {
+            return new ScanRecord(productId, sku, productName, price, stockQuantity, newActive);
+        }
+    }
+
+    private final DatabaseConfig dbConfig;
+    private final boolean enabled;
+    private final CacheStats stats;
+
+    /*
+     * slots[i] packs the key hash (high 32 bits) with 1 + the key's offset in the pool
+     * (low 32 bits). 0 is an empty slot; a zero offset part is a removed entry that
+     * probing must skip, and that is only reused by a rehash. Keys are stored lower-cased
+     * in the char pool as [length, chars...]; pool space below poolUsed is never rewritten.
+     */
+    private static final class Table {
+        final AtomicLongArray slots;
+        final AtomicReferenceArray<ScanRecord> records;
+        final char[] pool;
+        final int mask;
+
+        Table(int capacity, int poolSize) {
+            this.slots = new AtomicLongArray(capacity);
+            this.records = new AtomicReferenceArray<>(capacity);
+            this.pool = new char[Math.max(64, poolSize)];
+            this.mask = capacity - 1;
+        }
+    }
+
+    private volatile Table table = new Table(1024, 0);
+    // Writer-side bookkeeping, guarded by this
+    private final Map<Integer, String> skuById = new HashMap<>();
+    private int used;
+    private int poolUsed;
+    private volatile boolean loaded;
+
+    private ScanLookupService() {
+        this.dbConfig = DatabaseConfig.getInstance();
+        this.enabled = dbConfig.getBooleanProperty("scan.lookup.enabled", true);
+        this.stats = CacheStatsRegistry.getInstance().register("products.scanLookup", this::size, this::invalidate);
+    }
+
+    public static ScanLookupService getInstance() {
+        if (instance == null) {
+            synchronized (ScanLookupService.class) {
+                if (instance == null) {
+                    instance = new ScanLookupService();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Misses are recorded by the caller, which times its database fallback
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    public synchronized int size() {
+        return skuById.size();
+    }
+
+    public void ensureLoaded() throws SQLException {
+        if (!enabled || loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (!loaded) {
+                rebuild();
+            }
+        }
+    }
+
+    // Called holding the monitor, so writes made during the build wait for it; published once built
+    private void rebuild() throws SQLException {
+        long start = System.nanoTime();
+        clear();
+        Table built = new Table(1024, 0);
+        String sql = "SELECT product_id, product_name, sku, price, stock_quantity, is_active FROM products";
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    built = insert(built, new ScanRecord(rs.getInt("product_id"), rs.getString("sku"), rs.getString("product_name"),
+                            rs.getBigDecimal("price"), rs.getInt("stock_quantity"), rs.getBoolean("is_active")));
+                }
+            }
+        } catch (SQLException e) {
+            clear();
+            stats.recordLoadFailure();
+            throw e;
+        }
+        table = built;
+        loaded = true;
+        System.out.printf("Scan lookup table built: %d SKUs in %d ms%n",
+                skuById.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public synchronized void invalidate() {
+        if (loaded) {
+            stats.recordEviction();
+        }
+        clear();
+        loaded = false;
+    }
+
+    /**
+     * The record for a scanned SKU, or null when the SKU is not in the table. The record
+     * may be inactive; the till decides whether an inactive product can still be sold.
+     */
+    public ScanRecord lookup(String sku) {
+        if (sku == null) {
+            return null;
+        }
+        Table t = table;
+        int slot = findSlot(t, sku);
+        if (slot < 0) {
+            return null;
+        }
+        ScanRecord record = t.records.get(slot);
+        if (record != null) {
+            stats.recordHit();
+        }
+        return record;
+    }
+
+    // Writes before the first build are ignored (the build reads them from the table);
+    // writes during a build wait for the monitor and are applied on top of it
+    public synchronized void put(Product product) {
+        if (loaded) {
+            table = insert(table, ScanRecord.from(product));
+        }
+    }
+
+    // Many products at once, e.g. to pad the table for a benchmark
+    public synchronized void putAll(Collection<Product> products) {
+        if (!loaded) {
+            return;
+        }
+        Table t = table;
+        for (Product product : products) {
+            t = insert(t, ScanRecord.from(product));
+            table = t;
+        }
+    }
+
+    public synchronized void updateStock(int productId, int newQuantity) {
+        replace(productId, record -> record.withStock(newQuantity));
+    }
+
+    public synchronized void setActive(int productId, boolean active) {
+        replace(productId, record -> record.withActive(active));
+    }
+
+    public synchronized void remove(int productId) {
+        String sku = skuById.remove(productId);
+        if (sku != null) {
+            Table t = table;
+            int slot = findSlot(t, sku);
+            if (slot >= 0 && isRecordOf(t, slot, productId)) {
+                removeSlot(t, slot);
+            }
+        }
+    }
+
+    private void replace(int productId, UnaryOperator<ScanRecord> change) {
+        String sku = skuById.get(productId);
+        if (sku == null) {
+            return;
+        }
+        Table t = table;
+        int slot = findSlot(t, sku);
+        if (slot >= 0) {
+            ScanRecord record = t.records.get(slot);
+            if (record != null) {
+                t.records.set(slot, change.apply(record));
+            }
+        }
+    }
+
+    private static boolean isRecordOf(Table t, int slot, int productId) {
+        ScanRecord record = t.records.get(slot);
+        return record != null && record.productId == productId;
+    }
+
+    // Marks the slot removed before dropping its record, so a reader finds either the record or nothing
+    private static void removeSlot(Table t, int slot) {
+        t.slots.set(slot, t.slots.get(slot) & 0xFFFFFFFF00000000L);
+        t.records.set(slot, null);
+    }
+
+    // Adds or replaces a record in t; returns t, or the new table it was rehashed into
+    private Table insert(Table t, ScanRecord record) {
+        if (record.sku == null) {
+            return t;
+        }
+        // A changed SKU leaves its old slot behind
+        String oldSku = skuById.put(record.productId, record.sku);
+        if (oldSku != null && !oldSku.equals(record.sku)) {
+            int oldSlot = findSlot(t, oldSku);
+            if (oldSlot >= 0 && isRecordOf(t, oldSlot, record.productId)) {
+                removeSlot(t, oldSlot);
+            }
+        }
+
+        int slot = findSlot(t, record.sku);
+        if (slot >= 0) {
+            t.records.set(slot, record);
+            return t;
+        }
+        int length = keyLength(record.sku);
+        if ((used + 1) * 2 > t.slots.length() || poolUsed + length + 1 > t.pool.length) {
+            // Grow, or just sweep removed entries; the pool gets room for as many keys again
+            t = rehash(t, Math.max(1024, Integer.highestOneBit(Math.max(1, skuById.size()) * 4)),
+                    (poolUsed + length + 1) * 2);
+        }
+
+        int offset = poolUsed;
+        t.pool[offset] = (char) length;
+        for (int j = 0; j < length; j++) {
+            t.pool[offset + 1 + j] = lower(record.sku.charAt(j));
+        }
+        poolUsed += length + 1;
+
+        int h = hash(record.sku, length);
+        int i = h & t.mask;
+        while (t.slots.get(i) != 0) {
+            i = (i + 1) & t.mask;
+        }
+        used++;
+        t.records.set(i, record);
+        t.slots.set(i, ((long) h << 32) | (offset + 1));
+        return t;
+    }
+
+    // A new table holding only the live entries, not visible to readers until published
+    private Table rehash(Table current, int capacity, int poolSize) {
+        Table next = new Table(capacity, poolSize);
+        used = 0;
+        poolUsed = 0;
+        for (int j = 0; j < current.slots.length(); j++) {
+            long slot = current.slots.get(j);
+            if (slot == 0 || (int) slot == 0) {
+                continue;
+            }
+            int from = (int) slot - 1;
+            int span = current.pool[from] + 1;
+            System.arraycopy(current.pool, from, next.pool, poolUsed, span);
+
+            int i = (int) (slot >>> 32) & next.mask;
+            while (next.slots.get(i) != 0) {
+                i = (i + 1) & next.mask;
+            }
+            next.records.set(i, current.records.get(j));
+            next.slots.set(i, (slot & 0xFFFFFFFF00000000L) | (poolUsed + 1));
+            poolUsed += span;
+            used++;
+        }
+        return next;
+    }
+
+    private static int findSlot(Table t, String sku) {
+        int length = keyLength(sku);
+        int h = hash(sku, length);
+        AtomicLongArray slots = t.slots;
+        for (int i = h & t.mask; ; i = (i + 1) & t.mask) {
+            long slot = slots.get(i);
+            if (slot == 0) {
+                return -1;
+            }
+            if ((int) (slot >>> 32) == h && (int) slot != 0 && keyEquals(t.pool, (int) slot - 1, sku, length)) {
+                return i;
+            }
+        }
+    }
+
+    private static boolean keyEquals(char[] pool, int offset, String sku, int length) {
+        if (pool[offset] != length) {
+            return false;
+        }
+        for (int j = 0; j < length; j++) {
+            if (pool[offset + 1 + j] != lower(sku.charAt(j))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void clear() {
+        table = new Table(1024, 0);
+        skuById.clear();
+        used = 0;
+        poolUsed = 0;
+    }
+
+    // Length without trailing spaces
+    private static int keyLength(String sku) {
+        int length = sku.length();
+        while (length > 0 && sku.charAt(length - 1) == ' ') {
+            length--;
+        }
+        return length;
+    }
+
+    // ASCII fast path since barcodes and SKUs are nearly always ASCII
+    private static char lower(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return (char) (c + ('a' - 'A'));
+        }
+        return c < 128 ? c : Character.toLowerCase(c);
+    }
+
+    private static int hash(String sku, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + lower(sku.charAt(i));
+        }
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h != 0 ? h : 1;
+    }
+}
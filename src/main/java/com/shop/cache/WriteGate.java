@@ -0,0 +1,118 @@
+package com.shop.cache;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Keeps the load of a cache that writers keep current (DashboardMetrics, BestSellerTracker)
+ * apart from those writes. A write is in flight from before its first statement until it has
+ * reported its change to the cache, or rolled back. A load reads a snapshot on a connection of
+ * its own: it waits for the writes in flight, holds new ones back only while it pins the
+ * snapshot of the tables it reads, and from then on lets them run. Their changes are not in
+ * the snapshot, so the reports they make during the load are buffered (defer) and replayed
+ * once the load is installed. Without this the load could count a write that is already in
+ * the tables and then get its report too, or miss one.
+ * Enter and exit must pair up, so callers exit in a finally block.
+ */
+public class WriteGate {
+    private int writes;
+    private boolean loading;
+    private boolean pinning;
+    // Reports made while a load reads its snapshot; null when no load is reading
+    private List<Runnable> deferred;
+
+    // Before a write's first statement; waits only while a load pins its snapshot
+    public synchronized void enterWrite() {
+        awaitWhile(() -> pinning);
+        writes++;
+    }
+
+    // After the write reported its change, or failed
+    public synchronized void exitWrite() {
+        writes--;
+        notifyAll();
+    }
+
+    /**
+     * Before a load: waits for any other load and for the writes in flight, then pins the
+     * snapshot of the given tables on the load's connection (in a REPEATABLE READ transaction)
+     * and starts buffering reports. The load's queries must run on that connection.
+     */
+    public void enterLoad(Connection snapshot, String... tables) throws SQLException {
+        synchronized (this) {
+            awaitWhile(() -> loading);
+            loading = true;
+            pinning = true;
+            awaitWhile(() -> writes > 0);
+        }
+        try {
+            snapshot.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            snapshot.setAutoCommit(false);
+            // MySQL pins every table at the first read, H2 each table at its own first read
+            for (String table : tables) {
+                try (PreparedStatement stmt = snapshot.prepareStatement("SELECT 1 FROM " + table + " WHERE 1 = 0");
+                     ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            synchronized (this) {
+                pinning = false;
+                loading = false;
+                notifyAll();
+            }
+            throw e;
+        }
+        synchronized (this) {
+            pinning = false;
+            deferred = new ArrayList<>();
+            notifyAll();
+        }
+    }
+
+    /**
+     * Buffers a report made while a load reads its snapshot, to run after exitLoad; false when
+     * no load is reading, in which case the caller's cache either is loaded or ignores it.
+     */
+    public synchronized boolean defer(Runnable report) {
+        if (deferred == null) {
+            return false;
+        }
+        deferred.add(report);
+        return true;
+    }
+
+    // After the load was installed, or failed; runs the buffered reports on this thread
+    public void exitLoad() {
+        List<Runnable> reports;
+        synchronized (this) {
+            reports = deferred != null ? deferred : List.of();
+            deferred = null;
+            loading = false;
+            notifyAll();
+        }
+        for (Runnable report : reports) {
+            report.run();
+        }
+    }
+
+    // Called with the monitor held; an interrupt is kept for the caller rather than abandoning the wait
+    private void awaitWhile(BooleanSupplier condition) {
+        boolean interrupted = false;
+        while (condition.getAsBoolean()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
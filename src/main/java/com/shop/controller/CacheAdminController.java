@@ -0,0 +1,130 @@
+package com.shop.controller;
+
+import com.shop.cache.CacheStats;
+import com.shop.cache.CacheStatsRegistry;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.fxml.Initializable;
+import javafx.scene.control.*;
+
+import java.net.URL;
+import java.util.Optional;
+import java.util.ResourceBundle;
+
+/**
+ * Cache statistics and manual invalidation
+ */
+public class CacheAdminController implements Initializable, RefreshableView {
+
+    @FXML
+    private TableView<CacheStats> tableCaches;
+
+    @FXML
+    private TableColumn<CacheStats, String> colName;
+
+    @FXML
+    private TableColumn<CacheStats, Long> colSize;
+
+    @FXML
+    private TableColumn<CacheStats, Long> colHits;
+
+    @FXML
+    private TableColumn<CacheStats, Long> colMisses;
+
+    @FXML
+    private TableColumn<CacheStats, String> colHitRatio;
+
+    @FXML
+    private TableColumn<CacheStats, String> colMissLatency;
+
+    @FXML
+    private TableColumn<CacheStats, Long> colEvictions;
+
+    @FXML
+    private TableColumn<CacheStats, Long> colLoadFailures;
+
+    private final CacheStatsRegistry registry = CacheStatsRegistry.getInstance();
+    private ObservableList<CacheStats> cacheList;
+
+    @Override
+    public void initialize(URL location, ResourceBundle resources) {
+        cacheList = FXCollections.observableArrayList();
+        setupTableColumns();
+        loadStats();
+    }
+
+    // The counters are live objects, so a refresh only needs to redraw the rows
+    @Override
+    public void refreshView() {
+        loadStats();
+    }
+
+    private void setupTableColumns() {
+        colName.setCellValueFactory(cell -> new SimpleStringProperty(cell.getValue().getName()));
+        colSize.setCellValueFactory(cell -> new SimpleObjectProperty<>(cell.getValue().getSize()));
+        colHits.setCellValueFactory(cell -> new SimpleObjectProperty<>(cell.getValue().getHits()));
+        colMisses.setCellValueFactory(cell -> new SimpleObjectProperty<>(cell.getValue().getMisses()));
+        colHitRatio.setCellValueFactory(cell ->
+                new SimpleStringProperty(String.format("%.1f%%", cell.getValue().getHitRatio() * 100)));
+        colMissLatency.setCellValueFactory(cell ->
+                new SimpleStringProperty(String.format("%.2f", cell.getValue().getAverageMissMillis())));
+        colEvictions.setCellValueFactory(cell -> new SimpleObjectProperty<>(cell.getValue().getEvictions()));
+        colLoadFailures.setCellValueFactory(cell -> new SimpleObjectProperty<>(cell.getValue().getLoadFailures()));
+
+        tableCaches.setItems(cacheList);
+    }
+
+    private void loadStats() {
+        cacheList.setAll(registry.getAll());
+        tableCaches.refresh();
+    }
+
+    @FXML
+    private void handleRefreshAction(ActionEvent event) {
+        loadStats();
+    }
+
+    @FXML
+    private void handleInvalidateAction(ActionEvent event) {
+        CacheStats selected = tableCaches.getSelectionModel().getSelectedItem();
+        if (selected == null) {
+            showErrorMessage("Please select a cache to invalidate.");
+            return;
+        }
+        selected.invalidate();
+        System.out.println("Cache invalidated from admin screen: " + selected.getName());
+        loadStats();
+    }
+
+    @FXML
+    private void handleInvalidateAllAction(ActionEvent event) {
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+        alert.setTitle("Confirm Invalidation");
+        alert.setHeaderText(null);
+        alert.setContentText("Invalidate every cache? They will reload from the database on next use.");
+
+        Optional<ButtonType> result = alert.showAndWait();
+        if (result.isPresent() && result.get() == ButtonType.OK) {
+            registry.invalidateAll();
+            System.out.println("All caches invalidated from admin screen");
+            loadStats();
+        }
+    }
+
+    @FXML
+    private void handleLogStatsAction(ActionEvent event) {
+        registry.logStats();
+    }
+
+    private void showErrorMessage(String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Error");
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+}
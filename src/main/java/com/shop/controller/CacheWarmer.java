@@ -0,0 +1,124 @@
+package com.shop.controller;
+
+import com.shop.cache.CacheStatsRegistry;
+import com.shop.cache.DashboardMetrics;
+import com.shop.cache.ProductCatalogSnapshot;
+import com.shop.cache.ScanLookupService;
+import com.shop.dao.CategoryDAO;
+import com.shop.dao.CustomerDAO;
+import com.shop.dao.OrderDAO;
+import com.shop.dao.ProductDAO;
+import com.shop.database.DatabaseConfig;
+import com.shop.report.BestSellerTracker;
+import com.shop.search.CustomerSearchIndex;
+import com.shop.search.FullTextIndex;
+import com.shop.search.ProductFacetIndex;
+import com.shop.search.ProductSearchIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fills the data caches, reads the order screen's recent orders ahead and preloads the main
+ * screens' FXML sources on background threads while the welcome screen is showing. Only reads:
+ * the start-up batch work that writes to the database is StartupBatchJob.
+ */
+public class CacheWarmer {
+    private static CacheWarmer instance;
+
+    // The main window and the dashboard it opens on after "Get Started", then the busiest screens
+    private static final List<String> WARM_VIEWS = List.of(
+            "/fxml/MainView.fxml",
+            "/fxml/DashboardView.fxml",
+            "/fxml/ProductView.fxml",
+            "/fxml/OrderView.fxml",
+            "/fxml/CustomerView.fxml"
+    );
+
+    private final ExecutorService executor;
+    private CompletableFuture<Void> warmUp;
+
+    private CacheWarmer() {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(3, r -> {
+            Thread t = new Thread(r, "cache-warmer-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static CacheWarmer getInstance() {
+        if (instance == null) {
+            synchronized (CacheWarmer.class) {
+                if (instance == null) {
+                    instance = new CacheWarmer();
+                }
+            }
+        }
+        return instance;
+    }
+
+    // Safe to call more than once; only the first call starts the warm-up
+    public synchronized CompletableFuture<Void> start() {
+        if (warmUp != null) {
+            return warmUp;
+        }
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        tasks.add(run("categories", () -> new CategoryDAO().findActive()));
+        tasks.add(run("dashboard", () -> DashboardMetrics.getInstance().ensureLoaded()));
+        tasks.add(run("recent orders", () -> new OrderDAO().preloadRecent()));
+        tasks.add(run("best sellers", () -> BestSellerTracker.getInstance().ensureLoaded()));
+        tasks.add(run("products", () -> {
+            ProductDAO productDAO = new ProductDAO();
+            productDAO.findActive();
+            productDAO.loadSkuFilter();
+            ProductCatalogSnapshot.getInstance().ensureLoaded();
+            ProductSearchIndex.getInstance().ensureLoaded();
+            ScanLookupService.getInstance().ensureLoaded();
+            ProductFacetIndex.getInstance().ensureLoaded();
+            FullTextIndex.getInstance().ensureLoaded();
+        }));
+        tasks.add(run("customers", () -> {
+            new CustomerDAO().loadEmailFilter();
+            CustomerSearchIndex.getInstance().ensureLoaded();
+        }));
+
+        // Building a view runs its controller's initialize(), which belongs on the FX thread;
+        // here only the FXML sources and the classes they name are loaded
+        ViewCache viewCache = ViewCache.getInstance();
+        for (String fxmlPath : WARM_VIEWS) {
+            tasks.add(run(fxmlPath, () -> viewCache.preload(fxmlPath)));
+        }
+
+        CacheStatsRegistry.getInstance().startPeriodicLogging(
+                DatabaseConfig.getInstance().getIntProperty("cache.stats.log.minutes", 15));
+
+        warmUp = CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).whenComplete((result, error) ->
+                System.out.println("Cache warm-up finished in " + (System.nanoTime() - start) / 1_000_000 + " ms"));
+        return warmUp;
+    }
+
+    @FunctionalInterface
+    private interface WarmTask {
+        void run() throws Exception;
+    }
+
+    // A failed task only costs the warm-up; the screen loads normally on first use
+    private CompletableFuture<Void> run(String name, WarmTask task) {
+        return CompletableFuture.runAsync(() -> runStep(name, task), executor);
+    }
+
+    private static void runStep(String name, WarmTask task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            System.err.println("Cache warm-up of " + name + " failed: " + e.getMessage());
+        }
+    }
+}
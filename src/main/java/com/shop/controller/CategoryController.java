@@ -19,7 +19,7 @@ import java.util.ResourceBundle;
 /**
  * Category management controller
  */
-public class CategoryController implements Initializable {
+public class CategoryController implements Initializable, RefreshableView {
 
     @FXML
     private TableView<Category> tableCategories;
@@ -190,6 +190,12 @@ public class CategoryController implements Initializable {
         tableCategories.getSelectionModel().clearSelection();
     }
 
+    @Override
+    public void refreshView() {
+        // Categories are few; a full reload is cheaper than tracking changes
+        loadCategories();
+    }
+
     private void loadCategories() {
         try {
             categoryList.clear();
@@ -2,8 +2,10 @@ package com.shop.controller;
 
 import com.shop.dao.CustomerDAO;
 import com.shop.model.Customer;
+import com.shop.model.RfmSegment;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
@@ -12,13 +14,16 @@ import javafx.scene.control.cell.PropertyValueFactory;
 
 import java.net.URL;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.Optional;
 import java.util.ResourceBundle;
+import java.util.Set;
 
 /**
  * Customer management controller with full CRUD operations
  */
-public class CustomerController implements Initializable {
+public class CustomerController implements Initializable, RefreshableView {
 
     @FXML private TableView<Customer> tableCustomers;
     @FXML private TableColumn<Customer, Integer> colCustomerId;
@@ -28,6 +33,10 @@ public class CustomerController implements Initializable {
     @FXML private TableColumn<Customer, String> colPhoneNumber;
     @FXML private TableColumn<Customer, String> colCity;
     @FXML private TableColumn<Customer, Boolean> colIsActive;
+    @FXML private TableColumn<Customer, RfmSegment> colSegment;
+
+    @FXML private TextField txtSearch;
+    @FXML private Label lblCustomerCount;
 
     @FXML private TextField txtFirstName;
     @FXML private TextField txtLastName;
@@ -46,15 +55,20 @@ public class CustomerController implements Initializable {
 
     private CustomerDAO customerDAO;
     private ObservableList<Customer> customerList;
+    private FilteredList<Customer> filteredCustomers;
+    private SearchPipeline<Set<Integer>> customerSearch;
     private Customer selectedCustomer;
+    private LocalDateTime lastLoadedAt;
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         customerDAO = new CustomerDAO();
         customerList = FXCollections.observableArrayList();
+        filteredCustomers = new FilteredList<>(customerList);
         
         setupTableColumns();
         setupTableSelection();
+        setupSearch();
         loadCustomers();
         
         // Initially disable edit and delete buttons
@@ -70,6 +84,7 @@ public class CustomerController implements Initializable {
         colPhoneNumber.setCellValueFactory(new PropertyValueFactory<>("phoneNumber"));
         colCity.setCellValueFactory(new PropertyValueFactory<>("city"));
         colIsActive.setCellValueFactory(new PropertyValueFactory<>("active"));
+        colSegment.setCellValueFactory(new PropertyValueFactory<>("rfmSegment"));
         
         // Add boolean cell factory for active status
         colIsActive.setCellFactory(column -> new TableCell<Customer, Boolean>() {
@@ -86,6 +101,23 @@ public class CustomerController implements Initializable {
         });
     }
 
+    private void setupSearch() {
+        customerSearch = new SearchPipeline<>(SearchPipeline.DEFAULT_DELAY, this::searchCustomers,
+                this::showMatches,
+                e -> showAlert(Alert.AlertType.ERROR, "Database Error", "Error searching customers: " + e.getMessage()));
+        customerSearch.bind(txtSearch);
+    }
+
+    // Runs off the FX thread: ids of the customers, active or not, whose name, email or phone starts with each word
+    private Set<Integer> searchCustomers(String text) throws SQLException {
+        return text.isBlank() ? null : customerDAO.searchIds(text);
+    }
+
+    private void showMatches(Set<Integer> matches) {
+        filteredCustomers.setPredicate(matches == null ? null : customer -> matches.contains(customer.getCustomerId()));
+        lblCustomerCount.setText("Showing " + filteredCustomers.size() + " of " + customerList.size());
+    }
+
     private void setupTableSelection() {
         tableCustomers.getSelectionModel().selectedItemProperty().addListener((obs, oldSelection, newSelection) -> {
             if (newSelection != null) {
@@ -192,6 +224,9 @@ public class CustomerController implements Initializable {
         if (result.isPresent() && result.get() == ButtonType.OK) {
             try {
                 customerDAO.delete(selectedCustomer.getCustomerId());
+                // Orders and payments of this customer were removed by cascade
+                ViewCache.getInstance().invalidate("/fxml/OrderView.fxml");
+                ViewCache.getInstance().invalidate("/fxml/PaymentView.fxml");
                 showAlert(Alert.AlertType.INFORMATION, "Success", "Customer deleted successfully!");
                 loadCustomers();
                 clearFields();
@@ -244,6 +279,10 @@ public class CustomerController implements Initializable {
             errors.append("Phone Number is required.\n");
         }
 
+        if (errors.length() == 0 && isEmailTaken(txtEmail.getText().trim())) {
+            errors.append("A customer with this email already exists.\n");
+        }
+
         if (errors.length() > 0) {
             showAlert(Alert.AlertType.ERROR, "Validation Error", errors.toString());
             return false;
@@ -252,18 +291,49 @@ public class CustomerController implements Initializable {
         return true;
     }
 
+    private boolean isEmailTaken(String email) {
+        try {
+            if (!customerDAO.existsByEmail(email)) {
+                return false;
+            }
+            Optional<Customer> existing = customerDAO.findByEmail(email);
+            return existing.isPresent() &&
+                   (selectedCustomer == null || existing.get().getCustomerId() != selectedCustomer.getCustomerId());
+        } catch (SQLException e) {
+            showAlert(Alert.AlertType.ERROR, "Database Error", "Error validating customer: " + e.getMessage());
+            return true;
+        }
+    }
+
     private boolean isValidEmail(String email) {
         return email.matches("^[A-Za-z0-9+_.-]+@(.+)$");
     }
 
+    @Override
+    public void refreshView() {
+        try {
+            LocalDateTime since = lastLoadedAt;
+            lastLoadedAt = RefreshableView.nextWatermark();
+            RefreshableView.mergeById(customerList, customerDAO.findUpdatedSince(since), customerDAO.findAllIds(),
+                    Customer::getCustomerId,
+                    Comparator.comparing(Customer::getFirstName, String.CASE_INSENSITIVE_ORDER)
+                              .thenComparing(Customer::getLastName, String.CASE_INSENSITIVE_ORDER));
+        } catch (SQLException e) {
+            showAlert(Alert.AlertType.ERROR, "Database Error", "Error refreshing customers: " + e.getMessage());
+        }
+        customerSearch.runNow();
+    }
+
     private void loadCustomers() {
         try {
+            lastLoadedAt = RefreshableView.nextWatermark();
             customerList.clear();
             customerList.addAll(customerDAO.findAll());
-            tableCustomers.setItems(customerList);
+            tableCustomers.setItems(filteredCustomers);
         } catch (SQLException e) {
             showAlert(Alert.AlertType.ERROR, "Database Error", "Error loading customers: " + e.getMessage());
         }
+        customerSearch.runNow();
     }
 
     private void showAlert(Alert.AlertType alertType, String title, String message) {
@@ -1,5 +1,7 @@
 package com.shop.controller;
 
+import com.shop.cache.DashboardMetrics;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.Label;
@@ -10,7 +12,7 @@ import java.util.ResourceBundle;
 /**
  * Dashboard controller
  */
-public class DashboardController implements Initializable {
+public class DashboardController implements Initializable, RefreshableView {
 
     @FXML
     private Label lblTotalProducts;
@@ -24,16 +26,46 @@ public class DashboardController implements Initializable {
     @FXML
     private Label lblTotalRevenue;
 
+    private final DashboardMetrics metrics = DashboardMetrics.getInstance();
+
     @Override
     public void initialize(URL location, ResourceBundle resources) {
+        // The view is cached, so one listener keeps the cards live for the whole session
+        metrics.addListener(() -> Platform.runLater(this::showMetrics));
+        loadDashboardData();
+    }
+
+    @Override
+    public void refreshView() {
         loadDashboardData();
     }
 
     private void loadDashboardData() {
-        // TODO: Load actual data from database
-        lblTotalProducts.setText("0");
-        lblTotalCustomers.setText("0");
-        lblTotalOrders.setText("0");
-        lblTotalRevenue.setText("$0.00");
+        if (metrics.isLoaded()) {
+            showMetrics();
+            return;
+        }
+        // Normally loaded during the warm-up; otherwise the query runs off the FX thread
+        metrics.loadAsync().whenComplete((snapshot, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                System.err.println("Error loading dashboard data: " + error.getMessage());
+            } else {
+                show(snapshot);
+            }
+        }));
+    }
+
+    private void showMetrics() {
+        DashboardMetrics.Snapshot snapshot = metrics.getSnapshot();
+        if (snapshot != null) {
+            show(snapshot);
+        }
+    }
+
+    private void show(DashboardMetrics.Snapshot snapshot) {
+        lblTotalProducts.setText(String.format("%,d", snapshot.getProducts()));
+        lblTotalCustomers.setText(String.format("%,d", snapshot.getCustomers()));
+        lblTotalOrders.setText(String.format("%,d", snapshot.getOrders()));
+        lblTotalRevenue.setText(String.format("$%,.2f", snapshot.getRevenue()));
     }
 }
@@ -2,9 +2,7 @@ package com.shop.controller;
 
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Parent;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.layout.BorderPane;
@@ -43,9 +41,14 @@ public class MainController implements Initializable {
     @FXML
     private Button btnReports;
 
+    @FXML
+    private Button btnCaches;
+
     @FXML
     private Label lblTitle;
 
+    private final ViewCache viewCache = ViewCache.getInstance();
+
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         // Load the dashboard view by default
@@ -82,6 +85,11 @@ public class MainController implements Initializable {
         loadView("/fxml/ReportView.fxml", "Reports");
     }
 
+    @FXML
+    private void handleCachesAction(ActionEvent event) {
+        loadView("/fxml/CacheAdminView.fxml", "Cache Administration");
+    }
+
     @FXML
     private void handleDashboardAction(ActionEvent event) {
         loadDashboard();
@@ -92,11 +100,20 @@ public class MainController implements Initializable {
     }
 
     private void loadView(String fxmlPath, String title) {
+        long start = System.nanoTime();
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource(fxmlPath));
-            Parent view = loader.load();
-            mainBorderPane.setCenter(view);
+            ViewCache.LoadedView loaded = viewCache.get(fxmlPath);
+            boolean cached = loaded != null;
+            if (!cached) {
+                loaded = viewCache.load(fxmlPath);
+            } else if (loaded.getController() instanceof RefreshableView) {
+                ((RefreshableView) loaded.getController()).refreshView();
+            }
+
+            mainBorderPane.setCenter(loaded.getView());
             lblTitle.setText(title);
+            System.out.printf("View switch to %s took %.1f ms (%s)%n",
+                    title, (System.nanoTime() - start) / 1_000_000.0, cached ? "cached" : "loaded");
         } catch (IOException e) {
             System.err.println("Error loading view: " + fxmlPath);
             e.printStackTrace();
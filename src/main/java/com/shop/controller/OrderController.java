@@ -11,19 +11,24 @@ import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.util.StringConverter;
 
 import java.math.BigDecimal;
 import java.net.URL;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
 import java.util.ResourceBundle;
 
 /**
  * Order management controller with full CRUD operations
  */
-public class OrderController implements Initializable {
+public class OrderController implements Initializable, RefreshableView {
+
+    private static final int CUSTOMER_SUGGESTIONS = 15;
 
     @FXML private TableView<Order> tableOrders;
     @FXML private TableColumn<Order, Integer> colOrderId;
@@ -46,23 +51,32 @@ public class OrderController implements Initializable {
     @FXML private Button btnDelete;
     @FXML private Button btnClear;
 
+    @FXML private TextField txtLookupContact;
+    @FXML private DatePicker dpLookupFrom;
+    @FXML private DatePicker dpLookupTo;
+
     private OrderDAO orderDAO;
     private CustomerDAO customerDAO;
     private ObservableList<Order> orderList;
-    private ObservableList<Customer> customerList;
+    private ObservableList<Customer> customerSuggestions;
+    private boolean updatingCustomer;
+    private SearchPipeline<List<Customer>> customerAutocomplete;
     private Order selectedOrder;
+    private LocalDateTime ordersLoadedAt;
+    // The table lists the recent orders (OrderDAO.findRecent) until Show All is pressed
+    private boolean showingAllOrders;
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         orderDAO = new OrderDAO();
         customerDAO = new CustomerDAO();
         orderList = FXCollections.observableArrayList();
-        customerList = FXCollections.observableArrayList();
+        customerSuggestions = FXCollections.observableArrayList();
         
         setupTableColumns();
         setupTableSelection();
         setupComboBoxes();
-        loadCustomers();
+        setupCustomerAutocomplete();
         loadOrders();
         
         // Initially disable edit and delete buttons
@@ -189,6 +203,80 @@ public class OrderController implements Initializable {
         });
     }
 
+    // The customer box only ever holds the current suggestions, never the whole customer table
+    private void setupCustomerAutocomplete() {
+        cmbCustomer.setEditable(true);
+        cmbCustomer.setItems(customerSuggestions);
+        cmbCustomer.setPromptText("Type a name, email or phone");
+        cmbCustomer.setConverter(new StringConverter<Customer>() {
+            @Override
+            public String toString(Customer customer) {
+                return customer == null ? "" : customer.getFirstName() + " " + customer.getLastName();
+            }
+
+            @Override
+            public Customer fromString(String text) {
+                Customer current = cmbCustomer.getValue();
+                if (current != null && toString(current).equals(text)) {
+                    return current;
+                }
+                return customerSuggestions.stream()
+                        .filter(customer -> toString(customer).equals(text))
+                        .findFirst()
+                        .orElse(null);
+            }
+        });
+
+        // Lookups run off the FX thread once typing pauses; a stale result is never shown
+        customerAutocomplete = new SearchPipeline<>(SearchPipeline.DEFAULT_DELAY,
+                text -> text.isBlank() ? List.of() : customerDAO.autocomplete(text, CUSTOMER_SUGGESTIONS),
+                this::showCustomerSuggestions,
+                e -> System.err.println("Customer autocomplete failed: " + e.getMessage()));
+
+        cmbCustomer.getEditor().textProperty().addListener((obs, oldText, newText) -> {
+            if (updatingCustomer) {
+                return;
+            }
+            Customer current = cmbCustomer.getValue();
+            if (current != null && cmbCustomer.getConverter().toString(current).equals(newText)) {
+                customerAutocomplete.cancel();
+                return;
+            }
+            customerAutocomplete.submit(newText);
+        });
+    }
+
+    private void showCustomerSuggestions(List<Customer> matches) {
+        // Replacing the items can make the combo box rewrite the editor; keep what was typed
+        String text = cmbCustomer.getEditor().getText();
+        updatingCustomer = true;
+        try {
+            customerSuggestions.setAll(matches);
+            if (text != null && !text.equals(cmbCustomer.getEditor().getText())) {
+                cmbCustomer.getEditor().setText(text);
+                cmbCustomer.getEditor().positionCaret(text.length());
+            }
+        } finally {
+            updatingCustomer = false;
+        }
+
+        if (matches.isEmpty()) {
+            cmbCustomer.hide();
+        } else if (cmbCustomer.getEditor().isFocused()) {
+            cmbCustomer.show();
+        }
+    }
+
+    private void setCustomer(Customer customer) {
+        customerAutocomplete.cancel();
+        updatingCustomer = true;
+        try {
+            cmbCustomer.setValue(customer);
+        } finally {
+            updatingCustomer = false;
+        }
+    }
+
     private void setupCalculationListeners() {
         txtSubtotal.textProperty().addListener((obs, oldVal, newVal) -> calculateTotal());
         txtTaxAmount.textProperty().addListener((obs, oldVal, newVal) -> calculateTotal());
@@ -209,13 +297,16 @@ public class OrderController implements Initializable {
     }
 
     private void populateFields(Order order) {
-        // Find and select customer
-        for (Customer customer : customerList) {
-            if (customer.getCustomerId() == order.getCustomerId()) {
-                cmbCustomer.setValue(customer);
-                break;
+        // The order query already joins the customer's name and email
+        Customer customer = order.getCustomer();
+        if (customer == null) {
+            try {
+                customer = customerDAO.findById(order.getCustomerId()).orElse(null);
+            } catch (SQLException e) {
+                showAlert(Alert.AlertType.ERROR, "Database Error", "Error loading customer: " + e.getMessage());
             }
         }
+        setCustomer(customer);
         
         dpOrderDate.setValue(order.getOrderDate().toLocalDate());
         cmbStatus.setValue(order.getStatus());
@@ -306,6 +397,8 @@ public class OrderController implements Initializable {
         if (result.isPresent() && result.get() == ButtonType.OK) {
             try {
                 orderDAO.delete(selectedOrder.getOrderId());
+                // Payments of this order were removed by cascade
+                ViewCache.getInstance().invalidate("/fxml/PaymentView.fxml");
                 showAlert(Alert.AlertType.INFORMATION, "Success", "Order deleted successfully!");
                 loadOrders();
                 clearFields();
@@ -321,7 +414,9 @@ public class OrderController implements Initializable {
     }
 
     private void clearFields() {
-        cmbCustomer.setValue(null);
+        setCustomer(null);
+        cmbCustomer.getEditor().clear();
+        customerSuggestions.clear();
         dpOrderDate.setValue(null);
         cmbStatus.setValue(Order.OrderStatus.PENDING);
         txtSubtotal.clear();
@@ -383,20 +478,64 @@ public class OrderController implements Initializable {
         return true;
     }
 
-    private void loadCustomers() {
+    @Override
+    public void refreshView() {
+        try {
+            LocalDateTime since = ordersLoadedAt;
+            ordersLoadedAt = RefreshableView.nextWatermark();
+            RefreshableView.mergeById(orderList, orderDAO.findUpdatedSince(since), orderDAO.findAllIds(),
+                    Order::getOrderId,
+                    Comparator.comparing(Order::getOrderDate).reversed());
+        } catch (SQLException e) {
+            showAlert(Alert.AlertType.ERROR, "Database Error", "Error refreshing orders: " + e.getMessage());
+        }
+    }
+
+    @FXML
+    private void handleLookup(ActionEvent event) {
+        String contact = txtLookupContact.getText();
+        if (contact == null || contact.isBlank()) {
+            showAlert(Alert.AlertType.WARNING, "Order Lookup", "Enter the customer's email or phone number.");
+            return;
+        }
         try {
-            customerList.clear();
-            customerList.addAll(customerDAO.findAll());
-            cmbCustomer.setItems(customerList);
+            List<Order> found = orderDAO.findByCustomerContact(contact, dpLookupFrom.getValue(), dpLookupTo.getValue());
+            tableOrders.setItems(FXCollections.observableArrayList(found));
+            if (found.isEmpty()) {
+                showAlert(Alert.AlertType.INFORMATION, "Order Lookup", "No orders found for " + contact.trim() + ".");
+            }
         } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "Database Error", "Error loading customers: " + e.getMessage());
+            showAlert(Alert.AlertType.ERROR, "Database Error", "Error looking up orders: " + e.getMessage());
+        }
+    }
+
+    @FXML
+    private void handleShowAll(ActionEvent event) {
+        txtLookupContact.clear();
+        dpLookupFrom.setValue(null);
+        dpLookupTo.setValue(null);
+        if (showingAllOrders) {
+            tableOrders.setItems(orderList);
+        } else {
+            showingAllOrders = true;
+            loadOrders();
         }
     }
 
     private void loadOrders() {
+        // The first load takes the recent orders the warm-up read, then catches up from when it read them
+        Optional<OrderDAO.PreloadedOrders> preloaded = showingAllOrders ? Optional.empty() : OrderDAO.takePreloadedRecent();
+        if (preloaded.isPresent()) {
+            ordersLoadedAt = preloaded.get().getReadAt().minusSeconds(RefreshableView.REFRESH_OVERLAP_SECONDS);
+            orderList.setAll(preloaded.get().getOrders());
+            tableOrders.setItems(orderList);
+            refreshView();
+            return;
+        }
         try {
+            ordersLoadedAt = RefreshableView.nextWatermark();
             orderList.clear();
-            orderList.addAll(orderDAO.findAll());
+            orderList.addAll(showingAllOrders ? orderDAO.findAll() : orderDAO.findRecent());
             tableOrders.setItems(orderList);
         } catch (SQLException e) {
             showAlert(Alert.AlertType.ERROR, "Database Error", "Error loading orders: " + e.getMessage());
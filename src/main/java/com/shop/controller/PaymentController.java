@@ -17,13 +17,17 @@ import java.net.URL;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
 import java.util.ResourceBundle;
 
 /**
  * Payment management controller with full CRUD operations
  */
-public class PaymentController implements Initializable {
+public class PaymentController implements Initializable, RefreshableView {
+
+    private static final int REFERENCE_MATCHES = 200;
 
     @FXML private TableView<Payment> tablePayments;
     @FXML private TableColumn<Payment, Integer> colPaymentId;
@@ -47,11 +51,16 @@ public class PaymentController implements Initializable {
     @FXML private Button btnDelete;
     @FXML private Button btnClear;
 
+    @FXML private TextField txtReferenceSearch;
+
     private PaymentDAO paymentDAO;
     private OrderDAO orderDAO;
     private ObservableList<Payment> paymentList;
     private ObservableList<Order> orderList;
     private Payment selectedPayment;
+    private LocalDateTime ordersLoadedAt;
+    private LocalDateTime paymentsLoadedAt;
+    private SearchPipeline<List<Payment>> referenceSearch;
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
@@ -63,6 +72,7 @@ public class PaymentController implements Initializable {
         setupTableColumns();
         setupTableSelection();
         setupComboBoxes();
+        setupReferenceSearch();
         loadOrders();
         loadPayments();
         
@@ -365,8 +375,40 @@ public class PaymentController implements Initializable {
         return true;
     }
 
+    @Override
+    public void refreshView() {
+        try {
+            LocalDateTime since = ordersLoadedAt;
+            ordersLoadedAt = RefreshableView.nextWatermark();
+            RefreshableView.mergeById(orderList, orderDAO.findUpdatedSince(since), orderDAO.findAllIds(),
+                    Order::getOrderId,
+                    Comparator.comparing(Order::getOrderDate).reversed());
+
+            since = paymentsLoadedAt;
+            paymentsLoadedAt = RefreshableView.nextWatermark();
+            RefreshableView.mergeById(paymentList, paymentDAO.findUpdatedSince(since), paymentDAO.findAllIds(),
+                    Payment::getPaymentId,
+                    Comparator.comparing(Payment::getPaymentDate).reversed());
+        } catch (SQLException e) {
+            showAlert(Alert.AlertType.ERROR, "Database Error", "Error refreshing payments: " + e.getMessage());
+        }
+        if (!txtReferenceSearch.getText().isBlank()) {
+            referenceSearch.runNow();
+        }
+    }
+
+    // Typing a processor's (possibly truncated) id narrows the table to the payments it could be
+    private void setupReferenceSearch() {
+        referenceSearch = new SearchPipeline<>(SearchPipeline.DEFAULT_DELAY,
+                text -> text.isBlank() ? null : paymentDAO.findByReferencePrefix(text, REFERENCE_MATCHES),
+                matches -> tablePayments.setItems(matches == null ? paymentList : FXCollections.observableArrayList(matches)),
+                e -> showAlert(Alert.AlertType.ERROR, "Database Error", "Error searching payments: " + e.getMessage()));
+        referenceSearch.bind(txtReferenceSearch);
+    }
+
     private void loadOrders() {
         try {
+            ordersLoadedAt = RefreshableView.nextWatermark();
             orderList.clear();
             orderList.addAll(orderDAO.findAll());
             cmbOrder.setItems(orderList);
@@ -377,12 +419,14 @@ public class PaymentController implements Initializable {
 
     private void loadPayments() {
         try {
+            paymentsLoadedAt = RefreshableView.nextWatermark();
             paymentList.clear();
             paymentList.addAll(paymentDAO.findAll());
             tablePayments.setItems(paymentList);
         } catch (SQLException e) {
             showAlert(Alert.AlertType.ERROR, "Database Error", "Error loading payments: " + e.getMessage());
         }
+        referenceSearch.runNow();
     }
 
     private void showAlert(Alert.AlertType alertType, String title, String message) {
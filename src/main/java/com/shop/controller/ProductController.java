@@ -4,24 +4,37 @@ import com.shop.dao.ProductDAO;
 import com.shop.dao.CategoryDAO;
 import com.shop.model.Product;
 import com.shop.model.Category;
+import com.shop.search.ProductFacetIndex;
+import com.shop.search.ProductFacetIndex.PriceBand;
+import com.shop.search.ProductFacetIndex.StockState;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.scene.layout.HBox;
 
 import java.math.BigDecimal;
 import java.net.URL;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.ResourceBundle;
+import java.util.Set;
 
 /**
  * Product management controller with full CRUD operations
  */
-public class ProductController implements Initializable {
+public class ProductController implements Initializable, RefreshableView {
 
     @FXML private TableView<Product> tableProducts;
     @FXML private TableColumn<Product, Integer> colProductId;
@@ -47,19 +60,38 @@ public class ProductController implements Initializable {
     @FXML private Button btnDelete;
     @FXML private Button btnClear;
 
+    @FXML private TextField txtSearch;
+    @FXML private HBox boxFilters;
+    @FXML private ComboBox<FacetOption<Integer>> cmbFilterCategory;
+    @FXML private ComboBox<FacetOption<PriceBand>> cmbFilterPrice;
+    @FXML private ComboBox<FacetOption<StockState>> cmbFilterStock;
+    @FXML private ComboBox<FacetOption<Boolean>> cmbFilterStatus;
+    @FXML private Label lblProductCount;
+
     private ProductDAO productDAO;
     private CategoryDAO categoryDAO;
     private ObservableList<Product> productList;
+    private FilteredList<Product> filteredProducts;
+    private final Map<Integer, String> categoryNames = new HashMap<>();
+    private boolean updatingFilters;
+    // Ids passing the facet filters and the search box; null lets every product through
+    private Set<Integer> facetMatches;
+    private Set<Integer> searchMatches;
+    private SearchPipeline<Set<Integer>> productSearch;
     private Product selectedProduct;
+    private LocalDateTime lastLoadedAt;
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         productDAO = new ProductDAO();
         categoryDAO = new CategoryDAO();
         productList = FXCollections.observableArrayList();
+        filteredProducts = new FilteredList<>(productList);
 
         setupTableColumns();
         setupTableSelection();
+        setupFilters();
+        setupSearch();
         loadCategories();
         loadProducts();
         
@@ -104,6 +136,37 @@ public class ProductController implements Initializable {
                 });
     }
 
+    private void setupFilters() {
+        if (!productDAO.isFacetSearchEnabled()) {
+            boxFilters.setVisible(false);
+            boxFilters.setManaged(false);
+        }
+    }
+
+    private void setupSearch() {
+        productSearch = new SearchPipeline<>(SearchPipeline.DEFAULT_DELAY, this::searchProducts,
+                matches -> {
+                    searchMatches = matches;
+                    updatePredicate();
+                },
+                e -> showErrorMessage("Error searching products: " + e.getMessage()));
+        productSearch.bind(txtSearch);
+    }
+
+    // Runs off the FX thread: ids of the products, active or not, matching the text by name, SKU or description
+    private Set<Integer> searchProducts(String text) throws SQLException {
+        return text.isBlank() ? null : productDAO.searchIds(text);
+    }
+
+    private void updatePredicate() {
+        Set<Integer> facets = facetMatches;
+        Set<Integer> search = searchMatches;
+        filteredProducts.setPredicate(facets == null && search == null ? null : product ->
+                (facets == null || facets.contains(product.getProductId()))
+                        && (search == null || search.contains(product.getProductId())));
+        lblProductCount.setText("Showing " + filteredProducts.size() + " of " + productList.size());
+    }
+
     private void populateFields(Product product) {
         if (product != null) {
             txtProductName.setText(product.getProductName());
@@ -216,19 +279,144 @@ public class ProductController implements Initializable {
             ObservableList<Category> categories = FXCollections.observableArrayList();
             categories.addAll(categoryDAO.findActive());
             cmbCategory.setItems(categories);
+            // The filter also names categories that have since been deactivated
+            categoryNames.clear();
+            for (Category category : categoryDAO.findAll()) {
+                categoryNames.put(category.getCategoryId(), category.getCategoryName());
+            }
         } catch (SQLException e) {
             showErrorMessage("Error loading categories: " + e.getMessage());
         }
     }
 
+    @Override
+    public void refreshView() {
+        loadCategories();
+        try {
+            LocalDateTime since = lastLoadedAt;
+            lastLoadedAt = RefreshableView.nextWatermark();
+            RefreshableView.mergeById(productList, productDAO.findUpdatedSince(since), productDAO.findAllIds(),
+                    Product::getProductId,
+                    Comparator.comparing(Product::getProductName, String.CASE_INSENSITIVE_ORDER));
+        } catch (SQLException e) {
+            showErrorMessage("Error refreshing products: " + e.getMessage());
+        }
+        applyFilters();
+        productSearch.runNow();
+    }
+
     private void loadProducts() {
         try {
+            lastLoadedAt = RefreshableView.nextWatermark();
             productList.clear();
             productList.addAll(productDAO.findAll());
-            tableProducts.setItems(productList);
+            tableProducts.setItems(filteredProducts);
         } catch (SQLException e) {
             showErrorMessage("Error loading products: " + e.getMessage());
         }
+        applyFilters();
+        productSearch.runNow();
+    }
+
+    @FXML
+    private void handleFilterAction(ActionEvent event) {
+        if (!updatingFilters) {
+            applyFilters();
+        }
+    }
+
+    @FXML
+    private void handleResetFiltersAction(ActionEvent event) {
+        updatingFilters = true;
+        cmbFilterCategory.setValue(null);
+        cmbFilterPrice.setValue(null);
+        cmbFilterStock.setValue(null);
+        cmbFilterStatus.setValue(null);
+        updatingFilters = false;
+        applyFilters();
+    }
+
+    // Filters the table through the facet index and refreshes the counts shown in each combo
+    private void applyFilters() {
+        if (!productDAO.isFacetSearchEnabled()) {
+            updatePredicate();
+            return;
+        }
+        Integer categoryId = selectedValue(cmbFilterCategory);
+        PriceBand priceBand = selectedValue(cmbFilterPrice);
+        StockState stockState = selectedValue(cmbFilterStock);
+        Boolean active = selectedValue(cmbFilterStatus);
+
+        ProductFacetIndex.Filter filter = new ProductFacetIndex.Filter().active(active);
+        if (categoryId != null) {
+            filter.category(categoryId);
+        }
+        if (priceBand != null) {
+            filter.priceBand(priceBand);
+        }
+        if (stockState != null) {
+            filter.stockState(stockState);
+        }
+
+        try {
+            ProductFacetIndex.Result result = productDAO.facetSearch(filter);
+            facetMatches = filter.isEmpty() ? null : result.getProductIds();
+
+            List<FacetOption<Integer>> categoryOptions = new ArrayList<>();
+            categoryOptions.add(new FacetOption<>(null, "All categories", 0));
+            result.getCategoryCounts().entrySet().stream()
+                    .map(e -> new FacetOption<>(e.getKey(),
+                            categoryNames.getOrDefault(e.getKey(), "Category #" + e.getKey()), e.getValue()))
+                    .sorted(Comparator.comparing(option -> option.label, String.CASE_INSENSITIVE_ORDER))
+                    .forEach(categoryOptions::add);
+
+            List<FacetOption<PriceBand>> priceOptions = new ArrayList<>();
+            priceOptions.add(new FacetOption<>(null, "Any price", 0));
+            for (PriceBand band : PriceBand.values()) {
+                priceOptions.add(new FacetOption<>(band, band.getLabel(), result.getPriceBandCounts().get(band)));
+            }
+
+            List<FacetOption<StockState>> stockOptions = new ArrayList<>();
+            stockOptions.add(new FacetOption<>(null, "Any stock", 0));
+            for (StockState state : StockState.values()) {
+                stockOptions.add(new FacetOption<>(state, state.getLabel(), result.getStockStateCounts().get(state)));
+            }
+
+            List<FacetOption<Boolean>> statusOptions = List.of(
+                    new FacetOption<>(null, "Any status", 0),
+                    new FacetOption<>(true, "Active", result.getActiveCount()),
+                    new FacetOption<>(false, "Inactive", result.getInactiveCount()));
+
+            updatingFilters = true;
+            try {
+                setOptions(cmbFilterCategory, categoryOptions, categoryId);
+                setOptions(cmbFilterPrice, priceOptions, priceBand);
+                setOptions(cmbFilterStock, stockOptions, stockState);
+                setOptions(cmbFilterStatus, statusOptions, active);
+            } finally {
+                updatingFilters = false;
+            }
+        } catch (SQLException e) {
+            facetMatches = null;
+            showErrorMessage("Error filtering products: " + e.getMessage());
+        }
+        updatePredicate();
+    }
+
+    private static <T> T selectedValue(ComboBox<FacetOption<T>> combo) {
+        FacetOption<T> option = combo.getValue();
+        return option != null ? option.value : null;
+    }
+
+    private static <T> void setOptions(ComboBox<FacetOption<T>> combo, List<FacetOption<T>> options, T selected) {
+        combo.getItems().setAll(options);
+        for (FacetOption<T> option : options) {
+            if (Objects.equals(option.value, selected)) {
+                combo.setValue(option);
+                return;
+            }
+        }
+        combo.setValue(options.get(0));
     }
 
     private boolean validateInput() {
@@ -294,9 +482,10 @@ public class ProductController implements Initializable {
             return false;
         }
 
-        // Check for duplicate SKU
+        // Check for duplicate SKU (the existence pre-check is answered in memory for new SKUs)
         try {
-            Optional<Product> existing = productDAO.findBySku(txtSku.getText().trim());
+            String sku = txtSku.getText().trim();
+            Optional<Product> existing = productDAO.existsBySku(sku) ? productDAO.findBySku(sku) : Optional.empty();
             if (existing.isPresent() && 
                 (selectedProduct == null || existing.get().getProductId() != selectedProduct.getProductId())) {
                 showErrorMessage("SKU already exists!");
@@ -339,4 +528,22 @@ public class ProductController implements Initializable {
         alert.setContentText(message);
         alert.showAndWait();
     }
+
+    // One choice in a filter combo; the null value means "any" and shows no count
+    private static final class FacetOption<T> {
+        private final T value;
+        private final String label;
+        private final int count;
+
+        FacetOption(T value, String label, int count) {
+            this.value = value;
+            this.label = label;
+            this.count = count;
+        }
+
+        @Override
+        public String toString() {
+            return value == null ? label : label + " (" + count + ")";
+        }
+    }
 }
@@ -0,0 +1,59 @@
+package com.shop.controller;
+
+import javafx.collections.ObservableList;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * Implemented by controllers whose views are cached by {@link ViewCache}.
+ * refreshView() is called when a cached screen is shown again and should only
+ * fetch what changed since the last load.
+ */
+public interface RefreshableView {
+
+    // Writes that raced the previous load are re-read rather than missed
+    long REFRESH_OVERLAP_SECONDS = 5;
+
+    void refreshView();
+
+    // Start of the next incremental window, taken just before a load query runs
+    static LocalDateTime nextWatermark() {
+        return LocalDateTime.now().minusSeconds(REFRESH_OVERLAP_SECONDS);
+    }
+
+    /*
+     * Drops rows whose id is no longer in existingIds (deleted by this or another client,
+     * or cascaded from a deleted parent), replaces changed rows in place (matched by id),
+     * appends new ones and restores the sort order. existingIds is read after changed, so
+     * a changed row missing from it was deleted in between and is left out too.
+     */
+    static <T> void mergeById(ObservableList<T> list, List<T> changed, Set<Integer> existingIds,
+                              ToIntFunction<T> idOf, Comparator<T> order) {
+        list.removeIf(item -> !existingIds.contains(idOf.applyAsInt(item)));
+        if (changed.isEmpty()) {
+            return;
+        }
+        Map<Integer, Integer> positions = new HashMap<>();
+        for (int i = 0; i < list.size(); i++) {
+            positions.put(idOf.applyAsInt(list.get(i)), i);
+        }
+        for (T item : changed) {
+            if (!existingIds.contains(idOf.applyAsInt(item))) {
+                continue;
+            }
+            Integer position = positions.get(idOf.applyAsInt(item));
+            if (position != null) {
+                list.set(position, item);
+            } else {
+                list.add(item);
+            }
+        }
+        list.sort(order);
+    }
+}
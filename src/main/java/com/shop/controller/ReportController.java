@@ -0,0 +1,327 @@
+package com.shop.controller;
+
+import com.shop.dao.CategoryDAO;
+import com.shop.dao.CustomerReachDAO;
+import com.shop.dao.OrderValueDAO;
+import com.shop.model.Category;
+import com.shop.report.BestSellerTracker;
+import com.shop.report.ReportEngine;
+import com.shop.report.TDigest;
+import javafx.application.Platform;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.fxml.Initializable;
+import javafx.scene.control.*;
+
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Sales reports: revenue, orders and quantities grouped by day, month, category, product,
+ * status or payment method over a date range, computed by ReportEngine, with the estimated
+ * number of distinct customers from the customer reach sketches and the median, p90 and p99
+ * order value from the order value digests.
+ */
+public class ReportController implements Initializable, RefreshableView {
+
+    private static final String ALL_PAYMENT_METHODS = "All payment methods";
+    private static final String NO_SUBGROUP = "(none)";
+    private static final int BEST_SELLERS_SHOWN = 10;
+    // Open ends of the date range when reading reach sketches and order value digests
+    private static final LocalDate FIRST_DAY = LocalDate.of(1900, 1, 1);
+    private static final LocalDate LAST_DAY = LocalDate.of(9999, 12, 31);
+
+    @FXML private ComboBox<ReportEngine.Dimension> cmbGroupBy;
+    @FXML private ComboBox<ReportEngine.Dimension> cmbThenBy;
+    @FXML private DatePicker dpFrom;
+    @FXML private DatePicker dpTo;
+    @FXML private ComboBox<Category> cmbCategory;
+    @FXML private ComboBox<String> cmbPaymentMethod;
+    @FXML private CheckBox chkIncludeCancelled;
+    @FXML private Button btnRun;
+    @FXML private Label lblSummary;
+
+    @FXML private TableView<ReportEngine.Row> tableReport;
+    @FXML private TableColumn<ReportEngine.Row, String> colGroup;
+    @FXML private TableColumn<ReportEngine.Row, String> colSubgroup;
+    @FXML private TableColumn<ReportEngine.Row, Long> colOrders;
+    @FXML private TableColumn<ReportEngine.Row, Long> colLines;
+    @FXML private TableColumn<ReportEngine.Row, Long> colQuantity;
+    @FXML private TableColumn<ReportEngine.Row, String> colCustomers;
+    @FXML private TableColumn<ReportEngine.Row, String> colRevenue;
+    @FXML private TableColumn<ReportEngine.Row, String> colMargin;
+
+    @FXML private ComboBox<BestSellerTracker.Window> cmbBestSellerWindow;
+    @FXML private ListView<String> listBestSellers;
+
+    // Loading the columns can take a moment on a large history, so reports never run on the FX thread
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "reports");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ReportEngine engine = ReportEngine.getInstance();
+    private final BestSellerTracker bestSellers = BestSellerTracker.getInstance();
+    private final CategoryDAO categoryDAO = new CategoryDAO();
+    private final CustomerReachDAO customerReachDAO = new CustomerReachDAO();
+    private final OrderValueDAO orderValueDAO = new OrderValueDAO();
+    private final ObservableList<ReportEngine.Row> rows = FXCollections.observableArrayList();
+    // Estimated customers per category of the report shown, when grouped by category
+    private Map<Integer, Long> categoryReach = Map.of();
+
+    // Distinct customers of a report, estimated from the reach sketches
+    private static final class Reach {
+        final long customers;
+        final Map<Integer, Long> byCategory;
+
+        Reach(long customers, Map<Integer, Long> byCategory) {
+            this.customers = customers;
+            this.byCategory = byCategory;
+        }
+    }
+
+    @Override
+    public void initialize(URL location, ResourceBundle resources) {
+        cmbGroupBy.setItems(FXCollections.observableArrayList(ReportEngine.Dimension.values()));
+        cmbGroupBy.setValue(ReportEngine.Dimension.MONTH);
+        // A null entry first stands for no subgroup
+        ObservableList<ReportEngine.Dimension> thenBy = FXCollections.observableArrayList();
+        thenBy.add(null);
+        thenBy.addAll(ReportEngine.Dimension.values());
+        cmbThenBy.setItems(thenBy);
+        cmbThenBy.setCellFactory(listView -> subgroupCell(false));
+        cmbThenBy.setButtonCell(subgroupCell(true));
+        cmbThenBy.setValue(null);
+        dpTo.setValue(LocalDate.now());
+        dpFrom.setValue(LocalDate.now().minusYears(1).plusDays(1));
+        cmbPaymentMethod.setItems(FXCollections.observableArrayList(ALL_PAYMENT_METHODS));
+        cmbPaymentMethod.setValue(ALL_PAYMENT_METHODS);
+        cmbBestSellerWindow.setItems(FXCollections.observableArrayList(BestSellerTracker.Window.values()));
+        cmbBestSellerWindow.setValue(BestSellerTracker.Window.MONTH);
+        loadCategories();
+        setupTableColumns();
+        runReport();
+        loadBestSellers();
+    }
+
+    // Re-running is cheap; it reloads the columns only if sales changed since the last report
+    @Override
+    public void refreshView() {
+        loadCategories();
+        runReport();
+        loadBestSellers();
+    }
+
+    // Shows the null entry of the subgroup box as "(none)"; the button cell also gets it as an empty value
+    private static ListCell<ReportEngine.Dimension> subgroupCell(boolean buttonCell) {
+        return new ListCell<>() {
+            @Override
+            protected void updateItem(ReportEngine.Dimension dimension, boolean empty) {
+                super.updateItem(dimension, empty);
+                if (empty && !buttonCell) {
+                    setText(null);
+                } else {
+                    setText(dimension == null ? NO_SUBGROUP : dimension.toString());
+                }
+            }
+        };
+    }
+
+    private void setupTableColumns() {
+        colGroup.setCellValueFactory(cell -> new SimpleStringProperty(cell.getValue().getLabel()));
+        colSubgroup.setCellValueFactory(cell -> new SimpleStringProperty(cell.getValue().getSubLabel()));
+        colOrders.setCellValueFactory(cell -> new SimpleObjectProperty<>(cell.getValue().getOrders()));
+        colLines.setCellValueFactory(cell -> new SimpleObjectProperty<>(cell.getValue().getLines()));
+        colQuantity.setCellValueFactory(cell -> new SimpleObjectProperty<>(cell.getValue().getQuantity()));
+        colCustomers.setCellValueFactory(cell -> {
+            Long customers = categoryReach.get(cell.getValue().getKey());
+            return new SimpleStringProperty(customers != null ? String.format("~%,d", customers) : "");
+        });
+        colRevenue.setCellValueFactory(cell -> new SimpleStringProperty(formatMoney(cell.getValue().getRevenue())));
+        colMargin.setCellValueFactory(cell -> new SimpleStringProperty(formatMoney(cell.getValue().getMargin())));
+        tableReport.setItems(rows);
+    }
+
+    private void loadCategories() {
+        Category selected = cmbCategory.getValue();
+        Category all = new Category();
+        all.setCategoryId(-1);
+        all.setCategoryName("All categories");
+        ObservableList<Category> categories = FXCollections.observableArrayList(all);
+        try {
+            categories.addAll(categoryDAO.findAll());
+        } catch (SQLException e) {
+            System.err.println("Error loading categories for reports: " + e.getMessage());
+        }
+        cmbCategory.setItems(categories);
+        cmbCategory.setValue(categories.stream()
+                .filter(c -> selected != null && c.getCategoryId() == selected.getCategoryId())
+                .findFirst()
+                .orElse(all));
+    }
+
+    @FXML
+    private void handleRunAction(ActionEvent event) {
+        runReport();
+    }
+
+    private void runReport() {
+        LocalDate from = dpFrom.getValue();
+        LocalDate to = dpTo.getValue();
+        if (from != null && to != null && from.isAfter(to)) {
+            showErrorMessage("The start date must not be after the end date.");
+            return;
+        }
+        ReportEngine.Dimension groupBy = cmbGroupBy.getValue();
+        ReportEngine.Dimension thenBy = cmbThenBy.getValue() != groupBy ? cmbThenBy.getValue() : null;
+        Category category = cmbCategory.getValue();
+        Integer categoryId = category != null && category.getCategoryId() >= 0 ? category.getCategoryId() : null;
+        String paymentMethod = cmbPaymentMethod.getValue();
+        ReportEngine.Query query = new ReportEngine.Query()
+                .groupBy(groupBy)
+                .thenBy(thenBy)
+                .from(from)
+                .to(to)
+                .category(categoryId)
+                .paymentMethod(ALL_PAYMENT_METHODS.equals(paymentMethod) ? null : paymentMethod)
+                .includeCancelled(chkIncludeCancelled.isSelected());
+
+        // The sketches follow the rollup rules: all payment methods, cancelled and refunded orders left out
+        boolean withReach = ALL_PAYMENT_METHODS.equals(paymentMethod) && !chkIncludeCancelled.isSelected();
+        boolean reachByCategory = withReach && groupBy == ReportEngine.Dimension.CATEGORY && thenBy == null;
+        // The digests are kept per payment method but not per category
+        boolean withOrderValues = categoryId == null && !chkIncludeCancelled.isSelected();
+        String orderValuesMethod = ALL_PAYMENT_METHODS.equals(paymentMethod) ? null : paymentMethod;
+
+        btnRun.setDisable(true);
+        lblSummary.setText(engine.isLoaded() ? "Running report..." : "Loading sales data...");
+        CompletableFuture<ReportEngine.Result> report = CompletableFuture.supplyAsync(() -> {
+            try {
+                return engine.run(query);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }, executor);
+        CompletableFuture<Reach> reach = CompletableFuture.supplyAsync(
+                () -> withReach ? loadReach(from, to, categoryId, reachByCategory) : null, executor);
+        CompletableFuture<TDigest> orderValues = CompletableFuture.supplyAsync(
+                () -> withOrderValues ? loadOrderValues(from, to, orderValuesMethod) : null, executor);
+        // Runs however the three end, so a failure of any of them cannot leave the button disabled
+        CompletableFuture.allOf(report, reach, orderValues).whenComplete((ignored, error) -> Platform.runLater(() -> {
+            btnRun.setDisable(false);
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                lblSummary.setText("");
+                showErrorMessage("Error running report: " + cause.getMessage());
+                return;
+            }
+            show(report.join(), reach.join(), orderValues.join());
+        }));
+    }
+
+    // A missing estimate only leaves the customer figures out of the report
+    private Reach loadReach(LocalDate from, LocalDate to, Integer categoryId, boolean byCategory) {
+        LocalDate first = from != null ? from : FIRST_DAY;
+        LocalDate last = to != null ? to : LAST_DAY;
+        try {
+            long customers = customerReachDAO.distinctCustomers(first, last, categoryId);
+            return new Reach(customers, byCategory ? customerReachDAO.reachByCategory(first, last) : Map.of());
+        } catch (SQLException e) {
+            System.err.println("Error estimating report customers: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Likewise for the order value percentiles
+    private TDigest loadOrderValues(LocalDate from, LocalDate to, String paymentMethod) {
+        try {
+            TDigest digest = orderValueDAO.distribution(from != null ? from : FIRST_DAY, to != null ? to : LAST_DAY, paymentMethod);
+            return digest.isEmpty() ? null : digest;
+        } catch (SQLException e) {
+            System.err.println("Error loading report order values: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @FXML
+    private void handleBestSellerWindowAction(ActionEvent event) {
+        loadBestSellers();
+    }
+
+    private void loadBestSellers() {
+        BestSellerTracker.Window window = cmbBestSellerWindow.getValue();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return bestSellers.top(window, LocalDate.now(), BEST_SELLERS_SHOWN);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }, executor).whenComplete((top, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                System.err.println("Error loading best sellers: " + error.getCause().getMessage());
+                return;
+            }
+            ObservableList<String> items = FXCollections.observableArrayList();
+            for (int i = 0; i < top.size(); i++) {
+                BestSellerTracker.Entry entry = top.get(i);
+                // Counts from an overflowed day are upper bounds
+                items.add(String.format("%d. %s - %s%,d sold", i + 1, entry.getProductName(),
+                        entry.isExact() ? "" : "about ", entry.getUnits()));
+            }
+            listBestSellers.setItems(items);
+        }));
+    }
+
+    private void show(ReportEngine.Result result, Reach reach, TDigest orderValues) {
+        categoryReach = reach != null ? reach.byCategory : Map.of();
+        colCustomers.setVisible(!categoryReach.isEmpty());
+        rows.setAll(result.getRows());
+        colSubgroup.setVisible(result.getRows().stream().anyMatch(row -> row.getSubLabel() != null));
+        ReportEngine.Row total = result.getTotal();
+        lblSummary.setText(String.format("%,d orders%s, %,d items, %s revenue, %s margin%s  |  %,d order lines scanned in %.1f ms",
+                total.getOrders(), reach != null ? String.format(" from about %,d customers", reach.customers) : "",
+                total.getQuantity(), formatMoney(total.getRevenue()), formatMoney(total.getMargin()),
+                orderValues != null ? String.format("  |  order value median %s, p90 %s, p99 %s",
+                        formatMoney(orderValues.quantile(0.5)), formatMoney(orderValues.quantile(0.9)),
+                        formatMoney(orderValues.quantile(0.99))) : "",
+                result.getScannedLines(), result.getElapsedNanos() / 1_000_000.0));
+
+        // The payment methods are only known once the columns are loaded
+        String selected = cmbPaymentMethod.getValue();
+        ObservableList<String> methods = FXCollections.observableArrayList(ALL_PAYMENT_METHODS);
+        methods.addAll(engine.getPaymentMethods().stream().sorted().toList());
+        if (!methods.equals(cmbPaymentMethod.getItems())) {
+            cmbPaymentMethod.setItems(methods);
+            cmbPaymentMethod.setValue(methods.contains(selected) ? selected : ALL_PAYMENT_METHODS);
+        }
+    }
+
+    private static String formatMoney(BigDecimal amount) {
+        return String.format("$%,.2f", amount);
+    }
+
+    private static String formatMoney(double amount) {
+        return String.format("$%,.2f", amount);
+    }
+
+    private void showErrorMessage(String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Error");
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+}
@@ -0,0 +1,112 @@
+package com.shop.controller;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.scene.control.TextInputControl;
+import javafx.util.Duration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Search-as-you-type for list screens.
+ * Each keystroke restarts a short pause; once typing stops the query runs on a background
+ * thread and its result is handed back on the FX thread, but only if no newer text has
+ * arrived in the meantime. A query superseded while still queued never runs; one already
+ * running is left to finish (interrupting it could break the shared JDBC connection) and
+ * its result is dropped. All methods are called on the FX thread.
+ */
+public class SearchPipeline<T> {
+
+    public static final Duration DEFAULT_DELAY = Duration.millis(250);
+
+    @FunctionalInterface
+    public interface Query<T> {
+        T run(String text) throws Exception;
+    }
+
+    // One thread for every screen: searches are short and never need to run side by side
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "search-pipeline");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Query<T> query;
+    private final Consumer<T> onResult;
+    private final Consumer<Exception> onError;
+    private final PauseTransition pause;
+    // Bumped by every new input; a result is applied only if its ticket is still current
+    private final AtomicLong generation = new AtomicLong();
+    private Future<?> pending;
+    private String text = "";
+
+    public SearchPipeline(Duration delay, Query<T> query, Consumer<T> onResult, Consumer<Exception> onError) {
+        this.query = query;
+        this.onResult = onResult;
+        this.onError = onError;
+        this.pause = new PauseTransition(delay);
+        this.pause.setOnFinished(event -> start());
+    }
+
+    public void bind(TextInputControl field) {
+        field.textProperty().addListener((obs, oldText, newText) -> submit(newText));
+    }
+
+    public void submit(String newText) {
+        text = newText != null ? newText : "";
+        // Whatever is queued or running is stale from this keystroke on
+        generation.incrementAndGet();
+        cancelPending();
+        pause.playFromStart();
+    }
+
+    // Re-runs the current text without waiting, e.g. after the list behind it was reloaded
+    public void runNow() {
+        pause.stop();
+        start();
+    }
+
+    public void cancel() {
+        generation.incrementAndGet();
+        pause.stop();
+        cancelPending();
+    }
+
+    private void start() {
+        long ticket = generation.incrementAndGet();
+        String current = text;
+        cancelPending();
+        pending = executor.submit(() -> {
+            if (generation.get() != ticket) {
+                return;
+            }
+            try {
+                T result = query.run(current);
+                Platform.runLater(() -> {
+                    if (generation.get() == ticket) {
+                        pending = null;
+                        onResult.accept(result);
+                    }
+                });
+            } catch (Exception e) {
+                Platform.runLater(() -> {
+                    if (generation.get() == ticket) {
+                        pending = null;
+                        onError.accept(e);
+                    }
+                });
+            }
+        });
+    }
+
+    private void cancelPending() {
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+}
@@ -2,7 +2,6 @@ package com.shop.controller;
 
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -26,6 +25,9 @@ public class SimpleWelcomeController implements Initializable {
     public void initialize(URL location, ResourceBundle resources) {
         // Simple initialization without animations
         System.out.println("Welcome Controller initialized successfully!");
+
+        // Load data and screens in the background while the welcome page is shown
+        CacheWarmer.getInstance().start();
     }
 
     @FXML
@@ -33,9 +35,8 @@ public class SimpleWelcomeController implements Initializable {
         try {
             System.out.println("Loading main application...");
             
-            // Load the main application view
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/MainView.fxml"));
-            Parent mainView = loader.load();
+            // Load the main application view (its FXML source is usually preloaded by the warm-up)
+            Parent mainView = loadMainView();
             
             // Get current stage
             Stage currentStage = (Stage) btnGetStarted.getScene().getWindow();
@@ -58,6 +59,10 @@ public class SimpleWelcomeController implements Initializable {
         }
     }
 
+    private Parent loadMainView() throws IOException {
+        return ViewCache.getInstance().loadOnce("/fxml/MainView.fxml").getView();
+    }
+
     @FXML
     private void handleAbout(ActionEvent event) {
         try {
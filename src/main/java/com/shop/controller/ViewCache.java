@@ -0,0 +1,175 @@
+package com.shop.controller;
+
+import com.shop.cache.CacheStats;
+import com.shop.cache.CacheStatsRegistry;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps parsed FXML views and their controllers so switching screens does not
+ * re-parse the layout or rebuild the controller.
+ * Views are only ever built on the FX thread, since building one runs its controller's
+ * initialize(); a background thread can preload a view's FXML source and the classes it
+ * names, so the first build on the FX thread starts from memory.
+ */
+public class ViewCache {
+    private static ViewCache instance;
+
+    // Imports (a package when ending in .*), element names and the controller of an FXML file
+    private static final Pattern IMPORTS = Pattern.compile("<\\?import\\s+([\\w.$]+?)(\\.\\*)?\\s*\\?>");
+    private static final Pattern ELEMENTS = Pattern.compile("<([A-Z][\\w$]*)");
+    private static final Pattern CONTROLLER = Pattern.compile("fx:controller\\s*=\\s*\"([\\w.$]+)\"");
+
+    private final Map<String, LoadedView> views = new ConcurrentHashMap<>();
+    // FXML sources read ahead by preload, used up by the next build of the view
+    private final Map<String, byte[]> sources = new ConcurrentHashMap<>();
+    private final CacheStats stats;
+
+    public static class LoadedView {
+        private final Parent view;
+        private final Object controller;
+
+        public LoadedView(Parent view, Object controller) {
+            this.view = view;
+            this.controller = controller;
+        }
+
+        public Parent getView() {
+            return view;
+        }
+
+        public Object getController() {
+            return controller;
+        }
+    }
+
+    private ViewCache() {
+        this.stats = CacheStatsRegistry.getInstance().register("views", views::size, this::invalidateAll);
+    }
+
+    public static ViewCache getInstance() {
+        if (instance == null) {
+            synchronized (ViewCache.class) {
+                if (instance == null) {
+                    instance = new ViewCache();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public LoadedView get(String fxmlPath) {
+        LoadedView loaded = views.get(fxmlPath);
+        if (loaded != null) {
+            stats.recordHit();
+        }
+        return loaded;
+    }
+
+    public boolean contains(String fxmlPath) {
+        return views.containsKey(fxmlPath);
+    }
+
+    /**
+     * Any thread: reads the view's FXML and loads (without initializing) its element classes
+     * and its controller class. Creates no nodes and no controller.
+     */
+    public void preload(String fxmlPath) throws IOException {
+        if (views.containsKey(fxmlPath) || sources.containsKey(fxmlPath)) {
+            return;
+        }
+        byte[] source;
+        try (InputStream in = getClass().getResourceAsStream(fxmlPath)) {
+            if (in == null) {
+                throw new IOException("View not found: " + fxmlPath);
+            }
+            source = in.readAllBytes();
+        }
+        String fxml = new String(source, StandardCharsets.UTF_8);
+        Set<String> classNames = new HashSet<>();
+        List<String> packages = new ArrayList<>();
+        Matcher imports = IMPORTS.matcher(fxml);
+        while (imports.find()) {
+            if (imports.group(2) != null) {
+                packages.add(imports.group(1));
+            } else {
+                classNames.add(imports.group(1));
+            }
+        }
+        // Elements named after a wildcard import may come from any of its packages
+        Matcher elements = ELEMENTS.matcher(fxml);
+        while (elements.find()) {
+            for (String pkg : packages) {
+                classNames.add(pkg + "." + elements.group(1));
+            }
+        }
+        Matcher controller = CONTROLLER.matcher(fxml);
+        if (controller.find()) {
+            classNames.add(controller.group(1));
+        }
+
+        ClassLoader classLoader = getClass().getClassLoader();
+        for (String name : classNames) {
+            try {
+                Class.forName(name, false, classLoader);
+            } catch (ClassNotFoundException e) {
+                // Not in this package; the FXML loader reports names that resolve nowhere
+            }
+        }
+        sources.put(fxmlPath, source);
+    }
+
+    // FX thread: parse the view and cache it, replacing any previous copy
+    public LoadedView load(String fxmlPath) throws IOException {
+        LoadedView loaded = build(fxmlPath);
+        views.put(fxmlPath, loaded);
+        return loaded;
+    }
+
+    // FX thread, for single-use views such as the main window: parse it without caching it
+    public LoadedView loadOnce(String fxmlPath) throws IOException {
+        return build(fxmlPath);
+    }
+
+    private LoadedView build(String fxmlPath) throws IOException {
+        long start = System.nanoTime();
+        FXMLLoader loader = new FXMLLoader(getClass().getResource(fxmlPath));
+        byte[] source = sources.remove(fxmlPath);
+        Parent view;
+        try {
+            view = source != null ? loader.load(new ByteArrayInputStream(source)) : loader.load();
+        } catch (IOException | RuntimeException e) {
+            stats.recordLoadFailure();
+            throw e;
+        }
+        stats.recordMiss(System.nanoTime() - start);
+        return new LoadedView(view, loader.getController());
+    }
+
+    public void invalidate(String fxmlPath) {
+        if (views.remove(fxmlPath) != null) {
+            stats.recordEviction();
+        }
+    }
+
+    public void invalidateAll() {
+        views.keySet().forEach(this::invalidate);
+    }
+
+    public int size() {
+        return views.size();
+    }
+}
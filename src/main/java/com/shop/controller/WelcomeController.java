@@ -3,7 +3,6 @@ package com.shop.controller;
 import javafx.animation.*;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
 import javafx.scene.Node;
 import javafx.scene.Parent;
@@ -31,6 +30,9 @@ public class WelcomeController implements Initializable {
         // Add subtle animations to buttons
         setupButtonAnimations();
         
+        // Load data and screens in the background while the entrance animation plays
+        CacheWarmer.getInstance().start();
+
         // Add entrance animations
         setupEntranceAnimations();
     }
@@ -141,9 +143,8 @@ public class WelcomeController implements Initializable {
                 
                 fadeOut.setOnFinished(finishEvent -> {
                     try {
-                        // Load the main application view
-                        FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/MainView.fxml"));
-                        Parent mainView = loader.load();
+                        // Load the main application view (its FXML source is usually preloaded by the warm-up)
+                        Parent mainView = loadMainView();
                         
                         // Get current stage
                         Stage currentStage = (Stage) btnGetStarted.getScene().getWindow();
@@ -179,6 +180,10 @@ public class WelcomeController implements Initializable {
         }
     }
 
+    private Parent loadMainView() throws IOException {
+        return ViewCache.getInstance().loadOnce("/fxml/MainView.fxml").getView();
+    }
+
     @FXML
     private void handleAbout(ActionEvent event) {
         // Add button click animation
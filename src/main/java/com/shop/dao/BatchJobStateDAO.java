@@ -0,0 +1,63 @@
+package com.shop.dao;
+
+import com.shop.database.DatabaseConfig;
+import com.shop.model.BatchJobState;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Data Access Object for batch_job_state, one row per incremental batch job.
+ */
+public class BatchJobStateDAO {
+    private final DatabaseConfig dbConfig;
+
+    public BatchJobStateDAO() {
+        this.dbConfig = DatabaseConfig.getInstance();
+    }
+
+    public Optional<BatchJobState> findByJobName(String jobName) throws SQLException {
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(
+                "SELECT * FROM batch_job_state WHERE job_name = ?")) {
+            stmt.setString(1, jobName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return Optional.empty();
+                }
+                return Optional.of(new BatchJobState(
+                        rs.getString("job_name"),
+                        toLocalDateTime(rs.getTimestamp("watermark")),
+                        toLocalDateTime(rs.getTimestamp("last_full_run")),
+                        rs.getString("state")));
+            }
+        }
+    }
+
+    // UPDATE first, INSERT for a job's first run; joins the caller's transaction on conn
+    public void save(Connection conn, BatchJobState jobState) throws SQLException {
+        String update = "UPDATE batch_job_state SET watermark = ?, last_full_run = ?, state = ? WHERE job_name = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(update)) {
+            setState(stmt, jobState);
+            if (stmt.executeUpdate() > 0) {
+                return;
+            }
+        }
+        String insert = "INSERT INTO batch_job_state (watermark, last_full_run, state, job_name) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(insert)) {
+            setState(stmt, jobState);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static void setState(PreparedStatement stmt, BatchJobState jobState) throws SQLException {
+        stmt.setTimestamp(1, jobState.getWatermark() != null ? Timestamp.valueOf(jobState.getWatermark()) : null);
+        stmt.setTimestamp(2, jobState.getLastFullRun() != null ? Timestamp.valueOf(jobState.getLastFullRun()) : null);
+        stmt.setString(3, jobState.getState());
+        stmt.setString(4, jobState.getJobName());
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
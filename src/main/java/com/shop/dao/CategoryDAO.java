@@ -1,5 +1,6 @@
 package com.shop.dao;
 
+import com.shop.cache.CachedQuery;
 import com.shop.database.DatabaseConfig;
 import com.shop.model.Category;
 
@@ -13,6 +14,10 @@ import java.util.Optional;
  * Data Access Object for Category operations
  */
 public class CategoryDAO {
+    // Active categories back every category picker; shared until a category write
+    private static final CachedQuery<Category> activeCategories =
+            new CachedQuery<>("categories.active", () -> new CategoryDAO().queryActive());
+
     private final DatabaseConfig dbConfig;
 
     public CategoryDAO() {
@@ -53,6 +58,7 @@ public class CategoryDAO {
                 }
             }
         }
+        invalidateCaches();
         return category;
     }
 
@@ -74,6 +80,7 @@ public class CategoryDAO {
                 throw new SQLException("Updating category failed, no rows affected.");
             }
         }
+        invalidateCaches();
         return category;
     }
 
@@ -106,6 +113,10 @@ public class CategoryDAO {
     }
 
     public List<Category> findActive() throws SQLException {
+        return new ArrayList<>(activeCategories.get());
+    }
+
+    private List<Category> queryActive() throws SQLException {
         String sql = "SELECT * FROM categories WHERE is_active = TRUE ORDER BY category_name";
         List<Category> categories = new ArrayList<>();
 
@@ -138,7 +149,9 @@ public class CategoryDAO {
 
         try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
             stmt.setInt(1, categoryId);
-            return stmt.executeUpdate() > 0;
+            boolean deleted = stmt.executeUpdate() > 0;
+            invalidateCaches();
+            return deleted;
         }
     }
 
@@ -148,7 +161,9 @@ public class CategoryDAO {
         try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
             stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setInt(2, categoryId);
-            return stmt.executeUpdate() > 0;
+            boolean updated = stmt.executeUpdate() > 0;
+            invalidateCaches();
+            return updated;
         }
     }
 
@@ -166,6 +181,16 @@ public class CategoryDAO {
         return false;
     }
 
+    public static CachedQuery<Category> activeCategoriesCache() {
+        return activeCategories;
+    }
+
+    // Product lists embed the category name, so they go stale with the category
+    private void invalidateCaches() {
+        activeCategories.invalidate();
+        ProductDAO.activeProductsCache().invalidate();
+    }
+
     private Category mapResultSetToCategory(ResultSet rs) throws SQLException {
         return new Category(
                 rs.getInt("category_id"),
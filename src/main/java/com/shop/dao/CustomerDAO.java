@@ -1,30 +1,58 @@
 package com.shop.dao;
 
+import com.shop.cache.BloomFilter;
+import com.shop.cache.CacheStats;
+import com.shop.cache.CacheStatsRegistry;
+import com.shop.cache.DashboardMetrics;
 import com.shop.database.DatabaseConfig;
 import com.shop.model.Customer;
+import com.shop.model.RfmSegment;
+import com.shop.search.CustomerSearchIndex;
 
+import java.math.BigDecimal;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Data Access Object for Customer CRUD operations
  */
 public class CustomerDAO {
+    // Shared by all DAO instances; answers most "email taken?" checks without a query
+    private static volatile BloomFilter emailFilter;
+    private static final CacheStats emailFilterStats = CacheStatsRegistry.getInstance().register(
+            "customers.emailFilter", () -> emailFilter != null ? emailFilter.getInsertions() : 0, CustomerDAO::resetEmailFilter);
+
     private final DatabaseConfig dbConfig;
+    private final CustomerSearchIndex searchIndex;
+    private final DashboardMetrics metrics;
+    private final DailySalesDAO dailySales;
 
     public CustomerDAO() {
         this.dbConfig = DatabaseConfig.getInstance();
+        this.searchIndex = CustomerSearchIndex.getInstance();
+        this.metrics = DashboardMetrics.getInstance();
+        this.dailySales = new DailySalesDAO();
     }
 
     // CREATE - Insert new customer
     public Customer save(Customer customer) throws SQLException {
-        if (customer.getCustomerId() == 0) {
-            return insert(customer);
-        } else {
-            return update(customer);
+        metrics.beginWrite();
+        try {
+            if (customer.getCustomerId() == 0) {
+                return insert(customer);
+            } else {
+                return update(customer);
+            }
+        } finally {
+            metrics.endWrite();
         }
     }
 
@@ -61,6 +89,9 @@ public class CustomerDAO {
                 }
             }
         }
+        rememberEmail(customer.getEmail());
+        searchIndex.put(customer);
+        metrics.customersChanged(customer.isActive() ? 1 : 0);
         return customer;
     }
 
@@ -73,6 +104,7 @@ public class CustomerDAO {
             WHERE customer_id = ?
         """;
 
+        Boolean wasActive = findActiveFlag(customer.getCustomerId());
         try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
             stmt.setString(1, customer.getFirstName());
             stmt.setString(2, customer.getLastName());
@@ -91,6 +123,9 @@ public class CustomerDAO {
                 throw new SQLException("Updating customer failed, no rows affected.");
             }
         }
+        rememberEmail(customer.getEmail());
+        searchIndex.put(customer);
+        metrics.customersChanged(DashboardMetrics.activeDelta(wasActive, customer.isActive()));
         return customer;
     }
 
@@ -109,6 +144,99 @@ public class CustomerDAO {
         return Optional.empty();
     }
 
+    // READ - Find customers in the order of the given ids; ids that no longer exist are skipped
+    public List<Customer> findByIds(List<Integer> customerIds) throws SQLException {
+        Map<Integer, Customer> found = new HashMap<>();
+        for (int from = 0; from < customerIds.size(); from += 500) {
+            List<Integer> chunk = customerIds.subList(from, Math.min(customerIds.size(), from + 500));
+            String sql = "SELECT * FROM customers WHERE customer_id IN ("
+                    + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+
+            try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    stmt.setInt(i + 1, chunk.get(i));
+                }
+                ResultSet rs = stmt.executeQuery();
+
+                while (rs.next()) {
+                    Customer customer = mapResultSetToCustomer(rs);
+                    found.put(customer.getCustomerId(), customer);
+                }
+            }
+        }
+
+        List<Customer> customers = new ArrayList<>(found.size());
+        for (int customerId : customerIds) {
+            Customer customer = found.get(customerId);
+            if (customer != null) {
+                customers.add(customer);
+            }
+        }
+        return customers;
+    }
+
+    // READ - Up to `limit` active customers whose first name, last name, email or phone
+    // starts with each word of the query (order form autocomplete); zero returns every match
+    public List<Customer> autocomplete(String query, int limit) throws SQLException {
+        if (query == null || query.isBlank()) {
+            return new ArrayList<>();
+        }
+        if (searchIndex.isEnabled()) {
+            searchIndex.ensureLoaded();
+            return findByIds(searchIndex.search(query, limit));
+        }
+
+        return prefixMatches(query, limit, false);
+    }
+
+    // READ - Ids of every customer, active or not, matching each word of the query as the
+    // autocomplete does (customer list search); the list shows inactive customers too
+    public Set<Integer> searchIds(String query) throws SQLException {
+        Set<Integer> ids = new HashSet<>();
+        if (query == null || query.isBlank()) {
+            return ids;
+        }
+        if (searchIndex.isEnabled()) {
+            searchIndex.ensureLoaded();
+            ids.addAll(searchIndex.search(query, 0, true));
+            return ids;
+        }
+        for (Customer customer : prefixMatches(query, 0, true)) {
+            ids.add(customer.getCustomerId());
+        }
+        return ids;
+    }
+
+    // Without the index: prefix match on the whole query only
+    private List<Customer> prefixMatches(String query, int limit, boolean includeInactive) throws SQLException {
+        String sql = """
+            SELECT * FROM customers 
+            WHERE (LOWER(first_name) LIKE ? ESCAPE '!' OR LOWER(last_name) LIKE ? ESCAPE '!'
+                   OR LOWER(email) LIKE ? ESCAPE '!' OR phone_number LIKE ? ESCAPE '!')
+              %s
+            ORDER BY first_name, last_name
+        """.formatted(includeInactive ? "" : "AND is_active = TRUE");
+
+        long start = System.nanoTime();
+        String pattern = escapeLike(query.trim().toLowerCase()) + "%";
+        List<Customer> customers = new ArrayList<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            for (int i = 1; i <= 4; i++) {
+                stmt.setString(i, pattern);
+            }
+            if (limit > 0) {
+                stmt.setMaxRows(limit);
+            }
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                customers.add(mapResultSetToCustomer(rs));
+            }
+        }
+        searchIndex.getStats().recordMiss(System.nanoTime() - start);
+        return customers;
+    }
+
     // READ - Find all customers
     public List<Customer> findAll() throws SQLException {
         String sql = "SELECT * FROM customers ORDER BY first_name, last_name";
@@ -121,6 +249,36 @@ public class CustomerDAO {
         return executeCustomerQuery(sql);
     }
 
+    // READ - Find customers changed since a point in time (incremental refresh)
+    public List<Customer> findUpdatedSince(LocalDateTime since) throws SQLException {
+        String sql = "SELECT * FROM customers WHERE updated_at >= ?";
+
+        List<Customer> customers = new ArrayList<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(since));
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                customers.add(mapResultSetToCustomer(rs));
+            }
+        }
+        return customers;
+    }
+
+    // Ids only, so a refreshed view can drop rows deleted since it loaded
+    public Set<Integer> findAllIds() throws SQLException {
+        Set<Integer> ids = new HashSet<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement("SELECT customer_id FROM customers")) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+        }
+        return ids;
+    }
+
     // READ - Find customer by email
     public Optional<Customer> findByEmail(String email) throws SQLException {
         String sql = "SELECT * FROM customers WHERE email = ?";
@@ -162,9 +320,40 @@ public class CustomerDAO {
     public boolean delete(int customerId) throws SQLException {
         String sql = "DELETE FROM customers WHERE customer_id = ?";
 
-        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
-            stmt.setInt(1, customerId);
-            return stmt.executeUpdate() > 0;
+        metrics.beginWrite();
+        try {
+            Boolean wasActive = findActiveFlag(customerId);
+            // MySQL cascades the delete to the customer's orders, which leave the dashboard totals and the rollup too
+            String ordersSql = """
+                SELECT COUNT(*) AS order_count,
+                       COALESCE(SUM(CASE WHEN status NOT IN ('CANCELLED', 'REFUNDED') THEN total_amount END), 0) AS revenue
+                FROM orders WHERE customer_id = ?
+            """;
+            long orderCount;
+            BigDecimal orderRevenue;
+            try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(ordersSql)) {
+                stmt.setInt(1, customerId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                    orderCount = rs.getLong("order_count");
+                    orderRevenue = rs.getBigDecimal("revenue");
+                }
+            }
+            boolean deleted = dailySales.updateOrders(List.of(), conn -> {
+                dailySales.removeCustomerOrders(conn, customerId);
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setInt(1, customerId);
+                    return stmt.executeUpdate() > 0;
+                }
+            });
+            searchIndex.remove(customerId);
+            if (deleted) {
+                metrics.customersChanged(DashboardMetrics.activeDelta(wasActive, false));
+                metrics.ordersDeleted(orderCount, orderRevenue);
+            }
+            return deleted;
+        } finally {
+            metrics.endWrite();
         }
     }
 
@@ -172,17 +361,43 @@ public class CustomerDAO {
     public boolean softDelete(int customerId) throws SQLException {
         String sql = "UPDATE customers SET is_active = FALSE, updated_at = ? WHERE customer_id = ?";
 
-        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
-            stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
-            stmt.setInt(2, customerId);
-            return stmt.executeUpdate() > 0;
+        metrics.beginWrite();
+        try {
+            Boolean wasActive = findActiveFlag(customerId);
+            try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+                stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+                stmt.setInt(2, customerId);
+                boolean updated = stmt.executeUpdate() > 0;
+                searchIndex.setActive(customerId, false);
+                metrics.customersChanged(updated ? DashboardMetrics.activeDelta(wasActive, false) : 0);
+                return updated;
+            }
+        } finally {
+            metrics.endWrite();
+        }
+    }
+
+    // is_active before a write, or null if the row does not exist; DashboardMetrics counts active customers
+    private Boolean findActiveFlag(int customerId) throws SQLException {
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(
+                "SELECT is_active FROM customers WHERE customer_id = ?")) {
+            stmt.setInt(1, customerId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getBoolean(1) : null;
+            }
         }
     }
 
     // Utility method to check if email exists
     public boolean existsByEmail(String email) throws SQLException {
+        if (email == null || !loadEmailFilter().mightContain(BloomFilter.caseInsensitiveKey(email))) {
+            emailFilterStats.recordHit();
+            return false;
+        }
+
         String sql = "SELECT COUNT(*) FROM customers WHERE email = ?";
 
+        long start = System.nanoTime();
         try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
             stmt.setString(1, email);
             ResultSet rs = stmt.executeQuery();
@@ -190,10 +405,67 @@ public class CustomerDAO {
             if (rs.next()) {
                 return rs.getInt(1) > 0;
             }
+        } finally {
+            emailFilterStats.recordMiss(System.nanoTime() - start);
         }
         return false;
     }
 
+    // Build the email filter from the table; rebuilt once it outgrows its sizing, and caught up
+    // in the background with the emails other clients write
+    public BloomFilter loadEmailFilter() throws SQLException {
+        BloomFilter filter = emailFilter;
+        if (filter != null && !filter.isSaturated()) {
+            return filter;
+        }
+        synchronized (CustomerDAO.class) {
+            if (emailFilter == null || emailFilter.isSaturated()) {
+                BloomFilter loaded;
+                try {
+                    loaded = BloomFilter.load(dbConfig.getConnection(), "SELECT COUNT(*) FROM customers",
+                            "SELECT email, updated_at FROM customers WHERE email IS NOT NULL",
+                            "SELECT email, updated_at FROM customers WHERE updated_at >= ?");
+                } catch (SQLException e) {
+                    emailFilterStats.recordLoadFailure();
+                    throw e;
+                }
+                if (emailFilter != null) {
+                    emailFilter.stopCatchUp();
+                }
+                emailFilter = loaded;
+                emailFilter.catchUpEvery(dbConfig, dbConfig.getIntProperty("bloom.catchup.seconds", 10));
+            }
+            return emailFilter;
+        }
+    }
+
+    private static void resetEmailFilter() {
+        synchronized (CustomerDAO.class) {
+            if (emailFilter != null) {
+                emailFilterStats.recordEviction();
+                emailFilter.stopCatchUp();
+            }
+            emailFilter = null;
+        }
+    }
+
+    // LIKE pattern text with its wildcards taken literally
+    private static String escapeLike(String text) {
+        return text.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    // Locked so a key written while the filter is being built is never lost
+    private void rememberEmail(String email) {
+        if (email == null) {
+            return;
+        }
+        synchronized (CustomerDAO.class) {
+            if (emailFilter != null) {
+                emailFilter.add(BloomFilter.caseInsensitiveKey(email));
+            }
+        }
+    }
+
     // Helper method to execute customer queries
     private List<Customer> executeCustomerQuery(String sql) throws SQLException {
         List<Customer> customers = new ArrayList<>();
@@ -209,7 +481,7 @@ public class CustomerDAO {
 
     // Map ResultSet to Customer object
     private Customer mapResultSetToCustomer(ResultSet rs) throws SQLException {
-        return new Customer(
+        Customer customer = new Customer(
                 rs.getInt("customer_id"),
                 rs.getString("first_name"),
                 rs.getString("last_name"),
@@ -223,5 +495,11 @@ public class CustomerDAO {
                 rs.getTimestamp("updated_at").toLocalDateTime(),
                 rs.getBoolean("is_active")
         );
+        customer.setRfmRecency(rs.getInt("rfm_recency"));
+        customer.setRfmFrequency(rs.getInt("rfm_frequency"));
+        customer.setRfmMonetary(rs.getInt("rfm_monetary"));
+        String segment = rs.getString("rfm_segment");
+        customer.setRfmSegment(segment != null ? RfmSegment.valueOf(segment) : null);
+        return customer;
     }
 }
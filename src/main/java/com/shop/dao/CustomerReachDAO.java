@@ -0,0 +1,147 @@
+package com.shop.dao;
+
+import com.shop.database.DatabaseConfig;
+import com.shop.report.HyperLogLog;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Data Access Object for daily_customer_reach: a HyperLogLog sketch of the customers who
+ * ordered on each day, per category, under the daily_sales rules (order date, cancelled and
+ * refunded orders left out, category 0: uncategorised). Distinct customers over any range of
+ * days and categories are the estimate of their merged sketches, instead of a
+ * COUNT(DISTINCT customer_id) over the orders.
+ * A sketch cannot forget a customer, so DailySalesDAO adds customers as their orders come in
+ * and has the sketches of days and categories that lost order lines recomputed.
+ */
+public class CustomerReachDAO {
+    private final DatabaseConfig dbConfig;
+    private final DailySketchTable<Integer> sketches = new DailySketchTable<>(
+            "daily_customer_reach", "category_id", "registers", (stored, added) -> {
+                HyperLogLog sketch = HyperLogLog.fromBytes(stored);
+                sketch.merge(HyperLogLog.fromBytes(added));
+                return sketch.toBytes();
+            });
+
+    // Customers with a counted order line, with the day and category of the line
+    private static final String REACH = """
+        SELECT DISTINCT CAST(o.order_date AS DATE) AS sale_date,
+               COALESCE(p.category_id, 0) AS category_id,
+               o.customer_id
+        FROM orders o
+        JOIN order_items oi ON oi.order_id = o.order_id
+        LEFT JOIN products p ON p.product_id = oi.product_id
+        WHERE o.status NOT IN ('CANCELLED', 'REFUNDED') AND o.order_date >= ? AND o.order_date < ?
+    """;
+
+    public CustomerReachDAO() {
+        this.dbConfig = DatabaseConfig.getInstance();
+    }
+
+    // Adds customers to a day's sketch for a category; adding a customer twice changes nothing
+    public void add(Connection conn, LocalDate day, int categoryId, Collection<Integer> customerIds) throws SQLException {
+        sketches.update(conn, day, categoryId, stored -> {
+            HyperLogLog sketch = HyperLogLog.fromBytes(stored);
+            for (int customerId : customerIds) {
+                sketch.add(customerId);
+            }
+            return sketch.toBytes();
+        });
+    }
+
+    // Rebuilds a day's sketch for a category from the orders, e.g. after a cancellation
+    public void recompute(Connection conn, LocalDate day, int categoryId) throws SQLException {
+        HyperLogLog sketch = new HyperLogLog();
+        try (PreparedStatement stmt = conn.prepareStatement(REACH + " AND COALESCE(p.category_id, 0) = ?")) {
+            stmt.setTimestamp(1, Timestamp.valueOf(day.atStartOfDay()));
+            stmt.setTimestamp(2, Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+            stmt.setInt(3, categoryId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    sketch.add(rs.getInt("customer_id"));
+                }
+            }
+        }
+        sketches.replace(conn, day, categoryId, sketch.isEmpty() ? null : sketch.toBytes());
+    }
+
+    // READ - Estimated distinct customers over an inclusive date range, in one category or (null) all
+    public long distinctCustomers(LocalDate from, LocalDate to, Integer categoryId) throws SQLException {
+        String sql = "SELECT registers FROM daily_customer_reach WHERE sale_date >= ? AND sale_date <= ?"
+                + (categoryId != null ? " AND category_id = ?" : "");
+        HyperLogLog merged = new HyperLogLog();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setDate(1, Date.valueOf(from));
+            stmt.setDate(2, Date.valueOf(to));
+            if (categoryId != null) {
+                stmt.setInt(3, categoryId);
+            }
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    merged.merge(HyperLogLog.fromBytes(rs.getBytes("registers")));
+                }
+            }
+        }
+        return merged.estimate();
+    }
+
+    // READ - Estimated distinct customers per category (id -> customers) over an inclusive date range
+    public Map<Integer, Long> reachByCategory(LocalDate from, LocalDate to) throws SQLException {
+        String sql = "SELECT category_id, registers FROM daily_customer_reach WHERE sale_date >= ? AND sale_date <= ?";
+        Map<Integer, HyperLogLog> sketches = new HashMap<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setDate(1, Date.valueOf(from));
+            stmt.setDate(2, Date.valueOf(to));
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    sketches.computeIfAbsent(rs.getInt("category_id"), id -> new HyperLogLog())
+                            .merge(HyperLogLog.fromBytes(rs.getBytes("registers")));
+                }
+            }
+        }
+        Map<Integer, Long> reach = new HashMap<>();
+        sketches.forEach((categoryId, sketch) -> reach.put(categoryId, sketch.estimate()));
+        return reach;
+    }
+
+    // Backfill: recomputes the sketches for every day that has orders; returns the sketches written
+    public int rebuild() throws SQLException {
+        return MonthlyRebuild.all("Customer reach sketches", "sketches", this::rebuild);
+    }
+
+    // Recomputes an inclusive date range in one transaction; returns the sketches written
+    public int rebuild(LocalDate from, LocalDate to) throws SQLException {
+        return MonthlyRebuild.range(from, to, this::rebuild);
+    }
+
+    // First start with the sketch table: fill it from the existing orders
+    public void backfillIfEmpty() throws SQLException {
+        if (MonthlyRebuild.needed("daily_customer_reach", "order_items")) {
+            rebuild();
+        }
+    }
+
+    private int rebuild(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        Map<LocalDate, Map<Integer, HyperLogLog>> days = new TreeMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(REACH)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(from.atStartOfDay()));
+            stmt.setTimestamp(2, Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    days.computeIfAbsent(rs.getDate("sale_date").toLocalDate(), day -> new HashMap<>())
+                            .computeIfAbsent(rs.getInt("category_id"), id -> new HyperLogLog())
+                            .add(rs.getInt("customer_id"));
+                }
+            }
+        }
+        return sketches.replaceRange(conn, from, to, days, HyperLogLog::toBytes);
+    }
+}
@@ -0,0 +1,489 @@
+package com.shop.dao;
+
+import com.shop.database.DatabaseConfig;
+import com.shop.model.DailySales;
+import com.shop.report.BestSellerTracker;
+import com.shop.report.ReportEngine;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Data Access Object for the daily_sales rollup: order lines summed per day, category,
+ * product and payment method, so reports over months or years read a few rows per day
+ * instead of every order item.
+ * Cancelled and refunded orders are left out. An order's payment method is that of its
+ * earliest completed payment, or UNPAID. Every write to orders, order items or payments
+ * subtracts the affected orders' rows and adds them back from the new state, in the same
+ * transaction as the write itself. The unit changes are passed on to BestSellerTracker once
+ * that transaction commits: by updateOrders, or by the caller through published() when it
+ * runs its own transaction, which calls begin() before its first statement.
+ * Cost is summed from the unit cost each order line was sold at, so margins do not move
+ * when a product's cost price changes later.
+ * The customer reach sketches (CustomerReachDAO) are kept in the same transaction: added
+ * orders add their customers, and days and categories that lost lines are recomputed once
+ * the changed orders are added back. So are the order value digests (OrderValueDAO), per
+ * day and payment method.
+ */
+public class DailySalesDAO {
+    private final DatabaseConfig dbConfig;
+    // Every change to a sale passes through here, so this is where the report columns learn of it
+    private final ReportEngine reports;
+    private final BestSellerTracker bestSellers;
+    private final CustomerReachDAO reach;
+    private final OrderValueDAO orderValues;
+    // Unit changes of the open transaction, passed on when it commits
+    private final List<DailySales> unpublished = new ArrayList<>();
+    // Orders written by the open transaction; the report columns are told again once it ends,
+    // in case a report re-read them before the commit or rollback
+    private final Set<Integer> ordersWritten = new HashSet<>();
+    // Set while the open transaction holds off a best-seller load
+    private boolean writing;
+    // Day -> categories whose reach sketch must be recomputed, as sketches cannot remove a customer
+    private final Map<LocalDate, Set<Integer>> reachToRecompute = new TreeMap<>();
+    // Day -> payment methods whose order value digest must be recomputed, for the same reason
+    private final Map<LocalDate, Set<String>> valuesToRecompute = new TreeMap<>();
+
+    // One row per order line of the orders matched by the %s condition, with its rollup key
+    private static final String ORDER_LINES = """
+        SELECT CAST(o.order_date AS DATE) AS sale_date,
+               COALESCE(p.category_id, 0) AS category_id,
+               oi.product_id,
+               COALESCE((SELECT py.payment_method FROM payments py
+                         WHERE py.order_id = o.order_id AND py.status = 'COMPLETED'
+                         ORDER BY py.payment_date, py.payment_id
+                         LIMIT 1), 'UNPAID') AS payment_method,
+               oi.quantity,
+               oi.line_total,
+               COALESCE(oi.unit_cost, 0) * oi.quantity AS line_cost,
+               o.customer_id
+        FROM orders o
+        JOIN order_items oi ON oi.order_id = o.order_id
+        LEFT JOIN products p ON p.product_id = oi.product_id
+        WHERE o.status NOT IN ('CANCELLED', 'REFUNDED') AND %s
+    """;
+
+    private static final String ROLLUP = """
+        SELECT sale_date, category_id, product_id, payment_method,
+               COUNT(*) AS order_lines, SUM(quantity) AS quantity, SUM(line_total) AS revenue,
+               SUM(line_cost) AS cost_amount
+        FROM (%s) order_lines
+        GROUP BY sale_date, category_id, product_id, payment_method
+    """;
+
+    private static final String CUSTOMERS = """
+        SELECT DISTINCT sale_date, category_id, customer_id
+        FROM (%s) order_lines
+    """;
+
+    @FunctionalInterface
+    public interface Write<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    public DailySalesDAO() {
+        this.dbConfig = DatabaseConfig.getInstance();
+        this.reports = ReportEngine.getInstance();
+        this.bestSellers = BestSellerTracker.getInstance();
+        this.reach = new CustomerReachDAO();
+        this.orderValues = new OrderValueDAO();
+    }
+
+    /**
+     * Runs a write that changes the given orders (their status, date, items or payments)
+     * with the rollup kept in step: their rows are subtracted first and added back after,
+     * all in one transaction on the application connection. A caller with a transaction of
+     * its own uses removeOrder/addOrder on that transaction's connection instead.
+     */
+    public <T> T updateOrders(Collection<Integer> orderIds, Write<T> write) throws SQLException {
+        Connection conn = dbConfig.getConnection();
+        Set<Integer> orders = new LinkedHashSet<>(orderIds);
+        orders.remove(0);
+        begin();
+        try {
+            // Inside the try, so a failure here still ends the best-seller write
+            conn.setAutoCommit(false);
+            for (int orderId : orders) {
+                removeOrder(conn, orderId);
+            }
+            T result = write.run(conn);
+            // Every order is added back before the sketches are recomputed: a recompute reads
+            // all the orders as they are now, so adding an order after it would count it twice
+            for (int orderId : orders) {
+                apply(conn, "o.order_id = ?", orderId, 1);
+            }
+            recomputeSketches(conn);
+            conn.commit();
+            published();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            try {
+                conn.rollback();
+            } finally {
+                discarded();
+            }
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    // Call before the first statement of a transaction that will use removeOrder/addOrder directly
+    public void begin() {
+        if (!writing) {
+            bestSellers.beginWrite();
+            writing = true;
+        }
+    }
+
+    // Call after committing such a transaction
+    public void published() {
+        for (DailySales delta : unpublished) {
+            bestSellers.record(delta.getSaleDate(), delta.getProductId(), delta.getQuantity());
+        }
+        unpublished.clear();
+        ordersWritten.forEach(reports::orderChanged);
+        ordersWritten.clear();
+        end();
+    }
+
+    // Call after rolling such a transaction back
+    public void discarded() {
+        unpublished.clear();
+        ordersWritten.forEach(reports::orderChanged);
+        ordersWritten.clear();
+        reachToRecompute.clear();
+        valuesToRecompute.clear();
+        end();
+    }
+
+    private void end() {
+        if (writing) {
+            writing = false;
+            bestSellers.endWrite();
+        }
+    }
+
+    // The order's current lines leave the rollup; call before changing it
+    public void removeOrder(Connection conn, int orderId) throws SQLException {
+        reports.orderChanged(orderId);
+        ordersWritten.add(orderId);
+        apply(conn, "o.order_id = ?", orderId, -1);
+    }
+
+    // The order's current lines enter the rollup; call after changing it
+    public void addOrder(Connection conn, int orderId) throws SQLException {
+        reports.orderChanged(orderId);
+        ordersWritten.add(orderId);
+        apply(conn, "o.order_id = ?", orderId, 1);
+        recomputeSketches(conn);
+    }
+
+    // Before deleting a customer: MySQL cascades the delete to their orders
+    public void removeCustomerOrders(Connection conn, int customerId) throws SQLException {
+        reports.markStale();
+        apply(conn, "o.customer_id = ?", customerId, -1);
+    }
+
+    // Rows follow the product's current category, so a product keeps a single row per day and method;
+    // call in the transaction that changes the product's category
+    public void moveProduct(Connection conn, int productId, int categoryId) throws SQLException {
+        reports.markStale();
+        Map<LocalDate, Set<Integer>> days = productDays(conn, productId);
+        String sql = "UPDATE daily_sales SET category_id = ? WHERE product_id = ? AND category_id <> ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, categoryId);
+            stmt.setInt(2, productId);
+            stmt.setInt(3, categoryId);
+            stmt.executeUpdate();
+        }
+        // The product's customers leave its old categories' sketches and join the new one's
+        for (Map.Entry<LocalDate, Set<Integer>> day : days.entrySet()) {
+            if (day.getValue().equals(Set.of(categoryId))) {
+                continue;
+            }
+            day.getValue().add(categoryId);
+            reachToRecompute.computeIfAbsent(day.getKey(), d -> new HashSet<>()).addAll(day.getValue());
+        }
+        recomputeSketches(conn);
+    }
+
+    // A deleted product's order lines are gone (MySQL cascades them) or the delete failed
+    public void removeProduct(int productId) throws SQLException {
+        reports.markStale();
+        productDays(dbConfig.getConnection(), productId).forEach((day, categories) ->
+                reachToRecompute.computeIfAbsent(day, d -> new HashSet<>()).addAll(categories));
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(
+                "DELETE FROM daily_sales WHERE product_id = ?")) {
+            stmt.setInt(1, productId);
+            stmt.executeUpdate();
+        }
+        recomputeSketches(dbConfig.getConnection());
+    }
+
+    // READ - Rollup rows for an inclusive date range
+    public List<DailySales> findByDateRange(LocalDate from, LocalDate to) throws SQLException {
+        String sql = """
+            SELECT * FROM daily_sales
+            WHERE sale_date >= ? AND sale_date <= ?
+            ORDER BY sale_date, category_id, product_id, payment_method
+        """;
+        List<DailySales> rows = new ArrayList<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setDate(1, Date.valueOf(from));
+            stmt.setDate(2, Date.valueOf(to));
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new DailySales(
+                            rs.getDate("sale_date").toLocalDate(),
+                            rs.getInt("category_id"),
+                            rs.getInt("product_id"),
+                            rs.getString("payment_method"),
+                            rs.getInt("order_lines"),
+                            rs.getInt("quantity"),
+                            rs.getBigDecimal("revenue"),
+                            rs.getBigDecimal("cost_amount")));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Revenue, cost and margin for an inclusive date range, one row per day, category,
+     * product or payment method (by the key of groupBy), largest margin first (days in
+     * date order). Only the grouped key is set on the rows; the others are null or 0.
+     */
+    public List<DailySales> summarize(LocalDate from, LocalDate to, ReportEngine.Dimension groupBy) throws SQLException {
+        String key = switch (groupBy) {
+            case DAY -> "sale_date";
+            case CATEGORY -> "category_id";
+            case PRODUCT -> "product_id";
+            case PAYMENT_METHOD -> "payment_method";
+            default -> throw new IllegalArgumentException("daily_sales has no " + groupBy.getLabel().toLowerCase() + " key");
+        };
+        String sql = """
+            SELECT %1$s, SUM(order_lines) AS order_lines, SUM(quantity) AS quantity,
+                   SUM(revenue) AS revenue, SUM(cost_amount) AS cost_amount
+            FROM daily_sales
+            WHERE sale_date >= ? AND sale_date <= ?
+            GROUP BY %1$s
+            ORDER BY %2$s
+        """.formatted(key, groupBy == ReportEngine.Dimension.DAY ? key : "SUM(revenue) - SUM(cost_amount) DESC, " + key);
+        List<DailySales> rows = new ArrayList<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setDate(1, Date.valueOf(from));
+            stmt.setDate(2, Date.valueOf(to));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    DailySales row = new DailySales();
+                    switch (groupBy) {
+                        case DAY -> row.setSaleDate(rs.getDate("sale_date").toLocalDate());
+                        case CATEGORY -> row.setCategoryId(rs.getInt("category_id"));
+                        case PRODUCT -> row.setProductId(rs.getInt("product_id"));
+                        default -> row.setPaymentMethod(rs.getString("payment_method"));
+                    }
+                    row.setOrderLines(rs.getInt("order_lines"));
+                    row.setQuantity(rs.getInt("quantity"));
+                    row.setRevenue(rs.getBigDecimal("revenue"));
+                    row.setCostAmount(rs.getBigDecimal("cost_amount"));
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    // Backfill: recomputes the rollup for every day that has orders; returns the rows written
+    public int rebuild() throws SQLException {
+        return MonthlyRebuild.all("Daily sales rollup", "rows", this::rebuild);
+    }
+
+    // Recomputes an inclusive date range in one transaction; returns the rows written
+    public int rebuild(LocalDate from, LocalDate to) throws SQLException {
+        return MonthlyRebuild.range(from, to, this::rebuild);
+    }
+
+    // First start with the rollup table: fill it from the existing orders
+    public void backfillIfEmpty() throws SQLException {
+        if (MonthlyRebuild.needed("daily_sales", "order_items")) {
+            rebuild();
+        }
+    }
+
+    private int rebuild(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "DELETE FROM daily_sales WHERE sale_date >= ? AND sale_date <= ?")) {
+            stmt.setDate(1, Date.valueOf(from));
+            stmt.setDate(2, Date.valueOf(to));
+            stmt.executeUpdate();
+        }
+        String sql = "INSERT INTO daily_sales (sale_date, category_id, product_id, payment_method, "
+                + "order_lines, quantity, revenue, cost_amount) "
+                + String.format(ROLLUP, String.format(ORDER_LINES, "o.order_date >= ? AND o.order_date < ?"));
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(from.atStartOfDay()));
+            stmt.setTimestamp(2, Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+            return stmt.executeUpdate();
+        }
+    }
+
+    // Adds sign times the matched orders' lines to the rollup, one upsert per rollup key
+    private void apply(Connection conn, String condition, int id, int sign) throws SQLException {
+        String sql = String.format(ROLLUP, String.format(ORDER_LINES, condition));
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    DailySales delta = new DailySales(
+                            rs.getDate("sale_date").toLocalDate(),
+                            rs.getInt("category_id"),
+                            rs.getInt("product_id"),
+                            rs.getString("payment_method"),
+                            sign * rs.getInt("order_lines"),
+                            sign * rs.getInt("quantity"),
+                            rs.getBigDecimal("revenue").multiply(BigDecimal.valueOf(sign)),
+                            rs.getBigDecimal("cost_amount").multiply(BigDecimal.valueOf(sign)));
+                    upsert(conn, delta);
+                    unpublished.add(delta);
+                }
+            }
+        }
+
+        // Day -> category -> customers of the matched orders
+        Map<LocalDate, Map<Integer, List<Integer>>> customers = new TreeMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(String.format(CUSTOMERS, String.format(ORDER_LINES, condition)))) {
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    customers.computeIfAbsent(rs.getDate("sale_date").toLocalDate(), day -> new TreeMap<>())
+                            .computeIfAbsent(rs.getInt("category_id"), category -> new ArrayList<>())
+                            .add(rs.getInt("customer_id"));
+                }
+            }
+        }
+        for (Map.Entry<LocalDate, Map<Integer, List<Integer>>> day : customers.entrySet()) {
+            if (sign < 0) {
+                reachToRecompute.computeIfAbsent(day.getKey(), d -> new HashSet<>()).addAll(day.getValue().keySet());
+                continue;
+            }
+            Set<Integer> recomputed = reachToRecompute.getOrDefault(day.getKey(), Set.of());
+            for (Map.Entry<Integer, List<Integer>> category : day.getValue().entrySet()) {
+                // A sketch queued for recompute gets these customers from it
+                if (!recomputed.contains(category.getKey())) {
+                    reach.add(conn, day.getKey(), category.getKey(), category.getValue());
+                }
+            }
+        }
+
+        for (Map.Entry<LocalDate, Map<String, List<BigDecimal>>> day : orderValues.findValues(conn, condition, id).entrySet()) {
+            if (sign < 0) {
+                valuesToRecompute.computeIfAbsent(day.getKey(), d -> new HashSet<>()).addAll(day.getValue().keySet());
+                continue;
+            }
+            Set<String> recomputed = valuesToRecompute.getOrDefault(day.getKey(), Set.of());
+            for (Map.Entry<String, List<BigDecimal>> method : day.getValue().entrySet()) {
+                if (!recomputed.contains(method.getKey())) {
+                    orderValues.add(conn, day.getKey(), method.getKey(), method.getValue());
+                }
+            }
+        }
+    }
+
+    // Recomputes the reach sketches and order value digests that lost orders, from the orders as they are now
+    private void recomputeSketches(Connection conn) throws SQLException {
+        for (Map.Entry<LocalDate, Set<Integer>> day : reachToRecompute.entrySet()) {
+            for (int categoryId : day.getValue()) {
+                reach.recompute(conn, day.getKey(), categoryId);
+            }
+        }
+        reachToRecompute.clear();
+        for (Map.Entry<LocalDate, Set<String>> day : valuesToRecompute.entrySet()) {
+            for (String paymentMethod : day.getValue()) {
+                orderValues.recompute(conn, day.getKey(), paymentMethod);
+            }
+        }
+        valuesToRecompute.clear();
+    }
+
+    // Day -> categories of the product's rollup rows
+    private Map<LocalDate, Set<Integer>> productDays(Connection conn, int productId) throws SQLException {
+        Map<LocalDate, Set<Integer>> days = new TreeMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT DISTINCT sale_date, category_id FROM daily_sales WHERE product_id = ?")) {
+            stmt.setInt(1, productId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    days.computeIfAbsent(rs.getDate("sale_date").toLocalDate(), day -> new HashSet<>())
+                            .add(rs.getInt("category_id"));
+                }
+            }
+        }
+        return days;
+    }
+
+    // UPDATE first, INSERT if the key is new; a row whose lines are all gone is deleted
+    private void upsert(Connection conn, DailySales delta) throws SQLException {
+        String update = """
+            UPDATE daily_sales SET order_lines = order_lines + ?, quantity = quantity + ?, revenue = revenue + ?,
+                                   cost_amount = cost_amount + ?
+            WHERE sale_date = ? AND category_id = ? AND product_id = ? AND payment_method = ?
+        """;
+        if (executeKeyed(conn, update, delta) > 0) {
+            if (delta.getOrderLines() < 0) {
+                String delete = """
+                    DELETE FROM daily_sales
+                    WHERE order_lines <= 0 AND sale_date = ? AND category_id = ? AND product_id = ? AND payment_method = ?
+                """;
+                try (PreparedStatement stmt = conn.prepareStatement(delete)) {
+                    setKey(stmt, 1, delta);
+                    stmt.executeUpdate();
+                }
+            }
+            return;
+        }
+        if (delta.getOrderLines() <= 0) {
+            // Subtracting lines that were never added: the rollup predates them; rebuild() repairs it
+            return;
+        }
+        String insert = """
+            INSERT INTO daily_sales (order_lines, quantity, revenue, cost_amount,
+                                     sale_date, category_id, product_id, payment_method)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+        try {
+            executeKeyed(conn, insert, delta);
+        } catch (SQLIntegrityConstraintViolationException e) {
+            // Another client inserted the same key in the meantime
+            executeKeyed(conn, update, delta);
+        }
+    }
+
+    private int executeKeyed(Connection conn, String sql, DailySales delta) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, delta.getOrderLines());
+            stmt.setInt(2, delta.getQuantity());
+            stmt.setBigDecimal(3, delta.getRevenue());
+            stmt.setBigDecimal(4, delta.getCostAmount());
+            setKey(stmt, 5, delta);
+            return stmt.executeUpdate();
+        }
+    }
+
+    private static void setKey(PreparedStatement stmt, int index, DailySales key) throws SQLException {
+        stmt.setDate(index, Date.valueOf(key.getSaleDate()));
+        stmt.setInt(index + 1, key.getCategoryId());
+        stmt.setInt(index + 2, key.getProductId());
+        stmt.setString(index + 3, key.getPaymentMethod());
+    }
+}
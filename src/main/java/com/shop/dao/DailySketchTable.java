@@ -0,0 +1,117 @@
+package com.shop.dao;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * A table of serialized sketches, one per day and key (sale_date plus a key column), as
+ * kept by CustomerReachDAO and OrderValueDAO. Writes run in the caller's transaction on the
+ * connection passed in; a sketch is read under a row lock, changed and written back, so
+ * concurrent changes to the same sketch do not overwrite each other.
+ */
+final class DailySketchTable<K> {
+    private final String table;
+    private final String keyColumn;
+    private final String sketchColumn;
+    // Combines two serialized sketches, for a row another client inserted first
+    private final BinaryOperator<byte[]> merge;
+
+    DailySketchTable(String table, String keyColumn, String sketchColumn, BinaryOperator<byte[]> merge) {
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.sketchColumn = sketchColumn;
+        this.merge = merge;
+    }
+
+    // Changes a day's sketch for a key; change is given the stored sketch, null when there is none yet
+    void update(Connection conn, LocalDate day, K key, UnaryOperator<byte[]> change) throws SQLException {
+        byte[] stored = read(conn, day, key);
+        byte[] sketch = change.apply(stored);
+        if (stored == null) {
+            insert(conn, day, key, sketch);
+        } else if (!Arrays.equals(stored, sketch)) {
+            write(conn, day, key, sketch);
+        }
+    }
+
+    // Replaces a day's sketch for a key, or deletes it when sketch is null
+    void replace(Connection conn, LocalDate day, K key, byte[] sketch) throws SQLException {
+        if (sketch == null) {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "DELETE FROM " + table + " WHERE sale_date = ? AND " + keyColumn + " = ?")) {
+                stmt.setDate(1, Date.valueOf(day));
+                stmt.setObject(2, key);
+                stmt.executeUpdate();
+            }
+        } else if (!write(conn, day, key, sketch)) {
+            insert(conn, day, key, sketch);
+        }
+    }
+
+    // Replaces every sketch of an inclusive date range with the given ones; returns the sketches written
+    <S> int replaceRange(Connection conn, LocalDate from, LocalDate to, Map<LocalDate, ? extends Map<K, S>> sketches,
+                         Function<S, byte[]> toBytes) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "DELETE FROM " + table + " WHERE sale_date >= ? AND sale_date <= ?")) {
+            stmt.setDate(1, Date.valueOf(from));
+            stmt.setDate(2, Date.valueOf(to));
+            stmt.executeUpdate();
+        }
+        int written = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(insertSql())) {
+            for (Map.Entry<LocalDate, ? extends Map<K, S>> day : sketches.entrySet()) {
+                for (Map.Entry<K, S> sketch : day.getValue().entrySet()) {
+                    stmt.setDate(1, Date.valueOf(day.getKey()));
+                    stmt.setObject(2, sketch.getKey());
+                    stmt.setBytes(3, toBytes.apply(sketch.getValue()));
+                    stmt.addBatch();
+                    written++;
+                }
+            }
+            stmt.executeBatch();
+        }
+        return written;
+    }
+
+    private byte[] read(Connection conn, LocalDate day, K key) throws SQLException {
+        String sql = "SELECT " + sketchColumn + " FROM " + table + " WHERE sale_date = ? AND " + keyColumn + " = ? FOR UPDATE";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setDate(1, Date.valueOf(day));
+            stmt.setObject(2, key);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getBytes(1) : null;
+            }
+        }
+    }
+
+    private boolean write(Connection conn, LocalDate day, K key, byte[] sketch) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE " + table + " SET " + sketchColumn + " = ? WHERE sale_date = ? AND " + keyColumn + " = ?")) {
+            stmt.setBytes(1, sketch);
+            stmt.setDate(2, Date.valueOf(day));
+            stmt.setObject(3, key);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    private void insert(Connection conn, LocalDate day, K key, byte[] sketch) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(insertSql())) {
+            stmt.setDate(1, Date.valueOf(day));
+            stmt.setObject(2, key);
+            stmt.setBytes(3, sketch);
+            stmt.executeUpdate();
+        } catch (SQLIntegrityConstraintViolationException e) {
+            // Another client inserted the same sketch in the meantime: merge into theirs
+            write(conn, day, key, merge.apply(read(conn, day, key), sketch));
+        }
+    }
+
+    private String insertSql() {
+        return "INSERT INTO " + table + " (sale_date, " + keyColumn + ", " + sketchColumn + ") VALUES (?, ?, ?)";
+    }
+}
@@ -0,0 +1,88 @@
+package com.shop.dao;
+
+import com.shop.database.DatabaseConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Backfill of a table derived from the orders (the daily sales rollup and the daily
+ * sketches): every month with orders is recomputed in a transaction of its own, so a large
+ * history does not hold one long lock, on a connection of its own, so the application's
+ * writes on the shared connection are not drawn into it.
+ */
+final class MonthlyRebuild {
+
+    // Recomputes an inclusive date range inside the transaction open on conn; returns the rows written
+    @FunctionalInterface
+    interface RangeRebuild {
+        int rebuild(Connection conn, LocalDate from, LocalDate to) throws SQLException;
+    }
+
+    private MonthlyRebuild() {
+    }
+
+    // Every month from the first order to the last; what and unit name the table and its rows in the log
+    static int all(String what, String unit, RangeRebuild rebuild) throws SQLException {
+        DatabaseConfig dbConfig = DatabaseConfig.getInstance();
+        LocalDate first;
+        LocalDate last;
+        String sql = "SELECT MIN(order_date), MAX(order_date) FROM orders";
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            if (rs.getTimestamp(1) == null) {
+                return 0;
+            }
+            first = rs.getTimestamp(1).toLocalDateTime().toLocalDate().withDayOfMonth(1);
+            last = rs.getTimestamp(2).toLocalDateTime().toLocalDate();
+        }
+
+        long start = System.nanoTime();
+        int rows = 0;
+        try (Connection conn = dbConfig.openConnection()) {
+            for (LocalDate month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+                rows += inTransaction(conn, month, month.plusMonths(1).minusDays(1), rebuild);
+            }
+        }
+        System.out.printf("%s rebuilt: %d %s from %s to %s in %d ms%n",
+                what, rows, unit, first, last, (System.nanoTime() - start) / 1_000_000);
+        return rows;
+    }
+
+    // One inclusive date range in one transaction
+    static int range(LocalDate from, LocalDate to, RangeRebuild rebuild) throws SQLException {
+        try (Connection conn = DatabaseConfig.getInstance().openConnection()) {
+            return inTransaction(conn, from, to, rebuild);
+        }
+    }
+
+    // First start with the table: it is empty while the source table already has rows
+    static boolean needed(String table, String sourceTable) throws SQLException {
+        String sql = "SELECT (SELECT COUNT(*) FROM " + table + ") AS table_rows, "
+                + "(SELECT COUNT(*) FROM " + sourceTable + ") AS source_rows";
+        try (PreparedStatement stmt = DatabaseConfig.getInstance().getConnection().prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getLong("table_rows") == 0 && rs.getLong("source_rows") > 0;
+        }
+    }
+
+    private static int inTransaction(Connection conn, LocalDate from, LocalDate to, RangeRebuild rebuild)
+            throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            int rows = rebuild.rebuild(conn, from, to);
+            conn.commit();
+            return rows;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+}
@@ -1,53 +1,82 @@
 package com.shop.dao;
 
+import com.shop.cache.DashboardMetrics;
 import com.shop.database.DatabaseConfig;
 import com.shop.model.Order;
 import com.shop.model.OrderItem;
 import com.shop.model.Customer;
 
+import java.math.BigDecimal;
 import java.sql.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Data Access Object for Order CRUD operations
  */
 public class OrderDAO {
+    private static final AtomicReference<PreloadedOrders> preloadedRecent = new AtomicReference<>();
+
     private final DatabaseConfig dbConfig;
     private final OrderItemDAO orderItemDAO;
     private final CustomerDAO customerDAO;
+    private final DashboardMetrics metrics;
+    private final DailySalesDAO dailySales;
 
     public OrderDAO() {
         this.dbConfig = DatabaseConfig.getInstance();
         this.orderItemDAO = new OrderItemDAO();
         this.customerDAO = new CustomerDAO();
+        this.metrics = DashboardMetrics.getInstance();
+        this.dailySales = new DailySalesDAO();
     }
 
     // CREATE/UPDATE - Save order
     public Order save(Order order) throws SQLException {
         Connection conn = dbConfig.getConnection();
-        conn.setAutoCommit(false);
-        
+        metrics.beginWrite();
+        dailySales.begin();
         try {
+            // Inside the try, so a failure here still ends both writes
+            conn.setAutoCommit(false);
             Order savedOrder;
+            OrderTotals before = null;
             if (order.getOrderId() == 0) {
                 savedOrder = insert(order, conn);
             } else {
+                before = findTotals(order.getOrderId());
+                dailySales.removeOrder(conn, order.getOrderId());
                 savedOrder = update(order, conn);
             }
             
             // Save order items
             orderItemDAO.saveOrderItems(savedOrder.getOrderId(), order.getOrderItems(), conn);
+            dailySales.addOrder(conn, savedOrder.getOrderId());
             
             conn.commit();
+            dailySales.published();
+            metrics.orderChanged(before != null ? before.status : null, before != null ? before.total : null,
+                    savedOrder.getStatus(), savedOrder.getTotalAmount());
             return savedOrder;
-        } catch (SQLException e) {
-            conn.rollback();
+        } catch (SQLException | RuntimeException e) {
+            try {
+                conn.rollback();
+            } finally {
+                dailySales.discarded();
+            }
             throw e;
         } finally {
-            conn.setAutoCommit(true);
+            try {
+                conn.setAutoCommit(true);
+            } finally {
+                metrics.endWrite();
+            }
         }
     }
 
@@ -151,6 +180,98 @@ public class OrderDAO {
         return executeOrderQuery(sql);
     }
 
+    // READ - Orders placed in the last orders.recent.days days, newest first (the order screen's list)
+    public List<Order> findRecent() throws SQLException {
+        String sql = """
+            SELECT o.*, c.first_name, c.last_name, c.email
+            FROM orders o 
+            LEFT JOIN customers c ON o.customer_id = c.customer_id 
+            WHERE o.order_date >= ?
+            ORDER BY o.order_date DESC
+        """;
+
+        int days = dbConfig.getIntProperty("orders.recent.days", 90);
+        List<Order> orders = new ArrayList<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(LocalDate.now().minusDays(days).atStartOfDay()));
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                orders.add(mapResultSetToOrder(rs));
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * Reads findRecent ahead of the order screen (from the cache warm-up), to be taken by its
+     * first load. Writes made after readAt are not invalidated here: the taker refreshes from
+     * readAt, the same as when a cached screen is shown again.
+     */
+    public void preloadRecent() throws SQLException {
+        LocalDateTime readAt = LocalDateTime.now();
+        preloadedRecent.set(new PreloadedOrders(findRecent(), readAt));
+    }
+
+    // The preloaded recent orders, once; empty if none were preloaded or they were already taken
+    public static Optional<PreloadedOrders> takePreloadedRecent() {
+        return Optional.ofNullable(preloadedRecent.getAndSet(null));
+    }
+
+    public static final class PreloadedOrders {
+        private final List<Order> orders;
+        private final LocalDateTime readAt;
+
+        PreloadedOrders(List<Order> orders, LocalDateTime readAt) {
+            this.orders = orders;
+            this.readAt = readAt;
+        }
+
+        public List<Order> getOrders() {
+            return orders;
+        }
+
+        // Taken before the query ran
+        public LocalDateTime getReadAt() {
+            return readAt;
+        }
+    }
+
+    // READ - Find orders changed since a point in time (incremental refresh)
+    public List<Order> findUpdatedSince(LocalDateTime since) throws SQLException {
+        String sql = """
+            SELECT o.*, c.first_name, c.last_name, c.email
+            FROM orders o 
+            LEFT JOIN customers c ON o.customer_id = c.customer_id 
+            WHERE o.updated_at >= ?
+        """;
+
+        List<Order> orders = new ArrayList<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(since));
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                orders.add(mapResultSetToOrder(rs));
+            }
+        }
+        return orders;
+    }
+
+    // Ids only, so a refreshed view can drop rows deleted since it loaded
+    public Set<Integer> findAllIds() throws SQLException {
+        Set<Integer> ids = new HashSet<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement("SELECT order_id FROM orders")) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+        }
+        return ids;
+    }
+
     // READ - Find orders by customer
     public List<Order> findByCustomerId(int customerId) throws SQLException {
         String sql = """
@@ -173,6 +294,50 @@ public class OrderDAO {
         return orders;
     }
 
+    /**
+     * READ - Orders of the customer with this email (anything containing '@') or phone number,
+     * placed between the two dates inclusive; either date may be null for an open end.
+     * One query: the contact resolves through the unique email or idx_customers_phone index,
+     * and each matching customer's orders are one range scan of idx_orders_customer_date.
+     */
+    public List<Order> findByCustomerContact(String contact, LocalDate fromDate, LocalDate toDate) throws SQLException {
+        if (contact == null || contact.isBlank()) {
+            return new ArrayList<>();
+        }
+        String value = contact.trim();
+        StringBuilder sql = new StringBuilder("""
+            SELECT o.*, c.first_name, c.last_name, c.email
+            FROM customers c
+            JOIN orders o ON o.customer_id = c.customer_id
+        """);
+        sql.append(value.contains("@") ? " WHERE c.email = ?" : " WHERE c.phone_number = ?");
+        if (fromDate != null) {
+            sql.append(" AND o.order_date >= ?");
+        }
+        if (toDate != null) {
+            sql.append(" AND o.order_date < ?");
+        }
+        sql.append(" ORDER BY o.order_date DESC");
+
+        List<Order> orders = new ArrayList<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql.toString())) {
+            int index = 1;
+            stmt.setString(index++, value);
+            if (fromDate != null) {
+                stmt.setTimestamp(index++, Timestamp.valueOf(fromDate.atStartOfDay()));
+            }
+            if (toDate != null) {
+                stmt.setTimestamp(index, Timestamp.valueOf(toDate.plusDays(1).atStartOfDay()));
+            }
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                orders.add(mapResultSetToOrder(rs));
+            }
+        }
+        return orders;
+    }
+
     // READ - Find orders by status
     public List<Order> findByStatus(Order.OrderStatus status) throws SQLException {
         String sql = """
@@ -222,11 +387,23 @@ public class OrderDAO {
     public boolean updateStatus(int orderId, Order.OrderStatus status) throws SQLException {
         String sql = "UPDATE orders SET status = ?, updated_at = ? WHERE order_id = ?";
 
-        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
-            stmt.setString(1, status.name());
-            stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
-            stmt.setInt(3, orderId);
-            return stmt.executeUpdate() > 0;
+        metrics.beginWrite();
+        try {
+            OrderTotals before = findTotals(orderId);
+            boolean updated = dailySales.updateOrders(List.of(orderId), conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setString(1, status.name());
+                    stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+                    stmt.setInt(3, orderId);
+                    return stmt.executeUpdate() > 0;
+                }
+            });
+            if (updated && before != null) {
+                metrics.orderChanged(before.status, before.total, status, before.total);
+            }
+            return updated;
+        } finally {
+            metrics.endWrite();
         }
     }
 
@@ -234,9 +411,45 @@ public class OrderDAO {
     public boolean delete(int orderId) throws SQLException {
         String sql = "DELETE FROM orders WHERE order_id = ?";
 
+        metrics.beginWrite();
+        try {
+            OrderTotals before = findTotals(orderId);
+            boolean deleted = dailySales.updateOrders(List.of(orderId), conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setInt(1, orderId);
+                    return stmt.executeUpdate() > 0;
+                }
+            });
+            if (deleted && before != null) {
+                metrics.orderChanged(before.status, before.total, null, null);
+            }
+            return deleted;
+        } finally {
+            metrics.endWrite();
+        }
+    }
+
+    // Status and total of an order before a write, or null if it does not exist
+    private OrderTotals findTotals(int orderId) throws SQLException {
+        String sql = "SELECT status, total_amount FROM orders WHERE order_id = ?";
         try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
             stmt.setInt(1, orderId);
-            return stmt.executeUpdate() > 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                return new OrderTotals(Order.OrderStatus.valueOf(rs.getString("status")), rs.getBigDecimal("total_amount"));
+            }
+        }
+    }
+
+    private static final class OrderTotals {
+        final Order.OrderStatus status;
+        final BigDecimal total;
+
+        OrderTotals(Order.OrderStatus status, BigDecimal total) {
+            this.status = status;
+            this.total = total;
         }
     }
 
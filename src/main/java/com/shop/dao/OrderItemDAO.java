@@ -13,10 +13,15 @@ import java.util.Optional;
  * Data Access Object for OrderItem CRUD operations
  */
 public class OrderItemDAO {
+    // The item's unit cost, or when it has none its product's current cost (parameters: cost, product id)
+    private static final String UNIT_COST = "COALESCE(?, (SELECT cost_price FROM products WHERE product_id = ?))";
+
     private final DatabaseConfig dbConfig;
+    private final DailySalesDAO dailySales;
 
     public OrderItemDAO() {
         this.dbConfig = DatabaseConfig.getInstance();
+        this.dailySales = new DailySalesDAO();
     }
 
     // CREATE - Insert new order item
@@ -30,56 +35,64 @@ public class OrderItemDAO {
 
     private OrderItem insert(OrderItem orderItem) throws SQLException {
         String sql = """
-            INSERT INTO order_items (order_id, product_id, quantity, unit_price, line_total, created_at)
-            VALUES (?, ?, ?, ?, ?, ?)
-        """;
-
-        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setInt(1, orderItem.getOrderId());
-            stmt.setInt(2, orderItem.getProductId());
-            stmt.setInt(3, orderItem.getQuantity());
-            stmt.setBigDecimal(4, orderItem.getUnitPrice());
-            stmt.setBigDecimal(5, orderItem.getLineTotal());
-            stmt.setTimestamp(6, Timestamp.valueOf(orderItem.getCreatedAt()));
-
-            int affectedRows = stmt.executeUpdate();
-            if (affectedRows == 0) {
-                throw new SQLException("Creating order item failed, no rows affected.");
-            }
+            INSERT INTO order_items (order_id, product_id, quantity, unit_price, line_total, created_at, unit_cost)
+            VALUES (?, ?, ?, ?, ?, ?, %s)
+        """.formatted(UNIT_COST);
+
+        return dailySales.updateOrders(List.of(orderItem.getOrderId()), conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                stmt.setInt(1, orderItem.getOrderId());
+                stmt.setInt(2, orderItem.getProductId());
+                stmt.setInt(3, orderItem.getQuantity());
+                stmt.setBigDecimal(4, orderItem.getUnitPrice());
+                stmt.setBigDecimal(5, orderItem.getLineTotal());
+                stmt.setTimestamp(6, Timestamp.valueOf(orderItem.getCreatedAt()));
+                setUnitCost(stmt, 7, orderItem);
+
+                int affectedRows = stmt.executeUpdate();
+                if (affectedRows == 0) {
+                    throw new SQLException("Creating order item failed, no rows affected.");
+                }
 
-            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    orderItem.setOrderItemId(generatedKeys.getInt(1));
-                } else {
-                    throw new SQLException("Creating order item failed, no ID obtained.");
+                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        orderItem.setOrderItemId(generatedKeys.getInt(1));
+                    } else {
+                        throw new SQLException("Creating order item failed, no ID obtained.");
+                    }
                 }
             }
-        }
-        return orderItem;
+            return orderItem;
+        });
     }
 
     // UPDATE - Update existing order item
     private OrderItem update(OrderItem orderItem) throws SQLException {
         String sql = """
             UPDATE order_items SET order_id = ?, product_id = ?, quantity = ?, 
-                                  unit_price = ?, line_total = ?
+                                  unit_price = ?, line_total = ?, unit_cost = %s
             WHERE order_item_id = ?
-        """;
-
-        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
-            stmt.setInt(1, orderItem.getOrderId());
-            stmt.setInt(2, orderItem.getProductId());
-            stmt.setInt(3, orderItem.getQuantity());
-            stmt.setBigDecimal(4, orderItem.getUnitPrice());
-            stmt.setBigDecimal(5, orderItem.getLineTotal());
-            stmt.setInt(6, orderItem.getOrderItemId());
-
-            int affectedRows = stmt.executeUpdate();
-            if (affectedRows == 0) {
-                throw new SQLException("Updating order item failed, no rows affected.");
+        """.formatted(UNIT_COST);
+
+        // The item may move to another order; both orders' rollup rows change
+        List<Integer> orderIds = List.of(findOrderId(orderItem.getOrderItemId()), orderItem.getOrderId());
+        return dailySales.updateOrders(orderIds, conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, orderItem.getOrderId());
+                stmt.setInt(2, orderItem.getProductId());
+                stmt.setInt(3, orderItem.getQuantity());
+                stmt.setBigDecimal(4, orderItem.getUnitPrice());
+                stmt.setBigDecimal(5, orderItem.getLineTotal());
+                setUnitCost(stmt, 6, orderItem);
+                stmt.setInt(8, orderItem.getOrderItemId());
+
+                int affectedRows = stmt.executeUpdate();
+                if (affectedRows == 0) {
+                    throw new SQLException("Updating order item failed, no rows affected.");
+                }
             }
-        }
-        return orderItem;
+            return orderItem;
+        });
     }
 
     // READ - Find order item by ID
@@ -131,9 +144,9 @@ public class OrderItemDAO {
         
         // Then insert new order items
         String sql = """
-            INSERT INTO order_items (order_id, product_id, quantity, unit_price, line_total, created_at)
-            VALUES (?, ?, ?, ?, ?, ?)
-        """;
+            INSERT INTO order_items (order_id, product_id, quantity, unit_price, line_total, created_at, unit_cost)
+            VALUES (?, ?, ?, ?, ?, ?, %s)
+        """.formatted(UNIT_COST);
 
         try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             for (OrderItem item : orderItems) {
@@ -145,6 +158,7 @@ public class OrderItemDAO {
                 stmt.setBigDecimal(4, item.getUnitPrice());
                 stmt.setBigDecimal(5, item.getLineTotal());
                 stmt.setTimestamp(6, Timestamp.valueOf(item.getCreatedAt()));
+                setUnitCost(stmt, 7, item);
                 
                 stmt.addBatch();
             }
@@ -157,15 +171,17 @@ public class OrderItemDAO {
     public boolean delete(int orderItemId) throws SQLException {
         String sql = "DELETE FROM order_items WHERE order_item_id = ?";
 
-        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
-            stmt.setInt(1, orderItemId);
-            return stmt.executeUpdate() > 0;
-        }
+        return dailySales.updateOrders(List.of(findOrderId(orderItemId)), conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, orderItemId);
+                return stmt.executeUpdate() > 0;
+            }
+        });
     }
 
     // DELETE - Delete all order items for an order
     public boolean deleteByOrderId(int orderId) throws SQLException {
-        return deleteByOrderId(orderId, dbConfig.getConnection());
+        return dailySales.updateOrders(List.of(orderId), conn -> deleteByOrderId(orderId, conn));
     }
 
     private boolean deleteByOrderId(int orderId, Connection conn) throws SQLException {
@@ -181,14 +197,33 @@ public class OrderItemDAO {
     public boolean updateQuantity(int orderItemId, int newQuantity) throws SQLException {
         String sql = "UPDATE order_items SET quantity = ?, line_total = unit_price * ? WHERE order_item_id = ?";
 
-        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
-            stmt.setInt(1, newQuantity);
-            stmt.setInt(2, newQuantity);
-            stmt.setInt(3, orderItemId);
-            return stmt.executeUpdate() > 0;
+        return dailySales.updateOrders(List.of(findOrderId(orderItemId)), conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, newQuantity);
+                stmt.setInt(2, newQuantity);
+                stmt.setInt(3, orderItemId);
+                return stmt.executeUpdate() > 0;
+            }
+        });
+    }
+
+    // Order of an existing item, or 0 if there is no such item
+    private int findOrderId(int orderItemId) throws SQLException {
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(
+                "SELECT order_id FROM order_items WHERE order_item_id = ?")) {
+            stmt.setInt(1, orderItemId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
         }
     }
 
+    // Binds UNIT_COST: the item's cost, else its product's current cost
+    private static void setUnitCost(PreparedStatement stmt, int index, OrderItem orderItem) throws SQLException {
+        stmt.setBigDecimal(index, orderItem.getUnitCost());
+        stmt.setInt(index + 1, orderItem.getProductId());
+    }
+
     // Map ResultSet to OrderItem object
     private OrderItem mapResultSetToOrderItem(ResultSet rs) throws SQLException {
         OrderItem orderItem = new OrderItem(
@@ -210,6 +245,7 @@ public class OrderItemDAO {
             product.setSku(rs.getString("sku"));
             orderItem.setProduct(product);
         }
+        orderItem.setUnitCost(rs.getBigDecimal("unit_cost"));
 
         return orderItem;
     }
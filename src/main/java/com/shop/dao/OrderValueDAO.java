@@ -0,0 +1,172 @@
+package com.shop.dao;
+
+import com.shop.database.DatabaseConfig;
+import com.shop.report.TDigest;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Data Access Object for daily_order_values: a t-digest of the order totals of each day, per
+ * payment method, under the daily_sales rules (order date, cancelled and refunded orders
+ * left out, the earliest completed payment's method or UNPAID). The median, p90 or p99 order
+ * value over any range of days comes from their merged digests instead of sorting the orders.
+ * A digest cannot take a value back out, so DailySalesDAO adds orders as they come in and
+ * has the digests of days and methods that lost an order recomputed.
+ */
+public class OrderValueDAO {
+    private final DatabaseConfig dbConfig;
+    private final DailySketchTable<String> digests = new DailySketchTable<>(
+            "daily_order_values", "payment_method", "digest", (stored, added) -> {
+                TDigest digest = TDigest.fromBytes(stored);
+                digest.merge(TDigest.fromBytes(added));
+                return digest.toBytes();
+            });
+
+    // One row per counted order matched by the %s condition, with its day and payment method
+    private static final String ORDER_VALUES = """
+        SELECT CAST(o.order_date AS DATE) AS sale_date,
+               COALESCE((SELECT py.payment_method FROM payments py
+                         WHERE py.order_id = o.order_id AND py.status = 'COMPLETED'
+                         ORDER BY py.payment_date, py.payment_id
+                         LIMIT 1), 'UNPAID') AS payment_method,
+               o.total_amount
+        FROM orders o
+        WHERE o.status NOT IN ('CANCELLED', 'REFUNDED') AND %s
+    """;
+
+    private static final String DAY_RANGE = "o.order_date >= ? AND o.order_date < ?";
+
+    public OrderValueDAO() {
+        this.dbConfig = DatabaseConfig.getInstance();
+    }
+
+    // Day -> payment method -> totals of the counted orders matched by condition, whose one parameter is id
+    public Map<LocalDate, Map<String, List<BigDecimal>>> findValues(Connection conn, String condition, int id)
+            throws SQLException {
+        Map<LocalDate, Map<String, List<BigDecimal>>> values = new TreeMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(String.format(ORDER_VALUES, condition))) {
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    values.computeIfAbsent(rs.getDate("sale_date").toLocalDate(), day -> new TreeMap<>())
+                            .computeIfAbsent(rs.getString("payment_method"), method -> new ArrayList<>())
+                            .add(rs.getBigDecimal("total_amount"));
+                }
+            }
+        }
+        return values;
+    }
+
+    // Adds order totals to a day's digest for a payment method
+    public void add(Connection conn, LocalDate day, String paymentMethod, Collection<BigDecimal> totals) throws SQLException {
+        digests.update(conn, day, paymentMethod, stored -> {
+            TDigest digest = TDigest.fromBytes(stored);
+            for (BigDecimal total : totals) {
+                digest.add(toDouble(total));
+            }
+            return digest.toBytes();
+        });
+    }
+
+    // Rebuilds a day's digest for a payment method from the orders, e.g. after a cancellation
+    public void recompute(Connection conn, LocalDate day, String paymentMethod) throws SQLException {
+        TDigest digest = new TDigest();
+        String sql = "SELECT * FROM (" + String.format(ORDER_VALUES, DAY_RANGE) + ") order_values WHERE payment_method = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(day.atStartOfDay()));
+            stmt.setTimestamp(2, Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+            stmt.setString(3, paymentMethod);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    digest.add(toDouble(rs.getBigDecimal("total_amount")));
+                }
+            }
+        }
+        digests.replace(conn, day, paymentMethod, digest.isEmpty() ? null : digest.toBytes());
+    }
+
+    // READ - Merged digest over an inclusive date range, for one payment method or (null) all
+    public TDigest distribution(LocalDate from, LocalDate to, String paymentMethod) throws SQLException {
+        String sql = "SELECT digest FROM daily_order_values WHERE sale_date >= ? AND sale_date <= ?"
+                + (paymentMethod != null ? " AND payment_method = ?" : "");
+        TDigest merged = new TDigest();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setDate(1, Date.valueOf(from));
+            stmt.setDate(2, Date.valueOf(to));
+            if (paymentMethod != null) {
+                stmt.setString(3, paymentMethod);
+            }
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    merged.merge(TDigest.fromBytes(rs.getBytes("digest")));
+                }
+            }
+        }
+        return merged;
+    }
+
+    // READ - Merged digest per payment method over an inclusive date range
+    public Map<String, TDigest> distributionByPaymentMethod(LocalDate from, LocalDate to) throws SQLException {
+        String sql = "SELECT payment_method, digest FROM daily_order_values WHERE sale_date >= ? AND sale_date <= ?";
+        Map<String, TDigest> byMethod = new TreeMap<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setDate(1, Date.valueOf(from));
+            stmt.setDate(2, Date.valueOf(to));
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    byMethod.computeIfAbsent(rs.getString("payment_method"), method -> new TDigest())
+                            .merge(TDigest.fromBytes(rs.getBytes("digest")));
+                }
+            }
+        }
+        return byMethod;
+    }
+
+    // Backfill: recomputes the digests for every day that has orders; returns the digests written
+    public int rebuild() throws SQLException {
+        return MonthlyRebuild.all("Order value digests", "digests", this::rebuild);
+    }
+
+    // Recomputes an inclusive date range in one transaction; returns the digests written
+    public int rebuild(LocalDate from, LocalDate to) throws SQLException {
+        return MonthlyRebuild.range(from, to, this::rebuild);
+    }
+
+    // First start with the digest table: fill it from the existing orders
+    public void backfillIfEmpty() throws SQLException {
+        if (MonthlyRebuild.needed("daily_order_values", "orders")) {
+            rebuild();
+        }
+    }
+
+    private int rebuild(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        Map<LocalDate, Map<String, TDigest>> days = new TreeMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(String.format(ORDER_VALUES, DAY_RANGE))) {
+            stmt.setTimestamp(1, Timestamp.valueOf(from.atStartOfDay()));
+            stmt.setTimestamp(2, Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    days.computeIfAbsent(rs.getDate("sale_date").toLocalDate(), day -> new HashMap<>())
+                            .computeIfAbsent(rs.getString("payment_method"), method -> new TDigest())
+                            .add(toDouble(rs.getBigDecimal("total_amount")));
+                }
+            }
+        }
+        return digests.replaceRange(conn, from, to, days, TDigest::toBytes);
+    }
+
+    private static double toDouble(BigDecimal amount) {
+        return amount != null ? amount.doubleValue() : 0;
+    }
+}
@@ -3,21 +3,31 @@ package com.shop.dao;
 import com.shop.database.DatabaseConfig;
 import com.shop.model.Payment;
 import com.shop.model.Order;
+import com.shop.search.PaymentReferenceIndex;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Data Access Object for Payment CRUD operations
  */
 public class PaymentDAO {
     private final DatabaseConfig dbConfig;
+    private final PaymentReferenceIndex referenceIndex;
+    private final DailySalesDAO dailySales;
 
     public PaymentDAO() {
         this.dbConfig = DatabaseConfig.getInstance();
+        this.referenceIndex = PaymentReferenceIndex.getInstance();
+        this.dailySales = new DailySalesDAO();
     }
 
     // CREATE/UPDATE - Save payment
@@ -37,31 +47,36 @@ public class PaymentDAO {
             VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
         """;
 
-        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setInt(1, payment.getOrderId());
-            stmt.setString(2, payment.getPaymentMethod().name());
-            stmt.setString(3, payment.getStatus().name());
-            stmt.setBigDecimal(4, payment.getAmount());
-            stmt.setString(5, payment.getTransactionId());
-            stmt.setString(6, payment.getReference());
-            stmt.setString(7, payment.getNotes());
-            stmt.setTimestamp(8, Timestamp.valueOf(payment.getPaymentDate()));
-            stmt.setTimestamp(9, Timestamp.valueOf(payment.getCreatedAt()));
-            stmt.setTimestamp(10, Timestamp.valueOf(payment.getUpdatedAt()));
-
-            int affectedRows = stmt.executeUpdate();
-            if (affectedRows == 0) {
-                throw new SQLException("Creating payment failed, no rows affected.");
-            }
+        // A completed payment can set the method the order's sales are rolled up under
+        dailySales.updateOrders(List.of(payment.getOrderId()), conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                stmt.setInt(1, payment.getOrderId());
+                stmt.setString(2, payment.getPaymentMethod().name());
+                stmt.setString(3, payment.getStatus().name());
+                stmt.setBigDecimal(4, payment.getAmount());
+                stmt.setString(5, payment.getTransactionId());
+                stmt.setString(6, payment.getReference());
+                stmt.setString(7, payment.getNotes());
+                stmt.setTimestamp(8, Timestamp.valueOf(payment.getPaymentDate()));
+                stmt.setTimestamp(9, Timestamp.valueOf(payment.getCreatedAt()));
+                stmt.setTimestamp(10, Timestamp.valueOf(payment.getUpdatedAt()));
+
+                int affectedRows = stmt.executeUpdate();
+                if (affectedRows == 0) {
+                    throw new SQLException("Creating payment failed, no rows affected.");
+                }
 
-            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    payment.setPaymentId(generatedKeys.getInt(1));
-                } else {
-                    throw new SQLException("Creating payment failed, no ID obtained.");
+                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        payment.setPaymentId(generatedKeys.getInt(1));
+                    } else {
+                        throw new SQLException("Creating payment failed, no ID obtained.");
+                    }
                 }
             }
-        }
+            return null;
+        });
+        referenceIndex.put(payment);
         return payment;
     }
 
@@ -74,23 +89,29 @@ public class PaymentDAO {
             WHERE payment_id = ?
         """;
 
-        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
-            stmt.setInt(1, payment.getOrderId());
-            stmt.setString(2, payment.getPaymentMethod().name());
-            stmt.setString(3, payment.getStatus().name());
-            stmt.setBigDecimal(4, payment.getAmount());
-            stmt.setString(5, payment.getTransactionId());
-            stmt.setString(6, payment.getReference());
-            stmt.setString(7, payment.getNotes());
-            stmt.setTimestamp(8, Timestamp.valueOf(payment.getPaymentDate()));
-            stmt.setTimestamp(9, Timestamp.valueOf(LocalDateTime.now()));
-            stmt.setInt(10, payment.getPaymentId());
-
-            int affectedRows = stmt.executeUpdate();
-            if (affectedRows == 0) {
-                throw new SQLException("Updating payment failed, no rows affected.");
+        // Moving a payment to another order changes the method of both orders
+        List<Integer> orderIds = List.of(findOrderId(payment.getPaymentId()), payment.getOrderId());
+        dailySales.updateOrders(orderIds, conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, payment.getOrderId());
+                stmt.setString(2, payment.getPaymentMethod().name());
+                stmt.setString(3, payment.getStatus().name());
+                stmt.setBigDecimal(4, payment.getAmount());
+                stmt.setString(5, payment.getTransactionId());
+                stmt.setString(6, payment.getReference());
+                stmt.setString(7, payment.getNotes());
+                stmt.setTimestamp(8, Timestamp.valueOf(payment.getPaymentDate()));
+                stmt.setTimestamp(9, Timestamp.valueOf(LocalDateTime.now()));
+                stmt.setInt(10, payment.getPaymentId());
+
+                int affectedRows = stmt.executeUpdate();
+                if (affectedRows == 0) {
+                    throw new SQLException("Updating payment failed, no rows affected.");
+                }
             }
-        }
+            return null;
+        });
+        referenceIndex.put(payment);
         return payment;
     }
 
@@ -126,6 +147,41 @@ public class PaymentDAO {
         return executePaymentQuery(sql);
     }
 
+    // READ - Find payments changed since a point in time (incremental refresh)
+    public List<Payment> findUpdatedSince(LocalDateTime since) throws SQLException {
+        String sql = """
+            SELECT p.*, o.order_date, o.total_amount as order_total
+            FROM payments p
+            LEFT JOIN orders o ON p.order_id = o.order_id
+            WHERE p.updated_at >= ?
+        """;
+
+        List<Payment> payments = new ArrayList<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(since));
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                payments.add(mapResultSetToPayment(rs));
+            }
+        }
+        return payments;
+    }
+
+    // Ids only, so a refreshed view can drop rows deleted since it loaded
+    public Set<Integer> findAllIds() throws SQLException {
+        Set<Integer> ids = new HashSet<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement("SELECT payment_id FROM payments")) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+        }
+        return ids;
+    }
+
     // READ - Find payments by order ID
     public List<Payment> findByOrderId(int orderId) throws SQLException {
         String sql = """
@@ -235,16 +291,96 @@ public class PaymentDAO {
         return Optional.empty();
     }
 
+    /**
+     * READ - Up to `limit` payments whose transaction id or reference starts with the prefix,
+     * for reconciling against a processor's truncated ids. Each column's match is a range
+     * scan of its own index; the two are combined with UNION rather than OR so neither
+     * side falls back to a table scan.
+     */
+    public List<Payment> findByReferencePrefix(String prefix, int limit) throws SQLException {
+        if (prefix == null || prefix.isBlank()) {
+            return new ArrayList<>();
+        }
+        if (referenceIndex.isEnabled()) {
+            referenceIndex.ensureLoaded();
+            return findByIds(referenceIndex.search(prefix, limit));
+        }
+
+        String sql = """
+            SELECT p.*, o.order_date, o.total_amount as order_total
+            FROM (
+                SELECT payment_id FROM payments WHERE transaction_id LIKE ? ESCAPE '!'
+                UNION
+                SELECT payment_id FROM payments WHERE reference LIKE ? ESCAPE '!'
+            ) m
+            JOIN payments p ON p.payment_id = m.payment_id
+            LEFT JOIN orders o ON p.order_id = o.order_id
+            ORDER BY p.payment_date DESC
+        """;
+
+        long start = System.nanoTime();
+        String pattern = escapeLike(prefix.trim()) + "%";
+        List<Payment> payments = new ArrayList<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setString(1, pattern);
+            stmt.setString(2, pattern);
+            stmt.setMaxRows(limit);
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                payments.add(mapResultSetToPayment(rs));
+            }
+        }
+        referenceIndex.getStats().recordMiss(System.nanoTime() - start);
+        return payments;
+    }
+
+    // READ - Payments in the order of the given ids; ids that no longer exist are skipped
+    public List<Payment> findByIds(List<Integer> paymentIds) throws SQLException {
+        Map<Integer, Payment> found = new HashMap<>();
+        for (int from = 0; from < paymentIds.size(); from += 500) {
+            List<Integer> chunk = paymentIds.subList(from, Math.min(paymentIds.size(), from + 500));
+            String sql = """
+                SELECT p.*, o.order_date, o.total_amount as order_total
+                FROM payments p
+                LEFT JOIN orders o ON p.order_id = o.order_id
+                WHERE p.payment_id IN (""" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+
+            try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    stmt.setInt(i + 1, chunk.get(i));
+                }
+                ResultSet rs = stmt.executeQuery();
+
+                while (rs.next()) {
+                    Payment payment = mapResultSetToPayment(rs);
+                    found.put(payment.getPaymentId(), payment);
+                }
+            }
+        }
+
+        List<Payment> payments = new ArrayList<>(found.size());
+        for (int paymentId : paymentIds) {
+            Payment payment = found.get(paymentId);
+            if (payment != null) {
+                payments.add(payment);
+            }
+        }
+        return payments;
+    }
+
     // UPDATE - Update payment status
     public boolean updateStatus(int paymentId, Payment.PaymentStatus status) throws SQLException {
         String sql = "UPDATE payments SET status = ?, updated_at = ? WHERE payment_id = ?";
 
-        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
-            stmt.setString(1, status.name());
-            stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
-            stmt.setInt(3, paymentId);
-            return stmt.executeUpdate() > 0;
-        }
+        return dailySales.updateOrders(List.of(findOrderId(paymentId)), conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, status.name());
+                stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+                stmt.setInt(3, paymentId);
+                return stmt.executeUpdate() > 0;
+            }
+        });
     }
 
     // UPDATE - Set transaction ID (when payment is processed)
@@ -255,7 +391,9 @@ public class PaymentDAO {
             stmt.setString(1, transactionId);
             stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setInt(3, paymentId);
-            return stmt.executeUpdate() > 0;
+            boolean updated = stmt.executeUpdate() > 0;
+            referenceIndex.setTransactionId(paymentId, transactionId);
+            return updated;
         }
     }
 
@@ -263,9 +401,24 @@ public class PaymentDAO {
     public boolean delete(int paymentId) throws SQLException {
         String sql = "DELETE FROM payments WHERE payment_id = ?";
 
-        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+        boolean deleted = dailySales.updateOrders(List.of(findOrderId(paymentId)), conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, paymentId);
+                return stmt.executeUpdate() > 0;
+            }
+        });
+        referenceIndex.remove(paymentId);
+        return deleted;
+    }
+
+    // Order of an existing payment, or 0 if there is no such payment
+    private int findOrderId(int paymentId) throws SQLException {
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(
+                "SELECT order_id FROM payments WHERE payment_id = ?")) {
             stmt.setInt(1, paymentId);
-            return stmt.executeUpdate() > 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
         }
     }
 
@@ -284,6 +437,11 @@ public class PaymentDAO {
         return false;
     }
 
+    // LIKE pattern text with its wildcards taken literally
+    private static String escapeLike(String text) {
+        return text.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
     // Helper method to execute payment queries
     private List<Payment> executePaymentQuery(String sql) throws SQLException {
         List<Payment> payments = new ArrayList<>();
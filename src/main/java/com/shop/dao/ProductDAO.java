@@ -1,30 +1,73 @@
 package com.shop.dao;
 
+import com.shop.cache.BloomFilter;
+import com.shop.cache.CacheStats;
+import com.shop.cache.CacheStatsRegistry;
+import com.shop.cache.CachedQuery;
+import com.shop.cache.DashboardMetrics;
+import com.shop.cache.ProductCatalogSnapshot;
+import com.shop.cache.ScanLookupService;
+import com.shop.cache.ScanLookupService.ScanRecord;
 import com.shop.database.DatabaseConfig;
 import com.shop.model.Product;
 import com.shop.model.Category;
+import com.shop.search.FullTextIndex;
+import com.shop.search.ProductFacetIndex;
+import com.shop.search.ProductSearchIndex;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.StringJoiner;
 
 /**
  * Data Access Object for Product operations
  */
 public class ProductDAO {
+    // Shared by all DAO instances; answers most "SKU taken?" checks without a query
+    private static volatile BloomFilter skuFilter;
+    private static final CacheStats skuFilterStats = CacheStatsRegistry.getInstance().register(
+            "products.skuFilter", () -> skuFilter != null ? skuFilter.getInsertions() : 0, ProductDAO::resetSkuFilter);
+    private static final CachedQuery<Product> activeProducts =
+            new CachedQuery<>("products.active", () -> new ProductDAO().queryActive());
+
     private final DatabaseConfig dbConfig;
+    private final ProductCatalogSnapshot catalogSnapshot;
+    private final ProductSearchIndex searchIndex;
+    private final ScanLookupService scanLookup;
+    private final ProductFacetIndex facetIndex;
+    private final FullTextIndex fullTextIndex;
+    private final DashboardMetrics metrics;
+    private final DailySalesDAO dailySales;
 
     public ProductDAO() {
         this.dbConfig = DatabaseConfig.getInstance();
+        this.catalogSnapshot = ProductCatalogSnapshot.getInstance();
+        this.searchIndex = ProductSearchIndex.getInstance();
+        this.scanLookup = ScanLookupService.getInstance();
+        this.facetIndex = ProductFacetIndex.getInstance();
+        this.fullTextIndex = FullTextIndex.getInstance();
+        this.metrics = DashboardMetrics.getInstance();
+        this.dailySales = new DailySalesDAO();
     }
 
     public Product save(Product product) throws SQLException {
-        if (product.getProductId() == 0) {
-            return insert(product);
-        } else {
-            return update(product);
+        metrics.beginWrite();
+        try {
+            if (product.getProductId() == 0) {
+                return insert(product);
+            } else {
+                return update(product);
+            }
+        } finally {
+            metrics.endWrite();
         }
     }
 
@@ -63,6 +106,13 @@ public class ProductDAO {
                 }
             }
         }
+        rememberSku(product.getSku());
+        searchIndex.put(product);
+        scanLookup.put(product);
+        facetIndex.put(product);
+        fullTextIndex.put(product);
+        activeProducts.invalidate();
+        metrics.productsChanged(product.isActive() ? 1 : 0);
         return product;
     }
 
@@ -74,29 +124,74 @@ public class ProductDAO {
             WHERE product_id = ?
         """;
 
-        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
-            stmt.setString(1, product.getProductName());
-            stmt.setString(2, product.getDescription());
-            stmt.setString(3, product.getSku());
-            stmt.setBigDecimal(4, product.getPrice());
-            stmt.setBigDecimal(5, product.getCostPrice());
-            stmt.setInt(6, product.getStockQuantity());
-            stmt.setInt(7, product.getMinStockLevel());
-            stmt.setInt(8, product.getCategoryId());
-            stmt.setString(9, product.getImageUrl());
-            stmt.setTimestamp(10, Timestamp.valueOf(LocalDateTime.now()));
-            stmt.setBoolean(11, product.isActive());
-            stmt.setInt(12, product.getProductId());
-
-            int affectedRows = stmt.executeUpdate();
-            if (affectedRows == 0) {
-                throw new SQLException("Updating product failed, no rows affected.");
+        Connection conn = dbConfig.getConnection();
+        Boolean wasActive;
+        conn.setAutoCommit(false);
+        try {
+            // The row as it was, locked until the commit so the category move sees no concurrent change
+            Integer oldCategoryId = null;
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT is_active, category_id FROM products WHERE product_id = ? FOR UPDATE")) {
+                stmt.setInt(1, product.getProductId());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    wasActive = rs.next() ? rs.getBoolean("is_active") : null;
+                    if (wasActive != null) {
+                        oldCategoryId = rs.getInt("category_id");
+                    }
+                }
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, product.getProductName());
+                stmt.setString(2, product.getDescription());
+                stmt.setString(3, product.getSku());
+                stmt.setBigDecimal(4, product.getPrice());
+                stmt.setBigDecimal(5, product.getCostPrice());
+                stmt.setInt(6, product.getStockQuantity());
+                stmt.setInt(7, product.getMinStockLevel());
+                stmt.setInt(8, product.getCategoryId());
+                stmt.setString(9, product.getImageUrl());
+                stmt.setTimestamp(10, Timestamp.valueOf(LocalDateTime.now()));
+                stmt.setBoolean(11, product.isActive());
+                stmt.setInt(12, product.getProductId());
+
+                int affectedRows = stmt.executeUpdate();
+                if (affectedRows == 0) {
+                    throw new SQLException("Updating product failed, no rows affected.");
+                }
             }
+            // Only a category change moves the product's rollup rows and sketches
+            if (oldCategoryId != null && oldCategoryId != product.getCategoryId()) {
+                dailySales.moveProduct(conn, product.getProductId(), product.getCategoryId());
+            }
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            // A sketch that fails to decode in moveProduct must not be committed by setAutoCommit
+            conn.rollback();
+            dailySales.discarded();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
         }
+        rememberSku(product.getSku());
+        searchIndex.put(product);
+        scanLookup.put(product);
+        facetIndex.put(product);
+        fullTextIndex.put(product);
+        onProductChanged(product.getProductId());
+        metrics.productsChanged(DashboardMetrics.activeDelta(wasActive, product.isActive()));
         return product;
     }
 
     public Optional<Product> findById(int productId) throws SQLException {
+        if (catalogSnapshot.isEnabled()) {
+            catalogSnapshot.ensureLoaded();
+            Optional<Product> cached = catalogSnapshot.findById(productId);
+            if (cached.isPresent()) {
+                return cached;
+            }
+        }
+        long start = System.nanoTime();
+
         String sql = """
             SELECT p.*, c.category_name, c.description as category_description
             FROM products p 
@@ -109,9 +204,13 @@ public class ProductDAO {
             ResultSet rs = stmt.executeQuery();
 
             if (rs.next()) {
-                return Optional.of(mapResultSetToProduct(rs));
+                Product product = mapResultSetToProduct(rs);
+                catalogSnapshot.put(product);
+                recordSnapshotMiss(start);
+                return Optional.of(product);
             }
         }
+        recordSnapshotMiss(start);
         return Optional.empty();
     }
 
@@ -126,7 +225,45 @@ public class ProductDAO {
         return executeProductQuery(sql);
     }
 
+    public List<Product> findUpdatedSince(LocalDateTime since) throws SQLException {
+        String sql = """
+            SELECT p.*, c.category_name, c.description as category_description
+            FROM products p 
+            LEFT JOIN categories c ON p.category_id = c.category_id 
+            WHERE p.updated_at >= ?
+        """;
+
+        List<Product> products = new ArrayList<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(since));
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                products.add(mapResultSetToProduct(rs));
+            }
+        }
+        return products;
+    }
+
+    // Ids only, so a refreshed view can drop rows deleted since it loaded
+    public Set<Integer> findAllIds() throws SQLException {
+        Set<Integer> ids = new HashSet<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement("SELECT product_id FROM products")) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+        }
+        return ids;
+    }
+
     public List<Product> findActive() throws SQLException {
+        return new ArrayList<>(activeProducts.get());
+    }
+
+    private List<Product> queryActive() throws SQLException {
         String sql = """
             SELECT p.*, c.category_name, c.description as category_description
             FROM products p 
@@ -159,12 +296,15 @@ public class ProductDAO {
         return products;
     }
 
+    // At or below the hand-entered minimum, or the forecast reorder point (ReorderForecaster)
     public List<Product> findLowStock() throws SQLException {
         String sql = """
             SELECT p.*, c.category_name, c.description as category_description
             FROM products p 
             LEFT JOIN categories c ON p.category_id = c.category_id 
-            WHERE p.stock_quantity <= p.min_stock_level AND p.is_active = TRUE 
+            LEFT JOIN reorder_suggestions rs ON rs.product_id = p.product_id
+            WHERE (p.stock_quantity <= p.min_stock_level OR p.stock_quantity <= rs.reorder_point)
+              AND p.is_active = TRUE 
             ORDER BY p.stock_quantity ASC
         """;
         
@@ -172,6 +312,15 @@ public class ProductDAO {
     }
 
     public Optional<Product> findBySku(String sku) throws SQLException {
+        if (catalogSnapshot.isEnabled()) {
+            catalogSnapshot.ensureLoaded();
+            Optional<Product> cached = catalogSnapshot.findBySku(sku);
+            if (cached.isPresent()) {
+                return cached;
+            }
+        }
+        long start = System.nanoTime();
+
         String sql = """
             SELECT p.*, c.category_name, c.description as category_description
             FROM products p 
@@ -184,30 +333,275 @@ public class ProductDAO {
             ResultSet rs = stmt.executeQuery();
 
             if (rs.next()) {
-                return Optional.of(mapResultSetToProduct(rs));
+                Product product = mapResultSetToProduct(rs);
+                catalogSnapshot.put(product);
+                recordSnapshotMiss(start);
+                return Optional.of(product);
             }
         }
+        recordSnapshotMiss(start);
         return Optional.empty();
     }
 
+    // Till scan path: price and stock for a barcode without a query or a full Product
+    public Optional<ScanRecord> findForScan(String sku) throws SQLException {
+        if (scanLookup.isEnabled()) {
+            scanLookup.ensureLoaded();
+            ScanRecord record = scanLookup.lookup(sku);
+            if (record != null) {
+                return Optional.of(record);
+            }
+        }
+        long start = System.nanoTime();
+        Optional<ScanRecord> record = findBySku(sku).map(product -> {
+            scanLookup.put(product);
+            return ScanRecord.from(product);
+        });
+        if (scanLookup.isEnabled()) {
+            scanLookup.getStats().recordMiss(System.nanoTime() - start);
+        }
+        return record;
+    }
+
     public List<Product> searchByName(String searchTerm) throws SQLException {
+        return searchByName(searchTerm, 0);
+    }
+
+    // Substring match on name or SKU, best match first; a limit of zero returns every match
+    public List<Product> searchByName(String searchTerm, int limit) throws SQLException {
+        if (searchTerm == null || searchTerm.isBlank()) {
+            List<Product> active = findActive();
+            return limit > 0 && active.size() > limit ? new ArrayList<>(active.subList(0, limit)) : active;
+        }
+        if (searchIndex.isEnabled()) {
+            searchIndex.ensureLoaded();
+            return findByIds(searchIndex.search(searchTerm, limit));
+        }
+
+        // Without the index: a full scan, ordered by name only
         String sql = """
             SELECT p.*, c.category_name, c.description as category_description
             FROM products p 
             LEFT JOIN categories c ON p.category_id = c.category_id 
-            WHERE p.product_name ILIKE ? AND p.is_active = TRUE 
+            WHERE (LOWER(p.product_name) LIKE ? ESCAPE '!' OR LOWER(p.sku) LIKE ? ESCAPE '!')
+              AND p.is_active = TRUE 
             ORDER BY p.product_name
         """;
 
+        long start = System.nanoTime();
+        String pattern = "%" + escapeLike(searchTerm.trim().toLowerCase()) + "%";
         List<Product> products = new ArrayList<>();
         try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
-            stmt.setString(1, "%" + searchTerm + "%");
+            stmt.setString(1, pattern);
+            stmt.setString(2, pattern);
+            if (limit > 0) {
+                stmt.setMaxRows(limit);
+            }
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                products.add(mapResultSetToProduct(rs));
+            }
+        }
+        searchIndex.getStats().recordMiss(System.nanoTime() - start);
+        return products;
+    }
+
+    /**
+     * Ids of every product, active or not, for the product list's search box: names or SKUs
+     * containing the text, plus names and descriptions sharing a word with it as in
+     * fullTextSearch. When neither finds anything, names within a few typos of the text as in
+     * fuzzySearchByName.
+     */
+    public Set<Integer> searchIds(String searchTerm) throws SQLException {
+        Set<Integer> ids = new HashSet<>();
+        if (searchTerm == null || searchTerm.isBlank()) {
+            return ids;
+        }
+        ids.addAll(nameOrSkuIds(searchTerm));
+        ids.addAll(fullTextIds(searchTerm));
+        if (ids.isEmpty() && searchIndex.isEnabled()) {
+            ids.addAll(searchIndex.fuzzySearch(searchTerm, 0, true));
+        }
+        return ids;
+    }
+
+    private List<Integer> nameOrSkuIds(String searchTerm) throws SQLException {
+        if (searchIndex.isEnabled()) {
+            searchIndex.ensureLoaded();
+            return searchIndex.search(searchTerm, 0, true);
+        }
+
+        long start = System.nanoTime();
+        String sql = "SELECT product_id FROM products WHERE LOWER(product_name) LIKE ? ESCAPE '!' OR LOWER(sku) LIKE ? ESCAPE '!'";
+        String pattern = "%" + escapeLike(searchTerm.trim().toLowerCase()) + "%";
+        List<Integer> ids = new ArrayList<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setString(1, pattern);
+            stmt.setString(2, pattern);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+        }
+        searchIndex.getStats().recordMiss(System.nanoTime() - start);
+        return ids;
+    }
+
+    // Products of either state sharing a word with the query, from the full-text index when
+    // it is on; without it, every product whose name or description contains any such word
+    private List<Integer> fullTextIds(String query) throws SQLException {
+        if (fullTextIndex.isEnabled()) {
+            fullTextIndex.ensureLoaded();
+            return fullTextIndex.search(query, 0, true);
+        }
+
+        List<String> words = FullTextIndex.tokenize(query);
+        List<Integer> ids = new ArrayList<>();
+        if (words.isEmpty()) {
+            return ids;
+        }
+        long start = System.nanoTime();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(
+                "SELECT product_id FROM products WHERE " + anyWordCondition("", words.size()))) {
+            setWordPatterns(stmt, 1, words);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+        }
+        fullTextIndex.getStats().recordMiss(System.nanoTime() - start);
+        return ids;
+    }
+
+    // "(name or description LIKE word 1 OR ... word n)", with two patterns per word
+    private static String anyWordCondition(String alias, int wordCount) {
+        StringJoiner condition = new StringJoiner(" OR ", "(", ")");
+        for (int i = 0; i < wordCount; i++) {
+            condition.add("LOWER(" + alias + "product_name) LIKE ? ESCAPE '!' OR LOWER(" + alias + "description) LIKE ? ESCAPE '!'");
+        }
+        return condition.toString();
+    }
+
+    private static void setWordPatterns(PreparedStatement stmt, int index, List<String> words) throws SQLException {
+        for (String word : words) {
+            String pattern = "%" + escapeLike(word) + "%";
+            stmt.setString(index++, pattern);
+            stmt.setString(index++, pattern);
+        }
+    }
+
+    // Typo-tolerant variant of searchByName: exact matches first, then names within a
+    // few edits of the query. Without the search index this is the exact search.
+    public List<Product> fuzzySearchByName(String searchTerm, int limit) throws SQLException {
+        if (searchTerm == null || searchTerm.isBlank() || !searchIndex.isEnabled()) {
+            return searchByName(searchTerm, limit);
+        }
+        searchIndex.ensureLoaded();
+        return findByIds(searchIndex.fuzzySearch(searchTerm, limit));
+    }
+
+    /**
+     * Active products matching any word of the query in their name or description, most
+     * relevant first (BM25; name matches weigh more). A limit of zero returns every match.
+     */
+    public List<Product> fullTextSearch(String query, int limit) throws SQLException {
+        if (query == null || query.isBlank()) {
+            return new ArrayList<>();
+        }
+        if (fullTextIndex.isEnabled()) {
+            fullTextIndex.ensureLoaded();
+            return findByIds(fullTextIndex.search(query, limit));
+        }
+
+        // Without the index: products containing any of the words, as the index matches them, unranked
+        List<String> words = FullTextIndex.tokenize(query);
+        if (words.isEmpty()) {
+            return new ArrayList<>();
+        }
+        StringBuilder sql = new StringBuilder("""
+            SELECT p.*, c.category_name, c.description as category_description
+            FROM products p
+            LEFT JOIN categories c ON p.category_id = c.category_id
+            WHERE p.is_active = TRUE
+        """);
+        sql.append(" AND ").append(anyWordCondition("p.", words.size()));
+        sql.append(" ORDER BY p.product_name");
+
+        long start = System.nanoTime();
+        List<Product> products = new ArrayList<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql.toString())) {
+            setWordPatterns(stmt, 1, words);
+            if (limit > 0) {
+                stmt.setMaxRows(limit);
+            }
             ResultSet rs = stmt.executeQuery();
 
             while (rs.next()) {
                 products.add(mapResultSetToProduct(rs));
             }
         }
+        fullTextIndex.getStats().recordMiss(System.nanoTime() - start);
+        return products;
+    }
+
+    public boolean isFacetSearchEnabled() {
+        return facetIndex.isEnabled();
+    }
+
+    // Ids of every product (active or not) matching the filter, with the count for each facet value
+    public ProductFacetIndex.Result facetSearch(ProductFacetIndex.Filter filter) throws SQLException {
+        facetIndex.ensureLoaded();
+        return facetIndex.query(filter);
+    }
+
+    // Products in the order of the given ids; ids that no longer exist are skipped
+    public List<Product> findByIds(List<Integer> productIds) throws SQLException {
+        if (productIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Integer, Product> found = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        if (catalogSnapshot.isEnabled()) {
+            catalogSnapshot.ensureLoaded();
+            for (int productId : productIds) {
+                catalogSnapshot.findById(productId).ifPresentOrElse(p -> found.put(productId, p), () -> missing.add(productId));
+            }
+        } else {
+            missing.addAll(productIds);
+        }
+
+        for (int from = 0; from < missing.size(); from += 500) {
+            List<Integer> chunk = missing.subList(from, Math.min(missing.size(), from + 500));
+            String sql = """
+                SELECT p.*, c.category_name, c.description as category_description
+                FROM products p 
+                LEFT JOIN categories c ON p.category_id = c.category_id 
+                WHERE p.product_id IN (%s)
+            """.formatted(String.join(", ", Collections.nCopies(chunk.size(), "?")));
+
+            try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    stmt.setInt(i + 1, chunk.get(i));
+                }
+                ResultSet rs = stmt.executeQuery();
+
+                while (rs.next()) {
+                    Product product = mapResultSetToProduct(rs);
+                    found.put(product.getProductId(), product);
+                }
+            }
+        }
+
+        List<Product> products = new ArrayList<>(found.size());
+        for (int productId : productIds) {
+            Product product = found.get(productId);
+            if (product != null) {
+                products.add(product);
+            }
+        }
         return products;
     }
 
@@ -218,32 +612,71 @@ public class ProductDAO {
             stmt.setInt(1, newQuantity);
             stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setInt(3, productId);
-            return stmt.executeUpdate() > 0;
+            boolean updated = stmt.executeUpdate() > 0;
+            scanLookup.updateStock(productId, newQuantity);
+            facetIndex.updateStock(productId, newQuantity);
+            onProductChanged(productId);
+            return updated;
         }
     }
 
     public boolean delete(int productId) throws SQLException {
         String sql = "DELETE FROM products WHERE product_id = ?";
 
-        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
-            stmt.setInt(1, productId);
-            return stmt.executeUpdate() > 0;
+        metrics.beginWrite();
+        try {
+            Boolean wasActive = findActiveFlag(productId);
+            try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+                stmt.setInt(1, productId);
+                boolean deleted = stmt.executeUpdate() > 0;
+                searchIndex.remove(productId);
+                scanLookup.remove(productId);
+                facetIndex.remove(productId);
+                fullTextIndex.remove(productId);
+                onProductDeleted(productId);
+                metrics.productsChanged(deleted ? DashboardMetrics.activeDelta(wasActive, false) : 0);
+                if (deleted) {
+                    dailySales.removeProduct(productId);
+                }
+                return deleted;
+            }
+        } finally {
+            metrics.endWrite();
         }
     }
 
     public boolean softDelete(int productId) throws SQLException {
         String sql = "UPDATE products SET is_active = FALSE, updated_at = ? WHERE product_id = ?";
 
-        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
-            stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
-            stmt.setInt(2, productId);
-            return stmt.executeUpdate() > 0;
+        metrics.beginWrite();
+        try {
+            Boolean wasActive = findActiveFlag(productId);
+            try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+                stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+                stmt.setInt(2, productId);
+                boolean updated = stmt.executeUpdate() > 0;
+                searchIndex.setActive(productId, false);
+                scanLookup.setActive(productId, false);
+                facetIndex.setActive(productId, false);
+                fullTextIndex.setActive(productId, false);
+                onProductChanged(productId);
+                metrics.productsChanged(updated ? DashboardMetrics.activeDelta(wasActive, false) : 0);
+                return updated;
+            }
+        } finally {
+            metrics.endWrite();
         }
     }
 
     public boolean existsBySku(String sku) throws SQLException {
+        if (sku == null || !loadSkuFilter().mightContain(BloomFilter.caseInsensitiveKey(sku))) {
+            skuFilterStats.recordHit();
+            return false;
+        }
+
         String sql = "SELECT COUNT(*) FROM products WHERE sku = ?";
 
+        long start = System.nanoTime();
         try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
             stmt.setString(1, sku);
             ResultSet rs = stmt.executeQuery();
@@ -251,10 +684,99 @@ public class ProductDAO {
             if (rs.next()) {
                 return rs.getInt(1) > 0;
             }
+        } finally {
+            skuFilterStats.recordMiss(System.nanoTime() - start);
         }
         return false;
     }
 
+    // Build the SKU filter from the table; rebuilt once it outgrows its sizing, and caught up
+    // in the background with the SKUs other clients write
+    public BloomFilter loadSkuFilter() throws SQLException {
+        BloomFilter filter = skuFilter;
+        if (filter != null && !filter.isSaturated()) {
+            return filter;
+        }
+        synchronized (ProductDAO.class) {
+            if (skuFilter == null || skuFilter.isSaturated()) {
+                BloomFilter loaded;
+                try {
+                    loaded = BloomFilter.load(dbConfig.getConnection(), "SELECT COUNT(*) FROM products",
+                            "SELECT sku, updated_at FROM products",
+                            "SELECT sku, updated_at FROM products WHERE updated_at >= ?");
+                } catch (SQLException e) {
+                    skuFilterStats.recordLoadFailure();
+                    throw e;
+                }
+                if (skuFilter != null) {
+                    skuFilter.stopCatchUp();
+                }
+                skuFilter = loaded;
+                skuFilter.catchUpEvery(dbConfig, dbConfig.getIntProperty("bloom.catchup.seconds", 10));
+            }
+            return skuFilter;
+        }
+    }
+
+    private static void resetSkuFilter() {
+        synchronized (ProductDAO.class) {
+            if (skuFilter != null) {
+                skuFilterStats.recordEviction();
+                skuFilter.stopCatchUp();
+            }
+            skuFilter = null;
+        }
+    }
+
+    private void recordSnapshotMiss(long startNanos) {
+        if (catalogSnapshot.isEnabled()) {
+            catalogSnapshot.getStats().recordMiss(System.nanoTime() - startNanos);
+        }
+    }
+
+    // LIKE pattern text with its wildcards taken literally
+    private static String escapeLike(String text) {
+        return text.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    // Locked so a key written while the filter is being built is never lost
+    private void rememberSku(String sku) {
+        if (sku == null) {
+            return;
+        }
+        synchronized (ProductDAO.class) {
+            if (skuFilter != null) {
+                skuFilter.add(BloomFilter.caseInsensitiveKey(sku));
+            }
+        }
+    }
+
+    // Keep in-memory copies of the catalog in step with writes
+    private void onProductChanged(int productId) {
+        catalogSnapshot.markStale(productId);
+        activeProducts.invalidate();
+    }
+
+    private void onProductDeleted(int productId) {
+        catalogSnapshot.remove(productId);
+        activeProducts.invalidate();
+    }
+
+    // is_active before a write, or null if the row does not exist; DashboardMetrics counts active products
+    private Boolean findActiveFlag(int productId) throws SQLException {
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(
+                "SELECT is_active FROM products WHERE product_id = ?")) {
+            stmt.setInt(1, productId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getBoolean(1) : null;
+            }
+        }
+    }
+
+    public static CachedQuery<Product> activeProductsCache() {
+        return activeProducts;
+    }
+
     private List<Product> executeProductQuery(String sql) throws SQLException {
         List<Product> products = new ArrayList<>();
         try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql);
@@ -292,6 +814,8 @@ public class ProductDAO {
             category.setCategoryName(categoryName);
             category.setDescription(rs.getString("category_description"));
             product.setCategory(category);
+            // setCategory stamps updatedAt with the current time; keep the row's, which the catalog snapshot stores
+            product.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
         }
 
         return product;
@@ -0,0 +1,111 @@
+package com.shop.dao;
+
+import com.shop.database.DatabaseConfig;
+import com.shop.model.ReorderSuggestion;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Data Access Object for reorder_suggestions, written by ReorderForecaster and read by
+ * ProductDAO.findLowStock.
+ */
+public class ReorderSuggestionDAO {
+    private final DatabaseConfig dbConfig;
+
+    public ReorderSuggestionDAO() {
+        this.dbConfig = DatabaseConfig.getInstance();
+    }
+
+    // Replaces every suggestion in one transaction, so readers never see half a run; a batch
+    // write, so on a connection of its own rather than the application's
+    public void replaceAll(List<ReorderSuggestion> suggestions) throws SQLException {
+        try (Connection conn = dbConfig.openConnection()) {
+            replaceAll(conn, suggestions);
+        }
+    }
+
+    private void replaceAll(Connection conn, List<ReorderSuggestion> suggestions) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM reorder_suggestions");
+            }
+            String sql = """
+                INSERT INTO reorder_suggestions (product_id, reorder_point, reorder_quantity, safety_stock,
+                                                 daily_demand, forecast_method, computed_at)
+                VALUES (?, ?, ?, ?, ?, ?, ?)
+            """;
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                int batched = 0;
+                for (ReorderSuggestion suggestion : suggestions) {
+                    stmt.setInt(1, suggestion.getProductId());
+                    stmt.setInt(2, suggestion.getReorderPoint());
+                    stmt.setInt(3, suggestion.getReorderQuantity());
+                    stmt.setInt(4, suggestion.getSafetyStock());
+                    stmt.setBigDecimal(5, suggestion.getDailyDemand());
+                    stmt.setString(6, suggestion.getForecastMethod().name());
+                    stmt.setTimestamp(7, Timestamp.valueOf(suggestion.getComputedAt()));
+                    stmt.addBatch();
+                    if (++batched % 1000 == 0) {
+                        stmt.executeBatch();
+                    }
+                }
+                stmt.executeBatch();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    public Optional<ReorderSuggestion> findByProductId(int productId) throws SQLException {
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(
+                "SELECT * FROM reorder_suggestions WHERE product_id = ?")) {
+            stmt.setInt(1, productId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? Optional.of(mapResultSetToSuggestion(rs)) : Optional.empty();
+            }
+        }
+    }
+
+    public List<ReorderSuggestion> findAll() throws SQLException {
+        List<ReorderSuggestion> suggestions = new ArrayList<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(
+                "SELECT * FROM reorder_suggestions ORDER BY product_id");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                suggestions.add(mapResultSetToSuggestion(rs));
+            }
+        }
+        return suggestions;
+    }
+
+    // When the last run finished, or null if there has been none
+    public LocalDateTime findLastComputed() throws SQLException {
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(
+                "SELECT MAX(computed_at) FROM reorder_suggestions");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            Timestamp computedAt = rs.getTimestamp(1);
+            return computedAt != null ? computedAt.toLocalDateTime() : null;
+        }
+    }
+
+    private ReorderSuggestion mapResultSetToSuggestion(ResultSet rs) throws SQLException {
+        return new ReorderSuggestion(
+                rs.getInt("product_id"),
+                rs.getInt("reorder_point"),
+                rs.getInt("reorder_quantity"),
+                rs.getInt("safety_stock"),
+                rs.getBigDecimal("daily_demand"),
+                ReorderSuggestion.ForecastMethod.valueOf(rs.getString("forecast_method")),
+                rs.getTimestamp("computed_at").toLocalDateTime());
+    }
+}
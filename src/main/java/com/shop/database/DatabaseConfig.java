@@ -3,7 +3,9 @@ package com.shop.database;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Properties;
@@ -85,6 +87,15 @@ public class DatabaseConfig {
         }
     }
 
+    /**
+     * A new connection for a batch job (backfills, rebuilds) that runs its own transactions
+     * next to the application's: the shared connection's commit, rollback and autoCommit
+     * are seen by every thread using it. The caller closes it.
+     */
+    public Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(dbUrl, dbUser, dbPassword);
+    }
+
     private void createTables() {
         try (Statement stmt = connection.createStatement()) {
             
@@ -93,6 +104,8 @@ public class DatabaseConfig {
             } else {
                 createH2Tables(stmt);
             }
+            createColumns();
+            createIndexes();
             
             System.out.println("Database tables created/verified successfully");
         } catch (SQLException e) {
@@ -201,6 +214,65 @@ public class DatabaseConfig {
                 FOREIGN KEY (order_id) REFERENCES orders(order_id) ON DELETE CASCADE
             ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
         """);
+
+        // Daily sales rollup, maintained by DailySalesDAO (category 0: uncategorised)
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS daily_sales (
+                sale_date DATE NOT NULL,
+                category_id INT NOT NULL,
+                product_id INT NOT NULL,
+                payment_method VARCHAR(20) NOT NULL,
+                order_lines INT NOT NULL DEFAULT 0,
+                quantity INT NOT NULL DEFAULT 0,
+                revenue DECIMAL(14,2) NOT NULL DEFAULT 0,
+                cost_amount DECIMAL(14,2) NOT NULL DEFAULT 0,
+                PRIMARY KEY (sale_date, category_id, product_id, payment_method)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+        """);
+
+        // Distinct-customer sketches (HyperLogLog registers) per day and category, kept by CustomerReachDAO
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS daily_customer_reach (
+                sale_date DATE NOT NULL,
+                category_id INT NOT NULL,
+                registers VARBINARY(4097) NOT NULL,
+                PRIMARY KEY (sale_date, category_id)
+            ) ENGINE=InnoDB
+        """);
+
+        // Order value sketches (t-digest centroids) per day and payment method, kept by OrderValueDAO
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS daily_order_values (
+                sale_date DATE NOT NULL,
+                payment_method VARCHAR(20) NOT NULL,
+                digest VARBINARY(4096) NOT NULL,
+                PRIMARY KEY (sale_date, payment_method)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+        """);
+
+        // Forecast reorder points, replaced by each ReorderForecaster run
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS reorder_suggestions (
+                product_id INT PRIMARY KEY,
+                reorder_point INT NOT NULL,
+                reorder_quantity INT NOT NULL,
+                safety_stock INT NOT NULL,
+                daily_demand DECIMAL(10,2) NOT NULL,
+                forecast_method VARCHAR(20) NOT NULL,
+                computed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+        """);
+
+        // Progress of incremental batch jobs (BatchJobStateDAO)
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS batch_job_state (
+                job_name VARCHAR(50) PRIMARY KEY,
+                watermark TIMESTAMP NULL,
+                last_full_run TIMESTAMP NULL,
+                state TEXT,
+                updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+        """);
     }
 
     private void createH2Tables(Statement stmt) throws SQLException {
@@ -305,12 +377,202 @@ public class DatabaseConfig {
                 FOREIGN KEY (order_id) REFERENCES orders(order_id)
             )
         """);
+
+        // Create Daily Sales rollup table
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS daily_sales (
+                sale_date DATE NOT NULL,
+                category_id INT NOT NULL,
+                product_id INT NOT NULL,
+                payment_method VARCHAR(20) NOT NULL,
+                order_lines INT NOT NULL DEFAULT 0,
+                quantity INT NOT NULL DEFAULT 0,
+                revenue DECIMAL(14,2) NOT NULL DEFAULT 0,
+                cost_amount DECIMAL(14,2) NOT NULL DEFAULT 0,
+                PRIMARY KEY (sale_date, category_id, product_id, payment_method)
+            )
+        """);
+
+        // Create Daily Customer Reach sketch table
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS daily_customer_reach (
+                sale_date DATE NOT NULL,
+                category_id INT NOT NULL,
+                registers VARBINARY(4097) NOT NULL,
+                PRIMARY KEY (sale_date, category_id)
+            )
+        """);
+
+        // Create Daily Order Values sketch table
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS daily_order_values (
+                sale_date DATE NOT NULL,
+                payment_method VARCHAR(20) NOT NULL,
+                digest VARBINARY(4096) NOT NULL,
+                PRIMARY KEY (sale_date, payment_method)
+            )
+        """);
+
+        // Create Reorder Suggestions table
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS reorder_suggestions (
+                product_id INT PRIMARY KEY,
+                reorder_point INT NOT NULL,
+                reorder_quantity INT NOT NULL,
+                safety_stock INT NOT NULL,
+                daily_demand DECIMAL(10,2) NOT NULL,
+                forecast_method VARCHAR(20) NOT NULL,
+                computed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+            )
+        """);
+
+        // Create Batch Job State table
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS batch_job_state (
+                job_name VARCHAR(50) PRIMARY KEY,
+                watermark TIMESTAMP NULL,
+                last_full_run TIMESTAMP NULL,
+                state TEXT,
+                updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+            )
+        """);
+    }
+
+    // Columns added since the tables were first created, for existing databases as well as new ones
+    private void createColumns() throws SQLException {
+        // Customer segments, written by CustomerSegmentation (scores 1-5, null until scored)
+        addColumnIfMissing("customers", "rfm_recency", "TINYINT");
+        addColumnIfMissing("customers", "rfm_frequency", "TINYINT");
+        addColumnIfMissing("customers", "rfm_monetary", "TINYINT");
+        addColumnIfMissing("customers", "rfm_segment", "VARCHAR(30)");
+        // Unit cost at the time of sale; older lines take the product's current cost, the best there is
+        if (addColumnIfMissing("order_items", "unit_cost", "DECIMAL(10,2)")) {
+            try (Statement stmt = connection.createStatement()) {
+                int lines = stmt.executeUpdate("""
+                    UPDATE order_items SET unit_cost =
+                        (SELECT p.cost_price FROM products p WHERE p.product_id = order_items.product_id)
+                    WHERE unit_cost IS NULL
+                """);
+                System.out.println("Order item costs taken from the products for " + lines + " existing lines");
+            }
+        }
+        // Databases from before the cost column: their rollup rows are dropped and the start-up backfill rebuilds them
+        if (addColumnIfMissing("daily_sales", "cost_amount", "DECIMAL(14,2) NOT NULL DEFAULT 0")) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.executeUpdate("DELETE FROM daily_sales");
+            }
+        }
+    }
+
+    /**
+     * Adds the column unless the table already has one by that name
+     * (MySQL has no ADD COLUMN IF NOT EXISTS). Returns whether it was added.
+     */
+    public boolean addColumnIfMissing(String table, String column, String definition) throws SQLException {
+        if (columnExists(table, column)) {
+            return false;
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+            System.out.println("Added column " + table + "." + column + " " + definition);
+        }
+        return true;
+    }
+
+    private boolean columnExists(String table, String column) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        // H2 keeps unquoted names in upper case, MySQL as written
+        for (String name : new String[] {table, table.toUpperCase()}) {
+            try (ResultSet rs = metaData.getColumns(connection.getCatalog(), null, name, null)) {
+                while (rs.next()) {
+                    if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // Secondary indexes, added to existing databases as well as new ones
+    private void createIndexes() throws SQLException {
+        // Order lookup by customer contact: email is already unique, phone needs its own index,
+        // and the customer's orders are then read as one date range of (customer_id, order_date)
+        createIndexIfMissing("customers", "idx_customers_phone", "phone_number");
+        createIndexIfMissing("orders", "idx_orders_customer_date", "customer_id, order_date");
+        // Prefix search on processor ids when reconciling payments
+        createIndexIfMissing("payments", "idx_payments_transaction", "transaction_id");
+        createIndexIfMissing("payments", "idx_payments_reference", "reference");
+        // Search index segments replay rows changed since their watermark
+        createIndexIfMissing("products", "idx_products_updated", "updated_at");
+        createIndexIfMissing("customers", "idx_customers_updated", "updated_at");
+        // Rollup rows are moved or dropped per product when a product changes category or is deleted
+        createIndexIfMissing("daily_sales", "idx_daily_sales_product", "product_id");
+        // Customer reach sketches are recomputed from one day's orders
+        createIndexIfMissing("orders", "idx_orders_date", "order_date");
+        // Customer segments are re-scored for customers whose orders changed since the last run
+        createIndexIfMissing("orders", "idx_orders_updated", "updated_at");
+    }
+
+    /**
+     * Creates the index unless the table already has one by that name
+     * (MySQL has no CREATE INDEX IF NOT EXISTS).
+     */
+    public void createIndexIfMissing(String table, String indexName, String columns) throws SQLException {
+        if (indexExists(table, indexName)) {
+            return;
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE INDEX " + indexName + " ON " + table + " (" + columns + ")");
+            System.out.println("Created index " + indexName + " on " + table + " (" + columns + ")");
+        }
+    }
+
+    private boolean indexExists(String table, String indexName) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        // H2 keeps unquoted names in upper case, MySQL as written
+        for (String name : new String[] {table, table.toUpperCase()}) {
+            try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), null, name, false, true)) {
+                while (rs.next()) {
+                    if (indexName.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
     }
 
     public String getDatabaseType() {
         return dbType;
     }
 
+    public String getProperty(String key, String defaultValue) {
+        return dbProperties.getProperty(key, defaultValue).trim();
+    }
+
+    public boolean getBooleanProperty(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(getProperty(key, String.valueOf(defaultValue)));
+    }
+
+    public int getIntProperty(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(getProperty(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + key + ", using default " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public double getDoubleProperty(String key, double defaultValue) {
+        try {
+            return Double.parseDouble(getProperty(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + key + ", using default " + defaultValue);
+            return defaultValue;
+        }
+    }
+
     public void closeConnection() {
         try {
             if (connection != null && !connection.isClosed()) {
@@ -0,0 +1,68 @@
+package com.shop.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Where an incremental batch job left off: rows changed after the watermark are picked up
+ * by its next run. The state text is the job's own (e.g. score breakpoints).
+ */
+public class BatchJobState {
+    private String jobName;
+    private LocalDateTime watermark;
+    private LocalDateTime lastFullRun;
+    private String state;
+
+    // Default constructor
+    public BatchJobState() {
+    }
+
+    // Constructor with all parameters
+    public BatchJobState(String jobName, LocalDateTime watermark, LocalDateTime lastFullRun, String state) {
+        this.jobName = jobName;
+        this.watermark = watermark;
+        this.lastFullRun = lastFullRun;
+        this.state = state;
+    }
+
+    // Getters and Setters
+    public String getJobName() {
+        return jobName;
+    }
+
+    public void setJobName(String jobName) {
+        this.jobName = jobName;
+    }
+
+    public LocalDateTime getWatermark() {
+        return watermark;
+    }
+
+    public void setWatermark(LocalDateTime watermark) {
+        this.watermark = watermark;
+    }
+
+    public LocalDateTime getLastFullRun() {
+        return lastFullRun;
+    }
+
+    public void setLastFullRun(LocalDateTime lastFullRun) {
+        this.lastFullRun = lastFullRun;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchJobState{" +
+                "jobName='" + jobName + '\'' +
+                ", watermark=" + watermark +
+                ", lastFullRun=" + lastFullRun +
+                '}';
+    }
+}
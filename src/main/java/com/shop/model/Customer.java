@@ -18,6 +18,11 @@ public class Customer {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private boolean isActive;
+    // RFM scores 1-5 and segment from CustomerSegmentation; 0 and null until scored
+    private int rfmRecency;
+    private int rfmFrequency;
+    private int rfmMonetary;
+    private RfmSegment rfmSegment;
 
     // Default constructor
     public Customer() {
@@ -159,6 +164,38 @@ public class Customer {
         this.updatedAt = LocalDateTime.now();
     }
 
+    public int getRfmRecency() {
+        return rfmRecency;
+    }
+
+    public void setRfmRecency(int rfmRecency) {
+        this.rfmRecency = rfmRecency;
+    }
+
+    public int getRfmFrequency() {
+        return rfmFrequency;
+    }
+
+    public void setRfmFrequency(int rfmFrequency) {
+        this.rfmFrequency = rfmFrequency;
+    }
+
+    public int getRfmMonetary() {
+        return rfmMonetary;
+    }
+
+    public void setRfmMonetary(int rfmMonetary) {
+        this.rfmMonetary = rfmMonetary;
+    }
+
+    public RfmSegment getRfmSegment() {
+        return rfmSegment;
+    }
+
+    public void setRfmSegment(RfmSegment rfmSegment) {
+        this.rfmSegment = rfmSegment;
+    }
+
     // Helper methods
     public String getFullName() {
         return firstName + " " + lastName;
@@ -0,0 +1,126 @@
+package com.shop.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * One row of the daily_sales rollup: the order lines sold on one day for one product,
+ * grouped by the order's payment method ("UNPAID" until a payment completes).
+ */
+public class DailySales {
+    public static final String UNPAID = "UNPAID";
+
+    private LocalDate saleDate;
+    private int categoryId;
+    private int productId;
+    private String paymentMethod;
+    private int orderLines;
+    private int quantity;
+    private BigDecimal revenue;
+    private BigDecimal costAmount;
+
+    // Default constructor
+    public DailySales() {
+        this.revenue = BigDecimal.ZERO;
+        this.costAmount = BigDecimal.ZERO;
+    }
+
+    // Constructor with all parameters
+    public DailySales(LocalDate saleDate, int categoryId, int productId, String paymentMethod,
+                      int orderLines, int quantity, BigDecimal revenue, BigDecimal costAmount) {
+        this.saleDate = saleDate;
+        this.categoryId = categoryId;
+        this.productId = productId;
+        this.paymentMethod = paymentMethod;
+        this.orderLines = orderLines;
+        this.quantity = quantity;
+        this.revenue = revenue;
+        this.costAmount = costAmount;
+    }
+
+    // Getters and Setters
+    public LocalDate getSaleDate() {
+        return saleDate;
+    }
+
+    public void setSaleDate(LocalDate saleDate) {
+        this.saleDate = saleDate;
+    }
+
+    // 0 for products without a category
+    public int getCategoryId() {
+        return categoryId;
+    }
+
+    public void setCategoryId(int categoryId) {
+        this.categoryId = categoryId;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public String getPaymentMethod() {
+        return paymentMethod;
+    }
+
+    public void setPaymentMethod(String paymentMethod) {
+        this.paymentMethod = paymentMethod;
+    }
+
+    public int getOrderLines() {
+        return orderLines;
+    }
+
+    public void setOrderLines(int orderLines) {
+        this.orderLines = orderLines;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    // Sum of line totals, before order-level tax and discount
+    public BigDecimal getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(BigDecimal revenue) {
+        this.revenue = revenue;
+    }
+
+    // Sum of quantity times the unit cost each line was sold at
+    public BigDecimal getCostAmount() {
+        return costAmount;
+    }
+
+    public void setCostAmount(BigDecimal costAmount) {
+        this.costAmount = costAmount;
+    }
+
+    public BigDecimal getMargin() {
+        return revenue.subtract(costAmount);
+    }
+
+    @Override
+    public String toString() {
+        return "DailySales{" +
+                "saleDate=" + saleDate +
+                ", categoryId=" + categoryId +
+                ", productId=" + productId +
+                ", paymentMethod='" + paymentMethod + '\'' +
+                ", orderLines=" + orderLines +
+                ", quantity=" + quantity +
+                ", revenue=" + revenue +
+                ", costAmount=" + costAmount +
+                '}';
+    }
+}
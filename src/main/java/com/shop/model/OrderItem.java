@@ -14,6 +14,8 @@ public class OrderItem {
     private int quantity;
     private BigDecimal unitPrice;
     private BigDecimal lineTotal;
+    // Product cost when the item was sold; null until known (OrderItemDAO then takes the product's)
+    private BigDecimal unitCost;
     private LocalDateTime createdAt;
 
     // Default constructor
@@ -80,6 +82,7 @@ public class OrderItem {
         if (product != null) {
             this.productId = product.getProductId();
             this.unitPrice = product.getPrice();
+            this.unitCost = product.getCostPrice();
             calculateLineTotal();
         }
     }
@@ -110,6 +113,23 @@ public class OrderItem {
         this.lineTotal = lineTotal;
     }
 
+    public BigDecimal getUnitCost() {
+        return unitCost;
+    }
+
+    public void setUnitCost(BigDecimal unitCost) {
+        this.unitCost = unitCost;
+    }
+
+    public BigDecimal getLineCost() {
+        return unitCost != null ? unitCost.multiply(BigDecimal.valueOf(quantity)) : null;
+    }
+
+    public BigDecimal getLineMargin() {
+        BigDecimal lineCost = getLineCost();
+        return lineCost != null ? lineTotal.subtract(lineCost) : null;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
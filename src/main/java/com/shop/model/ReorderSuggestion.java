@@ -0,0 +1,117 @@
+package com.shop.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Forecast reorder point of a product: reorder once stock falls to the reorder point,
+ * which covers the demand expected over the supplier lead time plus safety stock, and
+ * order the reorder quantity, the demand expected over one order cycle after that.
+ */
+public class ReorderSuggestion {
+    private int productId;
+    private int reorderPoint;
+    private int reorderQuantity;
+    private int safetyStock;
+    private BigDecimal dailyDemand;
+    private ForecastMethod forecastMethod;
+    private LocalDateTime computedAt;
+
+    // Forecast Method Enum
+    public enum ForecastMethod {
+        // Level, trend and day-of-week pattern (Holt-Winters)
+        SEASONAL,
+        // Level only, for products with too little history for a weekly pattern
+        SMOOTHED
+    }
+
+    // Default constructor
+    public ReorderSuggestion() {
+        this.dailyDemand = BigDecimal.ZERO;
+        this.forecastMethod = ForecastMethod.SMOOTHED;
+        this.computedAt = LocalDateTime.now();
+    }
+
+    // Constructor with all parameters
+    public ReorderSuggestion(int productId, int reorderPoint, int reorderQuantity, int safetyStock,
+                             BigDecimal dailyDemand, ForecastMethod forecastMethod, LocalDateTime computedAt) {
+        this.productId = productId;
+        this.reorderPoint = reorderPoint;
+        this.reorderQuantity = reorderQuantity;
+        this.safetyStock = safetyStock;
+        this.dailyDemand = dailyDemand;
+        this.forecastMethod = forecastMethod;
+        this.computedAt = computedAt;
+    }
+
+    // Getters and Setters
+    public int getProductId() {
+        return productId;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public int getReorderPoint() {
+        return reorderPoint;
+    }
+
+    public void setReorderPoint(int reorderPoint) {
+        this.reorderPoint = reorderPoint;
+    }
+
+    public int getReorderQuantity() {
+        return reorderQuantity;
+    }
+
+    public void setReorderQuantity(int reorderQuantity) {
+        this.reorderQuantity = reorderQuantity;
+    }
+
+    // Part of the reorder point held against forecast error
+    public int getSafetyStock() {
+        return safetyStock;
+    }
+
+    public void setSafetyStock(int safetyStock) {
+        this.safetyStock = safetyStock;
+    }
+
+    // Average forecast units per day over the next order cycle
+    public BigDecimal getDailyDemand() {
+        return dailyDemand;
+    }
+
+    public void setDailyDemand(BigDecimal dailyDemand) {
+        this.dailyDemand = dailyDemand;
+    }
+
+    public ForecastMethod getForecastMethod() {
+        return forecastMethod;
+    }
+
+    public void setForecastMethod(ForecastMethod forecastMethod) {
+        this.forecastMethod = forecastMethod;
+    }
+
+    public LocalDateTime getComputedAt() {
+        return computedAt;
+    }
+
+    public void setComputedAt(LocalDateTime computedAt) {
+        this.computedAt = computedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "ReorderSuggestion{" +
+                "productId=" + productId +
+                ", reorderPoint=" + reorderPoint +
+                ", reorderQuantity=" + reorderQuantity +
+                ", safetyStock=" + safetyStock +
+                ", dailyDemand=" + dailyDemand +
+                ", forecastMethod=" + forecastMethod +
+                '}';
+    }
+}
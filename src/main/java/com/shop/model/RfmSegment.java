@@ -0,0 +1,54 @@
+package com.shop.model;
+
+/**
+ * Customer segment from recency, frequency and monetary scores (1-5, 5 best: ordered most
+ * recently, most often, spent most), as assigned by CustomerSegmentation.
+ */
+public enum RfmSegment {
+    CHAMPIONS("Champions"),
+    LOYAL("Loyal"),
+    RECENT("Recent"),
+    NEEDS_ATTENTION("Needs attention"),
+    CANT_LOSE("Can't lose"),
+    AT_RISK("At risk"),
+    HIBERNATING("Hibernating"),
+    LOST("Lost");
+
+    private final String label;
+
+    RfmSegment(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public static RfmSegment of(int recency, int frequency, int monetary) {
+        if (recency >= 4 && frequency >= 4) {
+            return CHAMPIONS;
+        }
+        if (recency >= 3 && frequency >= 3) {
+            return LOYAL;
+        }
+        if (recency >= 4) {
+            return RECENT;
+        }
+        if (recency == 3) {
+            return NEEDS_ATTENTION;
+        }
+        // Not seen lately
+        if (frequency >= 4 && monetary >= 4) {
+            return CANT_LOSE;
+        }
+        if (frequency >= 3) {
+            return AT_RISK;
+        }
+        return recency == 2 ? HIBERNATING : LOST;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
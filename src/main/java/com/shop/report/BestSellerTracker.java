@@ -0,0 +1,360 @@
+package com.shop.report;
+
+import com.shop.cache.CacheStats;
+import com.shop.cache.CacheStatsRegistry;
+import com.shop.cache.WriteGate;
+import com.shop.database.DatabaseConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+
+/**
+ * Best sellers (units sold per product) for a day, week or month without grouping
+ * order_items. Each retained day counts units for a bounded set of candidate products and
+ * keeps a Count-Min sketch of every product's units. While a day has sold fewer distinct
+ * products than the set holds, its counts are exact; after that a product only gets in by
+ * beating the smallest candidate, starting from its sketch estimate, as in Space-Saving,
+ * and the day's counts become upper bounds. A week or month adds up its days' counts for
+ * the union of their candidates. Memory is fixed by RETAINED_DAYS and CANDIDATES_PER_DAY,
+ * whatever the catalog size; older windows are answered exactly from the tables.
+ * Units follow the daily_sales rules (order date, cancelled and refunded orders left out)
+ * and arrive through DailySalesDAO once each write is committed; DailySalesDAO holds each
+ * transaction between beginWrite and endWrite, so the seed query reads a snapshot taken with
+ * none open, and units committed while it runs are replayed after it.
+ */
+public class BestSellerTracker {
+    private static BestSellerTracker instance;
+
+    // Covers the current and the previous calendar month
+    static final int RETAINED_DAYS = 62;
+    static final int CANDIDATES_PER_DAY = 256;
+
+    public enum Window {
+        DAY("Today"),
+        WEEK("This week"),
+        MONTH("This month");
+
+        private final String label;
+
+        Window(String label) {
+            this.label = label;
+        }
+
+        public LocalDate start(LocalDate anchor) {
+            return switch (this) {
+                case DAY -> anchor;
+                case WEEK -> anchor.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH -> anchor.withDayOfMonth(1);
+            };
+        }
+
+        public LocalDate end(LocalDate anchor) {
+            return switch (this) {
+                case DAY -> anchor;
+                case WEEK -> anchor.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
+                case MONTH -> anchor.with(TemporalAdjusters.lastDayOfMonth());
+            };
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    public static class Entry {
+        private final int productId;
+        private final String productName;
+        private final long units;
+        private final boolean exact;
+
+        Entry(int productId, String productName, long units, boolean exact) {
+            this.productId = productId;
+            this.productName = productName;
+            this.units = units;
+            this.exact = exact;
+        }
+
+        public int getProductId() {
+            return productId;
+        }
+
+        public String getProductName() {
+            return productName;
+        }
+
+        // An upper bound unless exact
+        public long getUnits() {
+            return units;
+        }
+
+        public boolean isExact() {
+            return exact;
+        }
+    }
+
+    private static final class DayCounts {
+        final CountMinSketch sketch = new CountMinSketch();
+        // Candidate product id -> units; exact until the day overflows, upper bounds after
+        final Map<Integer, Integer> candidates = new HashMap<>();
+        // Set once a product was turned away or evicted
+        boolean overflowed;
+
+        void add(int productId, int units) {
+            sketch.add(productId, units);
+            Integer count = candidates.get(productId);
+            if (count != null) {
+                if (count + units > 0) {
+                    candidates.put(productId, count + units);
+                } else {
+                    candidates.remove(productId);
+                }
+                return;
+            }
+            if (units <= 0) {
+                return;
+            }
+            if (candidates.size() < CANDIDATES_PER_DAY) {
+                // Until the day overflows, a product outside the set has sold nothing
+                candidates.put(productId, overflowed ? sketch.estimate(productId) : units);
+                return;
+            }
+            overflowed = true;
+            int estimate = sketch.estimate(productId);
+            Map.Entry<Integer, Integer> smallest = Collections.min(candidates.entrySet(), Map.Entry.comparingByValue());
+            if (estimate > smallest.getValue()) {
+                candidates.remove(smallest.getKey());
+                candidates.put(productId, estimate);
+            }
+        }
+
+        int units(int productId) {
+            Integer count = candidates.get(productId);
+            if (count != null) {
+                return count;
+            }
+            return overflowed ? Math.max(0, sketch.estimate(productId)) : 0;
+        }
+    }
+
+    private final DatabaseConfig dbConfig;
+    private final CacheStats stats;
+    private final NavigableMap<LocalDate, DayCounts> days = new TreeMap<>();
+    private final WriteGate gate = new WriteGate();
+    private boolean loaded;
+
+    private BestSellerTracker() {
+        this.dbConfig = DatabaseConfig.getInstance();
+        this.stats = CacheStatsRegistry.getInstance().register("reports.bestSellers", this::size, this::invalidate);
+    }
+
+    public static BestSellerTracker getInstance() {
+        if (instance == null) {
+            synchronized (BestSellerTracker.class) {
+                if (instance == null) {
+                    instance = new BestSellerTracker();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public synchronized int size() {
+        return days.size();
+    }
+
+    // The seed query reads a snapshot with no write in flight, so no units are lost or counted twice
+    public void ensureLoaded() throws SQLException {
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+        }
+        long start = System.nanoTime();
+        String sql = """
+            SELECT CAST(o.order_date AS DATE) AS sale_date, oi.product_id, SUM(oi.quantity) AS units
+            FROM orders o
+            JOIN order_items oi ON oi.order_id = o.order_id
+            WHERE o.status NOT IN ('CANCELLED', 'REFUNDED') AND o.order_date >= ?
+            GROUP BY CAST(o.order_date AS DATE), oi.product_id
+        """;
+        int dayCount;
+        // Seeded without holding this monitor, which a write needs to record its units
+        try (Connection conn = dbConfig.openConnection()) {
+            gate.enterLoad(conn, "orders", "order_items");
+            try {
+                synchronized (this) {
+                    if (loaded) {
+                        return;
+                    }
+                }
+                NavigableMap<LocalDate, DayCounts> seeded = new TreeMap<>();
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setTimestamp(1, Timestamp.valueOf(firstRetainedDay().atStartOfDay()));
+                    stmt.setFetchSize(1000);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            seeded.computeIfAbsent(rs.getDate("sale_date").toLocalDate(), day -> new DayCounts())
+                                    .add(rs.getInt("product_id"), rs.getInt("units"));
+                        }
+                    }
+                }
+                conn.commit();
+                synchronized (this) {
+                    days.clear();
+                    days.putAll(seeded);
+                    loaded = true;
+                    dayCount = days.size();
+                }
+            } finally {
+                gate.exitLoad();
+            }
+        } catch (SQLException e) {
+            stats.recordLoadFailure();
+            throw e;
+        }
+        stats.recordMiss(System.nanoTime() - start);
+        System.out.printf("Best-seller sketches loaded: %d days in %d ms%n",
+                dayCount, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // From before a transaction's first statement until its units are recorded or it rolled back
+    public void beginWrite() {
+        gate.enterWrite();
+    }
+
+    public void endWrite() {
+        gate.exitWrite();
+    }
+
+    public synchronized void invalidate() {
+        if (loaded) {
+            stats.recordEviction();
+        }
+        days.clear();
+        loaded = false;
+    }
+
+    // Units sold (negative: taken back) for a product on an order date; replayed after a load
+    // running at the time, otherwise ignored before the first load
+    public synchronized void record(LocalDate day, int productId, int units) {
+        if (units == 0) {
+            return;
+        }
+        if (!loaded) {
+            gate.defer(() -> record(day, productId, units));
+            return;
+        }
+        pruneOldDays();
+        if (day.isBefore(firstRetainedDay())) {
+            return;
+        }
+        days.computeIfAbsent(day, d -> new DayCounts()).add(productId, units);
+    }
+
+    /**
+     * Top n products by units for the window containing the anchor day. Approximate (units are
+     * upper bounds) while the window is retained, exact for older windows.
+     */
+    public List<Entry> top(Window window, LocalDate anchor, int n) throws SQLException {
+        Map<Integer, Integer> units = new HashMap<>();
+        boolean exact = true;
+        ensureLoaded();
+        synchronized (this) {
+            pruneOldDays();
+            LocalDate from = window.start(anchor);
+            // Also when invalidated since ensureLoaded
+            if (!loaded || from.isBefore(firstRetainedDay())) {
+                return exactTop(window, anchor, n);
+            }
+            Collection<DayCounts> windowDays = days.subMap(from, true, window.end(anchor), true).values();
+            for (DayCounts counts : windowDays) {
+                for (int productId : counts.candidates.keySet()) {
+                    units.put(productId, 0);
+                }
+                exact &= !counts.overflowed;
+            }
+            for (DayCounts counts : windowDays) {
+                for (Map.Entry<Integer, Integer> e : units.entrySet()) {
+                    e.setValue(e.getValue() + counts.units(e.getKey()));
+                }
+            }
+            stats.recordHit();
+        }
+        List<Map.Entry<Integer, Integer>> ranked = new ArrayList<>(units.entrySet());
+        ranked.removeIf(e -> e.getValue() <= 0);
+        ranked.sort(Map.Entry.<Integer, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        List<Map.Entry<Integer, Integer>> top = ranked.subList(0, Math.min(n, ranked.size()));
+
+        Map<Integer, String> names = productNames(top.stream().map(Map.Entry::getKey).toList());
+        List<Entry> entries = new ArrayList<>(top.size());
+        for (Map.Entry<Integer, Integer> e : top) {
+            entries.add(new Entry(e.getKey(), names.getOrDefault(e.getKey(), "Product #" + e.getKey()), e.getValue(), exact));
+        }
+        return entries;
+    }
+
+    // Exact top n from the tables, e.g. to check the sketches against
+    public List<Entry> exactTop(Window window, LocalDate anchor, int n) throws SQLException {
+        String sql = """
+            SELECT oi.product_id, p.product_name, SUM(oi.quantity) AS units
+            FROM orders o
+            JOIN order_items oi ON oi.order_id = o.order_id
+            LEFT JOIN products p ON p.product_id = oi.product_id
+            WHERE o.status NOT IN ('CANCELLED', 'REFUNDED') AND o.order_date >= ? AND o.order_date < ?
+            GROUP BY oi.product_id, p.product_name
+            HAVING SUM(oi.quantity) > 0
+            ORDER BY units DESC, oi.product_id
+            LIMIT ?
+        """;
+        List<Entry> entries = new ArrayList<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(window.start(anchor).atStartOfDay()));
+            stmt.setTimestamp(2, Timestamp.valueOf(window.end(anchor).plusDays(1).atStartOfDay()));
+            stmt.setInt(3, n);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int productId = rs.getInt("product_id");
+                    String name = rs.getString("product_name");
+                    entries.add(new Entry(productId, name != null ? name : "Product #" + productId, rs.getLong("units"), true));
+                }
+            }
+        }
+        return entries;
+    }
+
+    private Map<Integer, String> productNames(List<Integer> productIds) throws SQLException {
+        Map<Integer, String> names = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return names;
+        }
+        String placeholders = String.join(",", Collections.nCopies(productIds.size(), "?"));
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(
+                "SELECT product_id, product_name FROM products WHERE product_id IN (" + placeholders + ")")) {
+            for (int i = 0; i < productIds.size(); i++) {
+                stmt.setInt(i + 1, productIds.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    names.put(rs.getInt("product_id"), rs.getString("product_name"));
+                }
+            }
+        }
+        return names;
+    }
+
+    private void pruneOldDays() {
+        days.headMap(firstRetainedDay(), false).clear();
+    }
+
+    private static LocalDate firstRetainedDay() {
+        return LocalDate.now().minusDays(RETAINED_DAYS - 1);
+    }
+}
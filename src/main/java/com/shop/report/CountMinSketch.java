@@ -0,0 +1,37 @@
+package com.shop.report;
+
+/**
+ * Count-Min sketch over int items: DEPTH rows of WIDTH counters, each row with its own hash.
+ * An item's estimate is the smallest of its counters, which never falls below the true count
+ * as long as every subtraction undoes an earlier addition.
+ */
+final class CountMinSketch {
+    static final int DEPTH = 4;
+    static final int WIDTH = 2048;
+
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final int[] counters = new int[DEPTH * WIDTH];
+
+    void add(int item, int delta) {
+        for (int row = 0; row < DEPTH; row++) {
+            counters[row * WIDTH + bucket(row, item)] += delta;
+        }
+    }
+
+    int estimate(int item) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counters[row * WIDTH + bucket(row, item)]);
+        }
+        return min;
+    }
+
+    private static int bucket(int row, int item) {
+        int h = (item ^ SEEDS[row]) * 0x9E3779B1;
+        h ^= h >>> 15;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h & (WIDTH - 1);
+    }
+}
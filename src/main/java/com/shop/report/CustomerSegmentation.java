@@ -0,0 +1,316 @@
+package com.shop.report;
+
+import com.shop.dao.BatchJobStateDAO;
+import com.shop.database.DatabaseConfig;
+import com.shop.model.BatchJobState;
+import com.shop.model.RfmSegment;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * RFM segmentation of every customer: recency (days since the last order), frequency
+ * (orders) and monetary value (order totals), cancelled and refunded orders left out.
+ * One pass over the orders table sums them per customer in CustomerTotals. Each measure is
+ * then scored 1-5 by the quintiles over all customers with orders, and the scores and their
+ * RfmSegment are written to the customer rows.
+ * A full run sets the quintile breakpoints and is repeated every segments.full.run.days; in
+ * between, runs only re-score customers whose orders changed since the last run (by
+ * orders.updated_at, kept in batch_job_state) against the stored breakpoints. Deleted orders
+ * and the passing of time for customers without new orders wait for the next full run.
+ */
+public class CustomerSegmentation {
+    private static CustomerSegmentation instance;
+
+    static final String JOB_NAME = "customer_segments";
+    private static final int SCORES = 5;
+
+    private static final String ORDERS = """
+        SELECT customer_id, order_date, total_amount
+        FROM orders
+        WHERE status NOT IN ('CANCELLED', 'REFUNDED')
+    """;
+
+    private final DatabaseConfig dbConfig;
+    private final BatchJobStateDAO jobStateDAO;
+    private final int fullRunDays;
+
+    // Score boundaries: a measure beyond the i-th breakpoint scores above i + 1
+    private static final class Breakpoints {
+        final long[] recency;
+        final long[] frequency;
+        final long[] monetary;
+
+        Breakpoints(long[] recency, long[] frequency, long[] monetary) {
+            this.recency = recency;
+            this.frequency = frequency;
+            this.monetary = monetary;
+        }
+
+        static Breakpoints of(CustomerTotals totals, int today) {
+            int n = totals.size();
+            long[] recency = new long[n];
+            long[] frequency = new long[n];
+            long[] monetary = new long[n];
+            for (int c = 0; c < n; c++) {
+                recency[c] = today - totals.lastDay(c);
+                frequency[c] = totals.orders(c);
+                monetary[c] = totals.cents(c);
+            }
+            return new Breakpoints(quintiles(recency), quintiles(frequency), quintiles(monetary));
+        }
+
+        // Fewer days since the last order scores higher
+        int recencyScore(long days) {
+            return SCORES - below(recency, days);
+        }
+
+        int frequencyScore(long orders) {
+            return 1 + below(frequency, orders);
+        }
+
+        int monetaryScore(long cents) {
+            return 1 + below(monetary, cents);
+        }
+
+        private static int below(long[] breakpoints, long value) {
+            int count = 0;
+            for (long breakpoint : breakpoints) {
+                if (breakpoint < value) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private static long[] quintiles(long[] values) {
+            long[] breakpoints = new long[SCORES - 1];
+            if (values.length == 0) {
+                return breakpoints;
+            }
+            Arrays.sort(values);
+            for (int i = 0; i < breakpoints.length; i++) {
+                breakpoints[i] = values[(int) Math.min(values.length - 1, (long) (i + 1) * values.length / SCORES)];
+            }
+            return breakpoints;
+        }
+
+        @Override
+        public String toString() {
+            return "recency=" + join(recency) + ";frequency=" + join(frequency) + ";monetary=" + join(monetary);
+        }
+
+        static Breakpoints parse(String text) {
+            long[][] parts = new long[3][];
+            String[] names = {"recency", "frequency", "monetary"};
+            for (String part : text.split(";")) {
+                String[] nameAndValues = part.split("=", 2);
+                int index = Arrays.asList(names).indexOf(nameAndValues[0]);
+                if (index < 0 || nameAndValues.length < 2) {
+                    throw new IllegalArgumentException("Unknown segment breakpoints: " + text);
+                }
+                parts[index] = Arrays.stream(nameAndValues[1].split(",")).mapToLong(Long::parseLong).toArray();
+            }
+            for (long[] values : parts) {
+                if (values == null || values.length != SCORES - 1) {
+                    throw new IllegalArgumentException("Incomplete segment breakpoints: " + text);
+                }
+            }
+            return new Breakpoints(parts[0], parts[1], parts[2]);
+        }
+
+        private static String join(long[] values) {
+            StringBuilder sb = new StringBuilder();
+            for (long value : values) {
+                if (sb.length() > 0) {
+                    sb.append(',');
+                }
+                sb.append(value);
+            }
+            return sb.toString();
+        }
+    }
+
+    private CustomerSegmentation() {
+        this.dbConfig = DatabaseConfig.getInstance();
+        this.jobStateDAO = new BatchJobStateDAO();
+        this.fullRunDays = dbConfig.getIntProperty("segments.full.run.days", 7);
+    }
+
+    public static CustomerSegmentation getInstance() {
+        if (instance == null) {
+            synchronized (CustomerSegmentation.class) {
+                if (instance == null) {
+                    instance = new CustomerSegmentation();
+                }
+            }
+        }
+        return instance;
+    }
+
+    // A full run when none is recent enough, otherwise an incremental one
+    public synchronized void run() throws SQLException {
+        Optional<BatchJobState> jobState = jobStateDAO.findByJobName(JOB_NAME);
+        if (jobState.isEmpty() || jobState.get().getLastFullRun() == null || jobState.get().getState() == null
+                || jobState.get().getLastFullRun().isBefore(LocalDateTime.now().minusDays(fullRunDays))) {
+            runFull();
+        } else {
+            runIncremental(jobState.get());
+        }
+    }
+
+    // Scores every customer and sets new breakpoints; returns the customers scored
+    public synchronized int runFull() throws SQLException {
+        long start = System.nanoTime();
+        LocalDateTime watermark = LocalDateTime.now();
+        int today = (int) LocalDate.now().toEpochDay();
+        CustomerTotals totals = stream(ORDERS, null);
+        Breakpoints breakpoints = Breakpoints.of(totals, today);
+        write(totals, breakpoints, today, null,
+                new BatchJobState(JOB_NAME, watermark, watermark, breakpoints.toString()));
+        System.out.printf("Customer segments: %d customers scored in %d ms (full run)%n",
+                totals.size(), (System.nanoTime() - start) / 1_000_000);
+        return totals.size();
+    }
+
+    // Re-scores customers whose orders changed since the last run; returns how many
+    public synchronized int runIncremental() throws SQLException {
+        Optional<BatchJobState> jobState = jobStateDAO.findByJobName(JOB_NAME);
+        if (jobState.isEmpty() || jobState.get().getState() == null) {
+            return runFull();
+        }
+        return runIncremental(jobState.get());
+    }
+
+    private int runIncremental(BatchJobState jobState) throws SQLException {
+        long start = System.nanoTime();
+        LocalDateTime watermark = LocalDateTime.now();
+        int today = (int) LocalDate.now().toEpochDay();
+        Breakpoints breakpoints = Breakpoints.parse(jobState.getState());
+
+        int[] changed = changedCustomers(jobState.getWatermark());
+        CustomerTotals totals = changed.length > 0
+                ? stream(ORDERS + " AND customer_id IN (SELECT customer_id FROM orders WHERE updated_at >= ?)", jobState.getWatermark())
+                : new CustomerTotals();
+        write(totals, breakpoints, today, changed,
+                new BatchJobState(JOB_NAME, watermark, jobState.getLastFullRun(), jobState.getState()));
+        System.out.printf("Customer segments: %d customers re-scored in %d ms (changed since %s)%n",
+                changed.length, (System.nanoTime() - start) / 1_000_000, jobState.getWatermark());
+        return changed.length;
+    }
+
+    private int[] changedCustomers(LocalDateTime since) throws SQLException {
+        int[] ids = new int[64];
+        int count = 0;
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(
+                "SELECT DISTINCT customer_id FROM orders WHERE updated_at >= ?")) {
+            stmt.setTimestamp(1, Timestamp.valueOf(since));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, count * 2);
+                    }
+                    ids[count++] = rs.getInt("customer_id");
+                }
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    // One pass over the matching orders, with since (if given) as the only parameter
+    private CustomerTotals stream(String sql, LocalDateTime since) throws SQLException {
+        CustomerTotals totals = new CustomerTotals();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            if (since != null) {
+                stmt.setTimestamp(1, Timestamp.valueOf(since));
+            }
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    totals.add(rs.getInt("customer_id"),
+                            (int) rs.getTimestamp("order_date").toLocalDateTime().toLocalDate().toEpochDay(),
+                            SalesColumns.toCents(rs.getBigDecimal("total_amount")));
+                }
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Writes the scores in one transaction with the job state, on a connection of its own
+     * so the application's writes are not drawn into it. Customers in cleared (all of them
+     * when null) lose their scores first, so those left without counted orders end up
+     * unscored. updated_at is kept, or MySQL would bump it.
+     */
+    private void write(CustomerTotals totals, Breakpoints breakpoints, int today, int[] cleared,
+                       BatchJobState jobState) throws SQLException {
+        try (Connection conn = dbConfig.openConnection()) {
+            write(conn, totals, breakpoints, today, cleared, jobState);
+        }
+    }
+
+    private void write(Connection conn, CustomerTotals totals, Breakpoints breakpoints, int today, int[] cleared,
+                       BatchJobState jobState) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            String clear = """
+                UPDATE customers SET rfm_recency = NULL, rfm_frequency = NULL, rfm_monetary = NULL,
+                                     rfm_segment = NULL, updated_at = updated_at
+                WHERE rfm_segment IS NOT NULL
+            """;
+            if (cleared == null) {
+                try (PreparedStatement stmt = conn.prepareStatement(clear)) {
+                    stmt.executeUpdate();
+                }
+            } else {
+                try (PreparedStatement stmt = conn.prepareStatement(clear + " AND customer_id = ?")) {
+                    for (int i = 0; i < cleared.length; i++) {
+                        stmt.setInt(1, cleared[i]);
+                        stmt.addBatch();
+                        if ((i + 1) % 1000 == 0) {
+                            stmt.executeBatch();
+                        }
+                    }
+                    stmt.executeBatch();
+                }
+            }
+
+            String score = """
+                UPDATE customers SET rfm_recency = ?, rfm_frequency = ?, rfm_monetary = ?,
+                                     rfm_segment = ?, updated_at = updated_at
+                WHERE customer_id = ?
+            """;
+            try (PreparedStatement stmt = conn.prepareStatement(score)) {
+                for (int c = 0; c < totals.size(); c++) {
+                    int recency = breakpoints.recencyScore(today - totals.lastDay(c));
+                    int frequency = breakpoints.frequencyScore(totals.orders(c));
+                    int monetary = breakpoints.monetaryScore(totals.cents(c));
+                    stmt.setInt(1, recency);
+                    stmt.setInt(2, frequency);
+                    stmt.setInt(3, monetary);
+                    stmt.setString(4, RfmSegment.of(recency, frequency, monetary).name());
+                    stmt.setInt(5, totals.customerId(c));
+                    stmt.addBatch();
+                    if ((c + 1) % 1000 == 0) {
+                        stmt.executeBatch();
+                    }
+                }
+                stmt.executeBatch();
+            }
+            jobStateDAO.save(conn, jobState);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.shop.report;
+
+import java.util.Arrays;
+
+/**
+ * Orders, last order day and spend per customer id in an open-addressing table of
+ * primitive arrays, filled one order at a time while streaming the orders table.
+ * Not thread-safe.
+ */
+final class CustomerTotals {
+    private int[] table;
+    private int customers;
+    private int[] customerIds;
+    private int[] orders;
+    private int[] lastDay;
+    private long[] cents;
+
+    CustomerTotals() {
+        this.table = new int[1024];
+        Arrays.fill(table, -1);
+        this.customerIds = new int[512];
+        this.orders = new int[512];
+        this.lastDay = new int[512];
+        this.cents = new long[512];
+    }
+
+    void add(int customerId, int epochDay, long orderCents) {
+        int customer = indexOf(customerId);
+        if (orders[customer] == 0 || epochDay > lastDay[customer]) {
+            lastDay[customer] = epochDay;
+        }
+        orders[customer]++;
+        cents[customer] += orderCents;
+    }
+
+    int size() {
+        return customers;
+    }
+
+    int customerId(int customer) {
+        return customerIds[customer];
+    }
+
+    int orders(int customer) {
+        return orders[customer];
+    }
+
+    int lastDay(int customer) {
+        return lastDay[customer];
+    }
+
+    long cents(int customer) {
+        return cents[customer];
+    }
+
+    private int indexOf(int customerId) {
+        int mask = table.length - 1;
+        int slot = mix(customerId) & mask;
+        while (table[slot] >= 0) {
+            int customer = table[slot];
+            if (customerIds[customer] == customerId) {
+                return customer;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (customers == customerIds.length) {
+            int capacity = customers * 2;
+            customerIds = Arrays.copyOf(customerIds, capacity);
+            orders = Arrays.copyOf(orders, capacity);
+            lastDay = Arrays.copyOf(lastDay, capacity);
+            cents = Arrays.copyOf(cents, capacity);
+        }
+        int customer = customers++;
+        customerIds[customer] = customerId;
+        table[slot] = customer;
+        // Keep the table at most half full
+        if (customers * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return customer;
+    }
+
+    private void rehash(int size) {
+        table = new int[size];
+        Arrays.fill(table, -1);
+        int mask = size - 1;
+        for (int customer = 0; customer < customers; customer++) {
+            int slot = mix(customerIds[customer]) & mask;
+            while (table[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = customer;
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,127 @@
+package com.shop.report;
+
+import com.shop.model.ReorderSuggestion;
+
+/**
+ * Exponential smoothing fit of one product's daily units. With two weeks of history or more
+ * it is Holt-Winters with a damped additive trend and a day-of-week pattern, otherwise a
+ * plain smoothed level. The smoothing weights are picked from a small grid by the smallest
+ * one-day-ahead squared error, whose root is kept as the forecast error per day.
+ */
+final class DemandModel {
+    static final int SEASON = 7;
+    // Trend damping: a trend fades out instead of running away over the lead time
+    private static final double DAMPING = 0.9;
+
+    private static final double[] ALPHAS = {0.05, 0.1, 0.2, 0.3, 0.5};
+    private static final double[] BETAS = {0.0, 0.02, 0.05, 0.1};
+    private static final double[] GAMMAS = {0.05, 0.1, 0.2, 0.3};
+
+    final ReorderSuggestion.ForecastMethod method;
+    // Root mean squared one-day-ahead error
+    final double errorDeviation;
+    private final double level;
+    private final double trend;
+    // Day-of-week offsets, index 0 being the day after the series ends
+    private final double[] seasonal;
+    private final double sse;
+
+    private DemandModel(ReorderSuggestion.ForecastMethod method, double level, double trend,
+                        double[] seasonal, double sse, int errors) {
+        this.method = method;
+        this.level = level;
+        this.trend = trend;
+        this.seasonal = seasonal;
+        this.sse = sse;
+        // Without errors to go by, assume Poisson-like demand
+        this.errorDeviation = errors > 0 ? Math.sqrt(sse / errors) : Math.sqrt(Math.max(level, 0));
+    }
+
+    static DemandModel fit(double[] units) {
+        DemandModel best = null;
+        if (units.length >= 2 * SEASON) {
+            for (double alpha : ALPHAS) {
+                for (double beta : BETAS) {
+                    for (double gamma : GAMMAS) {
+                        DemandModel model = holtWinters(units, alpha, beta, gamma);
+                        if (best == null || model.sse < best.sse) {
+                            best = model;
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+        for (double alpha : ALPHAS) {
+            DemandModel model = smoothed(units, alpha);
+            if (best == null || model.sse < best.sse) {
+                best = model;
+            }
+        }
+        return best;
+    }
+
+    // Units expected on the day h days after the series ends (h >= 1), never negative
+    double forecast(int h) {
+        double damped = 0;
+        double factor = 1;
+        for (int i = 1; i <= h; i++) {
+            factor *= DAMPING;
+            damped += factor;
+        }
+        return Math.max(0, level + damped * trend + seasonal[(h - 1) % SEASON]);
+    }
+
+    // Sum of the forecasts for days first..last after the series ends
+    double forecast(int first, int last) {
+        double total = 0;
+        for (int h = first; h <= last; h++) {
+            total += forecast(h);
+        }
+        return total;
+    }
+
+    private static DemandModel holtWinters(double[] x, double alpha, double beta, double gamma) {
+        // Level and offsets from the first week, trend from how the second week differs
+        double level = mean(x, 0, SEASON);
+        double trend = (mean(x, SEASON, 2 * SEASON) - level) / SEASON;
+        double[] season = new double[SEASON];
+        for (int i = 0; i < SEASON; i++) {
+            season[i] = x[i] - level;
+        }
+        double sse = 0;
+        for (int t = SEASON; t < x.length; t++) {
+            double offset = season[t % SEASON];
+            double error = x[t] - (level + DAMPING * trend + offset);
+            sse += error * error;
+            double previous = level;
+            level = alpha * (x[t] - offset) + (1 - alpha) * (previous + DAMPING * trend);
+            trend = beta * (level - previous) + (1 - beta) * DAMPING * trend;
+            season[t % SEASON] = gamma * (x[t] - level) + (1 - gamma) * offset;
+        }
+        double[] ahead = new double[SEASON];
+        for (int i = 0; i < SEASON; i++) {
+            ahead[i] = season[(x.length + i) % SEASON];
+        }
+        return new DemandModel(ReorderSuggestion.ForecastMethod.SEASONAL, level, trend, ahead, sse, x.length - SEASON);
+    }
+
+    private static DemandModel smoothed(double[] x, double alpha) {
+        double level = x[0];
+        double sse = 0;
+        for (int t = 1; t < x.length; t++) {
+            double error = x[t] - level;
+            sse += error * error;
+            level += alpha * error;
+        }
+        return new DemandModel(ReorderSuggestion.ForecastMethod.SMOOTHED, level, 0, new double[SEASON], sse, x.length - 1);
+    }
+
+    private static double mean(double[] x, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += x[i];
+        }
+        return sum / (to - from);
+    }
+}
@@ -0,0 +1,159 @@
+package com.shop.report;
+
+import java.util.Arrays;
+
+/**
+ * Running totals per group key (orders, lines, quantity, revenue and cost cents) in an open-addressing
+ * table of primitive arrays, so a scan over millions of lines allocates nothing per line.
+ * Orders are counted once per group by remembering the last order seen in each group,
+ * which relies on an order's lines being adjacent in the scan, as they are in SalesColumns.
+ * Keys are longs so a two-level grouping packs both keys into one.
+ * Not thread-safe: each scan fills its own instance, and partial scans are merged.
+ */
+final class GroupTotals {
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private int[] table;
+    private int groups;
+    private long[] keys;
+    private long[] orders;
+    private long[] lines;
+    private long[] quantity;
+    private long[] cents;
+    private long[] costCents;
+    private int[] lastOrder;
+    private long distinctOrders;
+    private int lastAnyOrder = EMPTY;
+
+    GroupTotals() {
+        this.table = new int[64];
+        Arrays.fill(table, -1);
+        this.keys = new long[32];
+        this.orders = new long[32];
+        this.lines = new long[32];
+        this.quantity = new long[32];
+        this.cents = new long[32];
+        this.costCents = new long[32];
+        this.lastOrder = new int[32];
+    }
+
+    void add(long key, int orderId, int qty, long lineCents, long lineCost) {
+        if (lastAnyOrder != orderId) {
+            lastAnyOrder = orderId;
+            distinctOrders++;
+        }
+        int group = groupOf(key);
+        if (lastOrder[group] != orderId) {
+            lastOrder[group] = orderId;
+            orders[group]++;
+        }
+        lines[group]++;
+        quantity[group] += qty;
+        cents[group] += lineCents;
+        costCents[group] += lineCost;
+    }
+
+    /**
+     * Adds another scan's totals to these. The two scans must not share an order (true when
+     * they cover different days), or that order would be counted in both.
+     */
+    void merge(GroupTotals other) {
+        distinctOrders += other.distinctOrders;
+        for (int source = 0; source < other.groups; source++) {
+            int group = groupOf(other.keys[source]);
+            orders[group] += other.orders[source];
+            lines[group] += other.lines[source];
+            quantity[group] += other.quantity[source];
+            cents[group] += other.cents[source];
+            costCents[group] += other.costCents[source];
+        }
+    }
+
+    int size() {
+        return groups;
+    }
+
+    // Orders over all groups, each counted once even when its lines fall into several
+    long distinctOrders() {
+        return distinctOrders;
+    }
+
+    long key(int group) {
+        return keys[group];
+    }
+
+    long orders(int group) {
+        return orders[group];
+    }
+
+    long lines(int group) {
+        return lines[group];
+    }
+
+    long quantity(int group) {
+        return quantity[group];
+    }
+
+    long cents(int group) {
+        return cents[group];
+    }
+
+    long costCents(int group) {
+        return costCents[group];
+    }
+
+    private int groupOf(long key) {
+        int mask = table.length - 1;
+        int slot = mix(key) & mask;
+        while (true) {
+            int group = table[slot];
+            if (group < 0) {
+                return insert(key, slot);
+            }
+            if (keys[group] == key) {
+                return group;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int insert(long key, int slot) {
+        if (groups == keys.length) {
+            int capacity = groups * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            orders = Arrays.copyOf(orders, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            quantity = Arrays.copyOf(quantity, capacity);
+            cents = Arrays.copyOf(cents, capacity);
+            costCents = Arrays.copyOf(costCents, capacity);
+            lastOrder = Arrays.copyOf(lastOrder, capacity);
+        }
+        int group = groups++;
+        keys[group] = key;
+        lastOrder[group] = EMPTY;
+        table[slot] = group;
+        // Keep the table at most half full
+        if (groups * 2 > table.length) {
+            rehash();
+        }
+        return group;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        Arrays.fill(table, -1);
+        int mask = table.length - 1;
+        for (int group = 0; group < groups; group++) {
+            int slot = mix(keys[group]) & mask;
+            while (table[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = group;
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
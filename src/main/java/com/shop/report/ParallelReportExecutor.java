@@ -0,0 +1,128 @@
+package com.shop.report;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs report scans on a fork/join pool. A scan's line range is split in halves at day
+ * boundaries until the pieces are small, the pieces are aggregated on separate workers and
+ * their totals merged back up. Splitting only between days keeps every order in one piece,
+ * so order counts add up exactly. Several reports handed over together run side by side
+ * on the same pool. With a parallelism of 1 everything runs on the calling thread.
+ */
+public class ParallelReportExecutor {
+
+    // Below this many lines a piece is not worth another task
+    private static final int MIN_PARTITION_LINES = 32_768;
+    // Pieces per worker, so a slow worker does not hold up the merge
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    private final int parallelism;
+    private final ForkJoinPool pool;
+
+    // 0 means one worker per available processor
+    public ParallelReportExecutor(int parallelism) {
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        if (this.parallelism == 1) {
+            this.pool = null;
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.pool = new ForkJoinPool(this.parallelism, p -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                t.setName("reports-worker-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }, null, false);
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    GroupTotals aggregate(SalesColumns data, ReportEngine.Query query, int first, int last) {
+        if (pool == null) {
+            return ReportEngine.scan(data, query, first, last);
+        }
+        return pool.invoke(new ScanTask(data, query, first, last, partitionSize(last - first)));
+    }
+
+    // One result per query, in order; the queries share the pool's workers
+    List<GroupTotals> aggregateAll(SalesColumns data, List<ReportEngine.Query> queries, int[] firsts, int[] lasts) {
+        List<ScanTask> tasks = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            tasks.add(new ScanTask(data, queries.get(i), firsts[i], lasts[i], partitionSize(lasts[i] - firsts[i])));
+        }
+        List<GroupTotals> results = new ArrayList<>(tasks.size());
+        if (pool == null) {
+            for (ScanTask task : tasks) {
+                results.add(ReportEngine.scan(task.data, task.query, task.first, task.last));
+            }
+            return results;
+        }
+        pool.invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                ForkJoinTask.invokeAll(tasks);
+                return null;
+            }
+        });
+        for (ScanTask task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private int partitionSize(int lines) {
+        return Math.max(MIN_PARTITION_LINES, lines / (parallelism * PARTITIONS_PER_THREAD));
+    }
+
+    private static final class ScanTask extends RecursiveTask<GroupTotals> {
+        private static final long serialVersionUID = 1L;
+
+        private final SalesColumns data;
+        private final ReportEngine.Query query;
+        private final int first;
+        private final int last;
+        private final int partitionSize;
+
+        ScanTask(SalesColumns data, ReportEngine.Query query, int first, int last, int partitionSize) {
+            this.data = data;
+            this.query = query;
+            this.first = first;
+            this.last = last;
+            this.partitionSize = partitionSize;
+        }
+
+        @Override
+        protected GroupTotals compute() {
+            int split = last - first > partitionSize ? dayBoundary((first + last) >>> 1) : last;
+            if (split <= first || split >= last) {
+                return ReportEngine.scan(data, query, first, last);
+            }
+            ScanTask left = new ScanTask(data, query, first, split, partitionSize);
+            ScanTask right = new ScanTask(data, query, split, last, partitionSize);
+            right.fork();
+            GroupTotals totals = left.compute();
+            totals.merge(right.join());
+            return totals;
+        }
+
+        // Start of the day after the middle line's, or of the middle line's own day if that one runs to the end
+        private int dayBoundary(int middle) {
+            int next = data.lowerBound(data.epochDay[middle] + 1);
+            return next < last ? next : data.lowerBound(data.epochDay[middle]);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.shop.report;
+
+import com.shop.dao.ReorderSuggestionDAO;
+import com.shop.database.DatabaseConfig;
+import com.shop.model.ReorderSuggestion;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Batch job suggesting reorder points from sales history instead of the hand-entered
+ * min_stock_level. Reads each active product's units per day from the daily_sales rollup
+ * (forecast.history.days, up to yesterday), fits a DemandModel per product on a fork/join
+ * pool and writes the results to reorder_suggestions in one transaction:
+ * <ul>
+ *   <li>reorder point: forecast units over the lead time, plus safety stock of the safety
+ *       factor times the forecast error over the lead time</li>
+ *   <li>reorder quantity: forecast units over the order cycle that follows</li>
+ * </ul>
+ * Products without sales in the history get no suggestion and keep only their
+ * min_stock_level in ProductDAO.findLowStock.
+ */
+public class ReorderForecaster {
+    private static ReorderForecaster instance;
+
+    private final DatabaseConfig dbConfig;
+    private final ReorderSuggestionDAO suggestionDAO;
+    private final int historyDays;
+    private final int leadTimeDays;
+    private final int orderCycleDays;
+    private final double safetyFactor;
+    private final int parallelism;
+    private final int refreshHours;
+
+    private ReorderForecaster() {
+        this.dbConfig = DatabaseConfig.getInstance();
+        this.suggestionDAO = new ReorderSuggestionDAO();
+        this.historyDays = Math.max(1, dbConfig.getIntProperty("forecast.history.days", 365));
+        this.leadTimeDays = Math.max(1, dbConfig.getIntProperty("forecast.lead.time.days", 7));
+        this.orderCycleDays = Math.max(1, dbConfig.getIntProperty("forecast.order.cycle.days", 30));
+        this.safetyFactor = Math.max(0, dbConfig.getDoubleProperty("forecast.safety.factor", 1.65));
+        int workers = dbConfig.getIntProperty("forecast.parallelism", 0);
+        this.parallelism = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.refreshHours = dbConfig.getIntProperty("forecast.refresh.hours", 24);
+    }
+
+    public static ReorderForecaster getInstance() {
+        if (instance == null) {
+            synchronized (ReorderForecaster.class) {
+                if (instance == null) {
+                    instance = new ReorderForecaster();
+                }
+            }
+        }
+        return instance;
+    }
+
+    // Runs unless the last run is more recent than forecast.refresh.hours
+    public void runIfStale() throws SQLException {
+        LocalDateTime lastComputed = suggestionDAO.findLastComputed();
+        if (lastComputed != null && lastComputed.isAfter(LocalDateTime.now().minusHours(refreshHours))) {
+            return;
+        }
+        run();
+    }
+
+    // Recomputes and stores every suggestion; returns them
+    public synchronized List<ReorderSuggestion> run() throws SQLException {
+        long start = System.nanoTime();
+        LocalDate today = LocalDate.now();
+        Map<Integer, double[]> history = loadHistory(today.minusDays(historyDays), today);
+        long loaded = System.nanoTime();
+
+        LocalDateTime computedAt = LocalDateTime.now();
+        List<ReorderSuggestion> suggestions;
+        if (parallelism == 1) {
+            suggestions = history.entrySet().stream()
+                    .map(e -> suggest(e.getKey(), e.getValue(), computedAt))
+                    .filter(Objects::nonNull)
+                    .toList();
+        } else {
+            // The parallel stream runs on this pool's workers rather than the common pool
+            ForkJoinPool pool = newPool();
+            try {
+                suggestions = pool.submit(() -> history.entrySet().parallelStream()
+                        .map(e -> suggest(e.getKey(), e.getValue(), computedAt))
+                        .filter(Objects::nonNull)
+                        .toList()).join();
+            } finally {
+                pool.shutdown();
+            }
+        }
+        long fitted = System.nanoTime();
+
+        suggestionDAO.replaceAll(suggestions);
+        System.out.printf("Reorder suggestions: %d products (history %d ms, fitting %d ms on %d workers, total %d ms)%n",
+                suggestions.size(), (loaded - start) / 1_000_000, (fitted - loaded) / 1_000_000, parallelism,
+                (System.nanoTime() - start) / 1_000_000);
+        return suggestions;
+    }
+
+    // Product id -> units sold per day from first (inclusive) to end (exclusive), active products with sales only
+    private Map<Integer, double[]> loadHistory(LocalDate first, LocalDate end) throws SQLException {
+        int days = (int) ChronoUnit.DAYS.between(first, end);
+        String sql = """
+            SELECT ds.product_id, ds.sale_date, SUM(ds.quantity) AS units
+            FROM daily_sales ds
+            JOIN products p ON p.product_id = ds.product_id
+            WHERE p.is_active = TRUE AND ds.sale_date >= ? AND ds.sale_date < ?
+            GROUP BY ds.product_id, ds.sale_date
+        """;
+        Map<Integer, double[]> history = new HashMap<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setDate(1, Date.valueOf(first));
+            stmt.setDate(2, Date.valueOf(end));
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int day = (int) ChronoUnit.DAYS.between(first, rs.getDate("sale_date").toLocalDate());
+                    history.computeIfAbsent(rs.getInt("product_id"), id -> new double[days])[day] = rs.getInt("units");
+                }
+            }
+        }
+        return history;
+    }
+
+    private ReorderSuggestion suggest(int productId, double[] units, LocalDateTime computedAt) {
+        // A product's history starts with its first sale, so a new product is not fitted to months of zeros
+        int firstSale = 0;
+        while (firstSale < units.length && units[firstSale] <= 0) {
+            firstSale++;
+        }
+        if (firstSale == units.length) {
+            return null;
+        }
+        double[] series = firstSale > 0 ? Arrays.copyOfRange(units, firstSale, units.length) : units;
+        DemandModel model = DemandModel.fit(series);
+
+        double leadDemand = model.forecast(1, leadTimeDays);
+        double cycleDemand = model.forecast(leadTimeDays + 1, leadTimeDays + orderCycleDays);
+        int safetyStock = (int) Math.ceil(safetyFactor * model.errorDeviation * Math.sqrt(leadTimeDays));
+        int reorderPoint = (int) Math.ceil(leadDemand) + safetyStock;
+        int reorderQuantity = Math.max(1, (int) Math.ceil(cycleDemand));
+        BigDecimal dailyDemand = BigDecimal.valueOf(cycleDemand / orderCycleDays).setScale(2, RoundingMode.HALF_UP);
+        return new ReorderSuggestion(productId, reorderPoint, reorderQuantity, safetyStock, dailyDemand,
+                model.method, computedAt);
+    }
+
+    private ForkJoinPool newPool() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("forecast-worker-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, null, false);
+    }
+}
@@ -0,0 +1,474 @@
+package com.shop.report;
+
+import com.shop.cache.CacheStats;
+import com.shop.cache.CacheStatsRegistry;
+import com.shop.database.DatabaseConfig;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sales reports answered from memory: order lines are loaded once into SalesColumns and
+ * each report is a single pass over the lines in its date range, filtering and grouping
+ * on primitive columns. Large ranges are scanned in parallel by ParallelReportExecutor
+ * (reports.parallelism workers; 0 means one per processor). Writes to orders, items and payments
+ * report the orders they changed (through DailySalesDAO, which sees every one of them); the
+ * next report re-reads just those orders' lines. Writes that touch lines of many orders at
+ * once (a product changing category, a customer's orders deleted) mark the columns stale
+ * instead, and the next report reloads them.
+ */
+public class ReportEngine {
+    private static ReportEngine instance;
+
+    public enum Dimension {
+        DAY("Day"),
+        MONTH("Month"),
+        CATEGORY("Category"),
+        PRODUCT("Product"),
+        STATUS("Status"),
+        PAYMENT_METHOD("Payment method");
+
+        private final String label;
+
+        Dimension(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public boolean isTime() {
+            return this == DAY || this == MONTH;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * What to group by (optionally followed by a second dimension within each group) and
+     * which lines to count; null bounds and filters mean "any".
+     * Cancelled and refunded orders are left out unless asked for, as in daily_sales.
+     */
+    public static class Query {
+        private Dimension groupBy = Dimension.MONTH;
+        private Dimension thenBy;
+        private LocalDate from;
+        private LocalDate to;
+        private Integer categoryId;
+        private String paymentMethod;
+        private boolean includeCancelled;
+
+        public Query groupBy(Dimension groupBy) {
+            this.groupBy = groupBy;
+            return this;
+        }
+
+        public Query thenBy(Dimension thenBy) {
+            this.thenBy = thenBy;
+            return this;
+        }
+
+        public Query from(LocalDate from) {
+            this.from = from;
+            return this;
+        }
+
+        public Query to(LocalDate to) {
+            this.to = to;
+            return this;
+        }
+
+        public Query category(Integer categoryId) {
+            this.categoryId = categoryId;
+            return this;
+        }
+
+        public Query paymentMethod(String paymentMethod) {
+            this.paymentMethod = paymentMethod;
+            return this;
+        }
+
+        public Query includeCancelled(boolean includeCancelled) {
+            this.includeCancelled = includeCancelled;
+            return this;
+        }
+
+        public Dimension getGroupBy() {
+            return groupBy;
+        }
+
+        public Dimension getThenBy() {
+            return thenBy;
+        }
+    }
+
+    public static class Row {
+        private final int key;
+        private final String label;
+        private final int subKey;
+        private final String subLabel;
+        private final long orders;
+        private final long lines;
+        private final long quantity;
+        private final BigDecimal revenue;
+        private final BigDecimal cost;
+
+        Row(int key, String label, int subKey, String subLabel, long orders, long lines, long quantity,
+            long cents, long costCents) {
+            this.key = key;
+            this.label = label;
+            this.subKey = subKey;
+            this.subLabel = subLabel;
+            this.orders = orders;
+            this.lines = lines;
+            this.quantity = quantity;
+            this.revenue = BigDecimal.valueOf(cents, 2);
+            this.cost = BigDecimal.valueOf(costCents, 2);
+        }
+
+        // Epoch day, year * 12 + month - 1, category or product id, or dictionary code
+        public int getKey() {
+            return key;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        // Key and label within the group when the query has a second dimension
+        public int getSubKey() {
+            return subKey;
+        }
+
+        public String getSubLabel() {
+            return subLabel;
+        }
+
+        public long getOrders() {
+            return orders;
+        }
+
+        public long getLines() {
+            return lines;
+        }
+
+        public long getQuantity() {
+            return quantity;
+        }
+
+        // Sum of line totals, before order-level tax and discount
+        public BigDecimal getRevenue() {
+            return revenue;
+        }
+
+        // At the unit costs the lines were sold at
+        public BigDecimal getCost() {
+            return cost;
+        }
+
+        public BigDecimal getMargin() {
+            return revenue.subtract(cost);
+        }
+    }
+
+    public static class Result {
+        private final List<Row> rows;
+        private final Row total;
+        private final int scannedLines;
+        private final long elapsedNanos;
+
+        Result(List<Row> rows, Row total, int scannedLines, long elapsedNanos) {
+            this.rows = rows;
+            this.total = total;
+            this.scannedLines = scannedLines;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        // Ordered as described at rowOrder
+        public List<Row> getRows() {
+            return rows;
+        }
+
+        public Row getTotal() {
+            return total;
+        }
+
+        public int getScannedLines() {
+            return scannedLines;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+
+    // Null for a synthetic engine, which has nothing to load
+    private final DatabaseConfig dbConfig;
+    private final CacheStats stats;
+    private final ParallelReportExecutor executor;
+
+    // Beyond this many changed orders a full reload is about as quick as patching them in
+    private static final int MAX_PATCHED_ORDERS = 5_000;
+
+    private volatile SalesColumns columns;
+    private volatile boolean stale;
+    // Orders written since the columns were loaded or patched
+    private final Set<Integer> changedOrders = ConcurrentHashMap.newKeySet();
+
+    private ReportEngine(DatabaseConfig dbConfig, String statsName, int parallelism) {
+        this.dbConfig = dbConfig;
+        this.stats = CacheStatsRegistry.getInstance().register(statsName, this::size, this::invalidate);
+        this.executor = new ParallelReportExecutor(parallelism);
+    }
+
+    public static ReportEngine getInstance() {
+        if (instance == null) {
+            synchronized (ReportEngine.class) {
+                if (instance == null) {
+                    DatabaseConfig dbConfig = DatabaseConfig.getInstance();
+                    instance = new ReportEngine(dbConfig, "reports.salesColumns",
+                            dbConfig.getIntProperty("reports.parallelism", 0));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * A separate engine over random order lines from the last days, for benchmarks. It is
+     * built without DatabaseConfig, so nothing connects to or migrates the database; once
+     * invalidated it has nothing to report on. Shut it down when done.
+     */
+    public static ReportEngine synthetic(int lines, int days, int parallelism) {
+        ReportEngine engine = new ReportEngine(null, "reports.syntheticColumns", parallelism);
+        engine.columns = SalesColumns.synthetic(lines, days, 42);
+        return engine;
+    }
+
+    public boolean isLoaded() {
+        return columns != null && !stale && changedOrders.isEmpty();
+    }
+
+    public int size() {
+        SalesColumns current = columns;
+        return current != null ? current.size : 0;
+    }
+
+    // Payment methods seen in the loaded lines, UNPAID included
+    public List<String> getPaymentMethods() {
+        SalesColumns current = columns;
+        return current != null ? List.of(current.paymentMethodNames) : List.of();
+    }
+
+    // Loads the columns, or brings them up to date after writes; reports keep using the old ones meanwhile
+    public synchronized void ensureLoaded() throws SQLException {
+        if (columns != null && !stale && changedOrders.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        if (columns != null && !stale && changedOrders.size() <= MAX_PATCHED_ORDERS) {
+            // Taken out first: an order written during the patch is patched again next time
+            List<Integer> orders = new ArrayList<>(changedOrders);
+            changedOrders.removeAll(orders);
+            try {
+                columns = columns.withOrders(dbConfig, orders);
+            } catch (SQLException e) {
+                changedOrders.addAll(orders);
+                stats.recordLoadFailure();
+                throw e;
+            }
+            stats.recordMiss(System.nanoTime() - start);
+            System.out.printf("Report columns patched: %d orders in %d ms%n",
+                    orders.size(), (System.nanoTime() - start) / 1_000_000);
+            return;
+        }
+        if (dbConfig == null) {
+            throw new IllegalStateException("A synthetic report engine has no database to load from");
+        }
+        // Cleared first: a write during the load marks the new columns stale again
+        stale = false;
+        changedOrders.clear();
+        try {
+            columns = SalesColumns.load(dbConfig);
+        } catch (SQLException e) {
+            stale = true;
+            stats.recordLoadFailure();
+            throw e;
+        }
+        stats.recordMiss(System.nanoTime() - start);
+        System.out.printf("Report columns loaded: %d order lines in %d ms%n",
+                columns.size, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Cheap enough to call on every order write: the next report re-reads the order's lines
+    public void orderChanged(int orderId) {
+        changedOrders.add(orderId);
+    }
+
+    // For writes that change lines of many orders at once: the next report reloads everything
+    public void markStale() {
+        stale = true;
+    }
+
+    public synchronized void invalidate() {
+        if (columns != null) {
+            stats.recordEviction();
+        }
+        columns = null;
+        stale = false;
+        changedOrders.clear();
+    }
+
+    public Result run(Query query) throws SQLException {
+        return run(query, executor);
+    }
+
+    // On the given executor instead of the engine's own, e.g. to compare worker counts
+    public Result run(Query query, ParallelReportExecutor on) throws SQLException {
+        ensureLoaded();
+        SalesColumns data = columns;
+        long start = System.nanoTime();
+        int first = firstLine(data, query);
+        int last = lastLine(data, query);
+        GroupTotals totals = on.aggregate(data, query, first, last);
+        Result result = toResult(data, query, totals, last - first, System.nanoTime() - start);
+        stats.recordHit();
+        return result;
+    }
+
+    // Independent reports over the same columns, run side by side; results in query order
+    public List<Result> runAll(List<Query> queries) throws SQLException {
+        ensureLoaded();
+        SalesColumns data = columns;
+        long start = System.nanoTime();
+        int[] firsts = new int[queries.size()];
+        int[] lasts = new int[queries.size()];
+        for (int i = 0; i < queries.size(); i++) {
+            firsts[i] = firstLine(data, queries.get(i));
+            lasts[i] = lastLine(data, queries.get(i));
+        }
+        List<GroupTotals> totals = executor.aggregateAll(data, queries, firsts, lasts);
+        long elapsed = System.nanoTime() - start;
+        List<Result> results = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            results.add(toResult(data, queries.get(i), totals.get(i), lasts[i] - firsts[i], elapsed));
+            stats.recordHit();
+        }
+        return results;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static int firstLine(SalesColumns data, Query query) {
+        return query.from != null ? data.lowerBound((int) query.from.toEpochDay()) : 0;
+    }
+
+    private static int lastLine(SalesColumns data, Query query) {
+        return query.to != null ? data.lowerBound((int) query.to.toEpochDay() + 1) : data.size;
+    }
+
+    // One pass over lines [first, last); the filters are resolved to codes before the loop
+    static GroupTotals scan(SalesColumns data, Query query, int first, int last) {
+        boolean[] statusIncluded = new boolean[data.statusNames.length];
+        for (int code = 0; code < statusIncluded.length; code++) {
+            String status = data.statusNames[code];
+            statusIncluded[code] = query.includeCancelled || !(status.equals("CANCELLED") || status.equals("REFUNDED"));
+        }
+        int category = query.categoryId != null ? query.categoryId : -1;
+        int payment = query.paymentMethod != null ? SalesColumns.codeOf(data.paymentMethodNames, query.paymentMethod) : -1;
+        GroupTotals totals = new GroupTotals();
+        if (query.paymentMethod != null && payment < 0) {
+            return totals;
+        }
+
+        Dimension groupBy = query.groupBy;
+        Dimension thenBy = query.thenBy;
+        for (int i = first; i < last; i++) {
+            if (!statusIncluded[data.status[i]]
+                    || (category >= 0 && data.categoryId[i] != category)
+                    || (payment >= 0 && data.paymentMethod[i] != payment)) {
+                continue;
+            }
+            long key = (long) keyOf(data, groupBy, i) << 32;
+            if (thenBy != null) {
+                key |= keyOf(data, thenBy, i) & 0xFFFFFFFFL;
+            }
+            totals.add(key, data.orderId[i], data.quantity[i], data.lineCents[i], data.costCents[i]);
+        }
+        return totals;
+    }
+
+    private static int keyOf(SalesColumns data, Dimension dimension, int line) {
+        return switch (dimension) {
+            case DAY -> data.epochDay[line];
+            case MONTH -> data.monthOf(data.epochDay[line]);
+            case CATEGORY -> data.categoryId[line];
+            case PRODUCT -> data.productId[line];
+            case STATUS -> data.status[line];
+            case PAYMENT_METHOD -> data.paymentMethod[line];
+        };
+    }
+
+    static Result toResult(SalesColumns data, Query query, GroupTotals totals, int scannedLines, long elapsedNanos) {
+        Dimension groupBy = query.groupBy;
+        Dimension thenBy = query.thenBy;
+        List<Row> rows = new ArrayList<>(totals.size());
+        long lines = 0;
+        long quantity = 0;
+        long cents = 0;
+        long costCents = 0;
+        for (int group = 0; group < totals.size(); group++) {
+            int key = (int) (totals.key(group) >> 32);
+            int subKey = (int) totals.key(group);
+            rows.add(new Row(key, label(data, groupBy, key),
+                    subKey, thenBy != null ? label(data, thenBy, subKey) : null,
+                    totals.orders(group), totals.lines(group), totals.quantity(group),
+                    totals.cents(group), totals.costCents(group)));
+            lines += totals.lines(group);
+            quantity += totals.quantity(group);
+            cents += totals.cents(group);
+            costCents += totals.costCents(group);
+        }
+        rows.sort(rowOrder(groupBy, thenBy));
+        Row total = new Row(0, "Total", 0, null, totals.distinctOrders(), lines, quantity, cents, costCents);
+        return new Result(rows, total, scannedLines, elapsedNanos);
+    }
+
+    // Time groups in date order and the others by revenue, highest first; in a two-level
+    // report the outer groups go by name instead, so each one's rows stay together
+    private static Comparator<Row> rowOrder(Dimension groupBy, Dimension thenBy) {
+        if (thenBy == null) {
+            return groupBy.isTime() ? Comparator.comparingInt(Row::getKey)
+                    : Comparator.comparing(Row::getRevenue).reversed().thenComparing(Row::getLabel);
+        }
+        Comparator<Row> outer = groupBy.isTime() ? Comparator.comparingInt(Row::getKey)
+                : Comparator.comparing(Row::getLabel).thenComparingInt(Row::getKey);
+        Comparator<Row> inner = thenBy.isTime() ? Comparator.comparingInt(Row::getSubKey)
+                : Comparator.comparing(Row::getRevenue).reversed().thenComparing(Row::getSubLabel);
+        return outer.thenComparing(inner);
+    }
+
+    private static String label(SalesColumns data, Dimension groupBy, int key) {
+        return switch (groupBy) {
+            case DAY -> LocalDate.ofEpochDay(key).toString();
+            case MONTH -> YearMonth.of(key / 12, key % 12 + 1).toString();
+            case CATEGORY -> key == 0 ? "Uncategorized" : data.categoryNames.getOrDefault(key, "Category #" + key);
+            case PRODUCT -> data.productNames.getOrDefault(key, "Product #" + key);
+            case STATUS -> data.statusNames[key];
+            case PAYMENT_METHOD -> data.paymentMethodNames[key];
+        };
+    }
+}
@@ -0,0 +1,387 @@
+package com.shop.report;
+
+import com.shop.database.DatabaseConfig;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Every order line held as parallel primitive arrays, one entry per line, sorted by
+ * order date and then order: ids as ints, dates as epoch days, money as cents, and the
+ * order status and payment method as byte codes into small dictionaries.
+ * Immutable once loaded, so any number of threads can scan it without a lock; a reload
+ * builds a new instance.
+ */
+final class SalesColumns {
+    static final String UNPAID = "UNPAID";
+
+    // Each order's earliest completed payment gives its payment method; %s narrows the orders
+    private static final String PAYMENTS = """
+        SELECT order_id, payment_method FROM payments
+        WHERE status = 'COMPLETED'%s
+        ORDER BY order_id, payment_date, payment_id
+    """;
+
+    // %s narrows the orders
+    private static final String LINES = """
+        SELECT oi.order_id, o.customer_id, o.order_date, COALESCE(o.status, 'PENDING') AS status,
+               oi.product_id, COALESCE(p.category_id, 0) AS category_id, oi.quantity, oi.line_total,
+               COALESCE(oi.unit_cost, 0) * oi.quantity AS line_cost
+        FROM order_items oi
+        JOIN orders o ON o.order_id = oi.order_id
+        LEFT JOIN products p ON p.product_id = oi.product_id%s
+        ORDER BY o.order_date, oi.order_id, oi.order_item_id
+    """;
+
+    final int size;
+    final int[] orderId;
+    final int[] customerId;
+    final int[] productId;
+    // The product's current category, 0 when it has none (same rule as daily_sales)
+    final int[] categoryId;
+    final int[] epochDay;
+    final int[] quantity;
+    final long[] lineCents;
+    // Quantity times the unit cost the line was sold at (as in daily_sales); 0 when it has none
+    final long[] costCents;
+    final byte[] status;
+    final byte[] paymentMethod;
+
+    final String[] statusNames;
+    final String[] paymentMethodNames;
+    final Map<Integer, String> productNames;
+    final Map<Integer, String> categoryNames;
+
+    // year * 12 + month - 1 for each day from firstDay, so month grouping is a table lookup
+    private final int firstDay;
+    private final int[] monthOfDay;
+
+    private SalesColumns(Builder builder, Map<Integer, String> productNames, Map<Integer, String> categoryNames) {
+        this.size = builder.size;
+        this.orderId = Arrays.copyOf(builder.orderId, size);
+        this.customerId = Arrays.copyOf(builder.customerId, size);
+        this.productId = Arrays.copyOf(builder.productId, size);
+        this.categoryId = Arrays.copyOf(builder.categoryId, size);
+        this.epochDay = Arrays.copyOf(builder.epochDay, size);
+        this.quantity = Arrays.copyOf(builder.quantity, size);
+        this.lineCents = Arrays.copyOf(builder.lineCents, size);
+        this.costCents = Arrays.copyOf(builder.costCents, size);
+        this.status = Arrays.copyOf(builder.status, size);
+        this.paymentMethod = Arrays.copyOf(builder.paymentMethod, size);
+        this.statusNames = builder.statuses.names.toArray(new String[0]);
+        this.paymentMethodNames = builder.paymentMethods.names.toArray(new String[0]);
+        this.productNames = productNames;
+        this.categoryNames = categoryNames;
+
+        this.firstDay = size > 0 ? epochDay[0] : 0;
+        int days = size > 0 ? epochDay[size - 1] - firstDay + 1 : 0;
+        this.monthOfDay = new int[days];
+        for (int day = 0; day < days; day++) {
+            LocalDate date = LocalDate.ofEpochDay(firstDay + day);
+            monthOfDay[day] = date.getYear() * 12 + date.getMonthValue() - 1;
+        }
+    }
+
+    static SalesColumns load(DatabaseConfig dbConfig) throws SQLException {
+        Map<Integer, String> paymentByOrder = new HashMap<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(PAYMENTS.formatted(""))) {
+            stmt.setFetchSize(1000);
+            readPayments(stmt, paymentByOrder);
+        }
+
+        Map<Integer, String> productNames = new HashMap<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(
+                "SELECT product_id, product_name FROM products");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                productNames.put(rs.getInt("product_id"), rs.getString("product_name"));
+            }
+        }
+
+        Builder builder = new Builder(4096);
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(LINES.formatted(""))) {
+            stmt.setFetchSize(1000);
+            readLines(stmt, paymentByOrder, builder);
+        }
+        return new SalesColumns(builder, productNames, loadCategoryNames(dbConfig));
+    }
+
+    /**
+     * A copy with the lines of the given orders read again: an order's old lines are
+     * replaced by its current ones, so changed orders are updated, new ones added and
+     * deleted ones dropped, without reading the other orders. The names of the products
+     * on those lines and of every category are read again too.
+     */
+    SalesColumns withOrders(DatabaseConfig dbConfig, Collection<Integer> orders) throws SQLException {
+        int[] changed = orders.stream().mapToInt(Integer::intValue).sorted().toArray();
+        String ids = String.join(", ", Collections.nCopies(changed.length, "?"));
+
+        Map<Integer, String> paymentByOrder = new HashMap<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(
+                PAYMENTS.formatted(" AND order_id IN (" + ids + ")"))) {
+            setIds(stmt, changed);
+            readPayments(stmt, paymentByOrder);
+        }
+        Builder fresh = new Builder(Math.max(16, changed.length * 4));
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(
+                LINES.formatted(" WHERE oi.order_id IN (" + ids + ")"))) {
+            setIds(stmt, changed);
+            readLines(stmt, paymentByOrder, fresh);
+        }
+        Map<Integer, String> products = new HashMap<>(productNames);
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(
+                "SELECT product_id, product_name FROM products WHERE product_id IN "
+                        + "(SELECT product_id FROM order_items WHERE order_id IN (" + ids + "))")) {
+            setIds(stmt, changed);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    products.put(rs.getInt("product_id"), rs.getString("product_name"));
+                }
+            }
+        }
+
+        // Both are in day order: the fresh lines of a day go after the kept lines of that day
+        Builder merged = new Builder(Math.max(16, size + fresh.size));
+        for (String name : statusNames) {
+            merged.statuses.encode(name);
+        }
+        for (String name : paymentMethodNames) {
+            merged.paymentMethods.encode(name);
+        }
+        int next = 0;
+        for (int line = 0; line < size; line++) {
+            if (Arrays.binarySearch(changed, orderId[line]) >= 0) {
+                continue;
+            }
+            while (next < fresh.size && fresh.epochDay[next] < epochDay[line]) {
+                merged.add(fresh, next++);
+            }
+            // Same dictionaries so far, so the codes carry over
+            merged.add(orderId[line], customerId[line], productId[line], categoryId[line], epochDay[line],
+                    quantity[line], lineCents[line], costCents[line], status[line], paymentMethod[line]);
+        }
+        while (next < fresh.size) {
+            merged.add(fresh, next++);
+        }
+        return new SalesColumns(merged, products, loadCategoryNames(dbConfig));
+    }
+
+    private static void setIds(PreparedStatement stmt, int[] ids) throws SQLException {
+        for (int i = 0; i < ids.length; i++) {
+            stmt.setInt(i + 1, ids[i]);
+        }
+    }
+
+    private static void readPayments(PreparedStatement stmt, Map<Integer, String> paymentByOrder) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                paymentByOrder.putIfAbsent(rs.getInt("order_id"), rs.getString("payment_method"));
+            }
+        }
+    }
+
+    private static void readLines(PreparedStatement stmt, Map<Integer, String> paymentByOrder, Builder builder)
+            throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                int order = rs.getInt("order_id");
+                builder.add(order,
+                        rs.getInt("customer_id"),
+                        rs.getInt("product_id"),
+                        rs.getInt("category_id"),
+                        (int) rs.getTimestamp("order_date").toLocalDateTime().toLocalDate().toEpochDay(),
+                        rs.getInt("quantity"),
+                        toCents(rs.getBigDecimal("line_total")),
+                        toCents(rs.getBigDecimal("line_cost")),
+                        rs.getString("status"),
+                        paymentByOrder.getOrDefault(order, UNPAID));
+            }
+        }
+    }
+
+    private static Map<Integer, String> loadCategoryNames(DatabaseConfig dbConfig) throws SQLException {
+        Map<Integer, String> categoryNames = new HashMap<>();
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(
+                "SELECT category_id, category_name FROM categories");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                categoryNames.put(rs.getInt("category_id"), rs.getString("category_name"));
+            }
+        }
+        return categoryNames;
+    }
+
+    /**
+     * Random order lines spread evenly over the given number of days up to today, for
+     * benchmarks; nothing is read from or written to the database.
+     */
+    static SalesColumns synthetic(int lines, int days, long seed) {
+        Random random = new Random(seed);
+        String[] statuses = {"PENDING", "PROCESSING", "SHIPPED", "DELIVERED", "DELIVERED", "DELIVERED", "CANCELLED", "REFUNDED"};
+        String[] methods = {UNPAID, "CASH", "CREDIT_CARD", "DEBIT_CARD", "PAYPAL", "BANK_TRANSFER"};
+        int products = 2_000;
+        int categories = 20;
+        Map<Integer, String> productNames = new HashMap<>();
+        for (int product = 1; product <= products; product++) {
+            productNames.put(product, "Product " + product);
+        }
+        Map<Integer, String> categoryNames = new HashMap<>();
+        for (int category = 1; category <= categories; category++) {
+            categoryNames.put(category, "Category " + category);
+        }
+
+        Builder builder = new Builder(Math.max(16, lines));
+        int firstDay = (int) LocalDate.now().toEpochDay() - days + 1;
+        int order = 0;
+        while (builder.size < lines) {
+            order++;
+            int day = firstDay + (int) ((long) builder.size * days / lines);
+            int customer = 1 + random.nextInt(50_000);
+            String status = statuses[random.nextInt(statuses.length)];
+            String method = methods[random.nextInt(methods.length)];
+            int orderLines = Math.min(1 + random.nextInt(5), lines - builder.size);
+            for (int line = 0; line < orderLines; line++) {
+                int product = 1 + random.nextInt(products);
+                int qty = 1 + random.nextInt(4);
+                long unitCents = 100 + product * 7L % 20_000;
+                builder.add(order, customer, product, 1 + product % categories, day, qty,
+                        qty * unitCents, qty * unitCents * 6 / 10, status, method);
+            }
+        }
+        return new SalesColumns(builder, productNames, categoryNames);
+    }
+
+    // First line on or after the given day
+    int lowerBound(int day) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (epochDay[mid] < day) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    int monthOf(int day) {
+        return monthOfDay[day - firstDay];
+    }
+
+    // Dictionary code of a status or payment method name, or -1 when no line has it
+    static int codeOf(String[] names, String name) {
+        for (int code = 0; code < names.length; code++) {
+            if (names[code].equals(name)) {
+                return code;
+            }
+        }
+        return -1;
+    }
+
+    static long toCents(BigDecimal amount) {
+        return amount == null ? 0 : amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static final class Dictionary {
+        private final Map<String, Byte> codes = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+
+        byte encode(String name) {
+            Byte code = codes.get(name);
+            if (code == null) {
+                if (names.size() == Byte.MAX_VALUE) {
+                    throw new IllegalStateException("Too many distinct values for a byte column: " + name);
+                }
+                code = (byte) names.size();
+                codes.put(name, code);
+                names.add(name);
+            }
+            return code;
+        }
+    }
+
+    private static final class Builder {
+        private int size;
+        private int[] orderId;
+        private int[] customerId;
+        private int[] productId;
+        private int[] categoryId;
+        private int[] epochDay;
+        private int[] quantity;
+        private long[] lineCents;
+        private long[] costCents;
+        private byte[] status;
+        private byte[] paymentMethod;
+        private final Dictionary statuses = new Dictionary();
+        private final Dictionary paymentMethods = new Dictionary();
+
+        Builder(int capacity) {
+            orderId = new int[capacity];
+            customerId = new int[capacity];
+            productId = new int[capacity];
+            categoryId = new int[capacity];
+            epochDay = new int[capacity];
+            quantity = new int[capacity];
+            lineCents = new long[capacity];
+            costCents = new long[capacity];
+            status = new byte[capacity];
+            paymentMethod = new byte[capacity];
+        }
+
+        void add(int order, int customer, int product, int category, int day, int qty, long cents, long cost,
+                 String statusName, String paymentMethodName) {
+            add(order, customer, product, category, day, qty, cents, cost,
+                    statuses.encode(statusName), paymentMethods.encode(paymentMethodName));
+        }
+
+        // A line of another builder, whose dictionary codes may differ from this one's
+        void add(Builder other, int line) {
+            add(other.orderId[line], other.customerId[line], other.productId[line], other.categoryId[line],
+                    other.epochDay[line], other.quantity[line], other.lineCents[line], other.costCents[line],
+                    other.statuses.names.get(other.status[line]),
+                    other.paymentMethods.names.get(other.paymentMethod[line]));
+        }
+
+        void add(int order, int customer, int product, int category, int day, int qty, long cents, long cost,
+                 byte statusCode, byte paymentMethodCode) {
+            if (size == orderId.length) {
+                int capacity = size * 2;
+                orderId = Arrays.copyOf(orderId, capacity);
+                customerId = Arrays.copyOf(customerId, capacity);
+                productId = Arrays.copyOf(productId, capacity);
+                categoryId = Arrays.copyOf(categoryId, capacity);
+                epochDay = Arrays.copyOf(epochDay, capacity);
+                quantity = Arrays.copyOf(quantity, capacity);
+                lineCents = Arrays.copyOf(lineCents, capacity);
+                costCents = Arrays.copyOf(costCents, capacity);
+                status = Arrays.copyOf(status, capacity);
+                paymentMethod = Arrays.copyOf(paymentMethod, capacity);
+            }
+            orderId[size] = order;
+            customerId[size] = customer;
+            productId[size] = product;
+            categoryId[size] = category;
+            epochDay[size] = day;
+            quantity[size] = qty;
+            lineCents[size] = cents;
+            costCents[size] = cost;
+            status[size] = statusCode;
+            paymentMethod[size] = paymentMethodCode;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.shop.report;
+
+import com.shop.dao.CustomerReachDAO;
+import com.shop.dao.DailySalesDAO;
+import com.shop.dao.OrderValueDAO;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The database-writing batch work run once at start-up, apart from the cache warm-up:
+ * the rollup backfills (which only do work the first time the application starts with
+ * their tables), the reorder forecasts when stale, and the customer segment scores.
+ * The steps run one after another on their own thread, each on a connection of its own,
+ * since the forecasts and the segments read what the backfills write.
+ */
+public class StartupBatchJob {
+    private static StartupBatchJob instance;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "startup-batch-job");
+        t.setDaemon(true);
+        return t;
+    });
+    private CompletableFuture<Void> run;
+
+    private StartupBatchJob() {
+    }
+
+    public static StartupBatchJob getInstance() {
+        if (instance == null) {
+            synchronized (StartupBatchJob.class) {
+                if (instance == null) {
+                    instance = new StartupBatchJob();
+                }
+            }
+        }
+        return instance;
+    }
+
+    // Safe to call more than once; only the first call starts the job
+    public synchronized CompletableFuture<Void> start() {
+        if (run != null) {
+            return run;
+        }
+        long start = System.nanoTime();
+        run = CompletableFuture.runAsync(() -> {
+            runStep("daily sales backfill", () -> new DailySalesDAO().backfillIfEmpty());
+            runStep("reorder forecasts", () -> ReorderForecaster.getInstance().runIfStale());
+            runStep("customer reach backfill", () -> new CustomerReachDAO().backfillIfEmpty());
+            runStep("order value backfill", () -> new OrderValueDAO().backfillIfEmpty());
+            runStep("customer segments", () -> CustomerSegmentation.getInstance().run());
+            System.out.println("Start-up batch job finished in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }, executor);
+        return run;
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    // A failed step is retried at the next start; the later steps still run
+    private static void runStep(String name, Step step) {
+        try {
+            step.run();
+        } catch (Exception e) {
+            System.err.println("Start-up batch job step " + name + " failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.shop.report;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Merging t-digest of a value distribution: weighted centroids that are small near the
+ * tails and larger towards the median (the arcsine scale function with COMPRESSION), so
+ * extreme quantiles such as p99 stay accurate while the sketch keeps at most about
+ * COMPRESSION centroids. Digests merge by pooling their centroids, so the quantiles of any
+ * union of days or payment methods come from their merged digests.
+ * Values are buffered and folded into the centroids when the buffer fills or the digest is
+ * read. Not thread-safe.
+ */
+public final class TDigest {
+    public static final int COMPRESSION = 200;
+    private static final int BUFFER = 5 * COMPRESSION;
+    private static final byte FORMAT = 1;
+
+    private double[] means = new double[0];
+    private long[] weights = new long[0];
+    private int centroids;
+
+    private final double[] bufferMeans = new double[BUFFER];
+    private final long[] bufferWeights = new long[BUFFER];
+    private int buffered;
+
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    public void merge(TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.centroids; i++) {
+            add(other.means[i], other.weights[i]);
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public double min() {
+        return count > 0 ? min : Double.NaN;
+    }
+
+    public double max() {
+        return count > 0 ? max : Double.NaN;
+    }
+
+    /**
+     * Estimated value below which the fraction q of the values fall, interpolated between
+     * centroid means (and the exact min and max at the ends); NaN when empty.
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + q);
+        }
+        compress();
+        if (centroids == 0) {
+            return Double.NaN;
+        }
+        if (centroids == 1) {
+            return means[0];
+        }
+        double index = q * count;
+        // Each centroid's mean sits at the middle of its weight
+        double half = weights[0] / 2.0;
+        if (index < half) {
+            return min + (means[0] - min) * index / half;
+        }
+        double cumulative = half;
+        for (int i = 0; i < centroids - 1; i++) {
+            double step = (weights[i] + weights[i + 1]) / 2.0;
+            if (cumulative + step > index) {
+                return means[i] + (means[i + 1] - means[i]) * (index - cumulative) / step;
+            }
+            cumulative += step;
+        }
+        half = weights[centroids - 1] / 2.0;
+        double beyond = Math.min(index - cumulative, half);
+        return means[centroids - 1] + (max - means[centroids - 1]) * beyond / half;
+    }
+
+    public byte[] toBytes() {
+        compress();
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 8 + 8 + 2 + centroids * 16);
+        buffer.put(FORMAT);
+        buffer.putDouble(min);
+        buffer.putDouble(max);
+        buffer.putShort((short) centroids);
+        for (int i = 0; i < centroids; i++) {
+            buffer.putDouble(means[i]);
+            buffer.putLong(weights[i]);
+        }
+        return buffer.array();
+    }
+
+    public static TDigest fromBytes(byte[] bytes) {
+        TDigest digest = new TDigest();
+        if (bytes == null || bytes.length == 0) {
+            return digest;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (bytes.length < 19 || buffer.get() != FORMAT) {
+            throw new IllegalArgumentException("Not a t-digest");
+        }
+        double min = buffer.getDouble();
+        double max = buffer.getDouble();
+        int centroids = buffer.getShort() & 0xFFFF;
+        if (buffer.remaining() != centroids * 16) {
+            throw new IllegalArgumentException("Truncated t-digest: " + bytes.length + " bytes");
+        }
+        digest.means = new double[centroids];
+        digest.weights = new long[centroids];
+        for (int i = 0; i < centroids; i++) {
+            digest.means[i] = buffer.getDouble();
+            digest.weights[i] = buffer.getLong();
+            digest.count += digest.weights[i];
+        }
+        digest.centroids = centroids;
+        if (centroids > 0) {
+            digest.min = min;
+            digest.max = max;
+        }
+        return digest;
+    }
+
+    private void add(double mean, long weight) {
+        if (Double.isNaN(mean)) {
+            throw new IllegalArgumentException("Cannot add NaN to a t-digest");
+        }
+        if (buffered == BUFFER) {
+            compress();
+        }
+        bufferMeans[buffered] = mean;
+        bufferWeights[buffered] = weight;
+        buffered++;
+        count += weight;
+        min = Math.min(min, mean);
+        max = Math.max(max, mean);
+    }
+
+    // Folds the buffer into the centroids: one pass in mean order, joining neighbours while
+    // the joined centroid spans at most one unit of the scale function
+    private void compress() {
+        if (buffered == 0) {
+            return;
+        }
+        int total = centroids + buffered;
+        double[] allMeans = Arrays.copyOf(means, total);
+        long[] allWeights = Arrays.copyOf(weights, total);
+        System.arraycopy(bufferMeans, 0, allMeans, centroids, buffered);
+        System.arraycopy(bufferWeights, 0, allWeights, centroids, buffered);
+        buffered = 0;
+
+        Integer[] order = new Integer[total];
+        for (int i = 0; i < total; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(allMeans[a], allMeans[b]));
+
+        double[] mergedMeans = new double[total];
+        long[] mergedWeights = new long[total];
+        int merged = 0;
+        long before = 0;
+        double mean = allMeans[order[0]];
+        long weight = allWeights[order[0]];
+        double kStart = scale(0);
+        for (int i = 1; i < total; i++) {
+            int next = order[i];
+            long joined = weight + allWeights[next];
+            if (scale((double) (before + joined) / count) - kStart <= 1) {
+                mean += (allMeans[next] - mean) * allWeights[next] / joined;
+                weight = joined;
+            } else {
+                mergedMeans[merged] = mean;
+                mergedWeights[merged] = weight;
+                merged++;
+                before += weight;
+                kStart = scale((double) before / count);
+                mean = allMeans[next];
+                weight = allWeights[next];
+            }
+        }
+        mergedMeans[merged] = mean;
+        mergedWeights[merged] = weight;
+        merged++;
+
+        means = Arrays.copyOf(mergedMeans, merged);
+        weights = Arrays.copyOf(mergedWeights, merged);
+        centroids = merged;
+    }
+
+    // k1 scale function: quantile q to centroid index space, steepest at the tails
+    private static double scale(double q) {
+        return COMPRESSION / (2 * Math.PI) * Math.asin(2 * Math.min(1, Math.max(0, q)) - 1);
+    }
+}
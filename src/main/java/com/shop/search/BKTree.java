@@ -0,0 +1,171 @@
+package com.shop.search;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Burkhard-Keller tree over terms under Levenshtein distance.
+ * Each child edge is labelled with its distance to the parent, so by the triangle
+ * inequality a search for distance k from a node at distance d only descends into
+ * edges d-k..d+k. Terms cannot be removed; owners skip terms that no longer match anything.
+ * Not thread-safe: owners guard it with their own lock.
+ */
+public class BKTree {
+    private Node root;
+    private int size;
+
+    public static final class Match {
+        private final String term;
+        private final int distance;
+
+        Match(String term, int distance) {
+            this.term = term;
+            this.distance = distance;
+        }
+
+        public String getTerm() {
+            return term;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+    }
+
+    public void add(String term) {
+        if (root == null) {
+            root = new Node(term);
+            size++;
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int d = distance(term, node.term);
+            if (d == 0) {
+                return;
+            }
+            Node child = node.children.get(d);
+            if (child == null) {
+                node.children.put(d, new Node(term));
+                size++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    // Preorder: term, child count, then each child's edge distance and subtree
+    void writeTo(IndexSegment.Writer out) throws IOException {
+        out.writeInt(size);
+        if (root != null) {
+            writeNode(out, root);
+        }
+    }
+
+    void readFrom(IndexSegment.Reader in) {
+        clear();
+        int count = in.readInt();
+        if (count > 0) {
+            root = readNode(in);
+        }
+        size = count;
+    }
+
+    private static void writeNode(IndexSegment.Writer out, Node node) throws IOException {
+        out.writeString(node.term);
+        out.writeInt(node.children.size());
+        for (Map.Entry<Integer, Node> edge : node.children.entrySet()) {
+            out.writeInt(edge.getKey());
+            writeNode(out, edge.getValue());
+        }
+    }
+
+    private static Node readNode(IndexSegment.Reader in) {
+        Node node = new Node(in.readString());
+        int children = in.readInt();
+        for (int i = 0; i < children; i++) {
+            int d = in.readInt();
+            node.children.put(d, readNode(in));
+        }
+        return node;
+    }
+
+    /**
+     * Terms within maxDistance of the query. Stops early once System.nanoTime() passes
+     * the deadline and returns what was found so far.
+     */
+    public List<Match> search(String query, int maxDistance, long deadlineNanos) {
+        List<Match> matches = new ArrayList<>();
+        if (root == null) {
+            return matches;
+        }
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        int visited = 0;
+        while (!pending.isEmpty()) {
+            if ((++visited & 63) == 0 && System.nanoTime() - deadlineNanos > 0) {
+                break;
+            }
+            Node node = pending.pop();
+            int d = distance(query, node.term);
+            if (d <= maxDistance) {
+                matches.add(new Match(node.term, d));
+            }
+            for (Map.Entry<Integer, Node> edge : node.children.entrySet()) {
+                if (Math.abs(edge.getKey() - d) <= maxDistance) {
+                    pending.push(edge.getValue());
+                }
+            }
+        }
+        return matches;
+    }
+
+    // Two-row dynamic programming Levenshtein distance
+    static int distance(String a, String b) {
+        if (a.length() < b.length()) {
+            String t = a;
+            a = b;
+            b = t;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] t = previous;
+            previous = current;
+            current = t;
+        }
+        return previous[b.length()];
+    }
+
+    private static final class Node {
+        final String term;
+        final Map<Integer, Node> children = new HashMap<>(4);
+
+        Node(String term) {
+            this.term = term;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.shop.search;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Word-aligned bitmap over dense document numbers with the set operations facet
+ * queries need, including AND-count without materializing the intersection.
+ * Not thread-safe: owners guard it with their own lock.
+ */
+public class Bitmap {
+    private long[] words;
+
+    public Bitmap() {
+        this.words = new long[16];
+    }
+
+    private Bitmap(long[] words) {
+        this.words = words;
+    }
+
+    public Bitmap copy() {
+        return new Bitmap(words.clone());
+    }
+
+    public void set(int bit) {
+        int word = bit >>> 6;
+        if (word >= words.length) {
+            words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+        }
+        words[word] |= 1L << bit;
+    }
+
+    public void clear(int bit) {
+        int word = bit >>> 6;
+        if (word < words.length) {
+            words[word] &= ~(1L << bit);
+        }
+    }
+
+    public boolean get(int bit) {
+        int word = bit >>> 6;
+        return word < words.length && (words[word] & (1L << bit)) != 0;
+    }
+
+    public Bitmap and(Bitmap other) {
+        int common = Math.min(words.length, other.words.length);
+        for (int i = 0; i < common; i++) {
+            words[i] &= other.words[i];
+        }
+        Arrays.fill(words, common, words.length, 0L);
+        return this;
+    }
+
+    public Bitmap andNot(Bitmap other) {
+        int common = Math.min(words.length, other.words.length);
+        for (int i = 0; i < common; i++) {
+            words[i] &= ~other.words[i];
+        }
+        return this;
+    }
+
+    public Bitmap or(Bitmap other) {
+        if (other.words.length > words.length) {
+            words = Arrays.copyOf(words, other.words.length);
+        }
+        for (int i = 0; i < other.words.length; i++) {
+            words[i] |= other.words[i];
+        }
+        return this;
+    }
+
+    public int cardinality() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public int andCardinality(Bitmap other) {
+        int common = Math.min(words.length, other.words.length);
+        int count = 0;
+        for (int i = 0; i < common; i++) {
+            count += Long.bitCount(words[i] & other.words[i]);
+        }
+        return count;
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < words.length; i++) {
+            long word = words[i];
+            while (word != 0) {
+                action.accept((i << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package com.shop.search;
+
+import com.shop.cache.CacheStats;
+import com.shop.cache.CacheStatsRegistry;
+import com.shop.database.DatabaseConfig;
+import com.shop.model.Customer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Prefix index over customers' first name, last name, email and phone digits, backing
+ * the customer autocomplete on the order form (active customers only) and the customer
+ * list search (inactive ones too, as the list shows them).
+ * Multi-word queries look up the longest word in the index and require every other
+ * word to prefix one of the customer's fields, so "jo smi" finds John Smith.
+ * Like ProductSearchIndex, the index is saved as a segment file and a restart replays
+ * only the customers changed since the segment's watermark.
+ */
+public class CustomerSearchIndex {
+    private static CustomerSearchIndex instance;
+
+    private static final int FIRST_NAME = 0;
+    private static final int LAST_NAME = 1;
+    private static final int EMAIL = 2;
+    private static final int PHONE = 3;
+
+    private static final String SEGMENT = "customers-prefix";
+    // Segments from before inactive customers were indexed
+    private static final String OLD_SEGMENT = "customers-search";
+    private static final int WATERMARK_OVERLAP_SECONDS = 5;
+
+    private final DatabaseConfig dbConfig;
+    private final boolean enabled;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final CacheStats stats;
+
+    private final PrefixIndex index = new PrefixIndex();
+    private final Map<Integer, String[]> fieldsById = new HashMap<>();
+    private final Set<Integer> inactiveIds = new HashSet<>();
+    private final Path segmentDir;
+    private volatile boolean loaded;
+
+    // Everything changed before this time is in memory; guarded by the write lock
+    private LocalDateTime watermark;
+
+    private CustomerSearchIndex() {
+        this.dbConfig = DatabaseConfig.getInstance();
+        this.enabled = dbConfig.getBooleanProperty("search.customer.prefix.enabled", true);
+        this.segmentDir = dbConfig.getBooleanProperty("search.segments.enabled", true)
+                ? Paths.get(dbConfig.getProperty("search.index.dir", "./database/index")) : null;
+        this.stats = CacheStatsRegistry.getInstance().register("customers.prefixIndex", this::size, this::invalidate);
+    }
+
+    public static CustomerSearchIndex getInstance() {
+        if (instance == null) {
+            synchronized (CustomerSearchIndex.class) {
+                if (instance == null) {
+                    instance = new CustomerSearchIndex();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Misses are recorded by CustomerDAO, which times its database fallback
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return fieldsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void ensureLoaded() throws SQLException {
+        if (!enabled || loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                load();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Called with the write lock held, so writes made during the load wait for it
+    private void load() throws SQLException {
+        long start = System.nanoTime();
+        clearLocked();
+        if (segmentDir != null) {
+            IndexSegment.delete(segmentDir, OLD_SEGMENT);
+        }
+        IndexSegment.Reader segment = segmentDir != null ? IndexSegment.Reader.openLatest(segmentDir, SEGMENT) : null;
+        if (segment != null) {
+            try {
+                readSegment(segment);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Customer search segment unreadable, rebuilding: " + e.getMessage());
+                clearLocked();
+                segment = null;
+            }
+        }
+
+        int changed = 0;
+        try {
+            if (segment != null) {
+                changed = replay();
+            } else {
+                rebuild();
+            }
+        } catch (SQLException e) {
+            clearLocked();
+            stats.recordLoadFailure();
+            throw e;
+        }
+        if (segment == null || changed > 0) {
+            saveLocked();
+        }
+        loaded = true;
+        if (segment != null) {
+            System.out.printf("Customer prefix index mapped from %s: %d customers (%d changed since) in %d ms%n",
+                    segment.getFile(), fieldsById.size(), changed, (System.nanoTime() - start) / 1_000_000);
+        } else {
+            System.out.printf("Customer prefix index built: %d customers, %d keys in %d ms%n",
+                    fieldsById.size(), index.size(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private void rebuild() throws SQLException {
+        watermark = LocalDateTime.now().minusSeconds(WATERMARK_OVERLAP_SECONDS);
+        int[] ids = new int[4096];
+        String[] keys = new String[4096];
+        int count = 0;
+
+        String sql = "SELECT customer_id, first_name, last_name, email, phone_number, is_active FROM customers";
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int customerId = rs.getInt("customer_id");
+                    if (!rs.getBoolean("is_active")) {
+                        inactiveIds.add(customerId);
+                    }
+                    String[] fields = fieldsOf(rs.getString("first_name"), rs.getString("last_name"),
+                            rs.getString("email"), rs.getString("phone_number"));
+                    fieldsById.put(customerId, fields);
+                    if (count + fields.length > ids.length) {
+                        ids = Arrays.copyOf(ids, ids.length * 2);
+                        keys = Arrays.copyOf(keys, keys.length * 2);
+                    }
+                    for (String field : fields) {
+                        ids[count] = customerId;
+                        keys[count++] = field;
+                    }
+                }
+            }
+        }
+        index.load(ids, keys, count);
+    }
+
+    /**
+     * Re-reads customers changed since the segment's watermark, then drops ids that are
+     * no longer in the table (deleted outright, leaving no updated_at behind); returns how many changed.
+     */
+    private int replay() throws SQLException {
+        LocalDateTime next = LocalDateTime.now().minusSeconds(WATERMARK_OVERLAP_SECONDS);
+        int changed = 0;
+        String sql = """
+            SELECT customer_id, first_name, last_name, email, phone_number, is_active
+            FROM customers WHERE updated_at >= ?
+        """;
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(watermark));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    putLocked(rs.getInt("customer_id"), fieldsOf(rs.getString("first_name"), rs.getString("last_name"),
+                            rs.getString("email"), rs.getString("phone_number")), rs.getBoolean("is_active"));
+                    changed++;
+                }
+            }
+        }
+
+        Set<Integer> gone = new HashSet<>(fieldsById.keySet());
+        sql = "SELECT customer_id FROM customers";
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    gone.remove(rs.getInt(1));
+                }
+            }
+        }
+        for (int customerId : gone) {
+            removeLocked(customerId);
+        }
+        watermark = next;
+        return changed + gone.size();
+    }
+
+    // Writes the loaded index out so the next start maps it; called on shutdown
+    public static void saveIfLoaded() {
+        CustomerSearchIndex searchIndex = instance;
+        if (searchIndex == null || !searchIndex.loaded) {
+            return;
+        }
+        searchIndex.lock.readLock().lock();
+        try {
+            searchIndex.saveLocked();
+        } finally {
+            searchIndex.lock.readLock().unlock();
+        }
+    }
+
+    // Segment layout after the header: each customer's normalized fields, the prefix index
+    // entries, then the ids of the inactive customers
+    private void saveLocked() {
+        if (segmentDir == null) {
+            return;
+        }
+        try (IndexSegment.Writer out = new IndexSegment.Writer(segmentDir, SEGMENT, watermark)) {
+            out.writeInt(fieldsById.size());
+            for (Map.Entry<Integer, String[]> e : fieldsById.entrySet()) {
+                out.writeInt(e.getKey());
+                for (String field : e.getValue()) {
+                    out.writeString(field);
+                }
+            }
+            index.writeTo(out);
+            int[] inactive = inactiveIds.stream().mapToInt(Integer::intValue).toArray();
+            out.writeInts(inactive, inactive.length);
+            out.commit();
+        } catch (IOException e) {
+            System.err.println("Could not save customer search segment: " + e.getMessage());
+        }
+    }
+
+    private void readSegment(IndexSegment.Reader in) throws IOException {
+        int customerCount = in.readInt();
+        for (int i = 0; i < customerCount; i++) {
+            int customerId = in.readInt();
+            String[] fields = new String[4];
+            for (int f = 0; f < fields.length; f++) {
+                fields[f] = in.readString();
+            }
+            fieldsById.put(customerId, fields);
+        }
+        index.readFrom(in);
+        for (int customerId : in.readInts()) {
+            inactiveIds.add(customerId);
+        }
+        in.checkEnd();
+        watermark = in.getWatermark();
+    }
+
+    private void clearLocked() {
+        fieldsById.clear();
+        inactiveIds.clear();
+        index.clear();
+    }
+
+    private void putLocked(int customerId, String[] fields, boolean active) {
+        fieldsById.put(customerId, fields);
+        index.put(customerId, Arrays.asList(fields));
+        if (active) {
+            inactiveIds.remove(customerId);
+        } else {
+            inactiveIds.add(customerId);
+        }
+    }
+
+    private void removeLocked(int customerId) {
+        if (fieldsById.remove(customerId) != null) {
+            index.remove(customerId);
+        }
+        inactiveIds.remove(customerId);
+    }
+
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                stats.recordEviction();
+            }
+            clearLocked();
+            loaded = false;
+            // The next load rebuilds from the table rather than trusting the segment
+            if (segmentDir != null) {
+                IndexSegment.delete(segmentDir, SEGMENT);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Writes before the first build are ignored (the build reads them from the table);
+    // writes during a build wait for the lock and are applied on top of it
+    public void put(Customer customer) {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                putLocked(customer.getCustomerId(), fieldsOf(customer.getFirstName(), customer.getLastName(),
+                        customer.getEmail(), customer.getPhoneNumber()), customer.isActive());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void setActive(int customerId, boolean active) {
+        lock.writeLock().lock();
+        try {
+            if (loaded && fieldsById.containsKey(customerId)) {
+                if (active) {
+                    inactiveIds.remove(customerId);
+                } else {
+                    inactiveIds.add(customerId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int customerId) {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                removeLocked(customerId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Ids of up to `limit` active customers matching every word of the query; zero returns every match
+    public List<Integer> search(String query, int limit) {
+        return search(query, limit, false);
+    }
+
+    // As search, with the inactive customers too when includeInactive is set
+    public List<Integer> search(String query, int limit, boolean includeInactive) {
+        List<String> words = wordsOf(query);
+        if (words.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // The longest word has the fewest index matches to walk through
+        String lookup = Collections.max(words, Comparator.comparingInt(String::length));
+
+        lock.readLock().lock();
+        try {
+            List<Integer> ids = index.search(lookup, limit, customerId -> {
+                if (!includeInactive && inactiveIds.contains(customerId)) {
+                    return false;
+                }
+                String[] fields = fieldsById.get(customerId);
+                for (String word : words) {
+                    if (!prefixesAny(fields, word)) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+            stats.recordHit();
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // A phone number is one word of digits; anything else is split on whitespace
+    private static List<String> wordsOf(String query) {
+        String text = PrefixIndex.normalize(query);
+        List<String> words = new ArrayList<>();
+        String phone = phoneDigits(text);
+        if (phone != null) {
+            words.add(phone);
+        } else {
+            for (String word : text.split("\\s+")) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+        return words;
+    }
+
+    private static boolean prefixesAny(String[] fields, String word) {
+        for (String field : fields) {
+            if (field.startsWith(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String[] fieldsOf(String firstName, String lastName, String email, String phone) {
+        String[] fields = new String[4];
+        fields[FIRST_NAME] = PrefixIndex.normalize(firstName);
+        fields[LAST_NAME] = PrefixIndex.normalize(lastName);
+        fields[EMAIL] = PrefixIndex.normalize(email);
+        String digits = phone != null ? phoneDigits(phone) : null;
+        fields[PHONE] = digits != null ? digits : "";
+        return fields;
+    }
+
+    // Phone numbers are matched on their digits, so "+1 (555) 01" finds 1555010...
+    private static String phoneDigits(String text) {
+        StringBuilder digits = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isDigit(c)) {
+                digits.append(c);
+            } else if (c != '+' && c != '-' && c != '(' && c != ')' && c != ' ' && c != '.') {
+                return null;
+            }
+        }
+        return digits.length() > 0 ? digits.toString() : null;
+    }
+}
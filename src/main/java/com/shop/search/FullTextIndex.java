@@ -0,0 +1,616 @@
+package com.shop.search;
+
+import com.shop.cache.CacheStats;
+import com.shop.cache.CacheStatsRegistry;
+import com.shop.database.DatabaseConfig;
+import com.shop.model.Product;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over the words of active products' names and descriptions, ranked by BM25.
+ * Name words count NAME_WEIGHT times, so a query word in the name outranks the same
+ * word in a description. Inactive products have a posting set of their own, which the
+ * product list's search reads and which leaves the active products' scores untouched. The index is kept in a snapshot file plus an append-only log
+ * of later changes under search.index.dir, so a restart reads the files rather than
+ * re-tokenizing the catalog. Rows changed since the snapshot's watermark (by this or
+ * any other client) are then re-read from the table, which also covers a lost log tail.
+ */
+public class FullTextIndex {
+    private static FullTextIndex instance;
+
+    private static final int SNAPSHOT_MAGIC = 0x46545832;
+    private static final byte LOG_PUT = 1;
+    private static final byte LOG_REMOVE = 2;
+    private static final byte LOG_PUT_INACTIVE = 3;
+    private static final int NAME_WEIGHT = 3;
+    private static final int WATERMARK_OVERLAP_SECONDS = 5;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "is", "it",
+            "of", "on", "or", "that", "the", "this", "to", "with");
+
+    // Weighted term frequencies of one product
+    private static final class Doc {
+        final String[] terms;
+        final int[] frequencies;
+        final int length;
+
+        Doc(String[] terms, int[] frequencies) {
+            this.terms = terms;
+            this.frequencies = frequencies;
+            int total = 0;
+            for (int frequency : frequencies) {
+                total += frequency;
+            }
+            this.length = total;
+        }
+    }
+
+    private final DatabaseConfig dbConfig;
+    private final boolean enabled;
+    private final Path snapshotFile;
+    private final Path logFile;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final CacheStats stats;
+
+    private final Map<Integer, Doc> docs = new HashMap<>();
+    private final Map<String, Map<Integer, Integer>> postings = new HashMap<>();
+    private long totalLength;
+    // Inactive products: only which words they have, as they are never ranked
+    private final Map<Integer, Doc> inactiveDocs = new HashMap<>();
+    private final Map<String, Set<Integer>> inactivePostings = new HashMap<>();
+    private volatile boolean loaded;
+
+    // Everything changed before this time is in the snapshot plus log; guarded by the write lock
+    private LocalDateTime watermark;
+    private DataOutputStream log;
+    private int logRecords;
+
+    private FullTextIndex() {
+        this.dbConfig = DatabaseConfig.getInstance();
+        this.enabled = dbConfig.getBooleanProperty("search.fulltext.enabled", true);
+        Path dir = Paths.get(dbConfig.getProperty("search.index.dir", "./database/index"));
+        this.snapshotFile = dir.resolve("products-fulltext.snapshot");
+        this.logFile = dir.resolve("products-fulltext.log");
+        this.stats = CacheStatsRegistry.getInstance().register("products.fullText", this::size, this::invalidate);
+    }
+
+    public static FullTextIndex getInstance() {
+        if (instance == null) {
+            synchronized (FullTextIndex.class) {
+                if (instance == null) {
+                    instance = new FullTextIndex();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Misses are recorded by ProductDAO, which times its database fallback
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void ensureLoaded() throws SQLException {
+        if (!enabled || loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                load();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Called with the write lock held, so writes made during the load wait for it
+    private void load() throws SQLException {
+        long start = System.nanoTime();
+        clearLocked();
+        boolean fromFiles;
+        try {
+            fromFiles = readFiles();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Full-text index files unreadable, rebuilding: " + e.getMessage());
+            clearLocked();
+            fromFiles = false;
+        }
+
+        int changed = 0;
+        try {
+            if (fromFiles) {
+                changed = catchUp();
+            } else {
+                rebuild();
+            }
+        } catch (SQLException e) {
+            clearLocked();
+            stats.recordLoadFailure();
+            throw e;
+        }
+        if (!fromFiles || changed > 0 || logRecords > 0) {
+            writeSnapshot();
+        } else {
+            openLog();
+        }
+        loaded = true;
+        if (fromFiles) {
+            System.out.printf("Full-text index loaded from %s: %d products (%d changed since) in %d ms%n",
+                    snapshotFile, docs.size() + inactiveDocs.size(), changed, (System.nanoTime() - start) / 1_000_000);
+        } else {
+            System.out.printf("Full-text index built: %d products, %d terms in %d ms%n",
+                    docs.size() + inactiveDocs.size(), postings.size(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private void rebuild() throws SQLException {
+        watermark = LocalDateTime.now().minusSeconds(WATERMARK_OVERLAP_SECONDS);
+        String sql = "SELECT product_id, product_name, description, is_active FROM products";
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    addLocked(rs.getInt("product_id"), analyze(rs.getString("product_name"), rs.getString("description")),
+                            rs.getBoolean("is_active"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Re-reads rows changed since the snapshot's watermark, then drops ids that are no
+     * longer in the table (deleted outright, leaving no updated_at behind); returns how many changed.
+     */
+    private int catchUp() throws SQLException {
+        LocalDateTime since = watermark;
+        LocalDateTime next = LocalDateTime.now().minusSeconds(WATERMARK_OVERLAP_SECONDS);
+        String sql = "SELECT product_id, product_name, description, is_active FROM products WHERE updated_at >= ?";
+        int changed = 0;
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(since));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int productId = rs.getInt("product_id");
+                    removeLocked(productId);
+                    addLocked(productId, analyze(rs.getString("product_name"), rs.getString("description")),
+                            rs.getBoolean("is_active"));
+                    changed++;
+                }
+            }
+        }
+
+        Set<Integer> gone = new HashSet<>(docs.keySet());
+        gone.addAll(inactiveDocs.keySet());
+        sql = "SELECT product_id FROM products";
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    gone.remove(rs.getInt(1));
+                }
+            }
+        }
+        for (int productId : gone) {
+            removeLocked(productId);
+        }
+        watermark = next;
+        return changed + gone.size();
+    }
+
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                stats.recordEviction();
+            }
+            clearLocked();
+            closeLog();
+            // The next load rebuilds from the table rather than trusting the files
+            try {
+                Files.deleteIfExists(snapshotFile);
+                Files.deleteIfExists(logFile);
+            } catch (IOException e) {
+                System.err.println("Could not delete full-text index files: " + e.getMessage());
+            }
+            loaded = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Writes before the first load are ignored (the load reads them from the table);
+    // writes during a load wait for the lock and are applied on top of it
+    public void put(Product product) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            removeLocked(product.getProductId());
+            Doc doc = analyze(product.getProductName(), product.getDescription());
+            addLocked(product.getProductId(), doc, product.isActive());
+            appendLog(product.isActive() ? LOG_PUT : LOG_PUT_INACTIVE, product.getProductId(), doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Moves a product between the ranked and the inactive postings without re-reading it
+    public void setActive(int productId, boolean active) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            Doc doc = active ? inactiveDocs.get(productId) : docs.get(productId);
+            if (doc != null) {
+                removeLocked(productId);
+                addLocked(productId, doc, active);
+                appendLog(active ? LOG_PUT : LOG_PUT_INACTIVE, productId, doc);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int productId) {
+        lock.writeLock().lock();
+        try {
+            if (loaded && removeLocked(productId)) {
+                appendLog(LOG_REMOVE, productId, null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of the active products best matching any of the query's words, highest BM25 score
+     * first. A limit of zero returns every match.
+     */
+    public List<Integer> search(String query, int limit) {
+        return search(query, limit, false);
+    }
+
+    /**
+     * As search, followed by the inactive products having any of the query's words (in id
+     * order) when includeInactive is set; the limit only applies to the ranked active ones.
+     */
+    public List<Integer> search(String query, int limit, boolean includeInactive) {
+        List<Integer> result = rank(query, limit);
+        if (includeInactive) {
+            Set<Integer> inactive = new TreeSet<>();
+            lock.readLock().lock();
+            try {
+                for (String term : tokenize(query)) {
+                    inactive.addAll(inactivePostings.getOrDefault(term, Set.of()));
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            result.addAll(inactive);
+        }
+        return result;
+    }
+
+    private List<Integer> rank(String query, int limit) {
+        Set<String> queryTerms = new LinkedHashSet<>(tokenize(query));
+        lock.readLock().lock();
+        try {
+            stats.recordHit();
+            if (queryTerms.isEmpty() || docs.isEmpty()) {
+                return new ArrayList<>();
+            }
+            double averageLength = (double) totalLength / docs.size();
+            Map<Integer, Double> scores = new HashMap<>();
+            for (String term : queryTerms) {
+                Map<Integer, Integer> posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (docs.size() - posting.size() + 0.5) / (posting.size() + 0.5));
+                for (Map.Entry<Integer, Integer> e : posting.entrySet()) {
+                    int frequency = e.getValue();
+                    double norm = K1 * (1 - B + B * docs.get(e.getKey()).length / averageLength);
+                    scores.merge(e.getKey(), idf * frequency * (K1 + 1) / (frequency + norm), Double::sum);
+                }
+            }
+
+            Comparator<Map.Entry<Integer, Double>> ranked = Map.Entry.<Integer, Double>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.comparingByKey());
+            List<Integer> result = new ArrayList<>();
+            if (limit <= 0 || scores.size() <= limit) {
+                scores.entrySet().stream().sorted(ranked).forEach(e -> result.add(e.getKey()));
+                return result;
+            }
+            // Keep only the best `limit` scores in a heap whose head is the worst of them
+            PriorityQueue<Map.Entry<Integer, Double>> top = new PriorityQueue<>(limit + 1, ranked.reversed());
+            for (Map.Entry<Integer, Double> e : scores.entrySet()) {
+                top.add(e);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+            top.stream().sorted(ranked).forEach(e -> result.add(e.getKey()));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addLocked(int productId, Doc doc, boolean active) {
+        if (!active) {
+            inactiveDocs.put(productId, doc);
+            for (String term : doc.terms) {
+                inactivePostings.computeIfAbsent(term, key -> new HashSet<>()).add(productId);
+            }
+            return;
+        }
+        docs.put(productId, doc);
+        totalLength += doc.length;
+        for (int i = 0; i < doc.terms.length; i++) {
+            postings.computeIfAbsent(doc.terms[i], key -> new HashMap<>()).put(productId, doc.frequencies[i]);
+        }
+    }
+
+    private boolean removeLocked(int productId) {
+        Doc inactive = inactiveDocs.remove(productId);
+        if (inactive != null) {
+            for (String term : inactive.terms) {
+                Set<Integer> posting = inactivePostings.get(term);
+                if (posting != null) {
+                    posting.remove(productId);
+                    if (posting.isEmpty()) {
+                        inactivePostings.remove(term);
+                    }
+                }
+            }
+            return true;
+        }
+        Doc doc = docs.remove(productId);
+        if (doc == null) {
+            return false;
+        }
+        totalLength -= doc.length;
+        for (String term : doc.terms) {
+            Map<Integer, Integer> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(productId);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void clearLocked() {
+        docs.clear();
+        postings.clear();
+        totalLength = 0;
+        inactiveDocs.clear();
+        inactivePostings.clear();
+    }
+
+    private static Doc analyze(String name, String description) {
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        for (String term : tokenize(name)) {
+            frequencies.merge(term, NAME_WEIGHT, Integer::sum);
+        }
+        for (String term : tokenize(description)) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        String[] terms = new String[frequencies.size()];
+        int[] counts = new int[frequencies.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> e : frequencies.entrySet()) {
+            terms[i] = e.getKey();
+            counts[i++] = e.getValue();
+        }
+        return new Doc(terms, counts);
+    }
+
+    // Lower-cased letter/digit runs without stop words; a trailing plural "s" is dropped
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int i = 0;
+        while (i < lower.length()) {
+            while (i < lower.length() && !Character.isLetterOrDigit(lower.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < lower.length() && Character.isLetterOrDigit(lower.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                String term = lower.substring(start, i);
+                if (term.length() > 3 && term.endsWith("s") && !term.endsWith("ss")) {
+                    term = term.substring(0, term.length() - 1);
+                }
+                if (!STOP_WORDS.contains(term)) {
+                    terms.add(term);
+                }
+            }
+        }
+        return terms;
+    }
+
+    // --- Persistence ---
+
+    // Loads the snapshot and replays the log; false when there is no snapshot yet
+    private boolean readFiles() throws IOException {
+        if (!Files.exists(snapshotFile)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("not a full-text index snapshot");
+            }
+            watermark = LocalDateTime.parse(in.readUTF());
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int productId = in.readInt();
+                addLocked(productId, readDoc(in), true);
+            }
+            count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int productId = in.readInt();
+                addLocked(productId, readDoc(in), false);
+            }
+        }
+
+        logRecords = 0;
+        if (Files.exists(logFile)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile)))) {
+                while (true) {
+                    int op = in.read();
+                    if (op < 0) {
+                        break;
+                    }
+                    int productId = in.readInt();
+                    removeLocked(productId);
+                    if (op == LOG_PUT || op == LOG_PUT_INACTIVE) {
+                        addLocked(productId, readDoc(in), op == LOG_PUT);
+                    }
+                    logRecords++;
+                }
+            } catch (EOFException e) {
+                // A write cut short by a crash; the catch-up query re-reads that row
+                System.err.println("Full-text index log ends in a partial record after " + logRecords + " records");
+                logRecords++;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Writes every document to a new snapshot, swaps it in and starts an empty log.
+     * The watermark is not moved here: the snapshot holds this client's writes, but
+     * other clients' writes since the watermark are only picked up by the next catch-up.
+     */
+    private void writeSnapshot() {
+        closeLog();
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeUTF(watermark.toString());
+                out.writeInt(docs.size());
+                for (Map.Entry<Integer, Doc> e : docs.entrySet()) {
+                    out.writeInt(e.getKey());
+                    writeDoc(out, e.getValue());
+                }
+                out.writeInt(inactiveDocs.size());
+                for (Map.Entry<Integer, Doc> e : inactiveDocs.entrySet()) {
+                    out.writeInt(e.getKey());
+                    writeDoc(out, e.getValue());
+                }
+            }
+            Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // Truncates the old log, whose records are all in the new snapshot
+            log = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(logFile)));
+            logRecords = 0;
+        } catch (IOException e) {
+            // Searching still works from memory; the next start rebuilds or catches up
+            System.err.println("Could not write full-text index snapshot: " + e.getMessage());
+        }
+    }
+
+    // Continues the existing log, which holds logRecords records
+    private void openLog() {
+        try {
+            log = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(logFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        } catch (IOException e) {
+            System.err.println("Could not open full-text index log: " + e.getMessage());
+        }
+    }
+
+    private void appendLog(byte op, int productId, Doc doc) {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.writeByte(op);
+            log.writeInt(productId);
+            if (doc != null) {
+                writeDoc(log, doc);
+            }
+            log.flush();
+            logRecords++;
+        } catch (IOException e) {
+            System.err.println("Could not append to full-text index log: " + e.getMessage());
+            closeLog();
+            return;
+        }
+        // Fold the log into a new snapshot once replaying it would cost a noticeable share of a load
+        if (logRecords > Math.max(1000, (docs.size() + inactiveDocs.size()) / 4)) {
+            writeSnapshot();
+        }
+    }
+
+    private void closeLog() {
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                System.err.println("Could not close full-text index log: " + e.getMessage());
+            }
+            log = null;
+        }
+    }
+
+    private static void writeDoc(DataOutputStream out, Doc doc) throws IOException {
+        out.writeInt(doc.terms.length);
+        for (int i = 0; i < doc.terms.length; i++) {
+            out.writeUTF(doc.terms[i]);
+            out.writeInt(doc.frequencies[i]);
+        }
+    }
+
+    private static Doc readDoc(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        String[] terms = new String[count];
+        int[] frequencies = new int[count];
+        for (int i = 0; i < count; i++) {
+            terms[i] = in.readUTF();
+            frequencies[i] = in.readInt();
+        }
+        return new Doc(terms, frequencies);
+    }
+}
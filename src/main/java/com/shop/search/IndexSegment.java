@@ -0,0 +1,216 @@
+package com.shop.search;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Single-file image of an in-memory index, read back through a memory mapping so a
+ * restart copies arrays out of the page cache instead of re-reading and re-tokenizing
+ * the table. Each save writes a new generation (name-GENERATION.seg) and deletes the
+ * older ones, so a file that is still mapped is never overwritten in place.
+ * Layout: magic, version, name, watermark, the owner's sections, end marker.
+ * The watermark is the updated_at time from which rows must be replayed on load.
+ */
+final class IndexSegment {
+    private static final int MAGIC = 0x53454731;
+    private static final int VERSION = 1;
+    private static final int END = 0x454E4421;
+    private static final String SUFFIX = ".seg";
+
+    private IndexSegment() {
+    }
+
+    static final class Writer implements Closeable {
+        private final Path dir;
+        private final String name;
+        private final Path file;
+        private final Path temp;
+        private final DataOutputStream out;
+
+        Writer(Path dir, String name, LocalDateTime watermark) throws IOException {
+            Files.createDirectories(dir);
+            this.dir = dir;
+            this.name = name;
+            this.file = dir.resolve(name + "-" + System.currentTimeMillis() + SUFFIX);
+            this.temp = file.resolveSibling(file.getFileName() + ".tmp");
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(name);
+            out.writeLong(watermark.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+
+        void writeInt(int value) throws IOException {
+            out.writeInt(value);
+        }
+
+        void writeLong(long value) throws IOException {
+            out.writeLong(value);
+        }
+
+        void writeBoolean(boolean value) throws IOException {
+            out.writeBoolean(value);
+        }
+
+        void writeString(String value) throws IOException {
+            out.writeInt(value.length());
+            out.writeChars(value);
+        }
+
+        void writeInts(int[] values, int count) throws IOException {
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeInt(values[i]);
+            }
+        }
+
+        // Publishes the segment and drops older generations; until then readers see the previous one
+        void commit() throws IOException {
+            out.writeInt(END);
+            out.close();
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            for (Path old : generations(dir, name)) {
+                if (!old.equals(file)) {
+                    try {
+                        Files.deleteIfExists(old);
+                    } catch (IOException e) {
+                        // Still mapped (Windows); the next save retries
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static final class Reader {
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private final LocalDateTime watermark;
+
+        private Reader(Path file) throws IOException {
+            this.file = file;
+            try (FileChannel channel = FileChannel.open(file)) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            if (buffer.capacity() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException(file + " is not an index segment of this version");
+            }
+            int length = buffer.getShort() & 0xFFFF;
+            buffer.position(buffer.position() + length);
+            this.watermark = LocalDateTime.ofInstant(Instant.ofEpochMilli(buffer.getLong()), ZoneId.systemDefault());
+            // A segment that does not end with the marker was cut short
+            if (buffer.getInt(buffer.capacity() - 4) != END) {
+                throw new IOException(file + " is incomplete");
+            }
+        }
+
+        /**
+         * The newest readable generation of the named segment, or null when there is none.
+         * Unreadable generations are skipped (and reported), falling back to older ones.
+         */
+        static Reader openLatest(Path dir, String name) {
+            for (Path file : generations(dir, name)) {
+                try {
+                    return new Reader(file);
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Skipping index segment " + file + ": " + e.getMessage());
+                }
+            }
+            return null;
+        }
+
+        Path getFile() {
+            return file;
+        }
+
+        LocalDateTime getWatermark() {
+            return watermark;
+        }
+
+        int readInt() {
+            return buffer.getInt();
+        }
+
+        long readLong() {
+            return buffer.getLong();
+        }
+
+        boolean readBoolean() {
+            return buffer.get() != 0;
+        }
+
+        String readString() {
+            char[] chars = new char[buffer.getInt()];
+            buffer.asCharBuffer().get(chars);
+            buffer.position(buffer.position() + chars.length * 2);
+            return new String(chars);
+        }
+
+        int[] readInts() {
+            int[] values = new int[buffer.getInt()];
+            buffer.asIntBuffer().get(values);
+            buffer.position(buffer.position() + values.length * 4);
+            return values;
+        }
+
+        // Called once the owner has read its sections
+        void checkEnd() throws IOException {
+            if (buffer.remaining() != 4 || buffer.getInt() != END) {
+                throw new IOException(file + " has unexpected content after its sections");
+            }
+        }
+    }
+
+    static void delete(Path dir, String name) {
+        for (Path file : generations(dir, name)) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.err.println("Could not delete index segment " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Newest first
+    private static List<Path> generations(Path dir, String name) {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return files;
+        }
+        String prefix = name + "-";
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, prefix + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not list index segments in " + dir + ": " + e.getMessage());
+        }
+        files.sort(Comparator.comparingLong((Path file) -> generationOf(file, prefix)).reversed());
+        return files;
+    }
+
+    private static long generationOf(Path file, String prefix) {
+        String fileName = file.getFileName().toString();
+        try {
+            return Long.parseLong(fileName.substring(prefix.length(), fileName.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.shop.search;
+
+import com.shop.cache.CacheStats;
+import com.shop.cache.CacheStatsRegistry;
+import com.shop.database.DatabaseConfig;
+import com.shop.model.Payment;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Sorted in-memory index over payment transaction ids and references, answering
+ * the prefix lookups used when reconciling against a processor's truncated ids.
+ * Optional: the database indexes on both columns already make the lookup a range scan;
+ * this saves the round trip when reconciling long statements line by line.
+ */
+public class PaymentReferenceIndex {
+    private static PaymentReferenceIndex instance;
+
+    private static final int TRANSACTION_ID = 0;
+    private static final int REFERENCE = 1;
+
+    private final DatabaseConfig dbConfig;
+    private final boolean enabled;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final CacheStats stats;
+
+    private final PrefixIndex index = new PrefixIndex();
+    private final Map<Integer, String[]> keysById = new HashMap<>();
+    private volatile boolean loaded;
+
+    private PaymentReferenceIndex() {
+        this.dbConfig = DatabaseConfig.getInstance();
+        this.enabled = dbConfig.getBooleanProperty("search.payment.prefix.enabled", false);
+        this.stats = CacheStatsRegistry.getInstance().register("payments.referenceIndex", this::size, this::invalidate);
+    }
+
+    public static PaymentReferenceIndex getInstance() {
+        if (instance == null) {
+            synchronized (PaymentReferenceIndex.class) {
+                if (instance == null) {
+                    instance = new PaymentReferenceIndex();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Misses are recorded by PaymentDAO, which times its database query
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return keysById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void ensureLoaded() throws SQLException {
+        if (!enabled || loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                rebuild();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Called with the write lock held, so writes made during the build wait for it
+    private void rebuild() throws SQLException {
+        long start = System.nanoTime();
+        keysById.clear();
+        int[] ids = new int[4096];
+        String[] keys = new String[4096];
+        int count = 0;
+
+        String sql = """
+            SELECT payment_id, transaction_id, reference FROM payments
+            WHERE transaction_id IS NOT NULL OR reference IS NOT NULL
+        """;
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int paymentId = rs.getInt("payment_id");
+                    String[] paymentKeys = {rs.getString("transaction_id"), rs.getString("reference")};
+                    keysById.put(paymentId, paymentKeys);
+                    if (count + 2 > ids.length) {
+                        ids = Arrays.copyOf(ids, ids.length * 2);
+                        keys = Arrays.copyOf(keys, keys.length * 2);
+                    }
+                    for (String key : paymentKeys) {
+                        if (key != null) {
+                            ids[count] = paymentId;
+                            keys[count++] = key;
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            keysById.clear();
+            index.clear();
+            stats.recordLoadFailure();
+            throw e;
+        }
+        index.load(ids, keys, count);
+        loaded = true;
+        System.out.printf("Payment reference index built: %d payments, %d keys in %d ms%n",
+                keysById.size(), index.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                stats.recordEviction();
+            }
+            keysById.clear();
+            index.clear();
+            loaded = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Writes before the first build are ignored (the build reads them from the table);
+    // writes during a build wait for the lock and are applied on top of it
+    public void put(Payment payment) {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                putLocked(payment.getPaymentId(), new String[] {payment.getTransactionId(), payment.getReference()});
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void setTransactionId(int paymentId, String transactionId) {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                String[] old = keysById.get(paymentId);
+                putLocked(paymentId, new String[] {transactionId, old != null ? old[REFERENCE] : null});
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int paymentId) {
+        lock.writeLock().lock();
+        try {
+            if (loaded && keysById.remove(paymentId) != null) {
+                index.remove(paymentId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Ids of up to `limit` payments whose transaction id or reference starts with the prefix, in key order
+    public List<Integer> search(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Integer> ids = index.search(prefix, limit, id -> true);
+            stats.recordHit();
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void putLocked(int paymentId, String[] keys) {
+        if (keys[TRANSACTION_ID] == null && keys[REFERENCE] == null) {
+            if (keysById.remove(paymentId) != null) {
+                index.remove(paymentId);
+            }
+            return;
+        }
+        keysById.put(paymentId, keys);
+        List<String> present = new ArrayList<>(2);
+        for (String key : keys) {
+            if (key != null) {
+                present.add(key);
+            }
+        }
+        index.put(paymentId, present);
+    }
+}
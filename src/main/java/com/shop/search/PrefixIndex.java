@@ -0,0 +1,229 @@
+package com.shop.search;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * Prefix index from normalized string keys to integer ids.
+ * The bulk of the entries live in two sorted parallel arrays that are searched by
+ * binary search; writes go to a small sorted overlay and hide the id's old base
+ * entries until the overlay is merged back into the arrays.
+ * Not thread-safe: owners guard it with their own lock.
+ */
+public class PrefixIndex {
+    private String[] baseKeys = new String[0];
+    private int[] baseIds = new int[0];
+
+    private final TreeSet<Entry> overlay = new TreeSet<>();
+    // Ids whose base entries are out of date; their current keys are in the overlay
+    private final Set<Integer> shadowed = new HashSet<>();
+    private final Map<Integer, List<String>> overlayKeys = new HashMap<>();
+
+    // Replace the whole index; ids and keys are parallel arrays of (id, key) pairs
+    public void load(int[] ids, String[] keys, int count) {
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String key = normalize(keys[i]);
+            if (!key.isEmpty()) {
+                entries.add(new Entry(key, ids[i]));
+            }
+        }
+        Collections.sort(entries);
+        setBase(entries);
+        overlay.clear();
+        shadowed.clear();
+        overlayKeys.clear();
+    }
+
+    public void put(int id, Collection<String> keys) {
+        remove(id);
+        List<String> normalized = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            String k = normalize(key);
+            if (!k.isEmpty()) {
+                normalized.add(k);
+                overlay.add(new Entry(k, id));
+            }
+        }
+        overlayKeys.put(id, normalized);
+        maybeCompact();
+    }
+
+    public void remove(int id) {
+        shadowed.add(id);
+        List<String> keys = overlayKeys.remove(id);
+        if (keys != null) {
+            for (String key : keys) {
+                overlay.remove(new Entry(key, id));
+            }
+        }
+    }
+
+    public void clear() {
+        load(new int[0], new String[0], 0);
+    }
+
+    public int size() {
+        return baseKeys.length + overlay.size();
+    }
+
+    /**
+     * Distinct ids having a key that starts with the prefix, in key order, stopping
+     * as soon as the limit is reached (a limit of zero or less returns every match).
+     * The filter can reject ids without counting them.
+     */
+    public List<Integer> search(String prefix, int limit, IntPredicate filter) {
+        String p = normalize(prefix);
+        List<Integer> result = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+
+        int b = lowerBound(p);
+        Iterator<Entry> over = overlay.tailSet(new Entry(p, Integer.MIN_VALUE), true).iterator();
+        Entry o = over.hasNext() ? over.next() : null;
+
+        while (limit <= 0 || result.size() < limit) {
+            boolean baseLive = b < baseKeys.length && baseKeys[b].startsWith(p);
+            boolean overLive = o != null && o.key.startsWith(p);
+            if (!baseLive && !overLive) {
+                break;
+            }
+            int id;
+            if (overLive && (!baseLive || o.key.compareTo(baseKeys[b]) <= 0)) {
+                id = o.id;
+                o = over.hasNext() ? over.next() : null;
+            } else {
+                id = baseIds[b++];
+                if (shadowed.contains(id)) {
+                    continue;
+                }
+            }
+            if (seen.add(id) && filter.test(id)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    private int lowerBound(String key) {
+        int lo = 0;
+        int hi = baseKeys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (baseKeys[mid].compareTo(key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Fold the overlay back into the arrays once it is no longer small
+    private void maybeCompact() {
+        if (overlay.size() < Math.max(1024, baseKeys.length / 8)) {
+            return;
+        }
+        setBase(merged());
+        overlay.clear();
+        shadowed.clear();
+        overlayKeys.clear();
+    }
+
+    // Live base entries and the overlay, in key order
+    private List<Entry> merged() {
+        List<Entry> merged = new ArrayList<>(baseKeys.length + overlay.size());
+        Iterator<Entry> over = overlay.iterator();
+        Entry o = over.hasNext() ? over.next() : null;
+        for (int i = 0; i < baseKeys.length; i++) {
+            if (shadowed.contains(baseIds[i])) {
+                continue;
+            }
+            Entry base = new Entry(baseKeys[i], baseIds[i]);
+            while (o != null && o.compareTo(base) < 0) {
+                merged.add(o);
+                o = over.hasNext() ? over.next() : null;
+            }
+            merged.add(base);
+        }
+        while (o != null) {
+            merged.add(o);
+            o = over.hasNext() ? over.next() : null;
+        }
+        return merged;
+    }
+
+    // Entry count, then each key and id in key order, so reading back needs no sort
+    void writeTo(IndexSegment.Writer out) throws IOException {
+        List<Entry> entries = overlay.isEmpty() && shadowed.isEmpty() ? null : merged();
+        int count = entries != null ? entries.size() : baseKeys.length;
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeString(entries != null ? entries.get(i).key : baseKeys[i]);
+        }
+        if (entries != null) {
+            int[] ids = new int[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = entries.get(i).id;
+            }
+            out.writeInts(ids, count);
+        } else {
+            out.writeInts(baseIds, count);
+        }
+    }
+
+    void readFrom(IndexSegment.Reader in) {
+        String[] keys = new String[in.readInt()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = in.readString();
+        }
+        int[] ids = in.readInts();
+        if (ids.length != keys.length) {
+            throw new IllegalStateException("Prefix index segment has " + keys.length + " keys but " + ids.length + " ids");
+        }
+        baseKeys = keys;
+        baseIds = ids;
+        overlay.clear();
+        shadowed.clear();
+        overlayKeys.clear();
+    }
+
+    private void setBase(List<Entry> sorted) {
+        baseKeys = new String[sorted.size()];
+        baseIds = new int[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            baseKeys[i] = sorted.get(i).key;
+            baseIds[i] = sorted.get(i).id;
+        }
+    }
+
+    static String normalize(String key) {
+        return key == null ? "" : key.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        final String key;
+        final int id;
+
+        Entry(String key, int id) {
+            this.key = key;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int c = key.compareTo(other.key);
+            return c != 0 ? c : Integer.compare(id, other.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Entry && compareTo((Entry) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() * 31 + id;
+        }
+    }
+}
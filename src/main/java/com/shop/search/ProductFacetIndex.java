@@ -0,0 +1,457 @@
+package com.shop.search;
+
+import com.shop.cache.CacheStats;
+import com.shop.cache.CacheStatsRegistry;
+import com.shop.database.DatabaseConfig;
+import com.shop.model.Product;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Facet index over the product catalog: one bitmap per category, price band,
+ * stock state and the active flag, over dense document numbers.
+ * A filter is an OR within each facet and an AND across facets; each facet's counts
+ * are taken with every other facet's filter applied, so the counts show what
+ * picking that value would return.
+ */
+public class ProductFacetIndex {
+    private static ProductFacetIndex instance;
+
+    public enum PriceBand {
+        UNDER_10("Under 10", new BigDecimal("10")),
+        FROM_10_TO_50("10 - 50", new BigDecimal("50")),
+        FROM_50_TO_100("50 - 100", new BigDecimal("100")),
+        FROM_100_TO_500("100 - 500", new BigDecimal("500")),
+        OVER_500("500 and over", null);
+
+        private final String label;
+        private final BigDecimal upperBound;
+
+        PriceBand(String label, BigDecimal upperBound) {
+            this.label = label;
+            this.upperBound = upperBound;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public static PriceBand of(BigDecimal price) {
+            BigDecimal value = price != null ? price : BigDecimal.ZERO;
+            for (PriceBand band : values()) {
+                if (band.upperBound == null || value.compareTo(band.upperBound) < 0) {
+                    return band;
+                }
+            }
+            return OVER_500;
+        }
+    }
+
+    public enum StockState {
+        OUT("Out of stock"),
+        LOW("Low stock"),
+        OK("In stock");
+
+        private final String label;
+
+        StockState(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        // The hand-entered part of ProductDAO.findLowStock; forecast reorder points are not indexed
+        public static StockState of(int stockQuantity, int minStockLevel) {
+            if (stockQuantity <= 0) {
+                return OUT;
+            }
+            return stockQuantity <= minStockLevel ? LOW : OK;
+        }
+    }
+
+    /**
+     * Selected facet values; an empty set (or a null active flag) means "any".
+     */
+    public static class Filter {
+        private final Set<Integer> categoryIds = new HashSet<>();
+        private final Set<PriceBand> priceBands = EnumSet.noneOf(PriceBand.class);
+        private final Set<StockState> stockStates = EnumSet.noneOf(StockState.class);
+        private Boolean active;
+
+        public Filter category(int categoryId) {
+            categoryIds.add(categoryId);
+            return this;
+        }
+
+        public Filter priceBand(PriceBand band) {
+            priceBands.add(band);
+            return this;
+        }
+
+        public Filter stockState(StockState state) {
+            stockStates.add(state);
+            return this;
+        }
+
+        public Filter active(Boolean active) {
+            this.active = active;
+            return this;
+        }
+
+        public boolean isEmpty() {
+            return categoryIds.isEmpty() && priceBands.isEmpty() && stockStates.isEmpty() && active == null;
+        }
+    }
+
+    public static class Result {
+        private final Set<Integer> productIds;
+        private final Map<Integer, Integer> categoryCounts;
+        private final Map<PriceBand, Integer> priceBandCounts;
+        private final Map<StockState, Integer> stockStateCounts;
+        private final int activeCount;
+        private final int inactiveCount;
+
+        Result(Set<Integer> productIds, Map<Integer, Integer> categoryCounts, Map<PriceBand, Integer> priceBandCounts,
+               Map<StockState, Integer> stockStateCounts, int activeCount, int inactiveCount) {
+            this.productIds = productIds;
+            this.categoryCounts = categoryCounts;
+            this.priceBandCounts = priceBandCounts;
+            this.stockStateCounts = stockStateCounts;
+            this.activeCount = activeCount;
+            this.inactiveCount = inactiveCount;
+        }
+
+        public Set<Integer> getProductIds() {
+            return productIds;
+        }
+
+        public Map<Integer, Integer> getCategoryCounts() {
+            return categoryCounts;
+        }
+
+        public Map<PriceBand, Integer> getPriceBandCounts() {
+            return priceBandCounts;
+        }
+
+        public Map<StockState, Integer> getStockStateCounts() {
+            return stockStateCounts;
+        }
+
+        public int getActiveCount() {
+            return activeCount;
+        }
+
+        public int getInactiveCount() {
+            return inactiveCount;
+        }
+    }
+
+    private final DatabaseConfig dbConfig;
+    private final boolean enabled;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final CacheStats stats;
+
+    // Document numbers are handed out in order; an edited product keeps its number, and a
+    // deleted product's number is not reused until the next build
+    private final Map<Integer, Integer> docByProductId = new HashMap<>();
+    private int[] productIdByDoc = new int[1024];
+    private int[] categoryByDoc = new int[1024];
+    private int[] minStockByDoc = new int[1024];
+    private byte[] priceBandByDoc = new byte[1024];
+    private byte[] stockStateByDoc = new byte[1024];
+    private int docCount;
+
+    private Bitmap live = new Bitmap();
+    private Bitmap active = new Bitmap();
+    private final Map<Integer, Bitmap> byCategory = new HashMap<>();
+    private final Bitmap[] byPriceBand = new Bitmap[PriceBand.values().length];
+    private final Bitmap[] byStockState = new Bitmap[StockState.values().length];
+    private volatile boolean loaded;
+
+    private ProductFacetIndex() {
+        this.dbConfig = DatabaseConfig.getInstance();
+        this.enabled = dbConfig.getBooleanProperty("search.facets.enabled", true);
+        this.stats = CacheStatsRegistry.getInstance().register("products.facetIndex", this::size, this::invalidate);
+        clearLocked();
+    }
+
+    public static ProductFacetIndex getInstance() {
+        if (instance == null) {
+            synchronized (ProductFacetIndex.class) {
+                if (instance == null) {
+                    instance = new ProductFacetIndex();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docByProductId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void ensureLoaded() throws SQLException {
+        if (!enabled || loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                rebuild();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Called with the write lock held, so writes made during the build wait for it
+    private void rebuild() throws SQLException {
+        long start = System.nanoTime();
+        clearLocked();
+        String sql = "SELECT product_id, category_id, price, stock_quantity, min_stock_level, is_active FROM products";
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    putLocked(rs.getInt("product_id"), rs.getInt("category_id"), rs.getBigDecimal("price"),
+                            rs.getInt("stock_quantity"), rs.getInt("min_stock_level"), rs.getBoolean("is_active"));
+                }
+            }
+        } catch (SQLException e) {
+            clearLocked();
+            stats.recordLoadFailure();
+            throw e;
+        }
+        loaded = true;
+        System.out.printf("Product facet index built: %d products, %d categories in %d ms%n",
+                docByProductId.size(), byCategory.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                stats.recordEviction();
+            }
+            clearLocked();
+            loaded = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Writes before the first build are ignored (the build reads them from the table);
+    // writes during a build wait for the lock and are applied on top of it
+    public void put(Product product) {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                putLocked(product.getProductId(), product.getCategoryId(), product.getPrice(),
+                        product.getStockQuantity(), product.getMinStockLevel(), product.isActive());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void updateStock(int productId, int newQuantity) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docByProductId.get(productId);
+            if (doc != null) {
+                byStockState[stockStateByDoc[doc]].clear(doc);
+                StockState state = StockState.of(newQuantity, minStockByDoc[doc]);
+                stockStateByDoc[doc] = (byte) state.ordinal();
+                byStockState[state.ordinal()].set(doc);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void setActive(int productId, boolean isActive) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docByProductId.get(productId);
+            if (doc != null) {
+                if (isActive) {
+                    active.set(doc);
+                } else {
+                    active.clear(doc);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int productId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Result query(Filter filter) {
+        lock.readLock().lock();
+        try {
+            Bitmap categoryMatch = null;
+            if (!filter.categoryIds.isEmpty()) {
+                categoryMatch = new Bitmap();
+                for (int categoryId : filter.categoryIds) {
+                    Bitmap bitmap = byCategory.get(categoryId);
+                    if (bitmap != null) {
+                        categoryMatch.or(bitmap);
+                    }
+                }
+            }
+            Bitmap priceMatch = union(byPriceBand, filter.priceBands);
+            Bitmap stockMatch = union(byStockState, filter.stockStates);
+            Bitmap activeMatch = null;
+            if (filter.active != null) {
+                activeMatch = filter.active ? active : live.copy().andNot(active);
+            }
+
+            Bitmap result = intersect(categoryMatch, priceMatch, stockMatch, activeMatch);
+            Set<Integer> productIds = new HashSet<>(result.cardinality() * 2);
+            result.forEach(doc -> productIds.add(productIdByDoc[doc]));
+
+            // Each facet is counted against the other facets' filters
+            Bitmap withoutCategory = intersect(null, priceMatch, stockMatch, activeMatch);
+            Map<Integer, Integer> categoryCounts = new HashMap<>();
+            for (Map.Entry<Integer, Bitmap> e : byCategory.entrySet()) {
+                categoryCounts.put(e.getKey(), withoutCategory.andCardinality(e.getValue()));
+            }
+            Bitmap withoutPrice = intersect(categoryMatch, null, stockMatch, activeMatch);
+            Map<PriceBand, Integer> priceCounts = new EnumMap<>(PriceBand.class);
+            for (PriceBand band : PriceBand.values()) {
+                priceCounts.put(band, withoutPrice.andCardinality(byPriceBand[band.ordinal()]));
+            }
+            Bitmap withoutStock = intersect(categoryMatch, priceMatch, null, activeMatch);
+            Map<StockState, Integer> stockCounts = new EnumMap<>(StockState.class);
+            for (StockState state : StockState.values()) {
+                stockCounts.put(state, withoutStock.andCardinality(byStockState[state.ordinal()]));
+            }
+            Bitmap withoutActive = intersect(categoryMatch, priceMatch, stockMatch, null);
+            int activeCount = withoutActive.andCardinality(active);
+            int inactiveCount = withoutActive.cardinality() - activeCount;
+
+            stats.recordHit();
+            return new Result(productIds, categoryCounts, priceCounts, stockCounts, activeCount, inactiveCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static <E extends Enum<E>> Bitmap union(Bitmap[] bitmaps, Set<E> values) {
+        if (values.isEmpty()) {
+            return null;
+        }
+        Bitmap match = new Bitmap();
+        for (E value : values) {
+            match.or(bitmaps[value.ordinal()]);
+        }
+        return match;
+    }
+
+    // Live documents restricted by every non-null facet match
+    private Bitmap intersect(Bitmap... matches) {
+        Bitmap result = live.copy();
+        for (Bitmap match : matches) {
+            if (match != null) {
+                result.and(match);
+            }
+        }
+        return result;
+    }
+
+    // Sets a product's facet bits, on its existing document when it has one
+    private void putLocked(int productId, int categoryId, BigDecimal price, int stockQuantity,
+                           int minStockLevel, boolean isActive) {
+        Integer existing = docByProductId.get(productId);
+        int doc;
+        if (existing != null) {
+            doc = existing;
+            clearFacetsLocked(doc);
+        } else {
+            if (docCount == productIdByDoc.length) {
+                int capacity = docCount * 2;
+                productIdByDoc = Arrays.copyOf(productIdByDoc, capacity);
+                categoryByDoc = Arrays.copyOf(categoryByDoc, capacity);
+                minStockByDoc = Arrays.copyOf(minStockByDoc, capacity);
+                priceBandByDoc = Arrays.copyOf(priceBandByDoc, capacity);
+                stockStateByDoc = Arrays.copyOf(stockStateByDoc, capacity);
+            }
+            doc = docCount++;
+            productIdByDoc[doc] = productId;
+            docByProductId.put(productId, doc);
+            live.set(doc);
+        }
+        PriceBand band = PriceBand.of(price);
+        StockState state = StockState.of(stockQuantity, minStockLevel);
+        categoryByDoc[doc] = categoryId;
+        minStockByDoc[doc] = minStockLevel;
+        priceBandByDoc[doc] = (byte) band.ordinal();
+        stockStateByDoc[doc] = (byte) state.ordinal();
+
+        if (isActive) {
+            active.set(doc);
+        }
+        byCategory.computeIfAbsent(categoryId, key -> new Bitmap()).set(doc);
+        byPriceBand[band.ordinal()].set(doc);
+        byStockState[state.ordinal()].set(doc);
+    }
+
+    private void removeLocked(int productId) {
+        Integer doc = docByProductId.remove(productId);
+        if (doc != null) {
+            live.clear(doc);
+            clearFacetsLocked(doc);
+        }
+    }
+
+    // Clears every facet bit of a document except live
+    private void clearFacetsLocked(int doc) {
+        active.clear(doc);
+        Bitmap category = byCategory.get(categoryByDoc[doc]);
+        if (category != null) {
+            category.clear(doc);
+        }
+        byPriceBand[priceBandByDoc[doc]].clear(doc);
+        byStockState[stockStateByDoc[doc]].clear(doc);
+    }
+
+    private void clearLocked() {
+        docByProductId.clear();
+        docCount = 0;
+        live = new Bitmap();
+        active = new Bitmap();
+        byCategory.clear();
+        for (int i = 0; i < byPriceBand.length; i++) {
+            byPriceBand[i] = new Bitmap();
+        }
+        for (int i = 0; i < byStockState.length; i++) {
+            byStockState[i] = new Bitmap();
+        }
+    }
+}
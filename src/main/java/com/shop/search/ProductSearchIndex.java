@@ -0,0 +1,667 @@
+package com.shop.search;
+
+import com.shop.cache.CacheStats;
+import com.shop.cache.CacheStatsRegistry;
+import com.shop.database.DatabaseConfig;
+import com.shop.model.Product;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram index over product name and SKU.
+ * Every distinct three-character sequence maps to a sorted list of product ids, so a
+ * substring query intersects a handful of posting lists instead of scanning the table.
+ * Candidates are verified against the stored text (trigrams can match out of order)
+ * and ranked: exact match, SKU prefix, name prefix, word start, then anywhere.
+ * Whole words of product names are also kept in a BK-tree for typo-tolerant search.
+ * The built index is saved as a segment file under search.index.dir; a restart maps it
+ * and replays only the products changed since its watermark.
+ */
+public class ProductSearchIndex {
+    private static ProductSearchIndex instance;
+
+    private static final String SEGMENT = "products-search";
+    // Same allowance as RefreshableView for clocks and transactions committing late
+    private static final int WATERMARK_OVERLAP_SECONDS = 5;
+
+    private final DatabaseConfig dbConfig;
+    private final boolean enabled;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final CacheStats stats;
+
+    private final Map<Integer, IndexedProduct> products = new HashMap<>();
+    private final Map<Long, PostingList> postings = new HashMap<>();
+    private final Map<String, PostingList> termPostings = new HashMap<>();
+    private final BKTree terms = new BKTree();
+    private final long fuzzyBudgetNanos;
+    private final Path segmentDir;
+    private volatile boolean loaded;
+
+    // Everything changed before this time is in memory; guarded by the write lock
+    private LocalDateTime watermark;
+
+    private ProductSearchIndex() {
+        this.dbConfig = DatabaseConfig.getInstance();
+        this.enabled = dbConfig.getBooleanProperty("search.trigram.enabled", true);
+        this.fuzzyBudgetNanos = dbConfig.getIntProperty("search.fuzzy.budget.millis", 50) * 1_000_000L;
+        this.segmentDir = dbConfig.getBooleanProperty("search.segments.enabled", true)
+                ? Paths.get(dbConfig.getProperty("search.index.dir", "./database/index")) : null;
+        this.stats = CacheStatsRegistry.getInstance().register("products.searchIndex", this::size, this::invalidate);
+    }
+
+    public static ProductSearchIndex getInstance() {
+        if (instance == null) {
+            synchronized (ProductSearchIndex.class) {
+                if (instance == null) {
+                    instance = new ProductSearchIndex();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Misses are recorded by ProductDAO, which times its database fallback
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return products.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void ensureLoaded() throws SQLException {
+        if (!enabled || loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                load();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Called with the write lock held, so writes made during the load wait for it
+    private void load() throws SQLException {
+        long start = System.nanoTime();
+        clearLocked();
+        IndexSegment.Reader segment = segmentDir != null ? IndexSegment.Reader.openLatest(segmentDir, SEGMENT) : null;
+        if (segment != null) {
+            try {
+                readSegment(segment);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Product search segment unreadable, rebuilding: " + e.getMessage());
+                clearLocked();
+                segment = null;
+            }
+        }
+
+        int changed = 0;
+        try {
+            if (segment != null) {
+                changed = replay();
+            } else {
+                rebuild();
+            }
+        } catch (SQLException e) {
+            clearLocked();
+            stats.recordLoadFailure();
+            throw e;
+        }
+        if (segment == null || changed > 0) {
+            saveLocked();
+        }
+        loaded = true;
+        if (segment != null) {
+            System.out.printf("Product search index mapped from %s: %d products (%d changed since) in %d ms%n",
+                    segment.getFile(), products.size(), changed, (System.nanoTime() - start) / 1_000_000);
+        } else {
+            System.out.printf("Product search index built: %d products, %d trigrams in %d ms%n",
+                    products.size(), postings.size(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private void rebuild() throws SQLException {
+        watermark = LocalDateTime.now().minusSeconds(WATERMARK_OVERLAP_SECONDS);
+        String sql = "SELECT product_id, product_name, sku, is_active FROM products";
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    addLocked(new IndexedProduct(rs.getInt("product_id"), rs.getString("product_name"),
+                            rs.getString("sku"), rs.getBoolean("is_active")));
+                }
+            }
+        }
+    }
+
+    /**
+     * Re-reads products changed since the segment's watermark, then drops ids that were
+     * deleted outright (a delete leaves no updated_at behind); returns how many changed.
+     */
+    private int replay() throws SQLException {
+        LocalDateTime next = LocalDateTime.now().minusSeconds(WATERMARK_OVERLAP_SECONDS);
+        int changed = 0;
+        String sql = "SELECT product_id, product_name, sku, is_active FROM products WHERE updated_at >= ?";
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement(sql)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(watermark));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int productId = rs.getInt("product_id");
+                    removeLocked(productId);
+                    addLocked(new IndexedProduct(productId, rs.getString("product_name"),
+                            rs.getString("sku"), rs.getBoolean("is_active")));
+                    changed++;
+                }
+            }
+        }
+
+        Set<Integer> gone = new HashSet<>(products.keySet());
+        try (PreparedStatement stmt = dbConfig.getConnection().prepareStatement("SELECT product_id FROM products")) {
+            stmt.setFetchSize(1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    gone.remove(rs.getInt(1));
+                }
+            }
+        }
+        for (int productId : gone) {
+            removeLocked(productId);
+        }
+        watermark = next;
+        return changed + gone.size();
+    }
+
+    /**
+     * Writes the loaded index out so the next start maps it instead of rebuilding.
+     * Called on shutdown; does nothing if the index was never loaded.
+     */
+    public static void saveIfLoaded() {
+        ProductSearchIndex index = instance;
+        if (index == null || !index.loaded) {
+            return;
+        }
+        index.lock.readLock().lock();
+        try {
+            index.saveLocked();
+        } finally {
+            index.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Segment layout after the header: products (id, active, name, sku), trigram posting
+     * lists, name-term posting lists, then the BK-tree. The watermark stays where the last
+     * build or replay put it: writes by other clients since then are not in memory yet.
+     */
+    private void saveLocked() {
+        if (segmentDir == null) {
+            return;
+        }
+        try (IndexSegment.Writer out = new IndexSegment.Writer(segmentDir, SEGMENT, watermark)) {
+            out.writeInt(products.size());
+            for (IndexedProduct product : products.values()) {
+                out.writeInt(product.productId);
+                out.writeBoolean(product.active);
+                out.writeString(product.name);
+                out.writeString(product.sku);
+            }
+            out.writeInt(postings.size());
+            for (Map.Entry<Long, PostingList> e : postings.entrySet()) {
+                out.writeLong(e.getKey());
+                out.writeInts(e.getValue().ids, e.getValue().size);
+            }
+            out.writeInt(termPostings.size());
+            for (Map.Entry<String, PostingList> e : termPostings.entrySet()) {
+                out.writeString(e.getKey());
+                out.writeInts(e.getValue().ids, e.getValue().size);
+            }
+            terms.writeTo(out);
+            out.commit();
+        } catch (IOException e) {
+            System.err.println("Could not save product search segment: " + e.getMessage());
+        }
+    }
+
+    // Posting arrays are copied out of the mapping in bulk; nothing is re-tokenized
+    private void readSegment(IndexSegment.Reader in) throws IOException {
+        int productCount = in.readInt();
+        for (int i = 0; i < productCount; i++) {
+            int productId = in.readInt();
+            boolean active = in.readBoolean();
+            products.put(productId, new IndexedProduct(productId, in.readString(), in.readString(), active));
+        }
+        int postingCount = in.readInt();
+        for (int i = 0; i < postingCount; i++) {
+            long trigram = in.readLong();
+            postings.put(trigram, new PostingList(in.readInts()));
+        }
+        int termCount = in.readInt();
+        for (int i = 0; i < termCount; i++) {
+            String term = in.readString();
+            termPostings.put(term, new PostingList(in.readInts()));
+        }
+        terms.readFrom(in);
+        in.checkEnd();
+        watermark = in.getWatermark();
+    }
+
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                stats.recordEviction();
+            }
+            clearLocked();
+            loaded = false;
+            // The next load rebuilds from the table rather than trusting the segment
+            if (segmentDir != null) {
+                IndexSegment.delete(segmentDir, SEGMENT);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Writes before the first build are ignored (the build reads them from the table);
+    // writes during a build wait for the lock and are applied on top of it
+    public void put(Product product) {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                removeLocked(product.getProductId());
+                addLocked(new IndexedProduct(product.getProductId(), product.getProductName(),
+                        product.getSku(), product.isActive()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void setActive(int productId, boolean active) {
+        lock.writeLock().lock();
+        try {
+            IndexedProduct product = products.get(productId);
+            if (product != null) {
+                product.active = active;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int productId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of active products whose name or SKU contains the query, best match first.
+     * A limit of zero or less returns every match.
+     */
+    public List<Integer> search(String query, int limit) {
+        return search(query, limit, false);
+    }
+
+    // As search, with inactive products among the matches when includeInactive is set (list screens)
+    public List<Integer> search(String query, int limit, boolean includeInactive) {
+        String needle = normalize(query);
+        lock.readLock().lock();
+        try {
+            Collection<IndexedProduct> candidates;
+            if (needle.length() < 3) {
+                // Too short to form a trigram; a scan of the in-memory table is still cheap
+                candidates = products.values();
+            } else {
+                int[] ids = intersect(trigramsOf(needle));
+                List<IndexedProduct> found = new ArrayList<>(ids.length);
+                for (int id : ids) {
+                    found.add(products.get(id));
+                }
+                candidates = found;
+            }
+
+            Comparator<Ranked> order = RANKED_ORDER;
+            int capacity = limit > 0 ? limit : Math.max(1, candidates.size());
+            // Max-heap on rank keeps only the best `limit` matches
+            PriorityQueue<Ranked> best = new PriorityQueue<>(capacity + 1, order.reversed());
+            for (IndexedProduct product : candidates) {
+                if (!product.active && !includeInactive) {
+                    continue;
+                }
+                int rank = rank(product, needle);
+                if (rank < 0) {
+                    continue;
+                }
+                best.add(new Ranked(product, rank));
+                if (limit > 0 && best.size() > limit) {
+                    best.poll();
+                }
+            }
+
+            List<Ranked> ranked = new ArrayList<>(best);
+            ranked.sort(order);
+            List<Integer> result = new ArrayList<>(ranked.size());
+            for (Ranked r : ranked) {
+                result.add(r.product.productId);
+            }
+            stats.recordHit();
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Typo-tolerant search: exact substring matches first, then products whose words are
+     * each within a few edits of a query word (one edit for 4-6 letters, two beyond).
+     * Gives up on further fuzzy matches once the time budget is spent.
+     */
+    public List<Integer> fuzzySearch(String query, int limit) {
+        return fuzzySearch(query, limit, false);
+    }
+
+    // As fuzzySearch, with inactive products among the matches when includeInactive is set (list screens)
+    public List<Integer> fuzzySearch(String query, int limit, boolean includeInactive) {
+        long deadline = System.nanoTime() + fuzzyBudgetNanos;
+        List<Integer> result = search(query, limit, includeInactive);
+        if (limit > 0 && result.size() >= limit) {
+            return result;
+        }
+        Set<String> words = termsOf(normalize(query));
+        if (words.isEmpty()) {
+            return result;
+        }
+
+        lock.readLock().lock();
+        try {
+            // Summed edit distance per product; a product must match every query word
+            Map<Integer, Integer> distances = null;
+            for (String word : words) {
+                Map<Integer, Integer> wordDistances = new HashMap<>();
+                for (BKTree.Match match : terms.search(word, maxEdits(word), deadline)) {
+                    PostingList list = termPostings.get(match.getTerm());
+                    if (list == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < list.size; i++) {
+                        wordDistances.merge(list.ids[i], match.getDistance(), Math::min);
+                    }
+                }
+                if (distances == null) {
+                    distances = wordDistances;
+                } else {
+                    Map<Integer, Integer> both = new HashMap<>();
+                    for (Map.Entry<Integer, Integer> e : distances.entrySet()) {
+                        Integer d = wordDistances.get(e.getKey());
+                        if (d != null) {
+                            both.put(e.getKey(), e.getValue() + d);
+                        }
+                    }
+                    distances = both;
+                }
+                if (distances.isEmpty()) {
+                    break;
+                }
+            }
+
+            Set<Integer> seen = new HashSet<>(result);
+            List<Ranked> ranked = new ArrayList<>();
+            for (Map.Entry<Integer, Integer> e : distances.entrySet()) {
+                IndexedProduct product = products.get(e.getKey());
+                if (product != null && (product.active || includeInactive) && !seen.contains(e.getKey())) {
+                    ranked.add(new Ranked(product, e.getValue()));
+                }
+            }
+            ranked.sort(RANKED_ORDER);
+            for (Ranked r : ranked) {
+                if (limit > 0 && result.size() >= limit) {
+                    break;
+                }
+                result.add(r.product.productId);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int maxEdits(String word) {
+        if (word.length() <= 3) {
+            return 0;
+        }
+        return word.length() <= 6 ? 1 : 2;
+    }
+
+    // Lower rank is better; -1 means the text does not actually contain the query
+    private static int rank(IndexedProduct product, String needle) {
+        if (product.name.equals(needle) || product.sku.equals(needle)) {
+            return 0;
+        }
+        if (product.sku.startsWith(needle)) {
+            return 1;
+        }
+        if (product.name.startsWith(needle)) {
+            return 2;
+        }
+        int at = product.name.indexOf(needle);
+        boolean inName = at >= 0;
+        while (at > 0) {
+            if (!Character.isLetterOrDigit(product.name.charAt(at - 1))) {
+                return 3;
+            }
+            at = product.name.indexOf(needle, at + 1);
+        }
+        if (inName || product.sku.contains(needle)) {
+            return 4;
+        }
+        return -1;
+    }
+
+    // Intersect from the shortest list so the working set only shrinks
+    private int[] intersect(Set<Long> trigrams) {
+        List<PostingList> lists = new ArrayList<>(trigrams.size());
+        for (long trigram : trigrams) {
+            PostingList list = postings.get(trigram);
+            if (list == null) {
+                return new int[0];
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+
+        int[] result = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+        int count = result.length;
+        for (int i = 1; i < lists.size() && count > 0; i++) {
+            PostingList list = lists.get(i);
+            int kept = 0;
+            int from = 0;
+            for (int j = 0; j < count; j++) {
+                int pos = Arrays.binarySearch(list.ids, from, list.size, result[j]);
+                if (pos >= 0) {
+                    result[kept++] = result[j];
+                    from = pos + 1;
+                } else {
+                    from = -pos - 1;
+                }
+            }
+            count = kept;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private void addLocked(IndexedProduct product) {
+        products.put(product.productId, product);
+        for (long trigram : product.trigrams()) {
+            postings.computeIfAbsent(trigram, key -> new PostingList()).add(product.productId);
+        }
+        for (String term : product.terms()) {
+            termPostings.computeIfAbsent(term, key -> {
+                terms.add(key);
+                return new PostingList();
+            }).add(product.productId);
+        }
+    }
+
+    private void removeLocked(int productId) {
+        IndexedProduct old = products.remove(productId);
+        if (old == null) {
+            return;
+        }
+        for (long trigram : old.trigrams()) {
+            PostingList list = postings.get(trigram);
+            if (list != null && list.remove(productId) && list.size == 0) {
+                postings.remove(trigram);
+            }
+        }
+        for (String term : old.terms()) {
+            PostingList list = termPostings.get(term);
+            if (list != null && list.remove(productId) && list.size == 0) {
+                termPostings.remove(term);
+            }
+        }
+    }
+
+    private void clearLocked() {
+        products.clear();
+        postings.clear();
+        termPostings.clear();
+        terms.clear();
+    }
+
+    static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Three UTF-16 chars packed into one long
+    static Set<Long> trigramsOf(String text) {
+        Set<Long> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return trigrams;
+    }
+
+    private static final class IndexedProduct {
+        final int productId;
+        final String name;
+        final String sku;
+        boolean active;
+
+        IndexedProduct(int productId, String name, String sku, boolean active) {
+            this.productId = productId;
+            this.name = normalize(name);
+            this.sku = normalize(sku);
+            this.active = active;
+        }
+
+        Set<Long> trigrams() {
+            Set<Long> trigrams = trigramsOf(name);
+            trigrams.addAll(trigramsOf(sku));
+            return trigrams;
+        }
+
+        // Name words only: SKUs are codes, not words people misspell
+        Set<String> terms() {
+            return termsOf(name);
+        }
+    }
+
+    // Words of two or more letters or digits
+    static Set<String> termsOf(String text) {
+        Set<String> words = new HashSet<>();
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (word.length() >= 2) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static final Comparator<Ranked> RANKED_ORDER = Comparator.<Ranked>comparingInt(r -> r.rank)
+            .thenComparingInt(r -> r.product.name.length())
+            .thenComparing(r -> r.product.name)
+            .thenComparingInt(r -> r.product.productId);
+
+    private static final class Ranked {
+        final IndexedProduct product;
+        final int rank;
+
+        Ranked(IndexedProduct product, int rank) {
+            this.product = product;
+            this.rank = rank;
+        }
+    }
+
+    // Sorted, duplicate-free growable int array
+    private static final class PostingList {
+        int[] ids;
+        int size;
+
+        PostingList() {
+            this.ids = new int[4];
+        }
+
+        PostingList(int[] ids) {
+            this.ids = ids.length > 0 ? ids : new int[4];
+            this.size = ids.length;
+        }
+
+        void add(int id) {
+            if (size == 0 || ids[size - 1] < id) {
+                // Ids mostly arrive in ascending order during a build
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                }
+                ids[size++] = id;
+                return;
+            }
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                return;
+            }
+            pos = -pos - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos < 0) {
+                return false;
+            }
+            System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+            size--;
+            return true;
+        }
+    }
+}
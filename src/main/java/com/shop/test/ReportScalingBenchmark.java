@@ -0,0 +1,113 @@
+package com.shop.test;
+
+import com.shop.report.ParallelReportExecutor;
+import com.shop.report.ReportEngine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Scaling benchmark for parallel report scans (ParallelReportExecutor).
+ * Runs a synthetic report engine (ReportEngine.synthetic) over random order lines: it is
+ * built without DatabaseConfig, so nothing connects to the database. Times revenue by
+ * category by month, margin by product and the payment-method mix with 1, 2, 4 ... up to
+ * the given number of workers, checking each result against the single-threaded one.
+ * Usage: ReportScalingBenchmark [lines] [days] [maxWorkers]
+ */
+public class ReportScalingBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 15;
+
+    public static void main(String[] args) {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 730;
+        int maxWorkers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        System.out.println("Generating " + lines + " order lines over " + days + " days...");
+        ReportEngine engine = ReportEngine.synthetic(lines, days, maxWorkers);
+        try {
+
+            List<ReportEngine.Query> queries = List.of(
+                    new ReportEngine.Query().groupBy(ReportEngine.Dimension.CATEGORY).thenBy(ReportEngine.Dimension.MONTH),
+                    new ReportEngine.Query().groupBy(ReportEngine.Dimension.PRODUCT),
+                    new ReportEngine.Query().groupBy(ReportEngine.Dimension.PAYMENT_METHOD));
+            String[] names = {"Revenue by category by month", "Margin by product", "Payment-method mix"};
+
+            List<Integer> workerCounts = new ArrayList<>();
+            for (int workers = 1; workers < maxWorkers; workers *= 2) {
+                workerCounts.add(workers);
+            }
+            workerCounts.add(maxWorkers);
+
+            List<ReportEngine.Result> baseline = null;
+            double[] baselineMillis = null;
+            System.out.printf("%-30s %8s %10s %8s%n", "Report", "Workers", "Median ms", "Speedup");
+            for (int workers : workerCounts) {
+                ParallelReportExecutor executor = new ParallelReportExecutor(workers);
+                List<ReportEngine.Result> results = new ArrayList<>();
+                double[] millis = new double[queries.size()];
+                for (int q = 0; q < queries.size(); q++) {
+                    long[] times = new long[ROUNDS];
+                    ReportEngine.Result result = null;
+                    for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+                        result = engine.run(queries.get(q), executor);
+                        if (round >= WARMUP_ROUNDS) {
+                            times[round - WARMUP_ROUNDS] = result.getElapsedNanos();
+                        }
+                    }
+                    Arrays.sort(times);
+                    millis[q] = times[ROUNDS / 2] / 1_000_000.0;
+                    results.add(result);
+                }
+                executor.shutdown();
+
+                if (baseline == null) {
+                    baseline = results;
+                    baselineMillis = millis;
+                }
+                for (int q = 0; q < queries.size(); q++) {
+                    System.out.printf("%-30s %8d %10.2f %7.2fx%s%n", names[q], workers, millis[q],
+                            baselineMillis[q] / millis[q], sameResult(baseline.get(q), results.get(q)) ? "" : "  RESULT DIFFERS");
+                }
+            }
+
+            // The three reports handed over together share the engine's own pool
+            long[] times = new long[ROUNDS];
+            for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+                List<ReportEngine.Result> results = engine.runAll(queries);
+                if (round >= WARMUP_ROUNDS) {
+                    times[round - WARMUP_ROUNDS] = results.get(0).getElapsedNanos();
+                }
+            }
+            Arrays.sort(times);
+            System.out.printf("All three together on the engine's pool: %.2f ms (median)%n", times[ROUNDS / 2] / 1_000_000.0);
+
+        } catch (Exception e) {
+            System.err.println("Report scaling benchmark failed:");
+            e.printStackTrace();
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    private static boolean sameResult(ReportEngine.Result expected, ReportEngine.Result actual) {
+        if (expected.getRows().size() != actual.getRows().size()) {
+            return false;
+        }
+        for (int i = 0; i < expected.getRows().size(); i++) {
+            if (!sameRow(expected.getRows().get(i), actual.getRows().get(i))) {
+                return false;
+            }
+        }
+        return sameRow(expected.getTotal(), actual.getTotal());
+    }
+
+    private static boolean sameRow(ReportEngine.Row a, ReportEngine.Row b) {
+        return a.getKey() == b.getKey() && a.getSubKey() == b.getSubKey()
+                && a.getOrders() == b.getOrders() && a.getLines() == b.getLines()
+                && a.getQuantity() == b.getQuantity()
+                && a.getRevenue().compareTo(b.getRevenue()) == 0 && a.getCost().compareTo(b.getCost()) == 0;
+    }
+}
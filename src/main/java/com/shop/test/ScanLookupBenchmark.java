@@ -0,0 +1,110 @@
+package com.shop.test;
+
+import com.shop.cache.ScanLookupService;
+import com.shop.model.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Latency benchmark for the till scan path (ScanLookupService.lookup).
+ * Loads the real catalog, pads it with synthetic in-memory SKUs up to the target size
+ * (nothing is written to the database), warms up, then times every lookup on its own and
+ * prints the percentiles of the per-lookup latency. A lookup takes about as long as
+ * System.nanoTime itself, so the median cost of a timing call pair, measured first, is
+ * taken off each sample; the results are only as fine as the clock's resolution.
+ * Usage: ScanLookupBenchmark [catalogSize] [lookups]
+ */
+public class ScanLookupBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int CLOCK_SAMPLES = 1_000_000;
+    private static final int PAD_CHUNK = 100_000;
+
+    public static void main(String[] args) {
+        int catalogSize = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+
+        try {
+            ScanLookupService scanLookup = ScanLookupService.getInstance();
+            scanLookup.ensureLoaded();
+
+            System.out.println("Padding scan table to " + catalogSize + " SKUs...");
+            List<Product> padding = new ArrayList<>(PAD_CHUNK);
+            for (int i = scanLookup.size(); i < catalogSize; i++) {
+                // Negative ids cannot collide with real products
+                Product product = new Product("Benchmark item " + i, "BENCH-" + i, new BigDecimal("9.99"), 10, 0);
+                product.setProductId(-1 - i);
+                padding.add(product);
+                if (padding.size() == PAD_CHUNK) {
+                    scanLookup.putAll(padding);
+                    padding.clear();
+                }
+            }
+            scanLookup.putAll(padding);
+
+            // Mostly hits, a few unknown barcodes, in random order
+            Random random = new Random(42);
+            String[] scans = new String[lookups];
+            for (int i = 0; i < lookups; i++) {
+                scans[i] = random.nextInt(100) < 98
+                        ? "BENCH-" + random.nextInt(catalogSize)
+                        : "UNKNOWN-" + random.nextInt(catalogSize);
+            }
+
+            long clockOverhead = clockOverhead();
+            long[] latencies = new long[lookups];
+            long found = 0;
+            for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+                found = 0;
+                for (int i = 0; i < lookups; i++) {
+                    long start = System.nanoTime();
+                    ScanLookupService.ScanRecord record = scanLookup.lookup(scans[i]);
+                    latencies[i] = Math.max(0, System.nanoTime() - start - clockOverhead);
+                    if (record != null) {
+                        found++;
+                    }
+                }
+            }
+            Arrays.sort(latencies);
+
+            System.out.println("Lookups: " + lookups + " (" + found + " found), catalog: " + scanLookup.size());
+            System.out.println("Latency per lookup, less " + clockOverhead + " ns of timing overhead:");
+            System.out.printf("p50: %d ns%n", percentile(latencies, 0.50));
+            System.out.printf("p90: %d ns%n", percentile(latencies, 0.90));
+            System.out.printf("p99: %d ns%n", percentile(latencies, 0.99));
+            System.out.printf("p99.9: %d ns%n", percentile(latencies, 0.999));
+            System.out.printf("max: %d ns%n", latencies[latencies.length - 1]);
+            System.out.println(percentile(latencies, 0.99) < 1_000
+                    ? "p99 is under one microsecond"
+                    : "p99 is NOT under one microsecond");
+
+            // Drop the synthetic SKUs
+            scanLookup.invalidate();
+
+        } catch (Exception e) {
+            System.err.println("Scan lookup benchmark failed:");
+            e.printStackTrace();
+        }
+    }
+
+    // Median time between two back-to-back System.nanoTime calls
+    private static long clockOverhead() {
+        long[] samples = new long[CLOCK_SAMPLES];
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            for (int i = 0; i < samples.length; i++) {
+                long start = System.nanoTime();
+                samples[i] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(samples);
+        return samples[samples.length / 2];
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+}